@@ -0,0 +1,96 @@
+package com.nationale.currency.benchmark;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.nationale.currency.acoount.AccountService;
+import com.nationale.generated.model.Account;
+import com.nationale.generated.model.AccountExchange;
+import com.nationale.generated.model.RegisterAccountRequest;
+import com.nationale.generated.model.RegisterAccountResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link AccountService} on a map store with a fixed NBP rate, i.e. the cost of validation,
+ * arithmetic and DTO building without the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccountServiceBenchmark {
+
+    @Param("10000")
+    private int accounts;
+
+    private AccountService accountService;
+    private MapAccountStore registerStore;
+    private AccountService registerService;
+    private List<String> apiKeys;
+    private RegisterAccountRequest registerRequest;
+    private AccountExchange plnToUsd;
+    private AccountExchange usdToPln;
+    private AccountExchange eurToUsd;
+
+    @Setup
+    public void setUp() {
+        var accountStore = new MapAccountStore();
+        accountService = BenchmarkFixtures.accountService(accountStore);
+        apiKeys = BenchmarkFixtures.seedAccounts(accountStore, accounts, 10_000_000.0d);
+        registerStore = new MapAccountStore();
+        registerService = BenchmarkFixtures.accountService(registerStore);
+        registerRequest = RegisterAccountRequest.builder()
+                .firstName("John")
+                .lastName("Smith")
+                .balancePLN(1000.0d)
+                .build();
+        plnToUsd = AccountExchange.builder().from("PLN").to("USD").amount(0.01d).build();
+        usdToPln = AccountExchange.builder().from("USD").to("PLN").amount(0.01d).build();
+        eurToUsd = AccountExchange.builder().from("EUR").to("USD").amount(0.01d).build();
+    }
+
+    @Setup(Level.Iteration)
+    public void clearRegistered() {
+        registerStore.clear();
+    }
+
+    @Benchmark
+    public RegisterAccountResponse register() {
+        return registerService.register(registerRequest);
+    }
+
+    @Benchmark
+    public Account getStatus() {
+        return accountService.getStatus(randomApiKey());
+    }
+
+    @Benchmark
+    public Account exchange() {
+        var random = ThreadLocalRandom.current();
+        var exchange = random.nextBoolean() ? plnToUsd : usdToPln;
+        return accountService.exchange(apiKeys.get(random.nextInt(accounts)), exchange);
+    }
+
+    @Benchmark
+    public Account exchangeCrossRate() {
+        return accountService.exchange(randomApiKey(), eurToUsd);
+    }
+
+    private String randomApiKey() {
+        return apiKeys.get(ThreadLocalRandom.current().nextInt(accounts));
+    }
+}
@@ -0,0 +1,114 @@
+package com.nationale.currency.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import com.nationale.currency.CurrencyExchangeApplication;
+import com.nationale.currency.acoount.AccountService;
+import com.nationale.generated.model.Account;
+import com.nationale.generated.model.AccountExchange;
+import com.nationale.generated.model.RegisterAccountRequest;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Status and exchange through the service with the accounts in H2 ({@code store=jpa}) or in the in-memory store
+ * ({@code store=memory}). The status cache is off, so {@code getStatus} reads the store every time; the journal is
+ * written to an H2 file database in both cases.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountStoreBenchmark {
+
+    private static final AccountExchange EXCHANGE = AccountExchange.builder()
+            .from("PLN")
+            .to("USD")
+            .amount(0.01d)
+            .build();
+    private static final RegisterAccountRequest REGISTER = RegisterAccountRequest.builder()
+            .firstName("John")
+            .lastName("Smith")
+            .balancePLN(10_000_000.0d)
+            .build();
+
+    @Param({"jpa", "memory"})
+    private String store;
+
+    @Param("10000")
+    private int accounts;
+
+    private Path directory;
+    private HttpServer nbpServer;
+    private ConfigurableApplicationContext context;
+    private AccountService accountService;
+    private List<String> apiKeys;
+
+    @Setup
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("account-benchmark");
+        nbpServer = BenchmarkFixtures.startNbp();
+        context = new SpringApplicationBuilder(CurrencyExchangeApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "account.store.type=" + store,
+                        "account.store.memory.directory=" + directory.resolve("accounts"),
+                        "account.database.file=" + directory.resolve("account"),
+                        "account.status-cache.maximum-size=0",
+                        "logging.level.root=WARN",
+                        "nbp.api.url=http://localhost:" + nbpServer.getAddress().getPort())
+                .run();
+        accountService = context.getBean(AccountService.class);
+        apiKeys = new ArrayList<>(accounts);
+        for (int i = 0; i < accounts; i++) {
+            apiKeys.add(accountService.register(REGISTER).getApiKey());
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        nbpServer.stop(0);
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Account getStatus() {
+        return accountService.getStatus(randomApiKey());
+    }
+
+    @Benchmark
+    public Account exchange() {
+        return accountService.exchange(randomApiKey(), EXCHANGE);
+    }
+
+    private String randomApiKey() {
+        return apiKeys.get(ThreadLocalRandom.current().nextInt(accounts));
+    }
+}
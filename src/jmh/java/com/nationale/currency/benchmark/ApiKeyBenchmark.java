@@ -0,0 +1,71 @@
+package com.nationale.currency.benchmark;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import com.nationale.currency.acoount.ApiKeyGenerator;
+import com.nationale.currency.acoount.ApiKeys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Generating and parsing api keys: {@link ApiKeyGenerator} against {@link UUID#randomUUID()}, and
+ * {@link ApiKeys#parse} against {@link UUID#fromString} for a valid and a malformed {@code x-api-key} header. The
+ * generators run on 4 threads, so the shared lock of {@code randomUUID} shows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApiKeyBenchmark {
+
+    private String apiKey = "cecb5b42-7c24-41cd-895c-1d3747c8444d";
+    private String malformedApiKey = "cecb5b42-7c24-41cd-895c-1d3747c8444g";
+    private final ApiKeyGenerator generator = new ApiKeyGenerator(Runtime.getRuntime().availableProcessors());
+
+    @Benchmark
+    @Threads(4)
+    public String randomUuid() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String generator() {
+        return generator.get();
+    }
+
+    @Benchmark
+    public UUID fromString() {
+        return UUID.fromString(apiKey);
+    }
+
+    @Benchmark
+    public UUID parse() {
+        return ApiKeys.parse(apiKey);
+    }
+
+    @Benchmark
+    public UUID fromStringMalformed() {
+        try {
+            return UUID.fromString(malformedApiKey);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public UUID parseMalformed() {
+        return ApiKeys.parse(malformedApiKey);
+    }
+}
@@ -0,0 +1,141 @@
+package com.nationale.currency.benchmark;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nationale.currency.acoount.AccountBalance;
+import com.nationale.currency.acoount.AccountLocks;
+import com.nationale.currency.acoount.AccountMetrics;
+import com.nationale.currency.acoount.AccountService;
+import com.nationale.currency.acoount.AccountStatusCache;
+import com.nationale.currency.acoount.AccountStore;
+import com.nationale.currency.acoount.ApiKeyGenerator;
+import com.nationale.currency.acoount.IdempotencyStore;
+import com.nationale.currency.acoount.Money;
+import com.nationale.currency.acoount.QuoteStore;
+import com.nationale.currency.nbp.ExchangeRate;
+import com.nationale.currency.nbp.ExchangeTable;
+import com.nationale.currency.nbp.NbpApiClient;
+import com.nationale.currency.nbp.NbpCircuitBreaker;
+import com.nationale.currency.nbp.NbpRateCache;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Builds the service graph the way Spring wires it, with NBP replaced by a fixed rate.
+ */
+final class BenchmarkFixtures {
+
+    static final String USD = "USD";
+    static final ExchangeTable NBP_TABLE = new ExchangeTable("A", "222/A/NBP/2024", "2024-11-15", List.of(
+            new ExchangeRate("dolar amerykański", USD, new BigDecimal("4.1080")),
+            new ExchangeRate("euro", "EUR", new BigDecimal("4.3215"))));
+    static final String NBP_RESPONSE = """
+            [{"table":"A","no":"222/A/NBP/2024","effectiveDate":"2024-11-15","rates":[\
+            {"currency":"dolar amerykański","code":"USD","mid":4.1080},\
+            {"currency":"euro","code":"EUR","mid":4.3215}]}]""";
+
+    private BenchmarkFixtures() {
+    }
+
+    static AccountService accountService(AccountStore accountStore) {
+        var clock = Clock.systemUTC();
+        var meterRegistry = new SimpleMeterRegistry();
+        var idGenerator = new ApiKeyGenerator(Runtime.getRuntime().availableProcessors());
+        return new AccountService(accountStore, idGenerator,
+                rateCache(clock, meterRegistry), new AccountStatusCache(meterRegistry, 100_000, Duration.ofMinutes(5)),
+                new AccountMetrics(meterRegistry), new TransactionTemplate(new NoTransactionManager()),
+                new InMemoryJournalRepository(),
+                new IdempotencyStore(new InMemoryIdempotencyRepository(), Jackson2ObjectMapperBuilder.json().build(),
+                        clock, meterRegistry, 100_000, Duration.ofMinutes(10), Duration.ofHours(24)),
+                new AccountLocks(meterRegistry, true, 1024, false, Duration.ofSeconds(5)),
+                new QuoteStore(idGenerator, clock, meterRegistry, Duration.ofSeconds(30), Duration.ofSeconds(1)));
+    }
+
+    /**
+     * @return a rate cache always holding {@link #NBP_TABLE}
+     */
+    static NbpRateCache rateCache(Clock clock, SimpleMeterRegistry meterRegistry) {
+        return new NbpRateCache(stubNbpApiClient(clock, meterRegistry), clock, meterRegistry,
+                Duration.ofMinutes(15), Duration.ofHours(1), Duration.ofHours(12), "12:15",
+                ZoneId.of("Europe/Warsaw"));
+    }
+
+    /**
+     * Starts a local HTTP server answering every request with {@link #NBP_RESPONSE}.
+     */
+    static HttpServer startNbp() throws IOException {
+        var nbpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        nbpServer.createContext("/", exchange -> {
+            var body = NBP_RESPONSE.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (var responseBody = exchange.getResponseBody()) {
+                responseBody.write(body);
+            }
+        });
+        nbpServer.start();
+        return nbpServer;
+    }
+
+    static List<String> seedAccounts(AccountStore accountStore, int count, double balancePLN) {
+        var apiKeys = new String[count];
+        for (int i = 0; i < count; i++) {
+            apiKeys[i] = UUID.randomUUID().toString();
+            accountStore.insert(List.of(new AccountBalance(apiKeys[i], "John", "Smith", Map.of(
+                    "PLN", Money.fromDouble(balancePLN), USD, Money.fromDouble(balancePLN),
+                    "EUR", Money.fromDouble(balancePLN)), 0L)));
+        }
+        return List.of(apiKeys);
+    }
+
+    private static NbpApiClient stubNbpApiClient(Clock clock, SimpleMeterRegistry meterRegistry) {
+        var circuitBreaker = new NbpCircuitBreaker(clock, meterRegistry, 5, Duration.ofSeconds(30));
+        return new NbpApiClient(HttpClient.newHttpClient(), new ObjectMapper(), "http://localhost", Duration.ofSeconds(3),
+                Duration.ZERO, 4, circuitBreaker, meterRegistry) {
+            @Override
+            public CompletableFuture<ExchangeTable> findTableAsync() {
+                return CompletableFuture.completedFuture(NBP_TABLE);
+            }
+        };
+    }
+
+    /**
+     * Runs the transactional part of the service without a database; the map store needs no transaction.
+     */
+    private static final class NoTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.nationale.currency.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import com.nationale.currency.CurrencyExchangeApplication;
+import com.nationale.currency.acoount.AccountService;
+import com.nationale.generated.model.Account;
+import com.nationale.generated.model.AccountExchange;
+import com.nationale.generated.model.RegisterAccountRequest;
+import com.nationale.generated.model.RegisterAccountResponse;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Register and exchange through the service on an H2 file database, with the settings of {@code application.yaml}
+ * ({@code profile=default}) or with the {@code perf} profile on top of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class DatabaseProfileBenchmark {
+
+    private static final AccountExchange EXCHANGE = AccountExchange.builder()
+            .from("PLN")
+            .to("USD")
+            .amount(0.01d)
+            .build();
+    private static final RegisterAccountRequest REGISTER = RegisterAccountRequest.builder()
+            .firstName("John")
+            .lastName("Smith")
+            .balancePLN(10_000_000.0d)
+            .build();
+
+    @Param({"default", "perf"})
+    private String profile;
+
+    @Param("1000")
+    private int accounts;
+
+    private Path directory;
+    private HttpServer nbpServer;
+    private ConfigurableApplicationContext context;
+    private AccountService accountService;
+    private List<String> apiKeys;
+
+    @Setup
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("account-benchmark");
+        nbpServer = BenchmarkFixtures.startNbp();
+        context = new SpringApplicationBuilder(CurrencyExchangeApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles(profile)
+                .properties(
+                        "account.database.file=" + directory.resolve("account"),
+                        "logging.level.root=WARN",
+                        "nbp.api.url=http://localhost:" + nbpServer.getAddress().getPort())
+                .run();
+        accountService = context.getBean(AccountService.class);
+        apiKeys = new ArrayList<>(accounts);
+        for (int i = 0; i < accounts; i++) {
+            apiKeys.add(accountService.register(REGISTER).getApiKey());
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        nbpServer.stop(0);
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public RegisterAccountResponse register() {
+        return accountService.register(REGISTER);
+    }
+
+    @Benchmark
+    public Account exchange() {
+        return accountService.exchange(apiKeys.get(ThreadLocalRandom.current().nextInt(accounts)), EXCHANGE);
+    }
+}
@@ -0,0 +1,135 @@
+package com.nationale.currency.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.nationale.currency.CurrencyExchangeApplication;
+import com.nationale.currency.acoount.AccountService;
+import com.nationale.currency.acoount.exception.ExchangeConflictException;
+import com.nationale.generated.model.Account;
+import com.nationale.generated.model.AccountExchange;
+import com.nationale.generated.model.RegisterAccountRequest;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * 24 threads exchanging on one hot account next to 8 threads exchanging on {@value #COLD_ACCOUNTS} other accounts,
+ * through the service and an in-memory H2 database. The exchanges of one account are ordered by the striped account
+ * locks ({@code locks=true}) or only by the database row lock ({@code locks=false}), which lets the waiters on the hot
+ * account hold pooled connections the other accounts need. Exchanges that time out are counted in {@code conflicts}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HotAccountBenchmark {
+
+    private static final AccountExchange EXCHANGE = AccountExchange.builder()
+            .from("PLN")
+            .to("USD")
+            .amount(0.01d)
+            .build();
+
+    private static final int COLD_ACCOUNTS = 1000;
+
+    @Param({"true", "false"})
+    private boolean locks;
+
+    private HttpServer nbpServer;
+    private ConfigurableApplicationContext context;
+    private AccountService accountService;
+    private String hotAccount;
+    private List<String> coldAccounts;
+
+    @Setup
+    public void setUp() throws Exception {
+        nbpServer = BenchmarkFixtures.startNbp();
+
+        context = new SpringApplicationBuilder(CurrencyExchangeApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:hot-account;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=create",
+                        "logging.level.root=WARN",
+                        "account.locks.enabled=" + locks,
+                        "nbp.api.url=http://localhost:" + nbpServer.getAddress().getPort())
+                .run();
+        accountService = context.getBean(AccountService.class);
+        hotAccount = register();
+        coldAccounts = new ArrayList<>(COLD_ACCOUNTS);
+        for (int i = 0; i < COLD_ACCOUNTS; i++) {
+            coldAccounts.add(register());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        nbpServer.stop(0);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(24)
+    public Account hotAccount(Conflicts conflicts) {
+        return exchange(hotAccount, conflicts);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(8)
+    public Account coldAccounts(Conflicts conflicts) {
+        return exchange(coldAccounts.get(ThreadLocalRandom.current().nextInt(COLD_ACCOUNTS)), conflicts);
+    }
+
+    private Account exchange(String apiKey, Conflicts conflicts) {
+        try {
+            return accountService.exchange(apiKey, EXCHANGE);
+        } catch (ExchangeConflictException e) {
+            conflicts.conflicts++;
+            return null;
+        }
+    }
+
+    private String register() {
+        return accountService.register(RegisterAccountRequest.builder()
+                .firstName("John")
+                .lastName("Smith")
+                .balancePLN(100_000_000.0d)
+                .build()).getApiKey();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Conflicts {
+
+        public long conflicts;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            conflicts = 0;
+        }
+    }
+}
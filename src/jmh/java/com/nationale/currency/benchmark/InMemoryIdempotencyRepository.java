@@ -0,0 +1,40 @@
+package com.nationale.currency.benchmark;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.nationale.currency.acoount.IdempotencyRecordEntity;
+import com.nationale.currency.acoount.IdempotencyRepository;
+
+/**
+ * {@link IdempotencyRepository} on a concurrent map, without the database round trips of the table.
+ */
+class InMemoryIdempotencyRepository implements IdempotencyRepository {
+
+    private final Map<IdempotencyRecordEntity.Key, IdempotencyRecordEntity> records = new ConcurrentHashMap<>();
+
+    @Override
+    public Optional<IdempotencyRecordEntity> findById(IdempotencyRecordEntity.Key key) {
+        return Optional.ofNullable(records.get(key));
+    }
+
+    @Override
+    public int insert(UUID apiKey, String idempotencyKey, String fingerprint, String response) {
+        var key = new IdempotencyRecordEntity.Key(apiKey, idempotencyKey);
+        var inserted = records.putIfAbsent(key, new IdempotencyRecordEntity(key, fingerprint, response, Instant.now()));
+        if (inserted != null) {
+            throw new IllegalStateException("Duplicate idempotency key " + key);
+        }
+        return 1;
+    }
+
+    @Override
+    public int deleteCreatedBefore(Instant before) {
+        var size = records.size();
+        records.values().removeIf(record -> record.getCreatedAt().isBefore(before));
+        return size - records.size();
+    }
+}
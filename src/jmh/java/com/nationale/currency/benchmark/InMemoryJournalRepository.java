@@ -0,0 +1,40 @@
+package com.nationale.currency.benchmark;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.nationale.currency.acoount.AccountBalance;
+import com.nationale.currency.acoount.JournalEntry;
+import com.nationale.currency.acoount.JournalEntryEntity;
+import com.nationale.currency.acoount.JournalRepository;
+import org.springframework.data.domain.Limit;
+
+/**
+ * {@link JournalRepository} that only counts appended entries, so long benchmark runs do not fill the heap with them.
+ */
+class InMemoryJournalRepository implements JournalRepository {
+
+    private final AtomicLong entries = new AtomicLong();
+
+    @Override
+    public List<JournalEntryEntity> findByApiKeyAndIdGreaterThanOrderByIdAsc(UUID apiKey, long after, Limit limit) {
+        return List.of();
+    }
+
+    @Override
+    public void append(List<JournalEntry> entries) {
+        this.entries.addAndGet(entries.size());
+    }
+
+    @Override
+    public void snapshot(Collection<AccountBalance> accounts) {
+    }
+
+    @Override
+    public Map<String, Long> replayBalances(String apiKey) {
+        return Map.of();
+    }
+}
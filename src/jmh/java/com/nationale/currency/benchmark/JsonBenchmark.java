@@ -0,0 +1,75 @@
+package com.nationale.currency.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.nationale.generated.model.Account;
+import com.nationale.generated.model.AccountExchange;
+import com.nationale.generated.model.RegisterAccountRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Measures Jackson (de)serialization of the generated API models with the object mapper configuration Spring MVC
+ * uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+    private static final String ACCOUNT_EXCHANGE_JSON = """
+            {"from":"PLN","to":"USD","amount":100.00}""";
+    private static final String REGISTER_ACCOUNT_JSON = """
+            {"firstName":"John","lastName":"Smith","balancePLN":1000.00}""";
+
+    private ObjectWriter accountWriter;
+    private ObjectReader accountExchangeReader;
+    private ObjectReader registerAccountReader;
+    private Account account;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        accountWriter = objectMapper.writerFor(Account.class);
+        accountExchangeReader = objectMapper.readerFor(AccountExchange.class);
+        registerAccountReader = objectMapper.readerFor(RegisterAccountRequest.class);
+        account = Account.builder()
+                .firstName("John")
+                .lastName("Smith")
+                .balancePLN(990.0d)
+                .balanceUSD(2.4343d)
+                .balances(Map.of("PLN", 990.0d, "USD", 2.4343d))
+                .build();
+    }
+
+    @Benchmark
+    public byte[] writeAccount() throws Exception {
+        return accountWriter.writeValueAsBytes(account);
+    }
+
+    @Benchmark
+    public AccountExchange readAccountExchange() throws Exception {
+        return accountExchangeReader.readValue(ACCOUNT_EXCHANGE_JSON);
+    }
+
+    @Benchmark
+    public RegisterAccountRequest readRegisterAccountRequest() throws Exception {
+        return registerAccountReader.readValue(REGISTER_ACCOUNT_JSON);
+    }
+}
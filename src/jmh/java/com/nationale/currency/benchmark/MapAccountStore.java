@@ -0,0 +1,106 @@
+package com.nationale.currency.benchmark;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import com.nationale.currency.acoount.AccountBalance;
+import com.nationale.currency.acoount.AccountStore;
+import com.nationale.currency.acoount.CurrencyBalance;
+
+/**
+ * {@link AccountStore} backed by a map without locks or durability, so service benchmarks measure the service and not
+ * the storage. Changes are visible right away, there is no rollback.
+ */
+class MapAccountStore implements AccountStore {
+
+    private final Map<String, AccountBalance> accounts = new ConcurrentHashMap<>();
+
+    @Override
+    public void insert(List<AccountBalance> accounts) {
+        accounts.forEach(account -> this.accounts.put(account.apiKey(), account));
+    }
+
+    @Override
+    public boolean exists(String apiKey) {
+        return accounts.containsKey(apiKey);
+    }
+
+    @Override
+    public Optional<AccountBalance> findBalance(String apiKey) {
+        return Optional.ofNullable(accounts.get(apiKey));
+    }
+
+    @Override
+    public List<AccountBalance> findBalances(List<String> apiKeys) {
+        return apiKeys.stream().map(accounts::get).filter(Objects::nonNull).toList();
+    }
+
+    @Override
+    public boolean lock(String apiKey) {
+        return accounts.computeIfPresent(apiKey, (key, account) -> new AccountBalance(key, account.firstName(),
+                account.lastName(), account.balances(), account.version() + 1)) != null;
+    }
+
+    @Override
+    public void lockAll(List<String> apiKeys) {
+        apiKeys.forEach(this::lock);
+    }
+
+    @Override
+    public boolean debit(String apiKey, String currency, long amount) {
+        var debited = new boolean[1];
+        accounts.computeIfPresent(apiKey, (key, account) -> {
+            if (!account.balances().containsKey(currency) || account.balance(currency) < amount) {
+                return account;
+            }
+            debited[0] = true;
+            return withBalance(account, currency, account.balance(currency) - amount);
+        });
+        return debited[0];
+    }
+
+    @Override
+    public void credit(String apiKey, String currency, long amount) {
+        accounts.computeIfPresent(apiKey, (key, account) -> withBalance(account, currency,
+                account.balance(currency) + amount));
+    }
+
+    @Override
+    public void saveBalances(List<CurrencyBalance> balances) {
+        for (var balance : balances) {
+            accounts.computeIfPresent(balance.apiKey(), (key, account) -> withBalance(account, balance.currency(),
+                    balance.balance()));
+        }
+    }
+
+    @Override
+    public void forEachBalance(BalanceHandler handler) {
+        for (var account : accounts.values()) {
+            var key = UUID.fromString(account.apiKey());
+            account.balances().forEach((currency, balance) -> handler.balance(key.getMostSignificantBits(),
+                    key.getLeastSignificantBits(), currency, balance));
+        }
+    }
+
+    @Override
+    public void forEachAccount(Consumer<AccountBalance> consumer) {
+        accounts.values().forEach(consumer);
+    }
+
+    void clear() {
+        accounts.clear();
+    }
+
+    private static AccountBalance withBalance(AccountBalance account, String currency, long balance) {
+        var balances = new HashMap<>(account.balances());
+        balances.put(currency, balance);
+        return new AccountBalance(account.apiKey(), account.firstName(), account.lastName(), balances,
+                account.version());
+    }
+}
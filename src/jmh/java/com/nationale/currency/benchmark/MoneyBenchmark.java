@@ -0,0 +1,114 @@
+package com.nationale.currency.benchmark;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.TimeUnit;
+
+import com.nationale.currency.acoount.Money;
+import com.nationale.currency.nbp.RateTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the exchange arithmetic on {@link Money} units with the {@link BigDecimal} code it replaced. Run with
+ * {@code -prof gc} to compare allocation per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+
+    private double amount;
+    private BigDecimal rate;
+    private BigDecimal balancePLN;
+    private BigDecimal balanceUSD;
+    private long balancePLNUnits;
+    private long balanceUSDUnits;
+    private BigDecimal eurRate;
+    private RateTable rateTable;
+
+    @Setup
+    public void setUp() {
+        amount = 123.45d;
+        rate = new BigDecimal("4.1080");
+        balancePLN = new BigDecimal("10000.0000");
+        balanceUSD = new BigDecimal("2500.0000");
+        balancePLNUnits = Money.fromBigDecimal(balancePLN);
+        balanceUSDUnits = Money.fromBigDecimal(balanceUSD);
+        eurRate = new BigDecimal("4.3215");
+        rateTable = RateTable.of(BenchmarkFixtures.NBP_TABLE);
+    }
+
+    @Benchmark
+    public void bigDecimalPlnToUsd(Blackhole blackhole) {
+        var sufficient = balancePLN.compareTo(BigDecimal.valueOf(amount)) >= 0;
+        var value = BigDecimal.valueOf(amount);
+        var amountToTransfer = value.divide(rate, 4, RoundingMode.HALF_UP);
+        var newPLN = balancePLN.subtract(value);
+        var newUSD = balanceUSD.add(amountToTransfer);
+        blackhole.consume(sufficient);
+        blackhole.consume(newPLN.setScale(4, RoundingMode.HALF_UP).doubleValue());
+        blackhole.consume(newUSD.setScale(4, RoundingMode.HALF_UP).doubleValue());
+    }
+
+    @Benchmark
+    public void moneyPlnToUsd(Blackhole blackhole) {
+        var value = Money.fromDouble(amount);
+        var sufficient = balancePLNUnits >= value;
+        var amountToTransfer = Money.divide(value, Money.Rate.of(rate));
+        blackhole.consume(sufficient);
+        blackhole.consume(Money.toDouble(balancePLNUnits - value));
+        blackhole.consume(Money.toDouble(balanceUSDUnits + amountToTransfer));
+    }
+
+    @Benchmark
+    public void bigDecimalUsdToPln(Blackhole blackhole) {
+        var sufficient = balanceUSD.compareTo(BigDecimal.valueOf(amount)) >= 0;
+        var value = BigDecimal.valueOf(amount);
+        var amountToTransfer = rate.multiply(value);
+        var newPLN = balancePLN.add(amountToTransfer);
+        var newUSD = balanceUSD.subtract(value);
+        blackhole.consume(sufficient);
+        blackhole.consume(newPLN.setScale(4, RoundingMode.HALF_UP).doubleValue());
+        blackhole.consume(newUSD.setScale(4, RoundingMode.HALF_UP).doubleValue());
+    }
+
+    @Benchmark
+    public void moneyUsdToPln(Blackhole blackhole) {
+        var value = Money.fromDouble(amount);
+        var sufficient = balanceUSDUnits >= value;
+        var amountToTransfer = Money.multiply(value, Money.Rate.of(rate));
+        blackhole.consume(sufficient);
+        blackhole.consume(Money.toDouble(balancePLNUnits + amountToTransfer));
+        blackhole.consume(Money.toDouble(balanceUSDUnits - value));
+    }
+
+    @Benchmark
+    public void bigDecimalEurToUsd(Blackhole blackhole) {
+        var value = BigDecimal.valueOf(amount);
+        var amountToTransfer = value.multiply(eurRate).divide(rate, 4, RoundingMode.HALF_UP);
+        blackhole.consume(amountToTransfer.doubleValue());
+    }
+
+    /**
+     * Cross rate through PLN as the exchange path does it: two lookups in the table snapshot and one rounding.
+     */
+    @Benchmark
+    public void rateTableEurToUsd(Blackhole blackhole) {
+        var value = Money.fromDouble(amount);
+        var amountToTransfer = rateTable.convert(value, "EUR", "USD");
+        blackhole.consume(Money.toDouble(amountToTransfer));
+    }
+}
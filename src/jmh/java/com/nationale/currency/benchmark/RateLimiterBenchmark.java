@@ -0,0 +1,64 @@
+package com.nationale.currency.benchmark;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.nationale.currency.acoount.RateLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of {@link RateLimiter#acquire} on 4 threads, the limits high enough that every request is let through:
+ * requests spread over {@code keys} api keys, and all of them on one key, where the threads contend on one bucket. The
+ * global bucket is shared by all requests in both.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateLimiterBenchmark {
+
+    @Param({"10000"})
+    private int keys;
+
+    private RateLimiter rateLimiter;
+    private String[] apiKeys;
+
+    @Setup
+    public void setUp() {
+        rateLimiter = new RateLimiter(Clock.systemUTC(), new SimpleMeterRegistry(), 1e7, 100_000_000, 1e7, 100_000_000,
+                keys, Duration.ofMinutes(10));
+        apiKeys = new String[keys];
+        for (int i = 0; i < keys; i++) {
+            apiKeys[i] = UUID.randomUUID().toString();
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long manyKeys() {
+        return rateLimiter.acquire(apiKeys[ThreadLocalRandom.current().nextInt(keys)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long oneKey() {
+        return rateLimiter.acquire(apiKeys[0]);
+    }
+}
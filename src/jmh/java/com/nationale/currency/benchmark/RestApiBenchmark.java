@@ -0,0 +1,150 @@
+package com.nationale.currency.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nationale.currency.CurrencyExchangeApplication;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * End-to-end throughput of the REST API: embedded Tomcat, Jackson, the service and an in-memory H2 database. NBP is
+ * replaced by a local HTTP server, so the NBP client and rate cache run as in production. Rate limiting is off, its
+ * cost is measured by {@link RateLimiterBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class RestApiBenchmark {
+
+    private static final String EXCHANGE_BODY = """
+            {"from":"PLN","to":"USD","amount":0.01}""";
+    private static final int BATCH_SIZE = 100;
+    private static final String REGISTER_BODY = """
+            {"firstName":"John","lastName":"Smith","balancePLN":10000000.00}""";
+
+    @Param("1000")
+    private int accounts;
+
+    private HttpServer nbpServer;
+    private ConfigurableApplicationContext context;
+    private HttpClient httpClient;
+    private URI accountUri;
+    private URI exchangeUri;
+    private URI exchangeBatchUri;
+    private List<String> apiKeys;
+
+    @Setup
+    public void setUp() throws Exception {
+        nbpServer = BenchmarkFixtures.startNbp();
+
+        context = new SpringApplicationBuilder(CurrencyExchangeApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=create",
+                        "logging.level.root=WARN",
+                        "account.rate-limit.enabled=false",
+                        "nbp.api.url=http://localhost:" + nbpServer.getAddress().getPort())
+                .run();
+        var port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        accountUri = URI.create("http://localhost:" + port + "/account");
+        exchangeUri = URI.create("http://localhost:" + port + "/account/exchange");
+        exchangeBatchUri = URI.create("http://localhost:" + port + "/account/exchange/batch");
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        var objectMapper = new ObjectMapper();
+        apiKeys = new ArrayList<>(accounts);
+        for (int i = 0; i < accounts; i++) {
+            var response = send(HttpRequest.newBuilder(accountUri)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(REGISTER_BODY))
+                    .build());
+            apiKeys.add(objectMapper.readTree(response).get("apiKey").asText());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        nbpServer.stop(0);
+        httpClient.close();
+    }
+
+    @Benchmark
+    public String getAccountStatus() throws Exception {
+        return send(HttpRequest.newBuilder(accountUri)
+                .header("x-api-key", randomApiKey())
+                .GET()
+                .build());
+    }
+
+    @Benchmark
+    public String exchangeCurrency() throws Exception {
+        return send(HttpRequest.newBuilder(exchangeUri)
+                .header("x-api-key", randomApiKey())
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(EXCHANGE_BODY))
+                .build());
+    }
+
+    /**
+     * Exchanges on {@value #BATCH_SIZE} random accounts in one request, reported per exchange so the score compares
+     * directly with {@link #exchangeCurrency()}.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public String exchangeCurrencyBatch() throws Exception {
+        var body = new StringBuilder("{\"items\":[");
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            body.append(i == 0 ? "" : ",")
+                    .append("{\"apiKey\":\"").append(randomApiKey())
+                    .append("\",\"from\":\"PLN\",\"to\":\"USD\",\"amount\":0.01}");
+        }
+        body.append("]}");
+        return send(HttpRequest.newBuilder(exchangeBatchUri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build());
+    }
+
+    private String send(HttpRequest request) throws IOException, InterruptedException {
+        var response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 300) {
+            throw new IllegalStateException("Unexpected response " + response.statusCode() + ": " + response.body());
+        }
+        return response.body();
+    }
+
+    private String randomApiKey() {
+        return apiKeys.get(ThreadLocalRandom.current().nextInt(accounts));
+    }
+}
@@ -0,0 +1,89 @@
+package com.nationale.currency.benchmark;
+
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+
+import com.nationale.currency.acoount.AccountMetrics;
+import com.nationale.currency.acoount.Money;
+import com.nationale.currency.acoount.ValuationReport;
+import com.nationale.generated.model.PortfolioValuation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link ValuationReport} over {@code accounts} accounts on {@code parallelism} workers. The store generates the
+ * balances as they are scanned instead of holding them, so the heap holds only what the valuation itself keeps: run
+ * with {@code -prof gc} and a small {@code -Xmx} to see the allocation per account stay flat as {@code accounts}
+ * grows, e.g. {@code -p accounts=50000000 -jvmArgsAppend -Xmx256m}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class ValuationBenchmark {
+
+    @Param({"10000", "1000000"})
+    private int accounts;
+
+    @Param({"1", "4"})
+    private int parallelism;
+
+    private ValuationReport valuationReport;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var meterRegistry = new SimpleMeterRegistry();
+        valuationReport = new ValuationReport(new GeneratedAccountStore(accounts),
+                BenchmarkFixtures.rateCache(Clock.systemUTC(), meterRegistry), new AccountMetrics(meterRegistry),
+                parallelism, 8192);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        valuationReport.destroy();
+    }
+
+    @Benchmark
+    public PortfolioValuation value() {
+        return valuationReport.value();
+    }
+
+    /**
+     * Accounts holding PLN, every third one USD as well and every fifth one EUR.
+     */
+    private static final class GeneratedAccountStore extends MapAccountStore {
+
+        private final int accounts;
+
+        GeneratedAccountStore(int accounts) {
+            this.accounts = accounts;
+        }
+
+        @Override
+        public void forEachBalance(BalanceHandler handler) {
+            for (int i = 0; i < accounts; i++) {
+                handler.balance(0L, i, "PLN", Money.fromDouble(i % 100_000));
+                if (i % 3 == 0) {
+                    handler.balance(0L, i, BenchmarkFixtures.USD, Money.fromDouble(i % 1_000));
+                }
+                if (i % 5 == 0) {
+                    handler.balance(0L, i, "EUR", Money.fromDouble(i % 500));
+                }
+            }
+        }
+    }
+}
@@ -1,8 +1,16 @@
 package com.nationale.currency.acoount;
 
+import java.util.Optional;
+
 import com.nationale.generated.api.AccountApi;
 import com.nationale.generated.model.Account;
 import com.nationale.generated.model.AccountExchange;
+import com.nationale.generated.model.AccountExchangeBatchRequest;
+import com.nationale.generated.model.AccountExchangeBatchResponse;
+import com.nationale.generated.model.AccountHistory;
+import com.nationale.generated.model.ExchangeQuote;
+import com.nationale.generated.model.RegisterAccountBatchRequest;
+import com.nationale.generated.model.RegisterAccountBatchResponse;
 import com.nationale.generated.model.RegisterAccountRequest;
 import com.nationale.generated.model.RegisterAccountResponse;
 import lombok.RequiredArgsConstructor;
@@ -15,10 +23,33 @@ import org.springframework.web.bind.annotation.RestController;
 public class AccountApiController implements AccountApi {
 
     private final AccountService accountService;
+    private final Optional<ExchangeGroupCommitter> exchangeGroupCommitter;
+
+    @Override
+    public ResponseEntity<Account> exchangeCurrency(String xApiKey, AccountExchange accountExchange,
+            String idempotencyKey) {
+        // Idempotent exchanges record their response in their own transaction, so they are not group committed.
+        if (idempotencyKey == null && exchangeGroupCommitter.isPresent()) {
+            return ResponseEntity.ok(exchangeGroupCommitter.get().exchange(xApiKey, accountExchange));
+        }
+        return ResponseEntity.ok(accountService.exchange(xApiKey, accountExchange, idempotencyKey));
+    }
+
+    @Override
+    public ResponseEntity<ExchangeQuote> quoteExchange(String xApiKey, AccountExchange accountExchange) {
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(accountService.quote(xApiKey, accountExchange));
+    }
+
+    @Override
+    public ResponseEntity<Account> executeExchangeQuote(String xApiKey, String quoteId) {
+        return ResponseEntity.ok(accountService.executeQuote(xApiKey, quoteId));
+    }
 
     @Override
-    public ResponseEntity<Account> exchangeCurrency(String xApiKey, AccountExchange accountExchange) {
-        return ResponseEntity.ok(accountService.exchange(xApiKey, accountExchange));
+    public ResponseEntity<AccountExchangeBatchResponse> exchangeCurrencyBatch(
+            AccountExchangeBatchRequest accountExchangeBatchRequest) {
+        return ResponseEntity.ok(accountService.exchangeBatch(accountExchangeBatchRequest));
     }
 
     @Override
@@ -26,10 +57,22 @@ public class AccountApiController implements AccountApi {
         return ResponseEntity.ok(accountService.getStatus(xApiKey));
     }
 
+    @Override
+    public ResponseEntity<AccountHistory> getAccountHistory(String xApiKey, Long after, Integer limit) {
+        return ResponseEntity.ok(accountService.history(xApiKey, after, limit));
+    }
+
     @Override
     public ResponseEntity<RegisterAccountResponse> registerAccount(RegisterAccountRequest registerAccountRequest) {
         return ResponseEntity.status(HttpStatus.CREATED)
                 .body(accountService.register(registerAccountRequest));
     }
 
+    @Override
+    public ResponseEntity<RegisterAccountBatchResponse> registerAccountBatch(
+            RegisterAccountBatchRequest registerAccountBatchRequest) {
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(accountService.registerBatch(registerAccountBatchRequest));
+    }
+
 }
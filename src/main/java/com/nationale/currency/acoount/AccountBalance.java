@@ -0,0 +1,60 @@
+package com.nationale.currency.acoount;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import com.nationale.generated.model.Account;
+
+/**
+ * Read-only view of an account, balances by currency code in {@link Money} units.
+ */
+public record AccountBalance(String apiKey, String firstName, String lastName, Map<String, Long> balances,
+        long version) {
+
+    private static final String PLN = "PLN";
+    private static final String USD = "USD";
+
+    public AccountBalance {
+        balances = Map.copyOf(balances);
+    }
+
+    public long balance(String currency) {
+        return balances.getOrDefault(currency, 0L);
+    }
+
+    public Account toAccount() {
+        var amounts = new TreeMap<String, Double>();
+        balances.forEach((currency, units) -> amounts.put(currency, Money.toDouble(units)));
+        return Account.builder()
+                .firstName(firstName)
+                .lastName(lastName)
+                .balancePLN(Money.toDouble(balance(PLN)))
+                .balanceUSD(Money.toDouble(balance(USD)))
+                .balances(amounts)
+                .build();
+    }
+
+    /**
+     * Folds sub-ledger rows into one balance per account, in the order the accounts first appear.
+     */
+    static List<AccountBalance> fromRows(List<BalanceRow> rows) {
+        var accounts = new LinkedHashMap<UUID, BalanceRow>();
+        var balances = new HashMap<UUID, Map<String, Long>>();
+        for (var row : rows) {
+            accounts.putIfAbsent(row.apiKey(), row);
+            var accountBalances = balances.computeIfAbsent(row.apiKey(), key -> new HashMap<>());
+            if (row.currency() != null) {
+                accountBalances.put(row.currency(), row.balance());
+            }
+        }
+        var folded = new ArrayList<AccountBalance>(accounts.size());
+        accounts.forEach((apiKey, row) -> folded.add(new AccountBalance(apiKey.toString(), row.firstName(), row.lastName(),
+                balances.get(apiKey), row.version())));
+        return folded;
+    }
+}
@@ -0,0 +1,41 @@
+package com.nationale.currency.acoount;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Bulk operations of {@link AccountRepository} that bypass the per-entity repository methods.
+ */
+public interface AccountBatchRepository {
+
+    /**
+     * Locks the accounts in the given order as one JDBC batch, see {@link AccountRepository#lockAccount}.
+     *
+     * @return for every api key 1 when the account was locked, 0 when it does not exist
+     */
+    int[] lockAccounts(List<UUID> apiKeys);
+
+    /**
+     * Writes the balances as one JDBC batch, opening the ones the accounts did not hold. The accounts must be locked.
+     */
+    void saveBalances(List<CurrencyBalance> balances);
+
+    /**
+     * Persists new accounts, flushing and detaching them every {@code hibernate.jdbc.batch_size} entities so inserts
+     * go out as JDBC batches and the persistence context stays small. The api keys must not exist yet.
+     */
+    void persistAll(List<AccountEntity> accounts);
+
+    /**
+     * Reads all balances ordered by api key on one forward-only cursor, {@code account.store.jpa.fetch-size} rows at a
+     * time, see {@link AccountStore#forEachBalance}.
+     */
+    void forEachBalance(AccountStore.BalanceHandler handler);
+
+    /**
+     * Reads all accounts with their balances ordered by api key on one forward-only cursor, see
+     * {@link AccountStore#forEachAccount}.
+     */
+    void forEachAccount(Consumer<AccountBalance> consumer);
+}
@@ -0,0 +1,138 @@
+package com.nationale.currency.acoount;
+
+import java.sql.ResultSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+class AccountBatchRepositoryImpl implements AccountBatchRepository {
+
+    private static final String LOCK_ACCOUNT = "UPDATE account_entity SET version = version + 1 WHERE api_key = ?";
+    private static final String SAVE_BALANCE = """
+            MERGE INTO account_balance b
+            USING (VALUES (CAST(? AS UUID), CAST(? AS VARCHAR(3)), CAST(? AS DECIMAL(19, 4))))
+                c (api_key, currency, balance)
+            ON b.api_key = c.api_key AND b.currency = c.currency
+            WHEN MATCHED THEN UPDATE SET balance = c.balance
+            WHEN NOT MATCHED THEN INSERT (api_key, currency, balance) VALUES (c.api_key, c.currency, c.balance)""";
+    private static final String SCAN_BALANCES = "SELECT api_key, currency, balance FROM account_balance ORDER BY api_key";
+    private static final String SCAN_ACCOUNTS = """
+            SELECT a.api_key, a.first_name, a.last_name, a.version, b.currency, b.balance
+            FROM account_entity a LEFT JOIN account_balance b ON b.api_key = a.api_key
+            ORDER BY a.api_key""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    private final int batchSize;
+    private final int fetchSize;
+
+    AccountBatchRepositoryImpl(JdbcTemplate jdbcTemplate, EntityManager entityManager,
+            @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:500}") int batchSize,
+            @Value("${account.store.jpa.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+        this.batchSize = batchSize;
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public int[] lockAccounts(List<UUID> apiKeys) {
+        return jdbcTemplate.batchUpdate(LOCK_ACCOUNT, apiKeys.stream()
+                .map(apiKey -> new Object[]{apiKey})
+                .toList());
+    }
+
+    @Override
+    public void saveBalances(List<CurrencyBalance> balances) {
+        jdbcTemplate.batchUpdate(SAVE_BALANCE, balances.stream()
+                .map(balance -> new Object[]{ApiKeys.valueOf(balance.apiKey()), balance.currency(),
+                        Money.toBigDecimal(balance.balance())})
+                .toList());
+    }
+
+    @Override
+    public void persistAll(List<AccountEntity> accounts) {
+        for (int i = 0; i < accounts.size(); i++) {
+            entityManager.persist(accounts.get(i));
+            if ((i + 1) % batchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Override
+    public void forEachBalance(AccountStore.BalanceHandler handler) {
+        scan(SCAN_BALANCES, rows -> {
+            var apiKey = rows.getObject(1, UUID.class);
+            handler.balance(apiKey.getMostSignificantBits(), apiKey.getLeastSignificantBits(), rows.getString(2),
+                    Money.fromBigDecimal(rows.getBigDecimal(3)));
+        });
+    }
+
+    @Override
+    public void forEachAccount(Consumer<AccountBalance> consumer) {
+        var account = new UUID[1];
+        var names = new String[2];
+        var version = new long[1];
+        var balances = new HashMap<String, Long>();
+        scan(SCAN_ACCOUNTS, rows -> {
+            var apiKey = rows.getObject(1, UUID.class);
+            if (!apiKey.equals(account[0])) {
+                if (account[0] != null) {
+                    consumer.accept(new AccountBalance(account[0].toString(), names[0], names[1], balances,
+                            version[0]));
+                }
+                account[0] = apiKey;
+                names[0] = rows.getString(2);
+                names[1] = rows.getString(3);
+                version[0] = rows.getLong(4);
+                balances.clear();
+            }
+            var currency = rows.getString(5);
+            if (currency != null) {
+                balances.put(currency, Money.fromBigDecimal(rows.getBigDecimal(6)));
+            }
+        });
+        if (account[0] != null) {
+            consumer.accept(new AccountBalance(account[0].toString(), names[0], names[1], balances, version[0]));
+        }
+    }
+
+    /**
+     * Runs the query on one forward-only cursor, {@code account.store.jpa.fetch-size} rows at a time. H2 builds the
+     * whole result of a query before returning its first row, spilling to a temporary file once it gets large,
+     * unless lazy query execution is on; it is turned on for the scan only, as the connection goes back to the pool
+     * afterwards. The scans order by api key, which the indexes on {@code api_key} serve without a sort.
+     */
+    private void scan(String sql, RowCallbackHandler handler) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (var lazy = connection.createStatement()) {
+                lazy.execute("SET LAZY_QUERY_EXECUTION TRUE");
+            }
+            try (var scan = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY)) {
+                scan.setFetchSize(fetchSize);
+                try (var rows = scan.executeQuery()) {
+                    while (rows.next()) {
+                        handler.processRow(rows);
+                    }
+                }
+            } finally {
+                try (var eager = connection.createStatement()) {
+                    eager.execute("SET LAZY_QUERY_EXECUTION FALSE");
+                }
+            }
+            return null;
+        });
+    }
+}
@@ -1,10 +1,18 @@
 package com.nationale.currency.acoount;
 
-import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
 
+import jakarta.persistence.CollectionTable;
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
+import jakarta.persistence.ElementCollection;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.MapKeyColumn;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
@@ -19,14 +27,26 @@ import lombok.Setter;
 @Entity
 public class AccountEntity {
 
+    /**
+     * Api key as the 16-byte {@code UUID} type, see {@link ApiKeys}.
+     */
     @Id
-    private String apiKey;
+    private UUID apiKey;
     @Column(nullable = false)
     private String firstName;
     @Column(nullable = false)
     private String lastName;
-    @Column(nullable = false, precision = 12, scale = 4)
-    private BigDecimal balancePLN;
-    @Column(nullable = false, precision = 12, scale = 4)
-    private BigDecimal balanceUSD;
+    /**
+     * Sub-ledger of balances by currency code, in {@link Money} units. A currency the account never held has no row.
+     */
+    @Builder.Default
+    @ElementCollection
+    @CollectionTable(name = "account_balance", joinColumns = @JoinColumn(name = "api_key"))
+    @MapKeyColumn(name = "currency", length = 3)
+    @Convert(converter = MoneyConverter.class, attributeName = "value")
+    @Column(name = "balance", nullable = false, precision = 19, scale = 4)
+    private Map<String, Long> balances = new HashMap<>();
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
 }
@@ -0,0 +1,131 @@
+package com.nationale.currency.acoount;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.nationale.currency.acoount.exception.ExchangeConflictException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Orders the exchanges of one account inside the instance before they reach the database. Api keys are hashed onto
+ * {@code account.locks.stripes} locks, so exchanges on one account queue here instead of on its row lock, while
+ * exchanges on accounts of other stripes run in parallel. {@link ReentrantLock} parks virtual threads without pinning
+ * their carrier; {@code account.locks.fair} hands a stripe over in arrival order. An exchange waiting longer than
+ * {@code account.locks.timeout} fails as a conflict, like a row lock timeout.
+ */
+@Slf4j
+@Component
+public class AccountLocks {
+
+    private static final Held UNLOCKED = () -> {
+    };
+
+    private final boolean enabled;
+    private final ReentrantLock[] stripes;
+    private final int mask;
+    private final long timeoutNanos;
+    private final DistributionSummary queueDepth;
+    private final Counter timeouts;
+    private final Counter conflicts;
+
+    public AccountLocks(MeterRegistry meterRegistry,
+            @Value("${account.locks.enabled:true}") boolean enabled,
+            @Value("${account.locks.stripes:1024}") int stripes,
+            @Value("${account.locks.fair:false}") boolean fair,
+            @Value("${account.locks.timeout:PT5S}") Duration timeout) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("account.locks.stripes must be positive");
+        }
+        this.enabled = enabled;
+        var size = Integer.highestOneBit(stripes) == stripes ? stripes : Integer.highestOneBit(stripes) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantLock(fair);
+        }
+        this.mask = size - 1;
+        this.timeoutNanos = timeout.toNanos();
+        this.queueDepth = DistributionSummary.builder("account.locks.queue.depth")
+                .description("Exchanges already waiting on the stripe when an exchange arrives")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.timeouts = Counter.builder("account.locks.timeouts")
+                .description("Exchanges that gave up waiting for their stripe")
+                .register(meterRegistry);
+        this.conflicts = Counter.builder(AccountMetrics.METRIC_CONFLICTS)
+                .description(AccountMetrics.CONFLICTS_DESCRIPTION)
+                .tag("operation", "exchange")
+                .tag("lock", "stripe")
+                .register(meterRegistry);
+        Gauge.builder("account.locks.waiting", this, AccountLocks::waiting)
+                .description("Exchanges waiting on any stripe")
+                .register(meterRegistry);
+        Gauge.builder("account.locks.queue.max", this, AccountLocks::longestQueue)
+                .description("Exchanges waiting on the most contended stripe")
+                .register(meterRegistry);
+        log.info("Account locks {} with {} stripes, fair {}, timeout {}", enabled ? "enabled" : "disabled", size,
+                fair, timeout);
+    }
+
+    /**
+     * Waits for the stripe of the account.
+     *
+     * @return the held stripe, to be closed once the exchange committed
+     * @throws ExchangeConflictException when the stripe is not free within {@code account.locks.timeout}
+     */
+    public Held lock(String apiKey) {
+        if (!enabled) {
+            return UNLOCKED;
+        }
+        var stripe = stripes[stripe(apiKey)];
+        queueDepth.record(stripe.getQueueLength());
+        try {
+            if (!stripe.tryLock(timeoutNanos, TimeUnit.NANOSECONDS)) {
+                timeouts.increment();
+                conflicts.increment();
+                throw new ExchangeConflictException("Account is being modified concurrently, please retry.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            conflicts.increment();
+            throw new ExchangeConflictException("Account is being modified concurrently, please retry.");
+        }
+        return stripe::unlock;
+    }
+
+    int stripe(String apiKey) {
+        var hash = apiKey.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private double waiting() {
+        var waiting = 0;
+        for (var stripe : stripes) {
+            waiting += stripe.getQueueLength();
+        }
+        return waiting;
+    }
+
+    private double longestQueue() {
+        var longest = 0;
+        for (var stripe : stripes) {
+            longest = Math.max(longest, stripe.getQueueLength());
+        }
+        return longest;
+    }
+
+    /**
+     * A held stripe; closing it lets the next exchange of its accounts in.
+     */
+    public interface Held extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
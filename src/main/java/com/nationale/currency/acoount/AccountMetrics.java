@@ -0,0 +1,98 @@
+package com.nationale.currency.acoount;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Times the stages of account operations as {@code account.operation.stage{operation, stage}}, with percentile
+ * histograms, so a slow request can be attributed to validation, the NBP rate, the database or the commit. The whole
+ * request is already timed by {@code http.server.requests}. Operations rejected because their account stayed locked
+ * are counted as {@code account.exchange.conflicts{operation, lock}}.
+ */
+@Component
+@RequiredArgsConstructor
+public class AccountMetrics {
+
+    private static final String METRIC_STAGE = "account.operation.stage";
+    private static final String STAGE_COMMIT = "commit";
+    static final String METRIC_CONFLICTS = "account.exchange.conflicts";
+    static final String CONFLICTS_DESCRIPTION =
+            "Exchanges answered with 409 Conflict because their account stayed locked";
+
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, Timer> stageTimers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> conflicts = new ConcurrentHashMap<>();
+
+    public <T> T timeStage(String operation, String stage, Supplier<T> body) {
+        var start = System.nanoTime();
+        try {
+            return body.get();
+        } finally {
+            stageTimer(operation, stage).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void timeStage(String operation, String stage, Runnable body) {
+        var start = System.nanoTime();
+        try {
+            body.run();
+        } finally {
+            stageTimer(operation, stage).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Times the commit of the current transaction, from the flush before it until it completes.
+     */
+    public void timeCommit(String operation) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+
+            private long start;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                start = System.nanoTime();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (start != 0 && status == STATUS_COMMITTED) {
+                    stageTimer(operation, STAGE_COMMIT).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            }
+        });
+    }
+
+    /**
+     * Counts an operation that gave up waiting for the row lock of its account.
+     */
+    public void countRowLockConflict(String operation) {
+        conflicts.computeIfAbsent(operation, key -> Counter.builder(METRIC_CONFLICTS)
+                .description(CONFLICTS_DESCRIPTION)
+                .tag("operation", operation)
+                .tag("lock", "row")
+                .register(meterRegistry)).increment();
+    }
+
+    private Timer stageTimer(String operation, String stage) {
+        return stageTimers.computeIfAbsent(operation + '.' + stage, key -> Timer.builder(METRIC_STAGE)
+                .description("Time spent in one stage of an account operation")
+                .tag("operation", operation)
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+}
@@ -1,7 +1,84 @@
 package com.nationale.currency.acoount;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 
-public interface AccountRepository extends CrudRepository<AccountEntity, String> {
+public interface AccountRepository extends CrudRepository<AccountEntity, UUID>, AccountBatchRepository {
+
+    /**
+     * Locks the account row and bumps its version. Every change of the sub-ledger takes this lock first, so changes
+     * of one account are serialized and cannot deadlock on its balance rows.
+     *
+     * @return 1 when the account was locked, 0 when it does not exist
+     */
+    @Modifying
+    @Query(value = "UPDATE account_entity SET version = version + 1 WHERE api_key = :apiKey", nativeQuery = true)
+    int lockAccount(UUID apiKey);
+
+    /**
+     * Takes {@code amount} out of the {@code currency} balance, only if it holds at least {@code amount}.
+     *
+     * @return 1 when the amount was taken, 0 when the balance is missing or insufficient
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE account_balance
+            SET balance = balance - :amount
+            WHERE api_key = :apiKey AND currency = :currency AND balance >= :amount""", nativeQuery = true)
+    int debit(UUID apiKey, String currency, BigDecimal amount);
+
+    /**
+     * Adds {@code amount} to the {@code currency} balance, opening it when the account did not hold the currency.
+     */
+    @Modifying
+    @Query(value = """
+            MERGE INTO account_balance b
+            USING (VALUES (CAST(:apiKey AS UUID), CAST(:currency AS VARCHAR(3)),
+                CAST(:amount AS DECIMAL(19, 4)))) c (api_key, currency, amount)
+            ON b.api_key = c.api_key AND b.currency = c.currency
+            WHEN MATCHED THEN UPDATE SET balance = b.balance + c.amount
+            WHEN NOT MATCHED THEN INSERT (api_key, currency, balance) VALUES (c.api_key, c.currency, c.amount)""",
+            nativeQuery = true)
+    int credit(UUID apiKey, String currency, BigDecimal amount);
+
+    @Query("""
+            select new com.nationale.currency.acoount.BalanceRow(a.apiKey, a.firstName, a.lastName, a.version,
+                key(b), value(b))
+            from AccountEntity a left join a.balances b
+            where a.apiKey = :apiKey""")
+    List<BalanceRow> findBalanceRowsByApiKey(UUID apiKey);
+
+    @Query("""
+            select new com.nationale.currency.acoount.BalanceRow(a.apiKey, a.firstName, a.lastName, a.version,
+                key(b), value(b))
+            from AccountEntity a left join a.balances b
+            where a.apiKey in :apiKeys""")
+    List<BalanceRow> findBalanceRowsByApiKeyIn(Collection<UUID> apiKeys);
+
+    /**
+     * @return the balances, empty when the account does not exist or the api key is malformed
+     */
+    default Optional<AccountBalance> findBalanceByApiKey(String apiKey) {
+        var key = ApiKeys.parse(apiKey);
+        if (key == null) {
+            return Optional.empty();
+        }
+        return AccountBalance.fromRows(findBalanceRowsByApiKey(key)).stream().findFirst();
+    }
 
+    /**
+     * @return the balances of the accounts that exist, malformed api keys are skipped
+     */
+    default List<AccountBalance> findBalancesByApiKeyIn(Collection<String> apiKeys) {
+        var keys = apiKeys.stream().map(ApiKeys::parse).filter(Objects::nonNull).toList();
+        return keys.isEmpty() ? List.of() : AccountBalance.fromRows(findBalanceRowsByApiKeyIn(keys));
+    }
 }
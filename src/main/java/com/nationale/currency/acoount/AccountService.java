@@ -1,122 +1,464 @@
 package com.nationale.currency.acoount;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.util.Set;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
 import java.util.function.Supplier;
 
 import com.nationale.currency.acoount.exception.AccountNotFoundException;
+import com.nationale.currency.acoount.exception.ExchangeConflictException;
 import com.nationale.currency.acoount.exception.InsufficientFundsException;
 import com.nationale.currency.acoount.exception.InvalidExchangeException;
-import com.nationale.currency.nbp.NbpApiClient;
+import com.nationale.currency.acoount.exception.QuoteNotFoundException;
+import com.nationale.currency.nbp.NbpRateCache;
+import com.nationale.currency.nbp.RateTable;
 import com.nationale.generated.model.Account;
 import com.nationale.generated.model.AccountExchange;
+import com.nationale.generated.model.AccountExchangeBatchItem;
+import com.nationale.generated.model.AccountExchangeBatchRequest;
+import com.nationale.generated.model.AccountExchangeBatchResponse;
+import com.nationale.generated.model.AccountExchangeBatchResult;
+import com.nationale.generated.model.AccountExchangeBatchStatus;
+import com.nationale.generated.model.AccountHistory;
+import com.nationale.generated.model.AccountHistoryEntry;
+import com.nationale.generated.model.AccountHistoryEntryType;
+import com.nationale.generated.model.ExchangeQuote;
+import com.nationale.generated.model.RegisterAccountBatchRequest;
+import com.nationale.generated.model.RegisterAccountBatchResponse;
 import com.nationale.generated.model.RegisterAccountRequest;
 import com.nationale.generated.model.RegisterAccountResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 @RequiredArgsConstructor
 public class AccountService {
 
     private static final String USD = "USD";
-    private static final String PLN = "PLN";
-    private static final Set<String> ALLOWED_CURRENCY = Set.of(USD, PLN);
-    private final AccountRepository accountRepository;
+    private static final String INVALID_EXCHANGE =
+            "Exchange must be between two different currencies, PLN or quoted in NBP table A.";
+    private static final String AMOUNT_OUT_OF_RANGE = "Amount is out of range.";
+    private static final String OPERATION_REGISTER = "register";
+    private static final String OPERATION_REGISTER_BATCH = "register-batch";
+    private static final String OPERATION_STATUS = "status";
+    private static final String OPERATION_EXCHANGE = "exchange";
+    private static final String OPERATION_QUOTE = "quote";
+    private static final String OPERATION_EXCHANGE_BATCH = "exchange-batch";
+    private static final String OPERATION_HISTORY = "history";
+    private final AccountStore accountStore;
     private final Supplier<String> idGenerator;
-    private final NbpApiClient nbpApiClient;
+    private final NbpRateCache nbpRateCache;
+    private final AccountStatusCache accountStatusCache;
+    private final AccountMetrics accountMetrics;
+    private final TransactionTemplate transactionTemplate;
+    private final JournalRepository journalRepository;
+    private final IdempotencyStore idempotencyStore;
+    private final AccountLocks accountLocks;
+    private final QuoteStore quoteStore;
 
     @Transactional
     public RegisterAccountResponse register(RegisterAccountRequest registerAccountRequest) {
+        accountMetrics.timeCommit(OPERATION_REGISTER);
+        var saved = accountMetrics.timeStage(OPERATION_REGISTER, "persist", () -> {
+            var account = newAccount(registerAccountRequest);
+            accountStore.insert(List.of(account));
+            journalRepository.append(List.of(opening(account)));
+            return account;
+        });
+        return registered(saved);
+    }
 
-        var accountEntity = AccountEntity.builder()
-                .firstName(registerAccountRequest.getFirstName())
-                .lastName(registerAccountRequest.getLastName())
-                .balancePLN(BigDecimal.valueOf(registerAccountRequest.getBalancePLN()))
-                .balanceUSD(BigDecimal.ZERO)
-                .apiKey(idGenerator.get())
-                .build();
+    @Transactional
+    public RegisterAccountBatchResponse registerBatch(RegisterAccountBatchRequest registerAccountBatchRequest) {
+        accountMetrics.timeCommit(OPERATION_REGISTER_BATCH);
+        var accounts = registerAccountBatchRequest.getAccounts().stream()
+                .map(this::newAccount)
+                .toList();
 
-        var saved = accountRepository.save(accountEntity);
+        accountMetrics.timeStage(OPERATION_REGISTER_BATCH, "persist", () -> {
+            accountStore.insert(accounts);
+            journalRepository.append(accounts.stream().map(this::opening).toList());
+        });
 
-        return RegisterAccountResponse.builder()
-                .firstName(saved.getFirstName())
-                .lastName(saved.getLastName())
-                .balancePLN(saved.getBalancePLN().doubleValue())
-                .balanceUSD(saved.getBalanceUSD().doubleValue())
-                .apiKey(saved.getApiKey())
+        return RegisterAccountBatchResponse.builder()
+                .accounts(accounts.stream().map(this::registered).toList())
                 .build();
     }
 
-    @Transactional
     public Account getStatus(String apiKey) {
-        return accountRepository.findById(apiKey)
-                .map(this::build)
+        return accountMetrics.timeStage(OPERATION_STATUS, "lookup", () -> accountStatusCache.get(apiKey,
+                        () -> accountMetrics.timeStage(OPERATION_STATUS, "load",
+                                () -> accountStore.findBalance(apiKey))))
                 .orElseThrow(() -> new AccountNotFoundException("Api key not found."));
     }
 
-    @Transactional
     public Account exchange(String apiKey, AccountExchange exchange) {
+        return exchange(apiKey, exchange, null);
+    }
 
-        if (!isValidExchange(exchange)) {
-            throw new InvalidExchangeException("Exchange must be only PLN->USD or USD->PLN.");
+    /**
+     * Fetches the NBP table while the account is looked up, so an unknown api key fails without waiting for NBP and a
+     * missing table costs one round trip instead of two. The lookup reads committed data outside of the transaction:
+     * the transaction starts once the rate is known, so no connection or row lock is held while waiting for NBP.
+     * <p>
+     * With an {@code idempotencyKey} the exchange is applied once per key, retries get the response of the first
+     * request. The key is checked again after the account is locked and the response is written in the exchange
+     * transaction, so a retry never exchanges twice, whichever instance it reaches.
+     */
+    public Account exchange(String apiKey, AccountExchange exchange, String idempotencyKey) {
+        var from = exchange.getFrom().toUpperCase(Locale.ROOT);
+        var to = exchange.getTo().toUpperCase(Locale.ROOT);
+        accountMetrics.timeStage(OPERATION_EXCHANGE, "validation", () -> {
+            if (from.equals(to)) {
+                throw new InvalidExchangeException(INVALID_EXCHANGE);
+            }
+        });
+        var amount = amount(exchange.getAmount());
+        if (idempotencyKey == null) {
+            return exchange(apiKey, from, to, amount, null);
         }
+        var request = IdempotentRequest.exchange(apiKey, idempotencyKey, from, to, amount);
+        return idempotencyStore.execute(request, () -> exchange(apiKey, from, to, amount, request));
+    }
 
-        var accountEntity = accountRepository.findById(apiKey)
+    private Account exchange(String apiKey, String from, String to, long amount, IdempotentRequest request) {
+        var table = nbpRateCache.currentTableAsync();
+        accountMetrics.timeStage(OPERATION_EXCHANGE, "lookup", () -> accountStatusCache.get(apiKey,
+                        () -> accountStore.findBalance(apiKey)))
                 .orElseThrow(() -> new AccountNotFoundException("Api key not found."));
+        var rates = accountMetrics.timeStage(OPERATION_EXCHANGE, "rate", () -> NbpRateCache.await(table));
+        if (!rates.supports(from) || !rates.supports(to)) {
+            throw new InvalidExchangeException(INVALID_EXCHANGE);
+        }
 
-        if (!hasSufficientFunds(exchange, accountEntity)) {
-            throw new InsufficientFundsException("Insufficient funds.");
+        var converted = accountMetrics.timeStage(OPERATION_EXCHANGE, "arithmetic",
+                () -> convert(rates, amount, from, to));
+
+        // Exchanges of one account queue on their stripe, so the row lock below is taken without waiting.
+        try (var held = accountMetrics.timeStage(OPERATION_EXCHANGE, "lock", () -> accountLocks.lock(apiKey))) {
+            return transactionTemplate.execute(
+                    status -> apply(status, apiKey, from, amount, to, converted, rates, request));
         }
+    }
 
-        var usd = nbpApiClient.findExchange(USD);
-        var currentUsdRate = usd.getFirst();
-        var amount = BigDecimal.valueOf(exchange.getAmount());
+    /**
+     * Prices the exchange like {@link #exchange(String, AccountExchange)} and keeps the price in the
+     * {@link QuoteStore}. Funds are checked when the quote is executed, not here.
+     */
+    public ExchangeQuote quote(String apiKey, AccountExchange exchange) {
+        var from = exchange.getFrom().toUpperCase(Locale.ROOT);
+        var to = exchange.getTo().toUpperCase(Locale.ROOT);
+        accountMetrics.timeStage(OPERATION_QUOTE, "validation", () -> {
+            if (from.equals(to)) {
+                throw new InvalidExchangeException(INVALID_EXCHANGE);
+            }
+        });
+        var amount = amount(exchange.getAmount());
+        var table = nbpRateCache.currentTableAsync();
+        accountMetrics.timeStage(OPERATION_QUOTE, "lookup", () -> accountStatusCache.get(apiKey,
+                        () -> accountStore.findBalance(apiKey)))
+                .orElseThrow(() -> new AccountNotFoundException("Api key not found."));
+        var rates = accountMetrics.timeStage(OPERATION_QUOTE, "rate", () -> NbpRateCache.await(table));
+        if (!rates.supports(from) || !rates.supports(to)) {
+            throw new InvalidExchangeException(INVALID_EXCHANGE);
+        }
+        var converted = accountMetrics.timeStage(OPERATION_QUOTE, "arithmetic",
+                () -> convert(rates, amount, from, to));
+        var quote = quoteStore.add(apiKey, from, amount, to, converted, rates);
+        return ExchangeQuote.builder()
+                .quoteId(quote.id().toString())
+                .from(from)
+                .to(to)
+                .amount(Money.toDouble(amount))
+                .converted(Money.toDouble(converted))
+                .fromRate(rates.rate(from).toBigDecimal())
+                .toRate(rates.rate(to).toBigDecimal())
+                .effectiveDate(rates.effectiveDate())
+                .expiresAt(Instant.ofEpochMilli(quote.expiresAt()).atOffset(ZoneOffset.UTC))
+                .build();
+    }
 
-        var balancePLN = accountEntity.getBalancePLN();
-        var balanceUSD = accountEntity.getBalanceUSD();
+    /**
+     * Applies a quote made by {@link #quote} at its amounts and rates, with no NBP call. The quote is taken out before
+     * the exchange, so concurrent executions apply it once, and put back when the exchange fails.
+     */
+    public Account executeQuote(String apiKey, String quoteId) {
+        var quote = quoteStore.take(quoteId, apiKey);
+        if (quote == null) {
+            throw new QuoteNotFoundException("Quote not found.");
+        }
+        try (var held = accountMetrics.timeStage(OPERATION_EXCHANGE, "lock", () -> accountLocks.lock(apiKey))) {
+            return transactionTemplate.execute(status -> apply(status, apiKey, quote.from(), quote.amount(),
+                    quote.to(), quote.converted(), quote.rates(), null));
+        } catch (RuntimeException e) {
+            quoteStore.restore(quote);
+            throw e;
+        }
+    }
 
-        if (exchange.getFrom().equalsIgnoreCase(USD)) {
-            var amountToTransfer = currentUsdRate.multiply(amount);
-            accountEntity.setBalancePLN(balancePLN.add(amountToTransfer));
-            accountEntity.setBalanceUSD(balanceUSD.subtract(amount));
-        } else {
-            var amountToTransfer = amount.divide(currentUsdRate, 4, RoundingMode.HALF_UP);
-            accountEntity.setBalancePLN(balancePLN.subtract(amount));
-            accountEntity.setBalanceUSD(balanceUSD.add(amountToTransfer));
+    private Account apply(TransactionStatus status, String apiKey, String from, long amount, String to,
+            long converted, RateTable rates, IdempotentRequest request) {
+        accountMetrics.timeCommit(OPERATION_EXCHANGE);
+        var replay = accountMetrics.timeStage(OPERATION_EXCHANGE, "update", () -> {
+            try {
+                if (!accountStore.lock(apiKey)) {
+                    throw new AccountNotFoundException("Api key not found.");
+                }
+                var stored = request == null ? Optional.<Account>empty() : idempotencyStore.findStored(request);
+                if (stored.isPresent()) {
+                    return stored;
+                }
+                if (!accountStore.debit(apiKey, from, amount)) {
+                    throw new InsufficientFundsException("Insufficient funds.");
+                }
+                accountStore.credit(apiKey, to, converted);
+                return stored;
+            } catch (PessimisticLockingFailureException e) {
+                accountMetrics.countRowLockConflict(OPERATION_EXCHANGE);
+                throw new ExchangeConflictException("Account is being modified concurrently, please retry.");
+            }
+        });
+        if (replay.isPresent()) {
+            status.setRollbackOnly();
+            return replay.get();
         }
+        accountMetrics.timeStage(OPERATION_EXCHANGE, "journal", () -> journalRepository.append(
+                List.of(JournalEntry.exchange(apiKey, from, amount, to, converted, rates))));
 
-        var saved = accountRepository.save(accountEntity);
+        var balance = accountMetrics.timeStage(OPERATION_EXCHANGE, "balance",
+                () -> accountStore.findBalance(apiKey))
+                .orElseThrow(() -> new AccountNotFoundException("Api key not found."));
+        accountMetrics.timeStage(OPERATION_EXCHANGE, "journal", () -> journalRepository.snapshot(List.of(balance)));
+        var account = balance.toAccount();
+        if (request != null) {
+            accountMetrics.timeStage(OPERATION_EXCHANGE, "idempotency",
+                    () -> idempotencyStore.record(request, account));
+        }
+        accountStatusCache.update(balance);
+        return account;
+    }
 
-        return build(saved);
+    /**
+     * Applies the items in order with one NBP table. The accounts are locked and read once, the items applied in
+     * memory and the changed balances written as one JDBC batch. Items that cannot be applied get an error result and
+     * do not affect the others; a lock timeout fails the whole batch.
+     */
+    @Transactional
+    public AccountExchangeBatchResponse exchangeBatch(AccountExchangeBatchRequest request) {
+        accountMetrics.timeCommit(OPERATION_EXCHANGE_BATCH);
+        var items = request.getItems();
+        var results = new AccountExchangeBatchResult[items.size()];
+        var validItems = new ArrayList<Integer>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            var item = items.get(i);
+            if (item.getFrom().equalsIgnoreCase(item.getTo())) {
+                results[i] = failed(item, AccountExchangeBatchStatus.INVALID_EXCHANGE, INVALID_EXCHANGE);
+            } else {
+                validItems.add(i);
+            }
+        }
+
+        if (!validItems.isEmpty()) {
+            // The table is fetched while the items are sorted. Rows are locked in api key order so overlapping
+            // batches cannot deadlock; the sort is stable, which keeps the request order of the items of one account.
+            var table = nbpRateCache.currentTableAsync();
+            validItems.sort(Comparator.comparing(i -> items.get(i).getApiKey()));
+            var rates = accountMetrics.timeStage(OPERATION_EXCHANGE_BATCH, "rate", () -> NbpRateCache.await(table));
+            validItems.removeIf(i -> {
+                var item = items.get(i);
+                if (rates.supports(item.getFrom()) && rates.supports(item.getTo())) {
+                    return false;
+                }
+                results[i] = failed(item, AccountExchangeBatchStatus.INVALID_EXCHANGE, INVALID_EXCHANGE);
+                return true;
+            });
+            applyBatch(items, validItems, rates, results);
+        }
+
+        return AccountExchangeBatchResponse.builder()
+                .results(List.of(results))
+                .build();
     }
 
-    private Account build(AccountEntity accountEntity) {
-        return Account.builder()
-                .firstName(accountEntity.getFirstName())
-                .lastName(accountEntity.getLastName())
-                .balancePLN(accountEntity.getBalancePLN().setScale(4, RoundingMode.HALF_UP).doubleValue())
-                .balanceUSD(accountEntity.getBalanceUSD().setScale(4, RoundingMode.HALF_UP).doubleValue())
+    private void applyBatch(List<AccountExchangeBatchItem> items, List<Integer> validItems, RateTable rates,
+            AccountExchangeBatchResult[] results) {
+        var apiKeys = validItems.stream().map(i -> items.get(i).getApiKey()).distinct().toList();
+        if (apiKeys.isEmpty()) {
+            return;
+        }
+        accountMetrics.timeStage(OPERATION_EXCHANGE_BATCH, "lock", () -> {
+            try {
+                accountStore.lockAll(apiKeys);
+            } catch (PessimisticLockingFailureException e) {
+                accountMetrics.countRowLockConflict(OPERATION_EXCHANGE_BATCH);
+                throw new ExchangeConflictException("Account is being modified concurrently, please retry.");
+            }
+        });
+        var accounts = accountMetrics.timeStage(OPERATION_EXCHANGE_BATCH, "balance", () -> findBalances(apiKeys));
+
+        var ledgers = new LinkedHashMap<String, Map<String, Long>>();
+        var exchanged = new ArrayList<Integer>(validItems.size());
+        var entries = new ArrayList<JournalEntry>(validItems.size());
+        accountMetrics.timeStage(OPERATION_EXCHANGE_BATCH, "arithmetic", () -> {
+            for (var i : validItems) {
+                var item = items.get(i);
+                var account = accounts.get(item.getApiKey());
+                if (account == null) {
+                    results[i] = failed(item, AccountExchangeBatchStatus.ACCOUNT_NOT_FOUND, "Api key not found.");
+                    continue;
+                }
+                var ledger = ledgers.computeIfAbsent(item.getApiKey(), key -> new HashMap<>(account.balances()));
+                var from = item.getFrom().toUpperCase(Locale.ROOT);
+                var to = item.getTo().toUpperCase(Locale.ROOT);
+                long amount;
+                long converted;
+                try {
+                    amount = Money.fromDouble(item.getAmount());
+                    converted = rates.convert(amount, from, to);
+                } catch (ArithmeticException e) {
+                    results[i] = failed(item, AccountExchangeBatchStatus.INVALID_EXCHANGE, AMOUNT_OUT_OF_RANGE);
+                    continue;
+                }
+                var available = ledger.getOrDefault(from, 0L);
+                if (available < amount) {
+                    results[i] = failed(item, AccountExchangeBatchStatus.INSUFFICIENT_FUNDS, "Insufficient funds.");
+                    continue;
+                }
+                ledger.put(from, available - amount);
+                ledger.merge(to, converted, Long::sum);
+                entries.add(JournalEntry.exchange(item.getApiKey(), from, amount, to, converted, rates));
+                exchanged.add(i);
+            }
+        });
+
+        var changes = new ArrayList<CurrencyBalance>();
+        var updated = new HashMap<String, AccountBalance>(ledgers.size() * 2);
+        ledgers.forEach((apiKey, ledger) -> {
+            var account = accounts.get(apiKey);
+            new TreeMap<>(ledger).forEach((currency, balance) -> {
+                if (!balance.equals(account.balances().get(currency))) {
+                    changes.add(new CurrencyBalance(apiKey, currency, balance));
+                }
+            });
+            updated.put(apiKey, new AccountBalance(apiKey, account.firstName(), account.lastName(), ledger,
+                    account.version()));
+        });
+        if (!changes.isEmpty()) {
+            accountMetrics.timeStage(OPERATION_EXCHANGE_BATCH, "update", () -> accountStore.saveBalances(changes));
+        }
+        if (!entries.isEmpty()) {
+            accountMetrics.timeStage(OPERATION_EXCHANGE_BATCH, "journal", () -> {
+                journalRepository.append(entries);
+                journalRepository.snapshot(updated.values());
+            });
+        }
+        accountStatusCache.updateAll(updated.values());
+
+        var responses = new HashMap<String, Account>(updated.size() * 2);
+        for (var i : exchanged) {
+            var item = items.get(i);
+            results[i] = AccountExchangeBatchResult.builder()
+                    .apiKey(item.getApiKey())
+                    .status(AccountExchangeBatchStatus.EXCHANGED)
+                    .account(responses.computeIfAbsent(item.getApiKey(), key -> updated.get(key).toAccount()))
+                    .build();
+        }
+    }
+
+    /**
+     * Journal of the account, oldest entry first, in pages of {@code limit} entries after the entry id {@code after}.
+     */
+    public AccountHistory history(String apiKey, long after, int limit) {
+        accountMetrics.timeStage(OPERATION_HISTORY, "lookup", () -> {
+            if (!accountStore.exists(apiKey)) {
+                throw new AccountNotFoundException("Api key not found.");
+            }
+        });
+        var entries = accountMetrics.timeStage(OPERATION_HISTORY, "load",
+                () -> journalRepository.findByApiKeyAndIdGreaterThanOrderByIdAsc(ApiKeys.valueOf(apiKey), after,
+                        Limit.of(limit)));
+        return AccountHistory.builder()
+                .entries(entries.stream().map(this::historyEntry).toList())
+                .nextCursor(entries.size() < limit ? null : entries.get(entries.size() - 1).getId())
+                .build();
+    }
+
+    private AccountHistoryEntry historyEntry(JournalEntryEntity entry) {
+        return AccountHistoryEntry.builder()
+                .id(entry.getId())
+                .type(AccountHistoryEntryType.fromValue(entry.getType().name()))
+                .from(entry.getFromCurrency())
+                .fromAmount(entry.getFromAmount() == null ? null : Money.toDouble(entry.getFromAmount()))
+                .fromRate(entry.getFromRate())
+                .to(entry.getToCurrency())
+                .toAmount(Money.toDouble(entry.getToAmount()))
+                .toRate(entry.getToRate())
+                .effectiveDate(entry.getEffectiveDate())
+                .createdAt(entry.getCreatedAt().atOffset(ZoneOffset.UTC))
+                .build();
+    }
+
+    private JournalEntry opening(AccountBalance account) {
+        return JournalEntry.opening(account.apiKey(), account.balance(RateTable.PLN));
+    }
+
+    private AccountBalance newAccount(RegisterAccountRequest registerAccountRequest) {
+        return new AccountBalance(idGenerator.get(), registerAccountRequest.getFirstName(),
+                registerAccountRequest.getLastName(),
+                Map.of(RateTable.PLN, amount(registerAccountRequest.getBalancePLN())), 0L);
+    }
+
+    private RegisterAccountResponse registered(AccountBalance account) {
+        return RegisterAccountResponse.builder()
+                .firstName(account.firstName())
+                .lastName(account.lastName())
+                .balancePLN(Money.toDouble(account.balance(RateTable.PLN)))
+                .balanceUSD(Money.toDouble(account.balance(USD)))
+                .apiKey(account.apiKey())
                 .build();
     }
 
-    private boolean isValidExchange(AccountExchange accountExchange) {
-        var fromCurrency = accountExchange.getFrom();
-        var toCurrency = accountExchange.getTo();
-        return ALLOWED_CURRENCY.contains(fromCurrency.toUpperCase()) &&
-                ALLOWED_CURRENCY.contains(toCurrency.toUpperCase())
-                && !fromCurrency.equalsIgnoreCase(toCurrency);
+    private Map<String, AccountBalance> findBalances(List<String> apiKeys) {
+        var balances = new HashMap<String, AccountBalance>(apiKeys.size() * 2);
+        accountStore.findBalances(apiKeys).forEach(balance -> balances.put(balance.apiKey(), balance));
+        return balances;
     }
 
-    private boolean hasSufficientFunds(AccountExchange exchange, AccountEntity accountEntity) {
-        var from = exchange.getFrom();
-        var amount = BigDecimal.valueOf(exchange.getAmount());
-        if (USD.equalsIgnoreCase(from)) {
-            return accountEntity.getBalanceUSD().compareTo(amount) >= 0;
-        } else {
-            return accountEntity.getBalancePLN().compareTo(amount) >= 0;
+    private static long amount(double amount) {
+        try {
+            return Money.fromDouble(amount);
+        } catch (ArithmeticException e) {
+            throw new InvalidExchangeException(AMOUNT_OUT_OF_RANGE);
         }
     }
+
+    private static long convert(RateTable rates, long amount, String from, String to) {
+        try {
+            return rates.convert(amount, from, to);
+        } catch (ArithmeticException e) {
+            throw new InvalidExchangeException(AMOUNT_OUT_OF_RANGE);
+        }
+    }
+
+    private AccountExchangeBatchResult failed(AccountExchangeBatchItem item, AccountExchangeBatchStatus status,
+            String message) {
+        return AccountExchangeBatchResult.builder()
+                .apiKey(item.getApiKey())
+                .status(status)
+                .message(message)
+                .build();
+    }
 }
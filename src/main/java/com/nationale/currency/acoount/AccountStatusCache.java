@@ -0,0 +1,107 @@
+package com.nationale.currency.acoount;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nationale.generated.model.Account;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Pre-built {@link Account} responses by api key, bounded by {@code account.status-cache.maximum-size} and
+ * {@code account.status-cache.expire-after-write}. A miss is loaded by the calling thread outside of any map lock and
+ * concurrent misses for one key share the load. Writers put the balances they committed, tagged with the row version,
+ * and an entry is only ever replaced by a newer version, so a load that read the row before a commit cannot overwrite
+ * the committed balance. Hits and misses are exposed as {@code cache.gets{cache=account.status}}.
+ * <p>
+ * Cache maintenance runs on the calling thread: with the default common pool, hosts with one or two cores start a new
+ * thread for every replaced entry.
+ */
+@Component
+public class AccountStatusCache {
+
+    private final AsyncCache<String, CachedStatus> cache;
+
+    public AccountStatusCache(MeterRegistry meterRegistry,
+            @Value("${account.status-cache.maximum-size:100000}") long maximumSize,
+            @Value("${account.status-cache.expire-after-write:PT5M}") Duration expireAfterWrite) {
+        this.cache = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .executor(Runnable::run)
+                .recordStats()
+                .<String, CachedStatus>buildAsync(), "account.status");
+    }
+
+    /**
+     * Returns the cached status or loads it with {@code loader}. Unknown api keys are not cached.
+     */
+    public Optional<Account> get(String apiKey, Supplier<Optional<AccountBalance>> loader) {
+        var loading = new CompletableFuture<CachedStatus>();
+        var owner = new boolean[1];
+        var future = cache.get(apiKey, (key, executor) -> {
+            owner[0] = true;
+            return loading;
+        });
+        if (owner[0]) {
+            try {
+                loading.complete(loader.get().map(CachedStatus::of).orElse(null));
+            } catch (RuntimeException e) {
+                loading.completeExceptionally(e);
+                throw e;
+            }
+        }
+        return Optional.ofNullable(future.join()).map(CachedStatus::account);
+    }
+
+    /**
+     * Puts the balance once the current transaction commits, or right away outside of a transaction.
+     */
+    public void update(AccountBalance balance) {
+        updateAll(List.of(balance));
+    }
+
+    public void updateAll(Collection<AccountBalance> balances) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    balances.forEach(AccountStatusCache.this::put);
+                }
+            });
+        } else {
+            balances.forEach(this::put);
+        }
+    }
+
+    private void put(AccountBalance balance) {
+        var status = CompletableFuture.completedFuture(CachedStatus.of(balance));
+        cache.asMap().compute(balance.apiKey(),
+                (key, current) -> isOlder(current, balance.version()) ? status : current);
+    }
+
+    private static boolean isOlder(CompletableFuture<CachedStatus> current, long version) {
+        if (current == null || !current.isDone() || current.isCompletedExceptionally()) {
+            return true;
+        }
+        var cached = current.join();
+        return cached == null || cached.version() < version;
+    }
+
+    private record CachedStatus(long version, Account account) {
+
+        static CachedStatus of(AccountBalance balance) {
+            return new CachedStatus(balance.version(), balance.toAccount());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.nationale.currency.acoount;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Storage of the accounts and their balances behind {@link AccountService}, selected with {@code account.store.type}:
+ * {@code jpa} ({@link JpaAccountStore}, the default) or {@code memory} ({@link InMemoryAccountStore}).
+ * <p>
+ * Changes made in a transaction become visible to other threads when it commits and are discarded when it rolls
+ * back; outside of a transaction every call commits on its own. Balances are in {@link Money} units.
+ */
+public interface AccountStore {
+
+    /**
+     * Adds new accounts. The api keys must not exist yet.
+     */
+    void insert(List<AccountBalance> accounts);
+
+    boolean exists(String apiKey);
+
+    Optional<AccountBalance> findBalance(String apiKey);
+
+    /**
+     * @return balances of the accounts that exist, in no particular order
+     */
+    List<AccountBalance> findBalances(List<String> apiKeys);
+
+    /**
+     * Locks the account until the end of the transaction and bumps its version. Every change of the balances takes
+     * this lock first, so changes of one account are serialized.
+     *
+     * @return {@code true} when the account was locked, {@code false} when it does not exist
+     * @throws org.springframework.dao.PessimisticLockingFailureException when the lock was not acquired in time
+     */
+    boolean lock(String apiKey);
+
+    /**
+     * Locks the accounts that exist, see {@link #lock(String)}. Callers pass the api keys sorted, so overlapping
+     * calls lock in the same order.
+     */
+    void lockAll(List<String> apiKeys);
+
+    /**
+     * Takes {@code amount} out of the {@code currency} balance, only if it holds at least {@code amount}. The account
+     * must be locked.
+     *
+     * @return {@code true} when the amount was taken, {@code false} when the balance is missing or insufficient
+     */
+    boolean debit(String apiKey, String currency, long amount);
+
+    /**
+     * Adds {@code amount} to the {@code currency} balance, opening it when the account did not hold the currency. The
+     * account must be locked.
+     */
+    void credit(String apiKey, String currency, long amount);
+
+    /**
+     * Sets the balances, opening the ones the accounts did not hold. The accounts must be locked.
+     */
+    void saveBalances(List<CurrencyBalance> balances);
+
+    /**
+     * Streams the committed balances of every account to {@code handler}, the balances of one account one after
+     * another and the accounts in no particular order. Balances are handed over as they are read, never all held at
+     * once, so the memory used does not depend on the number of accounts.
+     */
+    void forEachBalance(BalanceHandler handler);
+
+    /**
+     * Streams every committed account with its balances to {@code consumer}, in no particular order and without
+     * holding them all at once, like {@link #forEachBalance}.
+     */
+    void forEachAccount(Consumer<AccountBalance> consumer);
+
+    /**
+     * Receives the balances of {@link #forEachBalance}. The api key comes as the two halves of its UUID, which is
+     * enough to tell the accounts apart without building a key per balance.
+     */
+    @FunctionalInterface
+    interface BalanceHandler {
+
+        void balance(long apiKeyMsb, long apiKeyLsb, String currency, long balance);
+    }
+}
@@ -0,0 +1,287 @@
+package com.nationale.currency.acoount;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Durability of {@link InMemoryAccountStore}: a snapshot of all accounts ({@code accounts.snapshot}) and numbered
+ * write-ahead log segments ({@code accounts-<n>.wal}) with the changes after it. Every record is a full image of one
+ * account, so replaying a record twice or a snapshot newer than some records in the log gives the same state.
+ * Records are framed with their length and CRC; a record torn by a crash ends the replay of its segment.
+ */
+@Slf4j
+final class AccountStoreLog implements Closeable {
+
+    private static final String SNAPSHOT = "accounts.snapshot";
+    private static final Pattern SEGMENT = Pattern.compile("accounts-(\\d+)\\.wal");
+    private static final int SNAPSHOT_MAGIC = 0x41435331;
+    private static final int MAX_RECORD = 1 << 20;
+    private static final byte ACCOUNT = 1;
+    private static final byte REMOVED = 2;
+
+    private final Path directory;
+    private final boolean fsync;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private FileChannel segment;
+    private long sequence;
+
+    AccountStoreLog(Path directory, boolean fsync) {
+        this.directory = directory;
+        this.fsync = fsync;
+    }
+
+    /**
+     * Replays the snapshot and the log segments after it, then starts a new segment for the changes to come.
+     */
+    void recover(Consumer<Entry> replay) {
+        try {
+            Files.createDirectories(directory);
+            var first = 0L;
+            var snapshot = directory.resolve(SNAPSHOT);
+            if (Files.exists(snapshot)) {
+                try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+                    if (in.readInt() != SNAPSHOT_MAGIC) {
+                        throw new IllegalStateException("Not an account snapshot: " + snapshot);
+                    }
+                    first = in.readLong();
+                    read(in, snapshot, replay);
+                }
+            }
+            var last = first - 1;
+            for (var number : segments()) {
+                if (number >= first) {
+                    try (var in = new DataInputStream(new BufferedInputStream(
+                            Files.newInputStream(segment(number))))) {
+                        read(in, segment(number), replay);
+                    }
+                }
+                last = Math.max(last, number);
+            }
+            sequence = last + 1;
+            segment = open(sequence);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot recover accounts from " + directory, e);
+        }
+    }
+
+    /**
+     * Appends the records as one write, forced to the disk with {@code account.store.memory.fsync}.
+     */
+    void append(List<Entry> entries) {
+        var buffer = new ByteArrayOutputStream(entries.size() * 128);
+        try (var out = new DataOutputStream(buffer)) {
+            for (var entry : entries) {
+                write(out, entry);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        var bytes = ByteBuffer.wrap(buffer.toByteArray());
+        writeLock.lock();
+        try {
+            while (bytes.hasRemaining()) {
+                segment.write(bytes);
+            }
+            if (fsync) {
+                segment.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append to the account log", e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Closes the current segment and starts the next one.
+     *
+     * @return number of the new segment, the first one a snapshot taken from now on has to be replayed with
+     */
+    long rotate() {
+        writeLock.lock();
+        try {
+            var next = open(sequence + 1);
+            segment.force(false);
+            segment.close();
+            segment = next;
+            return ++sequence;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot rotate the account log", e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the accounts as the snapshot to replay segment {@code first} onwards with, replacing the previous one,
+     * and deletes the segments it covers.
+     */
+    void writeSnapshot(long first, Stream<Entry> accounts) {
+        var snapshot = directory.resolve(SNAPSHOT);
+        var written = directory.resolve(SNAPSHOT + ".tmp");
+        try (var channel = FileChannel.open(written, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            var out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(first);
+            for (Iterator<Entry> it = accounts.iterator(); it.hasNext(); ) {
+                write(out, it.next());
+            }
+            out.flush();
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write the account snapshot", e);
+        }
+        try {
+            Files.move(written, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            for (var number : segments()) {
+                if (number < first) {
+                    Files.deleteIfExists(segment(number));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot replace the account snapshot", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writeLock.lock();
+        try {
+            if (segment != null) {
+                segment.force(false);
+                segment.close();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private FileChannel open(long number) throws IOException {
+        return FileChannel.open(segment(number), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private Path segment(long number) {
+        return directory.resolve("accounts-" + number + ".wal");
+    }
+
+    private List<Long> segments() throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.map(file -> SEGMENT.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Long.parseLong(matcher.group(1)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static void write(DataOutputStream out, Entry entry) throws IOException {
+        var body = new ByteArrayOutputStream(128);
+        try (var record = new DataOutputStream(body)) {
+            record.writeByte(entry.removed() ? REMOVED : ACCOUNT);
+            record.writeUTF(entry.apiKey());
+            if (!entry.removed()) {
+                record.writeUTF(entry.firstName());
+                record.writeUTF(entry.lastName());
+                record.writeLong(entry.version());
+                record.writeByte(entry.currencies().length);
+                for (int i = 0; i < entry.currencies().length; i++) {
+                    record.writeUTF(entry.currencies()[i]);
+                    record.writeLong(entry.balances()[i]);
+                }
+            }
+        }
+        var crc = new CRC32C();
+        crc.update(body.toByteArray());
+        out.writeInt(body.size());
+        out.writeInt((int) crc.getValue());
+        body.writeTo(out);
+    }
+
+    private static void read(DataInputStream in, Path file, Consumer<Entry> replay) throws IOException {
+        while (true) {
+            byte[] body;
+            int checksum;
+            try {
+                var length = in.readInt();
+                if (length < 0 || length > MAX_RECORD) {
+                    log.warn("Account log {} has a corrupt record, ignoring the rest of it.", file);
+                    return;
+                }
+                checksum = in.readInt();
+                body = new byte[length];
+                in.readFully(body);
+            } catch (EOFException e) {
+                return;
+            }
+            var crc = new CRC32C();
+            crc.update(body);
+            if ((int) crc.getValue() != checksum) {
+                log.warn("Account log {} has a torn record, ignoring the rest of it.", file);
+                return;
+            }
+            replay.accept(entry(new DataInputStream(new ByteArrayInputStream(body))));
+        }
+    }
+
+    private static Entry entry(DataInputStream record) throws IOException {
+        var type = record.readByte();
+        var apiKey = record.readUTF();
+        if (type == REMOVED) {
+            return Entry.removed(apiKey);
+        }
+        var firstName = record.readUTF();
+        var lastName = record.readUTF();
+        var version = record.readLong();
+        var count = record.readUnsignedByte();
+        var currencies = new String[count];
+        var balances = new long[count];
+        for (int i = 0; i < count; i++) {
+            currencies[i] = record.readUTF();
+            balances[i] = record.readLong();
+        }
+        return new Entry(apiKey, firstName, lastName, version, currencies, balances);
+    }
+
+    /**
+     * Image of one account, balances in {@link Money} units by currency; {@code firstName} is {@code null} for an
+     * account that was removed.
+     */
+    record Entry(String apiKey, String firstName, String lastName, long version, String[] currencies,
+            long[] balances) {
+
+        static Entry removed(String apiKey) {
+            return new Entry(apiKey, null, null, 0L, null, null);
+        }
+
+        boolean removed() {
+            return firstName == null;
+        }
+    }
+}
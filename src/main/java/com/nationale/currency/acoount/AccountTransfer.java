@@ -0,0 +1,345 @@
+package com.nationale.currency.acoount;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nationale.currency.acoount.exception.InvalidImportException;
+import com.nationale.currency.nbp.NbpRateCache;
+import com.nationale.currency.nbp.RateTable;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Export and import of every account with its balances in a {@link TransferFormat}, in constant memory whatever the
+ * number of accounts.
+ * <p>
+ * The export streams the committed accounts from {@link AccountStore#forEachAccount} straight to the output. The
+ * import parses the input one record at a time on the calling thread and hands batches of
+ * {@code account.transfer.batch-size} accounts to a writer thread, each batch inserted with its opening journal
+ * entries in one transaction of JDBC batches. At most {@value #QUEUED_BATCHES} batches wait for the writer, so parsing
+ * blocks while the database is behind and a large upload is read only as fast as it is stored.
+ * <p>
+ * Batches are committed as they go: an import rejected part way keeps the accounts before the rejected record, and
+ * the error tells how many they are. Imported again with {@code skipExisting}, the accounts already there are
+ * skipped. Opening balances are journaled at the current NBP table, PLN at 1, so the journal replays them like
+ * registered ones.
+ */
+@Component
+public class AccountTransfer {
+
+    private static final String METRIC_ACCOUNTS = "account.transfer.accounts";
+    private static final String OPERATION_IMPORT = "import";
+    private static final int QUEUED_BATCHES = 2;
+    private static final int MAX_NAME_LENGTH = 255;
+    private static final Batch END = new Batch(List.of(), null);
+
+    private final AccountStore accountStore;
+    private final JournalRepository journalRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final NbpRateCache nbpRateCache;
+    private final AccountMetrics accountMetrics;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final Counter exported;
+    private final Counter imported;
+
+    public AccountTransfer(AccountStore accountStore, JournalRepository journalRepository,
+            TransactionTemplate transactionTemplate, NbpRateCache nbpRateCache, AccountMetrics accountMetrics,
+            ObjectMapper objectMapper, MeterRegistry meterRegistry,
+            @Value("${account.transfer.batch-size:1000}") int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("account.transfer.batch-size must be positive");
+        }
+        this.accountStore = accountStore;
+        this.journalRepository = journalRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.nbpRateCache = nbpRateCache;
+        this.accountMetrics = accountMetrics;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.exported = accounts(meterRegistry, "export");
+        this.imported = accounts(meterRegistry, OPERATION_IMPORT);
+    }
+
+    /**
+     * Writes every committed account to {@code out}, leaving it open.
+     */
+    public void exportAccounts(TransferFormat format, OutputStream out) throws IOException {
+        var writer = format.writer(out, objectMapper);
+        try {
+            accountStore.forEachAccount(account -> {
+                try {
+                    writer.write(account);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                exported.increment();
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    /**
+     * Adds the accounts read from {@code in}, see the class comment.
+     *
+     * @param skipExisting skip the accounts whose api key exists instead of rejecting the import
+     * @throws InvalidImportException when a record is malformed or, without {@code skipExisting}, an account exists;
+     *                                the accounts of the batches before it are imported
+     */
+    public ImportResult importAccounts(TransferFormat format, InputStream in, boolean skipExisting)
+            throws IOException {
+        var queue = new ArrayBlockingQueue<Batch>(QUEUED_BATCHES);
+        var batchWriter = new BatchWriter(queue, skipExisting);
+        var thread = Thread.ofVirtual().name("account-import").start(batchWriter);
+        String rejected = null;
+        try {
+            var reader = format.reader(in, objectMapper);
+            var validator = new Validator();
+            var batch = new ArrayList<AccountBalance>(batchSize);
+            while (batchWriter.failure == null) {
+                AccountBalance account;
+                try {
+                    var record = reader.next();
+                    if (record == null) {
+                        break;
+                    }
+                    account = validator.account(record);
+                } catch (IllegalArgumentException | JsonProcessingException e) {
+                    rejected = "Line " + reader.line() + ": " + message(e);
+                    break;
+                }
+                batch.add(account);
+                if (batch.size() == batchSize) {
+                    put(queue, new Batch(batch, validator.rates));
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (rejected == null && !batch.isEmpty()) {
+                put(queue, new Batch(batch, validator.rates));
+            }
+        } finally {
+            put(queue, END);
+            join(thread);
+        }
+        if (batchWriter.failure instanceof InvalidImportException failure) {
+            rejected = failure.getMessage();
+        } else if (batchWriter.failure != null) {
+            throw batchWriter.failure;
+        }
+        if (rejected != null) {
+            throw new InvalidImportException(rejected + " " + batchWriter.imported + " accounts imported.");
+        }
+        return new ImportResult(batchWriter.imported, batchWriter.skipped);
+    }
+
+    private static Counter accounts(MeterRegistry meterRegistry, String direction) {
+        return Counter.builder(METRIC_ACCOUNTS)
+                .description("Accounts exported or imported, by direction")
+                .tag("direction", direction)
+                .register(meterRegistry);
+    }
+
+    private static String message(Exception e) {
+        return e instanceof JsonProcessingException json ? json.getOriginalMessage() : e.getMessage();
+    }
+
+    private static void put(BlockingQueue<Batch> queue, Batch batch) {
+        try {
+            queue.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import was interrupted.", e);
+        }
+    }
+
+    private static void join(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import was interrupted.", e);
+        }
+    }
+
+    /**
+     * Accounts added and skipped by an import.
+     */
+    public record ImportResult(long imported, long skipped) {
+
+    }
+
+    /**
+     * Accounts to insert and the table their balances were validated against, {@code null} when all are in PLN.
+     */
+    private record Batch(List<AccountBalance> accounts, RateTable rates) {
+
+    }
+
+    /**
+     * Turns records into new accounts, fetching the NBP table once, when the first currency other than PLN comes.
+     */
+    private final class Validator {
+
+        private RateTable rates;
+
+        AccountBalance account(TransferFormat.AccountRecord record) {
+            if (ApiKeys.parse(record.apiKey()) == null) {
+                throw new IllegalArgumentException("Api key " + record.apiKey() + " is not a canonical UUID.");
+            }
+            var balances = new HashMap<String, Long>();
+            if (record.balances() != null) {
+                record.balances().forEach((currency, amount) -> {
+                    if (balances.put(currency(currency), amount(currency, amount)) != null) {
+                        throw new IllegalArgumentException("Currency " + currency + " appears more than once.");
+                    }
+                });
+            }
+            return new AccountBalance(record.apiKey(), name("First name", record.firstName()),
+                    name("Last name", record.lastName()), balances, 0L);
+        }
+
+        private String currency(String currency) {
+            var code = currency.toUpperCase(Locale.ROOT);
+            if (RateTable.PLN.equals(code)) {
+                return code;
+            }
+            if (rates == null) {
+                rates = nbpRateCache.currentTable();
+            }
+            if (!rates.supports(code)) {
+                throw new IllegalArgumentException("Currency " + currency + " is not PLN or quoted in NBP table A.");
+            }
+            return code;
+        }
+
+        private static long amount(String currency, BigDecimal amount) {
+            if (amount == null || amount.signum() < 0) {
+                throw new IllegalArgumentException("Balance of " + currency + " must be zero or positive.");
+            }
+            if (amount.stripTrailingZeros().scale() > Money.SCALE) {
+                throw new IllegalArgumentException(
+                        "Balance of " + currency + " has more than " + Money.SCALE + " decimal places.");
+            }
+            try {
+                return Money.fromBigDecimal(amount);
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("Balance of " + currency + " is too large.");
+            }
+        }
+
+        private static String name(String field, String name) {
+            if (name == null || name.isBlank() || name.length() > MAX_NAME_LENGTH) {
+                throw new IllegalArgumentException(field + " must have 1 to " + MAX_NAME_LENGTH + " characters.");
+            }
+            return name;
+        }
+    }
+
+    /**
+     * Inserts the batches taken from the queue until {@link #END}. After a failure it only drains the queue, so the
+     * parsing thread never blocks on a full one.
+     */
+    private final class BatchWriter implements Runnable {
+
+        private final BlockingQueue<Batch> queue;
+        private final boolean skipExisting;
+        private volatile RuntimeException failure;
+        private long imported;
+        private long skipped;
+
+        BatchWriter(BlockingQueue<Batch> queue, boolean skipExisting) {
+            this.queue = queue;
+            this.skipExisting = skipExisting;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Batch batch;
+                try {
+                    batch = queue.take();
+                } catch (InterruptedException e) {
+                    failure = new IllegalStateException("Import was interrupted.", e);
+                    return;
+                }
+                if (batch == END) {
+                    return;
+                }
+                if (failure == null) {
+                    try {
+                        write(batch);
+                    } catch (DataIntegrityViolationException e) {
+                        failure = new InvalidImportException("Accounts " + (imported + skipped + 1) + " to "
+                                + (imported + skipped + batch.accounts().size())
+                                + " of the input were not imported, one of them already exists.");
+                    } catch (RuntimeException e) {
+                        failure = e;
+                    }
+                }
+            }
+        }
+
+        private void write(Batch batch) {
+            var accounts = accountMetrics.timeStage(OPERATION_IMPORT, "persist",
+                    () -> transactionTemplate.execute(status -> {
+                        var added = newAccounts(batch.accounts());
+                        accountStore.insert(added);
+                        journalRepository.append(openings(added, batch.rates()));
+                        return added;
+                    }));
+            imported += accounts.size();
+            skipped += batch.accounts().size() - accounts.size();
+            AccountTransfer.this.imported.increment(accounts.size());
+        }
+
+        /**
+         * @return the accounts of the batch to insert, without the ones already there when skipping them
+         * @throws InvalidImportException when an account is there and not skipped
+         */
+        private List<AccountBalance> newAccounts(List<AccountBalance> batch) {
+            var apiKeys = new HashSet<String>();
+            if (skipExisting) {
+                accountStore.findBalances(batch.stream().map(AccountBalance::apiKey).toList())
+                        .forEach(account -> apiKeys.add(account.apiKey()));
+            }
+            var accounts = new ArrayList<AccountBalance>(batch.size());
+            for (var account : batch) {
+                if (apiKeys.add(account.apiKey())) {
+                    accounts.add(account);
+                } else if (!skipExisting) {
+                    throw new InvalidImportException(
+                            "Account " + account.apiKey() + " appears more than once in the input.");
+                }
+            }
+            return accounts;
+        }
+
+        private static List<JournalEntry> openings(List<AccountBalance> accounts, RateTable rates) {
+            var entries = new ArrayList<JournalEntry>();
+            for (var account : accounts) {
+                for (var balance : account.balances().entrySet()) {
+                    entries.add(JournalEntry.opening(account.apiKey(), balance.getKey(), balance.getValue(), rates));
+                }
+            }
+            return entries;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.nationale.currency.acoount;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Export and import of the accounts, see {@link AccountTransfer}. Written by hand rather than generated from the
+ * OpenAPI spec: the generated interfaces take and return whole bodies, these stream them.
+ */
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/account")
+public class AccountTransferController {
+
+    private final AccountTransfer accountTransfer;
+
+    /**
+     * Writes the export on the request's own (virtual) thread rather than as an async {@code StreamingResponseBody},
+     * so it runs as long as the client reads without lifting {@code spring.mvc.async.request-timeout} for every
+     * endpoint.
+     */
+    @GetMapping("/export")
+    public void exportAccounts(@RequestParam(defaultValue = "NDJSON") TransferFormat format,
+            HttpServletResponse response) throws IOException {
+        response.setContentType(format.mediaType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"accounts." + format.name().toLowerCase() + "\"");
+        accountTransfer.exportAccounts(format, response.getOutputStream());
+    }
+
+    @PostMapping(path = "/import", consumes = "application/x-ndjson")
+    public ResponseEntity<AccountTransfer.ImportResult> importNdjson(InputStream body,
+            @RequestParam(defaultValue = "false") boolean skipExisting) throws IOException {
+        return ResponseEntity.ok(accountTransfer.importAccounts(TransferFormat.NDJSON, body, skipExisting));
+    }
+
+    @PostMapping(path = "/import", consumes = "text/csv")
+    public ResponseEntity<AccountTransfer.ImportResult> importCsv(InputStream body,
+            @RequestParam(defaultValue = "false") boolean skipExisting) throws IOException {
+        return ResponseEntity.ok(accountTransfer.importAccounts(TransferFormat.CSV, body, skipExisting));
+    }
+}
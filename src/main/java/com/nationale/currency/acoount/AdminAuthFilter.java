@@ -0,0 +1,58 @@
+package com.nationale.currency.acoount;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+/**
+ * Answers the requests to the endpoints that read or write the whole book with {@code 403 Forbidden} unless they
+ * carry {@code account.admin.token} in the {@code x-admin-token} header. Without a configured token every such request
+ * is rejected, so the endpoints are off until an operator opts in.
+ */
+@Component
+public class AdminAuthFilter extends OncePerRequestFilter {
+
+    private static final List<String> PATHS = List.of("/account/export", "/account/import", "/report");
+    private static final String ADMIN_TOKEN_HEADER = "x-admin-token";
+    private static final String BODY = "{\"message\":\"Valid x-admin-token required.\"}";
+
+    private final byte[] token;
+
+    public AdminAuthFilter(@Value("${account.admin.token:}") String token) {
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // Decoded, without ;params and with // collapsed, the same path the handler mapping matches on.
+        var path = UrlPathHelper.defaultInstance.getPathWithinApplication(request);
+        return PATHS.stream().noneMatch(protectedPath -> path.equals(protectedPath)
+                || path.startsWith(protectedPath + "/"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        var presented = request.getHeader(ADMIN_TOKEN_HEADER);
+        if (token.length > 0 && presented != null
+                && MessageDigest.isEqual(token, presented.getBytes(StandardCharsets.UTF_8))) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        response.setStatus(HttpStatus.FORBIDDEN.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write(BODY);
+    }
+}
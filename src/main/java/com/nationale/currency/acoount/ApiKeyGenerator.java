@@ -0,0 +1,84 @@
+package com.nationale.currency.acoount;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.security.DrbgParameters;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Random version 4 UUIDs as api keys. {@link UUID#randomUUID()} draws 16 bytes at a time from one shared
+ * {@link SecureRandom}, which reads the operating system source under a global lock, so every key pays a system call
+ * and concurrent registrations queue on it. This one spreads the threads over {@code stripes} DRBG instances, each
+ * seeded from the operating system, and draws {@value #KEYS_PER_BLOCK} keys' worth of bytes from one at a time.
+ * Api keys are credentials, so the generator stays a cryptographically strong one.
+ */
+public final class ApiKeyGenerator implements Supplier<String> {
+
+    private static final int KEYS_PER_BLOCK = 256;
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private final Stripe[] stripes;
+    private final int mask;
+
+    public ApiKeyGenerator(int stripes) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("stripes must be positive");
+        }
+        var size = Integer.highestOneBit(stripes) == stripes ? stripes : Integer.highestOneBit(stripes) << 1;
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.mask = size - 1;
+    }
+
+    @Override
+    public String get() {
+        return stripes[(int) (Thread.currentThread().threadId() & mask)].next().toString();
+    }
+
+    /**
+     * One DRBG and the block of bytes drawn from it; the bytes of a key are cleared once it was handed out.
+     */
+    private static final class Stripe {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final SecureRandom random;
+        private final byte[] block = new byte[KEYS_PER_BLOCK * 16];
+        private int position = block.length;
+
+        Stripe() {
+            try {
+                random = SecureRandom.getInstance("DRBG",
+                        DrbgParameters.instantiation(128, DrbgParameters.Capability.NONE, null));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("DRBG is not available", e);
+            }
+        }
+
+        UUID next() {
+            long msb;
+            long lsb;
+            lock.lock();
+            try {
+                if (position == block.length) {
+                    random.nextBytes(block);
+                    position = 0;
+                }
+                msb = (long) LONGS.get(block, position);
+                lsb = (long) LONGS.get(block, position + 8);
+                Arrays.fill(block, position, position + 16, (byte) 0);
+                position += 16;
+            } finally {
+                lock.unlock();
+            }
+            return new UUID(msb & ~0xF000L | 0x4000L, lsb & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L);
+        }
+    }
+}
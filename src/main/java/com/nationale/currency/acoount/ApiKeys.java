@@ -0,0 +1,82 @@
+package com.nationale.currency.acoount;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Api keys are random UUIDs handed out in their canonical lower-case form and stored as the 16-byte {@code UUID}
+ * type. Only the canonical form is accepted, so every key has exactly one spelling and the in-process structures
+ * keyed by the header value agree with the database.
+ */
+public final class ApiKeys {
+
+    private static final int LENGTH = 36;
+    private static final byte[] NIBBLES = new byte[128];
+
+    static {
+        Arrays.fill(NIBBLES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            NIBBLES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            NIBBLES['a' + i] = (byte) (10 + i);
+        }
+    }
+
+    private ApiKeys() {
+    }
+
+    /**
+     * Parses the key four digits at a time without throwing on malformed input: close to {@link UUID#fromString} for
+     * a valid key, and without the cost of an exception for a malformed one coming from the {@code x-api-key} header.
+     *
+     * @return the key, {@code null} when it is not a canonical lower-case UUID
+     */
+    public static UUID parse(String apiKey) {
+        if (apiKey == null || apiKey.length() != LENGTH || apiKey.charAt(8) != '-' || apiKey.charAt(13) != '-'
+                || apiKey.charAt(18) != '-' || apiKey.charAt(23) != '-') {
+            return null;
+        }
+        long msb1 = digits(apiKey, 0);
+        long msb2 = digits(apiKey, 4);
+        long msb3 = digits(apiKey, 9);
+        long msb4 = digits(apiKey, 14);
+        long lsb1 = digits(apiKey, 19);
+        long lsb2 = digits(apiKey, 24);
+        long lsb3 = digits(apiKey, 28);
+        long lsb4 = digits(apiKey, 32);
+        if ((msb1 | msb2 | msb3 | msb4 | lsb1 | lsb2 | lsb3 | lsb4) < 0) {
+            return null;
+        }
+        return new UUID(msb1 << 48 | msb2 << 32 | msb3 << 16 | msb4, lsb1 << 48 | lsb2 << 32 | lsb3 << 16 | lsb4);
+    }
+
+    /**
+     * @throws IllegalArgumentException when the key is not a canonical lower-case UUID
+     */
+    public static UUID valueOf(String apiKey) {
+        var parsed = parse(apiKey);
+        if (parsed == null) {
+            throw new IllegalArgumentException("Api key is not a canonical UUID.");
+        }
+        return parsed;
+    }
+
+    /**
+     * @return the four hex digits at {@code from} as 16 bits, negative when one of them is not a lower-case digit
+     */
+    private static int digits(String apiKey, int from) {
+        var c1 = apiKey.charAt(from);
+        var c2 = apiKey.charAt(from + 1);
+        var c3 = apiKey.charAt(from + 2);
+        var c4 = apiKey.charAt(from + 3);
+        if ((c1 | c2 | c3 | c4) >= NIBBLES.length) {
+            return -1;
+        }
+        int n1 = NIBBLES[c1];
+        int n2 = NIBBLES[c2];
+        int n3 = NIBBLES[c3];
+        int n4 = NIBBLES[c4];
+        return (n1 | n2 | n3 | n4) < 0 ? -1 : n1 << 12 | n2 << 8 | n3 << 4 | n4;
+    }
+}
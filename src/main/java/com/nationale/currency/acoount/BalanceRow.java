@@ -0,0 +1,12 @@
+package com.nationale.currency.acoount;
+
+import java.util.UUID;
+
+/**
+ * One row of the account joined with its sub-ledger; {@code currency} and {@code balance} are {@code null} for an
+ * account without balances.
+ */
+public record BalanceRow(UUID apiKey, String firstName, String lastName, Long version, String currency,
+        Long balance) {
+
+}
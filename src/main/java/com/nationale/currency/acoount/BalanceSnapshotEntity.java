@@ -0,0 +1,38 @@
+package com.nationale.currency.acoount;
+
+import java.util.UUID;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
+import jakarta.persistence.Embeddable;
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Balance of one currency of an account right after the journal entry {@code journalId}, so replaying the journal
+ * starts from the latest snapshot instead of the first entry.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Entity
+@Table(name = "account_balance_snapshot", indexes = @Index(name = "account_balance_snapshot_api_key_journal_id",
+        columnList = "api_key, journal_id"))
+public class BalanceSnapshotEntity {
+
+    @EmbeddedId
+    private Key key;
+    @Convert(converter = MoneyConverter.class)
+    @Column(nullable = false, precision = 19, scale = 4)
+    private Long balance;
+
+    @Embeddable
+    public record Key(UUID apiKey, Long journalId, @Column(length = 3) String currency) {
+
+    }
+}
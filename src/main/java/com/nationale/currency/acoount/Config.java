@@ -1,22 +1,35 @@
 package com.nationale.currency.acoount;
 
-import java.util.UUID;
+import java.net.http.HttpClient;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.function.Supplier;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
+@EnableScheduling
 @Configuration
 public class Config {
 
     @Bean
     Supplier<String> idGenerator() {
-        return () -> UUID.randomUUID().toString();
+        return new ApiKeyGenerator(Runtime.getRuntime().availableProcessors());
     }
 
     @Bean
-    RestTemplate restTemplate() {
-        return new RestTemplate();
+    HttpClient nbpHttpClient(@Value("${nbp.api.connect-timeout:PT2S}") Duration connectTimeout) {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(connectTimeout)
+                .build();
+    }
+
+    @Bean
+    Clock clock() {
+        return Clock.systemUTC();
     }
 }
@@ -0,0 +1,8 @@
+package com.nationale.currency.acoount;
+
+/**
+ * Balance of one currency of an account, in {@link Money} units.
+ */
+public record CurrencyBalance(String apiKey, String currency, long balance) {
+
+}
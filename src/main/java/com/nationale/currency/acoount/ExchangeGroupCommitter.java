@@ -0,0 +1,184 @@
+package com.nationale.currency.acoount;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import com.nationale.currency.acoount.exception.AccountNotFoundException;
+import com.nationale.currency.acoount.exception.ExchangeConflictException;
+import com.nationale.currency.acoount.exception.InsufficientFundsException;
+import com.nationale.currency.acoount.exception.InvalidExchangeException;
+import com.nationale.generated.model.Account;
+import com.nationale.generated.model.AccountExchange;
+import com.nationale.generated.model.AccountExchangeBatchItem;
+import com.nationale.generated.model.AccountExchangeBatchRequest;
+import com.nationale.generated.model.AccountExchangeBatchResult;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Group commit of single exchanges, on with {@code account.group-commit.enabled}. Exchanges are queued and a flusher
+ * thread applies them as one {@link AccountService#exchangeBatch batch}: the accounts are locked and read once, the
+ * exchanges checked against the balances in memory and written in one transaction, so one commit is paid per batch
+ * instead of per exchange. A batch is flushed once it holds {@code account.group-commit.max-batch-size} exchanges or
+ * {@code account.group-commit.max-delay} after its first exchange arrived. Callers wait until their batch committed.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "account.group-commit.enabled", havingValue = "true")
+public class ExchangeGroupCommitter implements DisposableBean {
+
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final AccountService accountService;
+    private final BlockingQueue<Pending> queue;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final DistributionSummary batchSize;
+    private final Timer latency;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    public ExchangeGroupCommitter(AccountService accountService, MeterRegistry meterRegistry,
+            @Value("${account.group-commit.max-batch-size:100}") int maxBatchSize,
+            @Value("${account.group-commit.max-delay:PT0.005S}") Duration maxDelay,
+            @Value("${account.group-commit.queue-capacity:10000}") int queueCapacity) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("account.group-commit.max-batch-size must be positive");
+        }
+        this.accountService = accountService;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.batchSize = DistributionSummary.builder("account.group-commit.batch.size")
+                .description("Exchanges committed together")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.latency = Timer.builder("account.group-commit.latency")
+                .description("Time from queuing an exchange until its batch committed")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("account.group-commit.queue", queue, BlockingQueue::size)
+                .description("Exchanges waiting for the next batch")
+                .register(meterRegistry);
+        this.flusher = Thread.ofPlatform().name("exchange-group-commit").daemon().start(this::run);
+        log.info("Starting exchange group commit with batches of at most {} exchanges or {}", maxBatchSize, maxDelay);
+    }
+
+    /**
+     * Queues the exchange and waits until the batch it was applied in committed.
+     *
+     * @return the account after the batch, which includes the later exchanges of the account in the same batch
+     */
+    public Account exchange(String apiKey, AccountExchange exchange) {
+        var pending = new Pending(AccountExchangeBatchItem.builder()
+                .apiKey(apiKey)
+                .from(exchange.getFrom())
+                .to(exchange.getTo())
+                .amount(exchange.getAmount())
+                .build(), new CompletableFuture<>());
+        var start = System.nanoTime();
+        if (!running || !queue.offer(pending)) {
+            throw new ExchangeConflictException("Too many exchanges are waiting for a commit, please retry.");
+        }
+        try {
+            return pending.result().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        } finally {
+            latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(5));
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result().completeExceptionally(
+                    new ExchangeConflictException("Exchange was not committed before shutdown, please retry."));
+        }
+    }
+
+    private void run() {
+        var batch = new ArrayList<Pending>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                var first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fill(batch, System.nanoTime() + maxDelayNanos);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void fill(List<Pending> batch, long deadline) throws InterruptedException {
+        while (batch.size() < maxBatchSize) {
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            var remaining = deadline - System.nanoTime();
+            if (batch.size() == maxBatchSize || remaining <= 0) {
+                return;
+            }
+            var next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        batchSize.record(batch.size());
+        try {
+            var results = accountService.exchangeBatch(AccountExchangeBatchRequest.builder()
+                    .items(batch.stream().map(Pending::item).toList())
+                    .build()).getResults();
+            for (int i = 0; i < batch.size(); i++) {
+                complete(batch.get(i).result(), results.get(i));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Group commit of {} exchanges has failed.", batch.size(), e);
+            batch.forEach(pending -> pending.result().completeExceptionally(e));
+        }
+    }
+
+    private static void complete(CompletableFuture<Account> result, AccountExchangeBatchResult batchResult) {
+        switch (batchResult.getStatus()) {
+            case EXCHANGED -> result.complete(batchResult.getAccount());
+            case INSUFFICIENT_FUNDS ->
+                    result.completeExceptionally(new InsufficientFundsException(batchResult.getMessage()));
+            case ACCOUNT_NOT_FOUND ->
+                    result.completeExceptionally(new AccountNotFoundException(batchResult.getMessage()));
+            case INVALID_EXCHANGE ->
+                    result.completeExceptionally(new InvalidExchangeException(batchResult.getMessage()));
+        }
+    }
+
+    private record Pending(AccountExchangeBatchItem item, CompletableFuture<Account> result) {
+
+    }
+}
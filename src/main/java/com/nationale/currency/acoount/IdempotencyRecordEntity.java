@@ -0,0 +1,43 @@
+package com.nationale.currency.acoount;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Response of a committed exchange sent with an {@code Idempotency-Key}, written in the exchange transaction and
+ * purged after {@code account.idempotency.retention}.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Entity
+@Table(name = "idempotency_record", indexes = @Index(name = "idempotency_record_created_at", columnList = "created_at"))
+public class IdempotencyRecordEntity {
+
+    @EmbeddedId
+    private Key key;
+    @Column(nullable = false, length = 64)
+    private String fingerprint;
+    /**
+     * The {@link com.nationale.generated.model.Account} response as JSON.
+     */
+    @Column(nullable = false, length = 8192)
+    private String response;
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @Embeddable
+    public record Key(UUID apiKey, String idempotencyKey) {
+
+    }
+}
@@ -0,0 +1,29 @@
+package com.nationale.currency.acoount;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface IdempotencyRepository extends Repository<IdempotencyRecordEntity, IdempotencyRecordEntity.Key> {
+
+    Optional<IdempotencyRecordEntity> findById(IdempotencyRecordEntity.Key key);
+
+    /**
+     * Inserts the record without reading it first; a concurrent insert of the same key fails on the primary key.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO idempotency_record (api_key, idempotency_key, fingerprint, response, created_at)
+            VALUES (:apiKey, :idempotencyKey, :fingerprint, :response, CURRENT_TIMESTAMP)""", nativeQuery = true)
+    int insert(UUID apiKey, String idempotencyKey, String fingerprint, String response);
+
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyRecordEntity r where r.createdAt < :before")
+    int deleteCreatedBefore(Instant before);
+}
@@ -0,0 +1,180 @@
+package com.nationale.currency.acoount;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nationale.currency.acoount.exception.IdempotencyKeyReusedException;
+import com.nationale.generated.model.Account;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Responses of exchanges sent with an {@code Idempotency-Key}. Recent responses are kept in memory for
+ * {@code account.idempotency.ttl}, bounded by {@code account.idempotency.maximum-size}; every response is also written
+ * to the {@code idempotency_record} table in the exchange transaction and kept there for
+ * {@code account.idempotency.retention}, so a retry is answered after eviction or by another instance too. Lookups are
+ * hash lookups without a global lock, and a retry arriving while the first request is still running waits for its
+ * result instead of exchanging again. Failed requests are not kept, their retries run again.
+ */
+@Slf4j
+@Component
+public class IdempotencyStore {
+
+    private static final String METRIC_REPLAYS = "account.idempotency.replays";
+
+    private final AsyncCache<IdempotencyRecordEntity.Key, StoredResponse> cache;
+    private final IdempotencyRepository idempotencyRepository;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+    private final Duration retention;
+    private final Counter memoryReplays;
+    private final Counter databaseReplays;
+
+    public IdempotencyStore(IdempotencyRepository idempotencyRepository, ObjectMapper objectMapper, Clock clock,
+            MeterRegistry meterRegistry,
+            @Value("${account.idempotency.maximum-size:100000}") long maximumSize,
+            @Value("${account.idempotency.ttl:PT10M}") Duration ttl,
+            @Value("${account.idempotency.retention:PT24H}") Duration retention) {
+        if (ttl.compareTo(retention) > 0) {
+            throw new IllegalArgumentException("account.idempotency.ttl must not be greater than "
+                    + "account.idempotency.retention");
+        }
+        this.idempotencyRepository = idempotencyRepository;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        this.retention = retention;
+        this.cache = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .executor(Runnable::run)
+                .recordStats()
+                .<IdempotencyRecordEntity.Key, StoredResponse>buildAsync(), "account.idempotency");
+        this.memoryReplays = Counter.builder(METRIC_REPLAYS).tag("source", "memory").register(meterRegistry);
+        this.databaseReplays = Counter.builder(METRIC_REPLAYS).tag("source", "database").register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code exchange} once per idempotency key and replays its response for retries. {@code exchange} must
+     * {@link #record} its response in its transaction.
+     *
+     * @throws IdempotencyKeyReusedException when the key was used for a different exchange
+     */
+    public Account execute(IdempotentRequest request, Supplier<Account> exchange) {
+        var loading = new CompletableFuture<StoredResponse>();
+        var owner = new boolean[1];
+        var future = cache.get(key(request), (key, executor) -> {
+            owner[0] = true;
+            return loading;
+        });
+        if (!owner[0]) {
+            memoryReplays.increment();
+            return replay(await(future), request);
+        }
+        try {
+            var stored = findRecord(request);
+            if (stored.isPresent()) {
+                databaseReplays.increment();
+                loading.complete(stored.get());
+                return replay(stored.get(), request);
+            }
+            var account = exchange.get();
+            loading.complete(new StoredResponse(request.fingerprint(), account));
+            return account;
+        } catch (RuntimeException e) {
+            loading.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Looks the key up in the table. Called again after the account is locked, so a retry that raced the first
+     * request on another instance sees its committed response.
+     *
+     * @return the stored response, empty when the key was not used yet
+     * @throws IdempotencyKeyReusedException when the key was used for a different exchange
+     */
+    public Optional<Account> findStored(IdempotentRequest request) {
+        return findRecord(request).map(stored -> replay(stored, request));
+    }
+
+    /**
+     * Writes the response in the current transaction.
+     */
+    public void record(IdempotentRequest request, Account account) {
+        idempotencyRepository.insert(ApiKeys.valueOf(request.apiKey()), request.idempotencyKey(), request.fingerprint(),
+                write(account));
+    }
+
+    @Scheduled(fixedDelayString = "${account.idempotency.purge-interval:PT10M}")
+    public void purge() {
+        var purged = idempotencyRepository.deleteCreatedBefore(clock.instant().minus(retention));
+        if (purged > 0) {
+            log.info("Purged {} idempotency records older than {}.", purged, retention);
+        }
+    }
+
+    private Optional<StoredResponse> findRecord(IdempotentRequest request) {
+        var key = key(request);
+        if (key.apiKey() == null) {
+            // A malformed api key matches no account, its exchange fails without a record.
+            return Optional.empty();
+        }
+        return idempotencyRepository.findById(key)
+                .map(record -> new StoredResponse(record.getFingerprint(), read(record.getResponse())));
+    }
+
+    private static Account replay(StoredResponse stored, IdempotentRequest request) {
+        if (!stored.fingerprint().equals(request.fingerprint())) {
+            throw new IdempotencyKeyReusedException("Idempotency-Key was already used for a different exchange.");
+        }
+        return stored.account();
+    }
+
+    private static IdempotencyRecordEntity.Key key(IdempotentRequest request) {
+        return new IdempotencyRecordEntity.Key(ApiKeys.parse(request.apiKey()), request.idempotencyKey());
+    }
+
+    private String write(Account account) {
+        try {
+            return objectMapper.writeValueAsString(account);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot write idempotent response", e);
+        }
+    }
+
+    private Account read(String response) {
+        try {
+            return objectMapper.readValue(response, Account.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot read idempotent response", e);
+        }
+    }
+
+    private static StoredResponse await(CompletableFuture<StoredResponse> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private record StoredResponse(String fingerprint, Account account) {
+
+    }
+}
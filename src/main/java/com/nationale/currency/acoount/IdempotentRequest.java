@@ -0,0 +1,13 @@
+package com.nationale.currency.acoount;
+
+/**
+ * Exchange sent with an {@code Idempotency-Key}. Keys are scoped to the account; the fingerprint identifies the
+ * exchange, so a key reused for a different exchange is told apart from a retry.
+ */
+public record IdempotentRequest(String apiKey, String idempotencyKey, String fingerprint) {
+
+    public static IdempotentRequest exchange(String apiKey, String idempotencyKey, String from, String to,
+            long amount) {
+        return new IdempotentRequest(apiKey, idempotencyKey, from + ">" + to + ":" + amount);
+    }
+}
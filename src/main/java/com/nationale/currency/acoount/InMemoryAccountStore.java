@@ -0,0 +1,667 @@
+package com.nationale.currency.acoount;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * {@link AccountStore} held in the heap, for deployments that serve {@code getStatus} and {@code exchange} without a
+ * database round trip for the balances. The journal and the idempotency records stay in the database.
+ * <p>
+ * Accounts live in an open-addressing table keyed by the two longs of the api key. The state of an account is one {@code long[]}: the
+ * bit set of the currencies it holds, its version and the balances of those currencies in bit order. A change builds
+ * a new array and publishes it, so readers take no lock and always see a whole account. Currencies get their bit on
+ * first use, at most {@value #MAX_CURRENCIES} of them.
+ * <p>
+ * Accounts are locked on {@code account.store.memory.stripes} striped locks held until the transaction ends, like
+ * row locks. The changes of a transaction are kept aside and written to the log in one record per account before
+ * the transaction commits, then published once it committed; when the commit fails after the records were written,
+ * the unchanged images are written after them. Every {@code account.store.memory.snapshot-interval} all accounts are
+ * written as a snapshot and the log before it is dropped, see {@link AccountStoreLog}. Without
+ * {@code account.store.memory.fsync} the log is left to the operating system, so a crash of the machine may lose the
+ * last changes, a crash of the process does not.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "account.store.type", havingValue = "memory")
+public class InMemoryAccountStore implements AccountStore, DisposableBean {
+
+    static final int MAX_CURRENCIES = Long.SIZE;
+    private static final int HELD = 0;
+    private static final int VERSION = 1;
+    private static final int BALANCES = 2;
+    private static final VarHandle ROWS = MethodHandles.arrayElementVarHandle(long[][].class);
+
+    private final AccountStoreLog accountLog;
+    private final ReentrantLock[] stripes;
+    private final int stripeMask;
+    private final long lockTimeoutNanos;
+    private final Map<String, Integer> columns = new ConcurrentHashMap<>();
+    private final String[] currencies = new String[MAX_CURRENCIES];
+    private final AtomicInteger nextColumn = new AtomicInteger();
+    private final Set<String> reserved = ConcurrentHashMap.newKeySet();
+    private final ReentrantReadWriteLock tableLock = new ReentrantReadWriteLock();
+    private final ReentrantReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+    private final ReentrantLock checkpointing = new ReentrantLock();
+    private final Timer checkpoints;
+    private volatile Table table;
+
+    public InMemoryAccountStore(MeterRegistry meterRegistry,
+            @Value("${account.store.memory.directory:./data/accounts}") String directory,
+            @Value("${account.store.memory.initial-capacity:1024}") int initialCapacity,
+            @Value("${account.store.memory.stripes:1024}") int stripes,
+            @Value("${account.store.memory.lock-timeout:PT5S}") Duration lockTimeout,
+            @Value("${account.store.memory.fsync:false}") boolean fsync) {
+        if (initialCapacity < 1 || stripes < 1) {
+            throw new IllegalArgumentException(
+                    "account.store.memory.initial-capacity and account.store.memory.stripes must be positive");
+        }
+        var size = Integer.highestOneBit(stripes) == stripes ? stripes : Integer.highestOneBit(stripes) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.stripeMask = size - 1;
+        this.lockTimeoutNanos = lockTimeout.toNanos();
+        this.accountLog = new AccountStoreLog(Path.of(directory), fsync);
+        this.table = recover(initialCapacity);
+        this.checkpoints = Timer.builder("account.store.checkpoint")
+                .description("Time to write a snapshot of the in-memory accounts")
+                .register(meterRegistry);
+        Gauge.builder("account.store.accounts", this, store -> store.table.size)
+                .description("Accounts held by the in-memory store")
+                .register(meterRegistry);
+        log.info("In-memory account store in {} with {} accounts, {} stripes, fsync {}", directory, table.size, size,
+                fsync);
+    }
+
+    @Override
+    public void insert(List<AccountBalance> accounts) {
+        change(changes -> {
+            for (var account : accounts) {
+                ApiKeys.valueOf(account.apiKey());
+                // Reserved before the table is checked: a concurrent insert of the key publishes it before its
+                // reservation is released.
+                if (changes.accounts.containsKey(account.apiKey()) || !reserved.add(account.apiKey())) {
+                    throw new DuplicateKeyException("Account " + account.apiKey() + " already exists.");
+                }
+                changes.reserved.add(account.apiKey());
+                if (table.find(account.apiKey()) >= 0) {
+                    throw new DuplicateKeyException("Account " + account.apiKey() + " already exists.");
+                }
+                var row = new long[BALANCES];
+                row[VERSION] = account.version();
+                for (var balance : account.balances().entrySet()) {
+                    row = put(row, column(balance.getKey(), true), balance.getValue());
+                }
+                changes.accounts.put(account.apiKey(),
+                        new Change(account.firstName(), account.lastName(), row, true));
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public boolean exists(String apiKey) {
+        return pending(apiKey) != null || table.find(apiKey) >= 0;
+    }
+
+    @Override
+    public Optional<AccountBalance> findBalance(String apiKey) {
+        var change = pending(apiKey);
+        if (change != null) {
+            return Optional.of(balance(apiKey, change.firstName, change.lastName, change.row));
+        }
+        var table = this.table;
+        var slot = table.find(apiKey);
+        if (slot < 0) {
+            return Optional.empty();
+        }
+        var row = table.row(slot);
+        return Optional.of(balance(apiKey, table.firstNames[slot], table.lastNames[slot], row));
+    }
+
+    @Override
+    public List<AccountBalance> findBalances(List<String> apiKeys) {
+        var balances = new ArrayList<AccountBalance>(apiKeys.size());
+        for (var apiKey : apiKeys) {
+            findBalance(apiKey).ifPresent(balances::add);
+        }
+        return balances;
+    }
+
+    @Override
+    public boolean lock(String apiKey) {
+        return change(changes -> {
+            if (table.find(apiKey) < 0 && !changes.accounts.containsKey(apiKey)) {
+                return false;
+            }
+            changes.lock(stripes[stripe(apiKey)]);
+            changes.edit(apiKey).row[VERSION]++;
+            return true;
+        });
+    }
+
+    @Override
+    public void lockAll(List<String> apiKeys) {
+        change(changes -> {
+            // Stripes are taken in ascending order, so overlapping calls cannot deadlock whatever the api keys.
+            apiKeys.stream().mapToInt(this::stripe).distinct().sorted()
+                    .forEach(stripe -> changes.lock(stripes[stripe]));
+            for (var apiKey : apiKeys) {
+                if (table.find(apiKey) >= 0 || changes.accounts.containsKey(apiKey)) {
+                    changes.edit(apiKey).row[VERSION]++;
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public boolean debit(String apiKey, String currency, long amount) {
+        return change(changes -> {
+            var change = changes.edit(apiKey);
+            var column = column(currency, false);
+            if (column < 0 || !holds(change.row, column) || balance(change.row, column) < amount) {
+                return false;
+            }
+            change.row = put(change.row, column, balance(change.row, column) - amount);
+            return true;
+        });
+    }
+
+    @Override
+    public void credit(String apiKey, String currency, long amount) {
+        change(changes -> {
+            var change = changes.edit(apiKey);
+            var column = column(currency, true);
+            var balance = holds(change.row, column) ? balance(change.row, column) : 0L;
+            change.row = put(change.row, column, Math.addExact(balance, amount));
+            return null;
+        });
+    }
+
+    @Override
+    public void saveBalances(List<CurrencyBalance> balances) {
+        change(changes -> {
+            for (var balance : balances) {
+                var change = changes.edit(balance.apiKey());
+                change.row = put(change.row, column(balance.currency(), true), balance.balance());
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Walks the table without locks, so accounts are not read at one point in time: each one is seen whole as it was
+     * committed when its slot was read, and changes committed during the walk may or may not be seen.
+     */
+    @Override
+    public void forEachBalance(BalanceHandler handler) {
+        var table = this.table;
+        for (int slot = 0; slot < table.rows.length; slot++) {
+            var row = table.row(slot);
+            if (row == null) {
+                continue;
+            }
+            var msb = table.mostSignificantBits[slot];
+            var lsb = table.leastSignificantBits[slot];
+            var position = BALANCES;
+            for (long held = row[HELD]; held != 0; held &= held - 1) {
+                handler.balance(msb, lsb, currencies[Long.numberOfTrailingZeros(held)], row[position++]);
+            }
+        }
+    }
+
+    /**
+     * Walks the table without locks, like {@link #forEachBalance}.
+     */
+    @Override
+    public void forEachAccount(Consumer<AccountBalance> consumer) {
+        var table = this.table;
+        for (int slot = 0; slot < table.rows.length; slot++) {
+            var row = table.row(slot);
+            if (row != null) {
+                consumer.accept(balance(table.key(slot).toString(), table.firstNames[slot], table.lastNames[slot],
+                        row));
+            }
+        }
+    }
+
+    /**
+     * Writes all accounts as a snapshot and drops the log it covers. Transactions between writing their log records
+     * and publishing their changes are waited for, so every change missing from the snapshot is in the new segment.
+     */
+    @Scheduled(fixedDelayString = "${account.store.memory.snapshot-interval:PT5M}",
+            initialDelayString = "${account.store.memory.snapshot-interval:PT5M}")
+    public void checkpoint() {
+        checkpointing.lock();
+        try {
+            checkpoints.record(() -> {
+                long first;
+                checkpointLock.writeLock().lock();
+                try {
+                    first = accountLog.rotate();
+                } finally {
+                    checkpointLock.writeLock().unlock();
+                }
+                var table = this.table;
+                accountLog.writeSnapshot(first, IntStream.range(0, table.rows.length)
+                        .filter(slot -> table.row(slot) != null)
+                        .mapToObj(slot -> entry(table.key(slot).toString(), table.firstNames[slot], table.lastNames[slot],
+                                table.row(slot))));
+            });
+        } finally {
+            checkpointing.unlock();
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        checkpoint();
+        accountLog.close();
+    }
+
+    int stripe(String apiKey) {
+        var hash = apiKey.hashCode();
+        return (hash ^ (hash >>> 16)) & stripeMask;
+    }
+
+    private Table recover(int initialCapacity) {
+        var recovered = new LinkedHashMap<String, AccountStoreLog.Entry>();
+        accountLog.recover(entry -> {
+            if (entry.removed()) {
+                recovered.remove(entry.apiKey());
+            } else {
+                recovered.put(entry.apiKey(), entry);
+            }
+        });
+        var recovering = new Table(capacity(Math.max(initialCapacity, recovered.size())));
+        for (var entry : recovered.values()) {
+            var row = new long[BALANCES];
+            row[VERSION] = entry.version();
+            for (int i = 0; i < entry.currencies().length; i++) {
+                row = put(row, column(entry.currencies()[i], true), entry.balances()[i]);
+            }
+            recovering.add(entry.apiKey(), entry.firstName(), entry.lastName(), row);
+        }
+        return recovering;
+    }
+
+    /**
+     * Runs {@code action} on the changes of the current transaction, or outside of a transaction on changes committed
+     * as soon as it returns.
+     */
+    private <T> T change(Function<Changes, T> action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            var changes = (Changes) TransactionSynchronizationManager.getResource(this);
+            if (changes == null) {
+                changes = new Changes();
+                TransactionSynchronizationManager.bindResource(this, changes);
+                TransactionSynchronizationManager.registerSynchronization(changes);
+            }
+            return action.apply(changes);
+        }
+        var changes = new Changes();
+        var status = TransactionSynchronization.STATUS_ROLLED_BACK;
+        try {
+            var result = action.apply(changes);
+            changes.beforeCommit(false);
+            changes.afterCommit();
+            status = TransactionSynchronization.STATUS_COMMITTED;
+            return result;
+        } finally {
+            changes.complete(status);
+        }
+    }
+
+    private Change pending(String apiKey) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        var changes = (Changes) TransactionSynchronizationManager.getResource(this);
+        return changes == null ? null : changes.accounts.get(apiKey);
+    }
+
+    /**
+     * @return bit of the currency, -1 for a currency no account held yet unless {@code open}
+     */
+    private int column(String currency, boolean open) {
+        var column = columns.get(currency);
+        if (column != null) {
+            return column;
+        }
+        if (!open) {
+            return -1;
+        }
+        return columns.computeIfAbsent(currency, code -> {
+            var next = nextColumn.getAndIncrement();
+            if (next >= MAX_CURRENCIES) {
+                throw new IllegalStateException("In-memory account store holds at most " + MAX_CURRENCIES
+                        + " currencies.");
+            }
+            currencies[next] = code;
+            return next;
+        });
+    }
+
+    private AccountBalance balance(String apiKey, String firstName, String lastName, long[] row) {
+        var balances = new HashMap<String, Long>(Long.bitCount(row[HELD]) * 2);
+        for (long held = row[HELD]; held != 0; held &= held - 1) {
+            var column = Long.numberOfTrailingZeros(held);
+            balances.put(currencies[column], balance(row, column));
+        }
+        return new AccountBalance(apiKey, firstName, lastName, balances, row[VERSION]);
+    }
+
+    private AccountStoreLog.Entry entry(String apiKey, String firstName, String lastName, long[] row) {
+        var held = Long.bitCount(row[HELD]);
+        var codes = new String[held];
+        var balances = new long[held];
+        var i = 0;
+        for (long bits = row[HELD]; bits != 0; bits &= bits - 1, i++) {
+            codes[i] = currencies[Long.numberOfTrailingZeros(bits)];
+            balances[i] = row[BALANCES + i];
+        }
+        return new AccountStoreLog.Entry(apiKey, firstName, lastName, row[VERSION], codes, balances);
+    }
+
+    private static boolean holds(long[] row, int column) {
+        return (row[HELD] & (1L << column)) != 0;
+    }
+
+    private static long balance(long[] row, int column) {
+        return row[position(row[HELD], column)];
+    }
+
+    /**
+     * Sets the balance of the currency in place, or in a copy one element longer when the row did not hold it.
+     */
+    private static long[] put(long[] row, int column, long balance) {
+        var position = position(row[HELD], column);
+        if (holds(row, column)) {
+            row[position] = balance;
+            return row;
+        }
+        var opened = new long[row.length + 1];
+        System.arraycopy(row, 0, opened, 0, position);
+        opened[position] = balance;
+        System.arraycopy(row, position, opened, position + 1, row.length - position);
+        opened[HELD] |= 1L << column;
+        return opened;
+    }
+
+    private static int position(long held, int column) {
+        return BALANCES + Long.bitCount(held & ((1L << column) - 1));
+    }
+
+    private static int capacity(int accounts) {
+        var capacity = Integer.highestOneBit(Math.max(accounts, 1) * 2 - 1) << 1;
+        return Math.max(capacity, 2);
+    }
+
+    /**
+     * Open-addressing table with linear probing, at most half full, keyed by the two longs of the api key instead of
+     * its 36-character string. Rows are published with release semantics and a slot is taken once its row is set, so
+     * a reader that sees a row sees the key and names written before it. Slots are only added under the write lock of
+     * {@link #tableLock}; a full table is copied into a twice larger one, which readers of the old one never notice.
+     */
+    private static final class Table {
+
+        private final long[] mostSignificantBits;
+        private final long[] leastSignificantBits;
+        private final String[] firstNames;
+        private final String[] lastNames;
+        private final long[][] rows;
+        private final int mask;
+        private int size;
+
+        Table(int capacity) {
+            mostSignificantBits = new long[capacity];
+            leastSignificantBits = new long[capacity];
+            firstNames = new String[capacity];
+            lastNames = new String[capacity];
+            rows = new long[capacity][];
+            mask = capacity - 1;
+        }
+
+        /**
+         * @return slot of the account, -1 when it does not exist or the api key is malformed
+         */
+        int find(String apiKey) {
+            var key = ApiKeys.parse(apiKey);
+            return key == null ? -1 : find(key.getMostSignificantBits(), key.getLeastSignificantBits());
+        }
+
+        private int find(long msb, long lsb) {
+            var slot = spread(msb, lsb) & mask;
+            while (row(slot) != null) {
+                if (mostSignificantBits[slot] == msb && leastSignificantBits[slot] == lsb) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        UUID key(int slot) {
+            return new UUID(mostSignificantBits[slot], leastSignificantBits[slot]);
+        }
+
+        long[] row(int slot) {
+            return (long[]) ROWS.getAcquire(rows, slot);
+        }
+
+        void publish(int slot, long[] row) {
+            ROWS.setRelease(rows, slot, row);
+        }
+
+        boolean full() {
+            return (size + 1) * 2 > rows.length;
+        }
+
+        void add(String apiKey, String firstName, String lastName, long[] row) {
+            var key = ApiKeys.valueOf(apiKey);
+            add(key.getMostSignificantBits(), key.getLeastSignificantBits(), firstName, lastName, row);
+        }
+
+        private void add(long msb, long lsb, String firstName, String lastName, long[] row) {
+            var slot = spread(msb, lsb) & mask;
+            while (rows[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            mostSignificantBits[slot] = msb;
+            leastSignificantBits[slot] = lsb;
+            firstNames[slot] = firstName;
+            lastNames[slot] = lastName;
+            ROWS.setRelease(rows, slot, row);
+            size++;
+        }
+
+        Table grow() {
+            var grown = new Table(rows.length * 2);
+            for (int slot = 0; slot < rows.length; slot++) {
+                if (rows[slot] != null) {
+                    grown.add(mostSignificantBits[slot], leastSignificantBits[slot], firstNames[slot],
+                            lastNames[slot], rows[slot]);
+                }
+            }
+            return grown;
+        }
+
+        private static int spread(long msb, long lsb) {
+            var hash = msb ^ lsb;
+            var folded = (int) (hash ^ (hash >>> 32));
+            return folded ^ (folded >>> 16);
+        }
+    }
+
+    /**
+     * Account changed by a transaction, with the row it will publish.
+     */
+    private static final class Change {
+
+        private final String firstName;
+        private final String lastName;
+        private final boolean created;
+        private long[] row;
+
+        Change(String firstName, String lastName, long[] row, boolean created) {
+            this.firstName = firstName;
+            this.lastName = lastName;
+            this.row = row;
+            this.created = created;
+        }
+    }
+
+    /**
+     * Changes and locks of one transaction.
+     */
+    private final class Changes implements TransactionSynchronization {
+
+        private final Map<String, Change> accounts = new LinkedHashMap<>();
+        private final List<ReentrantLock> held = new ArrayList<>();
+        private final List<String> reserved = new ArrayList<>();
+        private boolean logged;
+
+        void lock(ReentrantLock stripe) {
+            try {
+                if (!stripe.tryLock(lockTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                    throw new CannotAcquireLockException("Timeout trying to lock account");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CannotAcquireLockException("Interrupted while locking account", e);
+            }
+            held.add(stripe);
+        }
+
+        /**
+         * @return the change of a locked account, started from its committed state
+         */
+        Change edit(String apiKey) {
+            var change = accounts.get(apiKey);
+            if (change != null) {
+                return change;
+            }
+            if (!stripes[stripe(apiKey)].isHeldByCurrentThread()) {
+                throw new IllegalStateException("Account must be locked before its balances change.");
+            }
+            var table = InMemoryAccountStore.this.table;
+            var slot = table.find(apiKey);
+            if (slot < 0) {
+                throw new IllegalStateException("Account " + apiKey + " does not exist.");
+            }
+            change = new Change(table.firstNames[slot], table.lastNames[slot], table.row(slot).clone(), false);
+            accounts.put(apiKey, change);
+            return change;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            if (accounts.isEmpty()) {
+                return;
+            }
+            var entries = new ArrayList<AccountStoreLog.Entry>(accounts.size());
+            accounts.forEach((apiKey, change) -> entries.add(entry(apiKey, change.firstName, change.lastName,
+                    change.row)));
+            checkpointLock.readLock().lock();
+            logged = true;
+            accountLog.append(entries);
+        }
+
+        @Override
+        public void afterCommit() {
+            if (accounts.isEmpty()) {
+                return;
+            }
+            var created = accounts.values().stream().anyMatch(change -> change.created);
+            var lock = created ? tableLock.writeLock() : tableLock.readLock();
+            lock.lock();
+            try {
+                accounts.forEach((apiKey, change) -> {
+                    if (change.created) {
+                        if (table.full()) {
+                            table = table.grow();
+                        }
+                        table.add(apiKey, change.firstName, change.lastName, change.row);
+                    } else {
+                        var current = table;
+                        current.publish(current.find(apiKey), change.row);
+                    }
+                });
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(InMemoryAccountStore.this);
+            complete(status);
+        }
+
+        /**
+         * Writes the committed images after the records of a transaction that did not commit, then releases its locks.
+         */
+        void complete(int status) {
+            try {
+                if (logged && status != STATUS_COMMITTED) {
+                    accountLog.append(accounts.entrySet().stream()
+                            .map(account -> account.getValue().created
+                                    ? AccountStoreLog.Entry.removed(account.getKey())
+                                    : committed(account.getKey()))
+                            .toList());
+                }
+            } catch (RuntimeException e) {
+                log.error("Cannot revert the account log after a failed commit.", e);
+            } finally {
+                if (logged) {
+                    checkpointLock.readLock().unlock();
+                }
+                for (int i = held.size() - 1; i >= 0; i--) {
+                    held.get(i).unlock();
+                }
+                reserved.forEach(InMemoryAccountStore.this.reserved::remove);
+            }
+        }
+
+        private AccountStoreLog.Entry committed(String apiKey) {
+            var table = InMemoryAccountStore.this.table;
+            var slot = table.find(apiKey);
+            return entry(apiKey, table.firstNames[slot], table.lastNames[slot], table.row(slot));
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.nationale.currency.acoount;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes of the journal, as JDBC batches, and balance reconstruction from it.
+ */
+public interface JournalBatchRepository {
+
+    /**
+     * Appends the entries in order as one JDBC batch, ids taken from the journal sequence by the database.
+     */
+    void append(List<JournalEntry> entries);
+
+    /**
+     * Snapshots the given balances of the accounts whose version is a multiple of
+     * {@code account.journal.snapshot-every}, so every account gets a snapshot every that many changes. The accounts
+     * must be locked and their journal entries appended; the balances are taken as passed, whichever
+     * {@link AccountStore} holds them.
+     */
+    void snapshot(Collection<AccountBalance> accounts);
+
+    /**
+     * Rebuilds the balances of an account from its latest snapshot and the journal entries after it.
+     *
+     * @return balances by currency code in {@link Money} units, empty when the account has no journal or the api key
+     * is malformed
+     */
+    Map<String, Long> replayBalances(String apiKey);
+}
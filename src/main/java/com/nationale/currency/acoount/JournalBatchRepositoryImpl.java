@@ -0,0 +1,94 @@
+package com.nationale.currency.acoount;
+
+import java.sql.Date;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+class JournalBatchRepositoryImpl implements JournalBatchRepository {
+
+    private static final String APPEND = """
+            INSERT INTO exchange_journal (id, api_key, type, from_currency, from_amount, from_rate, to_currency,
+                to_amount, to_rate, effective_date, created_at)
+            VALUES (NEXT VALUE FOR exchange_journal_seq, ?, ?, ?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)""";
+    private static final String SNAPSHOT = """
+            INSERT INTO account_balance_snapshot (api_key, journal_id, currency, balance)
+            SELECT ?, MAX(id), ?, ?
+            FROM exchange_journal
+            WHERE api_key = ?
+            HAVING MAX(id) IS NOT NULL""";
+    private static final String LATEST_SNAPSHOT = """
+            SELECT journal_id, currency, balance
+            FROM account_balance_snapshot
+            WHERE api_key = ? AND journal_id = (SELECT MAX(journal_id) FROM account_balance_snapshot WHERE api_key = ?)""";
+    private static final String ENTRIES_AFTER = """
+            SELECT from_currency, from_amount, to_currency, to_amount
+            FROM exchange_journal
+            WHERE api_key = ? AND id > ?
+            ORDER BY id""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int snapshotEvery;
+
+    JournalBatchRepositoryImpl(JdbcTemplate jdbcTemplate,
+            @Value("${account.journal.snapshot-every:100}") int snapshotEvery) {
+        if (snapshotEvery < 1) {
+            throw new IllegalArgumentException("account.journal.snapshot-every must be positive");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.snapshotEvery = snapshotEvery;
+    }
+
+    @Override
+    public void append(List<JournalEntry> entries) {
+        jdbcTemplate.batchUpdate(APPEND, entries.stream()
+                .map(entry -> new Object[]{ApiKeys.valueOf(entry.apiKey()), entry.type().name(), entry.fromCurrency(),
+                        entry.fromAmount() == null ? null : Money.toBigDecimal(entry.fromAmount()), entry.fromRate(),
+                        entry.toCurrency(), Money.toBigDecimal(entry.toAmount()), entry.toRate(),
+                        entry.effectiveDate() == null ? null : Date.valueOf(entry.effectiveDate())})
+                .toList());
+    }
+
+    @Override
+    public void snapshot(Collection<AccountBalance> accounts) {
+        var due = accounts.stream()
+                .filter(account -> account.version() > 0 && account.version() % snapshotEvery == 0)
+                .flatMap(account -> {
+                    var apiKey = ApiKeys.valueOf(account.apiKey());
+                    return account.balances().entrySet().stream()
+                            .map(balance -> new Object[]{apiKey, balance.getKey(),
+                                    Money.toBigDecimal(balance.getValue()), apiKey});
+                })
+                .toList();
+        if (!due.isEmpty()) {
+            jdbcTemplate.batchUpdate(SNAPSHOT, due);
+        }
+    }
+
+    @Override
+    public Map<String, Long> replayBalances(String apiKey) {
+        var balances = new TreeMap<String, Long>();
+        var key = ApiKeys.parse(apiKey);
+        if (key == null) {
+            return balances;
+        }
+        var journalId = new long[1];
+        jdbcTemplate.query(LATEST_SNAPSHOT, rs -> {
+            journalId[0] = rs.getLong("journal_id");
+            balances.put(rs.getString("currency"), Money.fromBigDecimal(rs.getBigDecimal("balance")));
+        }, key, key);
+        jdbcTemplate.query(ENTRIES_AFTER, rs -> {
+            var from = rs.getString("from_currency");
+            if (from != null) {
+                balances.merge(from, -Money.fromBigDecimal(rs.getBigDecimal("from_amount")), Long::sum);
+            }
+            balances.merge(rs.getString("to_currency"), Money.fromBigDecimal(rs.getBigDecimal("to_amount")),
+                    Long::sum);
+        }, key, journalId[0]);
+        return balances;
+    }
+}
@@ -0,0 +1,37 @@
+package com.nationale.currency.acoount;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import com.nationale.currency.nbp.RateTable;
+
+/**
+ * Journal entry to append, amounts in {@link Money} units and rates in PLN, see {@link JournalEntryEntity}.
+ */
+public record JournalEntry(String apiKey, JournalEntryType type, String fromCurrency, Long fromAmount,
+                           BigDecimal fromRate, String toCurrency, long toAmount, BigDecimal toRate,
+                           LocalDate effectiveDate) {
+
+    public static JournalEntry opening(String apiKey, long amount) {
+        return new JournalEntry(apiKey, JournalEntryType.OPENING, null, null, null, RateTable.PLN, amount,
+                BigDecimal.ONE, null);
+    }
+
+    /**
+     * Opening balance in any currency, priced at {@code rates}; in PLN it is priced at 1 with no table, like
+     * {@link #opening(String, long)}.
+     */
+    public static JournalEntry opening(String apiKey, String currency, long amount, RateTable rates) {
+        if (RateTable.PLN.equals(currency)) {
+            return opening(apiKey, amount);
+        }
+        return new JournalEntry(apiKey, JournalEntryType.OPENING, null, null, null, currency, amount,
+                rates.rate(currency).toBigDecimal(), rates.effectiveDate());
+    }
+
+    public static JournalEntry exchange(String apiKey, String from, long amount, String to, long converted,
+            RateTable rates) {
+        return new JournalEntry(apiKey, JournalEntryType.EXCHANGE, from, amount, rates.rate(from).toBigDecimal(), to,
+                converted, rates.rate(to).toBigDecimal(), rates.effectiveDate());
+    }
+}
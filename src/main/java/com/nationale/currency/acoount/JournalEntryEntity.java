@@ -0,0 +1,72 @@
+package com.nationale.currency.acoount;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Append-only record of every change of an account's balances, with the NBP rates it used. Rows are only ever
+ * inserted, see {@link JournalBatchRepository#append}; ids grow in the order the changes of one account were applied.
+ */
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Entity
+@Table(name = "exchange_journal", indexes = @Index(name = "exchange_journal_api_key_id", columnList = "api_key, id"))
+public class JournalEntryEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "exchange_journal_seq")
+    @SequenceGenerator(name = "exchange_journal_seq", sequenceName = "exchange_journal_seq", allocationSize = 1)
+    private Long id;
+    @Column(nullable = false)
+    private UUID apiKey;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private JournalEntryType type;
+    @Column(length = 3)
+    private String fromCurrency;
+    @Convert(converter = MoneyConverter.class)
+    @Column(precision = 19, scale = 4)
+    private Long fromAmount;
+    /**
+     * PLN price of one unit of {@link #fromCurrency}.
+     */
+    @Column(precision = 19, scale = 8)
+    private BigDecimal fromRate;
+    @Column(nullable = false, length = 3)
+    private String toCurrency;
+    @Convert(converter = MoneyConverter.class)
+    @Column(nullable = false, precision = 19, scale = 4)
+    private Long toAmount;
+    /**
+     * PLN price of one unit of {@link #toCurrency}, {@code null} for openings carried over from before the journal in
+     * other currencies than PLN, see {@code db/journal-opening.sql}.
+     */
+    @Column(precision = 19, scale = 8)
+    private BigDecimal toRate;
+    /**
+     * {@code effectiveDate} of the NBP table the rates come from, {@code null} for opening balances in PLN.
+     */
+    private LocalDate effectiveDate;
+    @Column(nullable = false)
+    private Instant createdAt;
+}
@@ -0,0 +1,12 @@
+package com.nationale.currency.acoount;
+
+public enum JournalEntryType {
+    /**
+     * Opening balance of a registered account, credited in PLN.
+     */
+    OPENING,
+    /**
+     * Amount taken out of one currency and the converted amount added to another.
+     */
+    EXCHANGE
+}
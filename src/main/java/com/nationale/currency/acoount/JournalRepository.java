@@ -0,0 +1,16 @@
+package com.nationale.currency.acoount;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.repository.Repository;
+
+public interface JournalRepository extends Repository<JournalEntryEntity, Long>, JournalBatchRepository {
+
+    /**
+     * Keyset page of the journal of one account: entries after {@code after}, oldest first, read from the
+     * {@code (api_key, id)} index however deep the page is.
+     */
+    List<JournalEntryEntity> findByApiKeyAndIdGreaterThanOrderByIdAsc(UUID apiKey, long after, Limit limit);
+}
@@ -0,0 +1,94 @@
+package com.nationale.currency.acoount;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@link AccountStore} on the {@code account_entity} and {@code account_balance} tables. Locks are row locks of the
+ * database, held until the transaction ends. Api keys are bound as {@code UUID}s; a malformed one matches no account.
+ */
+@Component
+@ConditionalOnProperty(name = "account.store.type", havingValue = "jpa", matchIfMissing = true)
+@RequiredArgsConstructor
+public class JpaAccountStore implements AccountStore {
+
+    private static final int BALANCE_LOOKUP_CHUNK = 1000;
+    private final AccountRepository accountRepository;
+
+    @Override
+    public void insert(List<AccountBalance> accounts) {
+        accountRepository.persistAll(accounts.stream()
+                .map(account -> AccountEntity.builder()
+                        .apiKey(ApiKeys.valueOf(account.apiKey()))
+                        .firstName(account.firstName())
+                        .lastName(account.lastName())
+                        .balances(new HashMap<>(account.balances()))
+                        .build())
+                .toList());
+    }
+
+    @Override
+    public boolean exists(String apiKey) {
+        var key = ApiKeys.parse(apiKey);
+        return key != null && accountRepository.existsById(key);
+    }
+
+    @Override
+    public Optional<AccountBalance> findBalance(String apiKey) {
+        return accountRepository.findBalanceByApiKey(apiKey);
+    }
+
+    @Override
+    public List<AccountBalance> findBalances(List<String> apiKeys) {
+        var balances = new ArrayList<AccountBalance>(apiKeys.size());
+        for (int from = 0; from < apiKeys.size(); from += BALANCE_LOOKUP_CHUNK) {
+            var chunk = apiKeys.subList(from, Math.min(from + BALANCE_LOOKUP_CHUNK, apiKeys.size()));
+            balances.addAll(accountRepository.findBalancesByApiKeyIn(chunk));
+        }
+        return balances;
+    }
+
+    @Override
+    public boolean lock(String apiKey) {
+        var key = ApiKeys.parse(apiKey);
+        return key != null && accountRepository.lockAccount(key) == 1;
+    }
+
+    @Override
+    public void lockAll(List<String> apiKeys) {
+        accountRepository.lockAccounts(apiKeys.stream().map(ApiKeys::parse).filter(Objects::nonNull).toList());
+    }
+
+    @Override
+    public boolean debit(String apiKey, String currency, long amount) {
+        return accountRepository.debit(ApiKeys.valueOf(apiKey), currency, Money.toBigDecimal(amount)) == 1;
+    }
+
+    @Override
+    public void credit(String apiKey, String currency, long amount) {
+        accountRepository.credit(ApiKeys.valueOf(apiKey), currency, Money.toBigDecimal(amount));
+    }
+
+    @Override
+    public void saveBalances(List<CurrencyBalance> balances) {
+        accountRepository.saveBalances(balances);
+    }
+
+    @Override
+    public void forEachBalance(BalanceHandler handler) {
+        accountRepository.forEachBalance(handler);
+    }
+
+    @Override
+    public void forEachAccount(Consumer<AccountBalance> consumer) {
+        accountRepository.forEachAccount(consumer);
+    }
+}
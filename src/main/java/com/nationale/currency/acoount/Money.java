@@ -0,0 +1,130 @@
+package com.nationale.currency.acoount;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point arithmetic on amounts kept as {@code long} units of 0.0001, the scale of the balance columns.
+ * All rounding is HALF_UP, the same as the {@link BigDecimal} code it replaces, but the common paths do not allocate.
+ * Results that would overflow a {@code long} fall back to {@link BigDecimal}.
+ */
+public final class Money {
+
+    public static final int SCALE = 4;
+    private static final long ONE = 10_000L;
+    private static final double ONE_DOUBLE = 10_000.0d;
+    private static final double INTEGRAL_TOLERANCE = 1.0e-6d;
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L,
+            100_000_000L, 1_000_000_000L, 10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L};
+
+    private Money() {
+    }
+
+    /**
+     * @throws ArithmeticException when the amount is not finite or does not fit a {@code long} at {@link #SCALE}
+     */
+    public static long fromDouble(double amount) {
+        if (!Double.isFinite(amount)) {
+            throw new ArithmeticException("Amount is not finite: " + amount);
+        }
+        var scaled = amount * ONE_DOUBLE;
+        var units = Math.round(scaled);
+        if (Math.abs(scaled - units) < INTEGRAL_TOLERANCE) {
+            return units;
+        }
+        return fromBigDecimal(BigDecimal.valueOf(amount));
+    }
+
+    public static long fromBigDecimal(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toBigDecimal(long units) {
+        return BigDecimal.valueOf(units, SCALE);
+    }
+
+    public static double toDouble(long units) {
+        return units / ONE_DOUBLE;
+    }
+
+    /**
+     * @return {@code units * rate} rounded HALF_UP to {@link #SCALE}
+     */
+    public static long multiply(long units, Rate rate) {
+        var product = units * rate.unscaled();
+        if (Math.multiplyHigh(units, rate.unscaled()) != (product >> 63)) {
+            return fromBigDecimal(toBigDecimal(units).multiply(rate.toBigDecimal()));
+        }
+        return divideHalfUp(product, POWERS_OF_TEN[rate.scale()]);
+    }
+
+    /**
+     * @return {@code units / rate} rounded HALF_UP to {@link #SCALE}
+     */
+    public static long divide(long units, Rate rate) {
+        var factor = POWERS_OF_TEN[rate.scale()];
+        var dividend = units * factor;
+        if (Math.multiplyHigh(units, factor) != (dividend >> 63)) {
+            return toBigDecimal(units).divide(rate.toBigDecimal(), SCALE, RoundingMode.HALF_UP)
+                    .unscaledValue().longValueExact();
+        }
+        return divideHalfUp(dividend, rate.unscaled());
+    }
+
+    /**
+     * Converts between two currencies quoted against the same base, rounding once.
+     *
+     * @return {@code units * from / to} rounded HALF_UP to {@link #SCALE}
+     */
+    public static long convert(long units, Rate from, Rate to) {
+        var numerator = units * from.unscaled();
+        var factor = POWERS_OF_TEN[to.scale()];
+        var dividend = numerator * factor;
+        var fromFactor = POWERS_OF_TEN[from.scale()];
+        var divisor = to.unscaled() * fromFactor;
+        if (Math.multiplyHigh(units, from.unscaled()) != (numerator >> 63)
+                || Math.multiplyHigh(numerator, factor) != (dividend >> 63)
+                || Math.multiplyHigh(to.unscaled(), fromFactor) != (divisor >> 63)) {
+            return toBigDecimal(units).multiply(from.toBigDecimal())
+                    .divide(to.toBigDecimal(), SCALE, RoundingMode.HALF_UP)
+                    .unscaledValue().longValueExact();
+        }
+        return divideHalfUp(dividend, divisor);
+    }
+
+    private static long divideHalfUp(long dividend, long divisor) {
+        var quotient = dividend / divisor;
+        var remainder = Math.abs(dividend % divisor);
+        if (remainder >= Math.abs(divisor) - remainder) {
+            quotient += Long.signum(dividend) * Long.signum(divisor);
+        }
+        return quotient;
+    }
+
+    /**
+     * Exchange rate as an unscaled {@code long} and a decimal scale, e.g. 4.1080 is {@code (41080, 4)}.
+     */
+    public record Rate(long unscaled, int scale) {
+
+        public Rate {
+            if (unscaled <= 0) {
+                throw new IllegalArgumentException("Rate must be positive.");
+            }
+            if (scale < 0 || scale >= POWERS_OF_TEN.length) {
+                throw new IllegalArgumentException("Unsupported rate scale " + scale + ".");
+            }
+        }
+
+        public static Rate of(BigDecimal rate) {
+            var normalized = rate.stripTrailingZeros();
+            if (normalized.scale() < 0) {
+                normalized = normalized.setScale(0);
+            }
+            return new Rate(normalized.unscaledValue().longValueExact(), normalized.scale());
+        }
+
+        public BigDecimal toBigDecimal() {
+            return BigDecimal.valueOf(unscaled, scale);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.nationale.currency.acoount;
+
+import java.math.BigDecimal;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Maps {@link Money} units to the DECIMAL balance columns, so the schema stays unchanged.
+ */
+@Converter
+public class MoneyConverter implements AttributeConverter<Long, BigDecimal> {
+
+    @Override
+    public BigDecimal convertToDatabaseColumn(Long units) {
+        return units == null ? null : Money.toBigDecimal(units);
+    }
+
+    @Override
+    public Long convertToEntityAttribute(BigDecimal amount) {
+        return amount == null ? null : Money.fromBigDecimal(amount);
+    }
+}
@@ -0,0 +1,142 @@
+package com.nationale.currency.acoount;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+import com.nationale.currency.nbp.RateTable;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exchange quotes waiting to be executed, each valid for {@code account.quote.ttl}. Quotes are kept in memory only,
+ * by an id drawn like the api keys, and are gone after a restart.
+ * <p>
+ * Expiry is a hashed timer wheel: a quote goes into the slot of the tick it expires in, {@code account.quote.tick}
+ * long, and {@link #sweep} drops the quotes of the ticks that passed, one slot each. Adding a quote is one append and
+ * the sweep touches only the expiring ones, so millions of outstanding quotes need no scheduled task or sorted
+ * structure of their own. The wheel spans the whole ttl, so every quote is dropped the first time its slot is swept.
+ * Lookups check the expiry themselves, a quote is never returned after it even when the sweep runs late.
+ */
+@Component
+public class QuoteStore {
+
+    private final Supplier<String> idGenerator;
+    private final Clock clock;
+    private final long ttlMillis;
+    private final long tickMillis;
+    private final ConcurrentHashMap<UUID, Quote> quotes = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Quote>[] wheel;
+    private final Counter expired;
+    private long sweptTick;
+
+    @SuppressWarnings("unchecked")
+    public QuoteStore(Supplier<String> idGenerator, Clock clock, MeterRegistry meterRegistry,
+            @Value("${account.quote.ttl:PT30S}") Duration ttl,
+            @Value("${account.quote.tick:PT1S}") Duration tick) {
+        if (ttl.toMillis() < 1 || tick.toMillis() < 1) {
+            throw new IllegalArgumentException("account.quote.ttl and account.quote.tick must be at least 1ms");
+        }
+        this.idGenerator = idGenerator;
+        this.clock = clock;
+        this.ttlMillis = ttl.toMillis();
+        this.tickMillis = tick.toMillis();
+        var slots = Integer.highestOneBit((int) Math.min(ttlMillis / tickMillis + 2, 1 << 20) * 2 - 1);
+        this.wheel = new ConcurrentLinkedQueue[slots];
+        for (int i = 0; i < slots; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.sweptTick = clock.millis() / tickMillis;
+        this.expired = Counter.builder("account.quote.expired")
+                .description("Quotes dropped unexecuted at the end of their ttl")
+                .register(meterRegistry);
+        Gauge.builder("account.quote.outstanding", quotes, ConcurrentHashMap::size)
+                .description("Quotes waiting to be executed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Keeps a new quote for the ttl.
+     *
+     * @return the quote, with its id and expiry
+     */
+    public Quote add(String apiKey, String from, long amount, String to, long converted, RateTable rates) {
+        var quote = new Quote(ApiKeys.valueOf(idGenerator.get()), apiKey, from, amount, to, converted, rates,
+                clock.millis() + ttlMillis);
+        quotes.put(quote.id(), quote);
+        schedule(quote);
+        return quote;
+    }
+
+    /**
+     * Takes the quote out, so it is executed once: a second caller does not get it.
+     *
+     * @return the quote, {@code null} when the id is unknown or malformed, the quote expired or belongs to another
+     * api key
+     */
+    public Quote take(String quoteId, String apiKey) {
+        var id = ApiKeys.parse(quoteId);
+        var quote = id == null ? null : quotes.get(id);
+        if (quote == null || !quote.apiKey().equals(apiKey) || quote.expiresAt() <= clock.millis()
+                || !quotes.remove(id, quote)) {
+            return null;
+        }
+        return quote;
+    }
+
+    /**
+     * Puts back a quote taken by {@link #take} whose execution failed, unless it expired meanwhile.
+     */
+    public void restore(Quote quote) {
+        if (quote.expiresAt() > clock.millis()) {
+            quotes.putIfAbsent(quote.id(), quote);
+        }
+    }
+
+    /**
+     * Drops the expired quotes of the ticks passed since the previous sweep. A quote of a later turn of the wheel, left
+     * in a slot by a sweep that fell more than a turn behind, goes back into its slot.
+     */
+    @Scheduled(fixedDelayString = "${account.quote.tick:PT1S}")
+    public synchronized void sweep() {
+        var now = clock.millis();
+        var tick = now / tickMillis;
+        var from = Math.max(sweptTick + 1, tick - wheel.length + 1);
+        for (var t = from; t <= tick; t++) {
+            var slot = wheel[(int) (t & (wheel.length - 1))];
+            for (var n = slot.size(); n > 0; n--) {
+                var quote = slot.poll();
+                if (quote == null) {
+                    break;
+                }
+                if (quote.expiresAt() > now) {
+                    slot.add(quote);
+                } else if (quotes.remove(quote.id(), quote)) {
+                    expired.increment();
+                }
+            }
+        }
+        sweptTick = tick;
+    }
+
+    private void schedule(Quote quote) {
+        var tick = (quote.expiresAt() + tickMillis - 1) / tickMillis;
+        wheel[(int) (tick & (wheel.length - 1))].add(quote);
+    }
+
+    /**
+     * Exchange of {@code amount} of {@code from} into {@code converted} of {@code to}, priced at {@code rates}, that the
+     * account of {@code apiKey} may execute until {@code expiresAt}, in epoch milliseconds.
+     */
+    public record Quote(UUID id, String apiKey, String from, long amount, String to, long converted, RateTable rates,
+                        long expiresAt) {
+
+    }
+}
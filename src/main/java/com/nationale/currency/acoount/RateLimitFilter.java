@@ -0,0 +1,52 @@
+package com.nationale.currency.acoount;
+
+import java.io.IOException;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Answers the {@code /account} requests over the {@link RateLimiter} limits with {@code 429 Too Many Requests} and a
+ * {@code Retry-After} in whole seconds, before they reach the controllers, the database or NBP.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "account.rate-limit.enabled", havingValue = "true")
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final String PATH = "/account";
+    private static final String API_KEY_HEADER = "x-api-key";
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final String BODY = "{\"message\":\"Too many requests, retry later.\"}";
+
+    private final RateLimiter rateLimiter;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        var path = request.getRequestURI().substring(request.getContextPath().length());
+        return !path.equals(PATH) && !path.startsWith(PATH + "/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        var wait = rateLimiter.acquire(request.getHeader(API_KEY_HEADER));
+        if (wait == 0L) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf((wait + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write(BODY);
+    }
+}
@@ -0,0 +1,210 @@
+package com.nationale.currency.acoount;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Token buckets limiting the account requests per api key and in total, enabled with
+ * {@code account.rate-limit.enabled}. A bucket holds up to {@code burst} requests and refills at {@code rate} per
+ * second.
+ * <p>
+ * Each bucket is a single {@code long}, the time its next token is due (the generic cell rate algorithm, which admits
+ * the same requests as a token bucket), taken with one compare-and-set and no lock. The buckets of the api keys live
+ * in a map bounded by {@code account.rate-limit.maximum-keys} and dropped {@code expire-after-access} after their last
+ * request; a dropped bucket comes back full, so keys flooding the map get at most a fresh burst each, still under the
+ * global bucket.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "account.rate-limit.enabled", havingValue = "true")
+public class RateLimiter {
+
+    private static final String METRIC_THROTTLED = "account.rate-limit.throttled";
+
+    private final Clock clock;
+    private final Cache<UUID, TokenBucket> keys;
+    private final TokenBucket global;
+    private final long keyInterval;
+    private final long keyTolerance;
+    private final Counter keyThrottled;
+    private final Counter globalThrottled;
+    private final Counter throttledKeys;
+    private final AtomicLong throttledNow = new AtomicLong();
+
+    public RateLimiter(Clock clock, MeterRegistry meterRegistry,
+            @Value("${account.rate-limit.key.rate:20}") double keyRate,
+            @Value("${account.rate-limit.key.burst:40}") int keyBurst,
+            @Value("${account.rate-limit.global.rate:2000}") double globalRate,
+            @Value("${account.rate-limit.global.burst:4000}") int globalBurst,
+            @Value("${account.rate-limit.maximum-keys:100000}") long maximumKeys,
+            @Value("${account.rate-limit.expire-after-access:PT10M}") Duration expireAfterAccess) {
+        if (keyRate <= 0 || globalRate <= 0 || keyBurst < 1 || globalBurst < 1) {
+            throw new IllegalArgumentException("account.rate-limit rates and bursts must be positive");
+        }
+        this.clock = clock;
+        this.keyInterval = interval(keyRate);
+        this.keyTolerance = keyInterval * keyBurst;
+        var globalInterval = interval(globalRate);
+        this.global = new TokenBucket(globalInterval, globalInterval * globalBurst);
+        this.keys = Caffeine.newBuilder()
+                .maximumSize(maximumKeys)
+                .expireAfterAccess(expireAfterAccess)
+                .executor(Runnable::run)
+                .removalListener((UUID apiKey, TokenBucket bucket, RemovalCause cause) -> {
+                    if (bucket != null && bucket.unthrottle()) {
+                        throttledNow.decrementAndGet();
+                    }
+                })
+                .build();
+        this.keyThrottled = throttled(meterRegistry, "key");
+        this.globalThrottled = throttled(meterRegistry, "global");
+        this.throttledKeys = Counter.builder("account.rate-limit.throttled-keys")
+                .description("Api keys that went over their limit, counted once until they are under it again")
+                .register(meterRegistry);
+        Gauge.builder("account.rate-limit.keys", keys, Cache::estimatedSize)
+                .description("Api keys with a token bucket")
+                .register(meterRegistry);
+        Gauge.builder("account.rate-limit.throttled-keys.current", throttledNow, AtomicLong::get)
+                .description("Api keys over their limit now")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Takes a token of the api key, when it is a canonical one, and a global token.
+     *
+     * @return {@code 0} when the request may go on, otherwise nanoseconds until it would be let through
+     */
+    public long acquire(String apiKey) {
+        var now = nanos();
+        var key = ApiKeys.parse(apiKey);
+        TokenBucket bucket = null;
+        if (key != null) {
+            bucket = keys.get(key, ignored -> new TokenBucket(keyInterval, keyTolerance));
+            var wait = bucket.tryAcquire(now);
+            if (wait > 0) {
+                keyThrottled.increment();
+                if (bucket.throttle()) {
+                    throttledNow.incrementAndGet();
+                    throttledKeys.increment();
+                    log.warn("Api key {} went over its rate limit.", apiKey);
+                }
+                return wait;
+            }
+            if (bucket.unthrottle()) {
+                throttledNow.decrementAndGet();
+            }
+        }
+        var wait = global.tryAcquire(now);
+        if (wait > 0) {
+            globalThrottled.increment();
+            if (bucket != null) {
+                bucket.refund();
+            }
+        }
+        return wait;
+    }
+
+    private long nanos() {
+        var now = clock.instant();
+        return now.getEpochSecond() * 1_000_000_000L + now.getNano();
+    }
+
+    private static long interval(double rate) {
+        return Math.max(1L, Math.round(1_000_000_000d / rate));
+    }
+
+    private static Counter throttled(MeterRegistry meterRegistry, String scope) {
+        return Counter.builder(METRIC_THROTTLED)
+                .description("Requests rejected with 429, by the bucket that ran out")
+                .tag("scope", scope)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Token bucket as the due time of its next token, {@code tat} (theoretical arrival time) in nanoseconds. A request
+     * at {@code now} is admitted while {@code max(tat, now) + interval} is at most {@code tolerance} ahead of now, so
+     * {@code tolerance / interval} requests pass at once after a quiet period and {@code 1 / interval} per
+     * nanosecond after that.
+     */
+    static final class TokenBucket {
+
+        private static final VarHandle TAT;
+        private static final VarHandle THROTTLED;
+
+        static {
+            try {
+                var lookup = MethodHandles.lookup();
+                TAT = lookup.findVarHandle(TokenBucket.class, "tat", long.class);
+                THROTTLED = lookup.findVarHandle(TokenBucket.class, "throttled", boolean.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private final long interval;
+        private final long tolerance;
+        private volatile long tat = Long.MIN_VALUE;
+        private volatile boolean throttled;
+
+        TokenBucket(long interval, long tolerance) {
+            this.interval = interval;
+            this.tolerance = tolerance;
+        }
+
+        /**
+         * @return {@code 0} when a token was taken, otherwise nanoseconds until one is due
+         */
+        long tryAcquire(long now) {
+            while (true) {
+                var current = tat;
+                var next = Math.max(current, now) + interval;
+                var wait = next - now - tolerance;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (TAT.compareAndSet(this, current, next)) {
+                    return 0L;
+                }
+            }
+        }
+
+        /**
+         * Gives back the token taken last, for a request rejected by another bucket.
+         */
+        void refund() {
+            TAT.getAndAdd(this, -interval);
+        }
+
+        /**
+         * Marks the bucket as over its limit; the flag is read first, so requests of a key within its limit write
+         * nothing.
+         *
+         * @return {@code true} when it was not marked before
+         */
+        boolean throttle() {
+            return !throttled && THROTTLED.compareAndSet(this, false, true);
+        }
+
+        /**
+         * @return {@code true} when it was marked before
+         */
+        boolean unthrottle() {
+            return throttled && THROTTLED.compareAndSet(this, true, false);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.nationale.currency.acoount;
+
+import com.nationale.generated.api.ReportApi;
+import com.nationale.generated.model.PortfolioValuation;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RestController;
+
+@RequiredArgsConstructor
+@RestController
+public class ReportApiController implements ReportApi {
+
+    private final ValuationReport valuationReport;
+
+    @Override
+    public ResponseEntity<PortfolioValuation> getValuation() {
+        return ResponseEntity.ok(valuationReport.value());
+    }
+}
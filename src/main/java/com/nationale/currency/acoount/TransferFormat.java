@@ -0,0 +1,371 @@
+package com.nationale.currency.acoount;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Formats of the account export and import, one account per record and balances as decimals with the
+ * {@value Money#SCALE} places of {@link Money}, so amounts survive a round trip exactly. Both formats are written and
+ * read as a stream, one account at a time.
+ * <ul>
+ *     <li>{@code ndjson} - one JSON object per line:
+ *     {@code {"apiKey":"...","firstName":"John","lastName":"Smith","balances":{"PLN":100.0000}}}</li>
+ *     <li>{@code csv} - RFC 4180 rows under the header {@code api_key,first_name,last_name,balances}, the balances
+ *     in one field as {@code PLN=100.0000;USD=5.5000}</li>
+ * </ul>
+ */
+public enum TransferFormat {
+
+    NDJSON("application/x-ndjson") {
+        @Override
+        Writer writer(OutputStream out, ObjectMapper objectMapper) throws IOException {
+            var generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+            generator.setRootValueSeparator(null);
+            return new NdjsonWriter(generator);
+        }
+
+        @Override
+        Reader reader(InputStream in, ObjectMapper objectMapper) {
+            return new NdjsonReader(objectMapper.readerFor(AccountRecord.class), in);
+        }
+    },
+
+    CSV("text/csv") {
+        @Override
+        Writer writer(OutputStream out, ObjectMapper objectMapper) {
+            return new CsvWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8),
+                    BUFFER_SIZE));
+        }
+
+        @Override
+        Reader reader(InputStream in, ObjectMapper objectMapper) {
+            return new CsvReader(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE));
+        }
+    };
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String CSV_HEADER = "api_key,first_name,last_name,balances";
+
+    private final String mediaType;
+
+    TransferFormat(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public String mediaType() {
+        return mediaType;
+    }
+
+    abstract Writer writer(OutputStream out, ObjectMapper objectMapper) throws IOException;
+
+    abstract Reader reader(InputStream in, ObjectMapper objectMapper);
+
+    /**
+     * Account as read, before it is validated.
+     */
+    record AccountRecord(String apiKey, String firstName, String lastName, Map<String, BigDecimal> balances) {
+
+    }
+
+    interface Writer {
+
+        void write(AccountBalance account) throws IOException;
+
+        /**
+         * Writes out what is buffered, leaving the stream open.
+         */
+        void flush() throws IOException;
+    }
+
+    interface Reader {
+
+        /**
+         * @return the next account, {@code null} at the end of the input
+         * @throws IllegalArgumentException when the record is malformed
+         */
+        AccountRecord next() throws IOException;
+
+        /**
+         * @return line of the input the last record returned or rejected starts at, from 1
+         */
+        long line();
+    }
+
+    private static Map<String, Long> sorted(Map<String, Long> balances) {
+        return balances.size() < 2 ? balances : new TreeMap<>(balances);
+    }
+
+    private static final class NdjsonWriter implements Writer {
+
+        private final JsonGenerator generator;
+
+        NdjsonWriter(JsonGenerator generator) {
+            this.generator = generator;
+        }
+
+        @Override
+        public void write(AccountBalance account) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("apiKey", account.apiKey());
+            generator.writeStringField("firstName", account.firstName());
+            generator.writeStringField("lastName", account.lastName());
+            generator.writeObjectFieldStart("balances");
+            for (var balance : sorted(account.balances()).entrySet()) {
+                generator.writeFieldName(balance.getKey());
+                generator.writeNumber(Money.toBigDecimal(balance.getValue()));
+            }
+            generator.writeEndObject();
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+    }
+
+    private static final class NdjsonReader implements Reader {
+
+        private final ObjectReader objectReader;
+        private final InputStream in;
+        private MappingIterator<AccountRecord> records;
+
+        NdjsonReader(ObjectReader objectReader, InputStream in) {
+            this.objectReader = objectReader;
+            this.in = in;
+        }
+
+        /**
+         * Opens the iterator on the first call, it reads the first token, so a malformed first line is reported like
+         * any other.
+         */
+        @Override
+        public AccountRecord next() throws IOException {
+            if (records == null) {
+                records = objectReader.readValues(in);
+            }
+            if (!records.hasNextValue()) {
+                return null;
+            }
+            var record = records.nextValue();
+            if (record == null) {
+                throw new IllegalArgumentException("Line is not an account object.");
+            }
+            return record;
+        }
+
+        /**
+         * One record per line, so the line the parser stopped at is the one of the record, read or rejected.
+         */
+        @Override
+        public long line() {
+            return records == null ? 1L : records.getParser().currentLocation().getLineNr();
+        }
+    }
+
+    private static final class CsvWriter implements Writer {
+
+        private final BufferedWriter out;
+        private boolean headerWritten;
+
+        CsvWriter(BufferedWriter out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(AccountBalance account) throws IOException {
+            header();
+            out.write(account.apiKey());
+            out.write(',');
+            field(account.firstName());
+            out.write(',');
+            field(account.lastName());
+            out.write(',');
+            var first = true;
+            for (var balance : sorted(account.balances()).entrySet()) {
+                if (!first) {
+                    out.write(';');
+                }
+                out.write(balance.getKey());
+                out.write('=');
+                out.write(Money.toBigDecimal(balance.getValue()).toPlainString());
+                first = false;
+            }
+            out.write("\r\n");
+        }
+
+        @Override
+        public void flush() throws IOException {
+            header();
+            out.flush();
+        }
+
+        private void header() throws IOException {
+            if (!headerWritten) {
+                out.write(CSV_HEADER);
+                out.write("\r\n");
+                headerWritten = true;
+            }
+        }
+
+        /**
+         * Quotes the field when it holds a separator, a quote or a line break, doubling the quotes.
+         */
+        private void field(String value) throws IOException {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                    && value.indexOf('\r') < 0) {
+                out.write(value);
+                return;
+            }
+            out.write('"');
+            out.write(value.replace("\"", "\"\""));
+            out.write('"');
+        }
+    }
+
+    /**
+     * RFC 4180 reader: fields separated by commas, records by CRLF or LF, quoted fields may hold commas, line breaks
+     * and doubled quotes. Reads one record at a time from the buffered input.
+     */
+    private static final class CsvReader implements Reader {
+
+        private final BufferedReader in;
+        private final StringBuilder field = new StringBuilder();
+        private final List<String> fields = new ArrayList<>(4);
+        private long nextLine = 1L;
+        private long line;
+        private boolean headerRead;
+
+        CsvReader(BufferedReader in) {
+            this.in = in;
+        }
+
+        @Override
+        public AccountRecord next() throws IOException {
+            if (!headerRead) {
+                headerRead = true;
+                if (!readRecord()) {
+                    return null;
+                }
+                if (!CSV_HEADER.equals(String.join(",", fields))) {
+                    throw new IllegalArgumentException("Header must be " + CSV_HEADER + ".");
+                }
+            }
+            if (!readRecord()) {
+                return null;
+            }
+            if (fields.size() != 4) {
+                throw new IllegalArgumentException("Record must have 4 fields, it has " + fields.size() + ".");
+            }
+            return new AccountRecord(fields.get(0), fields.get(1), fields.get(2), balances(fields.get(3)));
+        }
+
+        @Override
+        public long line() {
+            return line;
+        }
+
+        /**
+         * Reads the next record into {@link #fields}, skipping empty lines.
+         *
+         * @return {@code false} at the end of the input
+         */
+        private boolean readRecord() throws IOException {
+            fields.clear();
+            field.setLength(0);
+            line = nextLine;
+            var quoted = false;
+            var wasQuoted = false;
+            int c;
+            while ((c = in.read()) >= 0) {
+                if (quoted) {
+                    if (c == '"') {
+                        in.mark(1);
+                        if (in.read() == '"') {
+                            field.append('"');
+                        } else {
+                            in.reset();
+                            quoted = false;
+                        }
+                    } else {
+                        if (c == '\n') {
+                            nextLine++;
+                        }
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.isEmpty() && !wasQuoted) {
+                    quoted = true;
+                    wasQuoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                    wasQuoted = false;
+                } else if (c == '\r' || c == '\n') {
+                    if (c == '\r') {
+                        in.mark(1);
+                        if (in.read() != '\n') {
+                            in.reset();
+                        }
+                    }
+                    nextLine++;
+                    if (fields.isEmpty() && field.isEmpty() && !wasQuoted) {
+                        line = nextLine;
+                        continue;
+                    }
+                    fields.add(field.toString());
+                    return true;
+                } else if (wasQuoted) {
+                    throw new IllegalArgumentException("Unexpected character after a quoted field.");
+                } else {
+                    field.append((char) c);
+                }
+            }
+            if (quoted) {
+                throw new IllegalArgumentException("Quoted field is not closed.");
+            }
+            if (fields.isEmpty() && field.isEmpty() && !wasQuoted) {
+                return false;
+            }
+            fields.add(field.toString());
+            return true;
+        }
+
+        private static Map<String, BigDecimal> balances(String field) {
+            var balances = new LinkedHashMap<String, BigDecimal>();
+            if (field.isEmpty()) {
+                return balances;
+            }
+            for (var balance : field.split(";", -1)) {
+                var separator = balance.indexOf('=');
+                if (separator < 0) {
+                    throw new IllegalArgumentException("Balance " + balance + " must be CURRENCY=amount.");
+                }
+                try {
+                    balances.put(balance.substring(0, separator), new BigDecimal(balance.substring(separator + 1)));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Balance " + balance + " is not a decimal amount.");
+                }
+            }
+            return balances;
+        }
+    }
+}
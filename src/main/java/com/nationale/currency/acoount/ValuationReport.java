@@ -0,0 +1,437 @@
+package com.nationale.currency.acoount;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.nationale.currency.nbp.NbpRateCache;
+import com.nationale.currency.nbp.RateTable;
+import com.nationale.generated.model.BalanceBucket;
+import com.nationale.generated.model.BalancePercentiles;
+import com.nationale.generated.model.CurrencyExposure;
+import com.nationale.generated.model.PortfolioValuation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Values all accounts at one NBP table for {@code GET /report/valuation}. The store streams the balances to the
+ * calling thread, which packs them into chunks of {@code account.valuation.chunk-size} accounts and hands every full
+ * chunk to a fork/join task on a pool of {@code account.valuation.parallelism} workers. A task splits its chunk until
+ * the parts are small, values each part into partial totals and histograms and merges the partials as the parts
+ * join. At most two chunks per worker are in flight and a chunk is reused once valued, so memory use depends on the
+ * chunk size and the parallelism, not on the number of accounts.
+ * <p>
+ * The PLN-equivalent balances of the accounts are counted in a log-linear histogram of {@value #SUB_BUCKETS} buckets
+ * per power of two, so percentiles are accurate to 1/{@value #SUB_BUCKETS} of the value however many accounts there
+ * are, and in buckets of powers of ten for the report.
+ */
+@Slf4j
+@Component
+public class ValuationReport implements DisposableBean {
+
+    private static final String OPERATION_VALUATION = "valuation";
+    private static final int SPLIT_THRESHOLD = 1024;
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = SUB_BUCKETS + (Long.SIZE - 1 - SUB_BITS) * SUB_BUCKETS;
+    private static final long[] DECADE_UPPER_BOUNDS = decadeUpperBounds();
+
+    private final AccountStore accountStore;
+    private final NbpRateCache nbpRateCache;
+    private final AccountMetrics accountMetrics;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    private final int maxChunks;
+
+    public ValuationReport(AccountStore accountStore, NbpRateCache nbpRateCache, AccountMetrics accountMetrics,
+            @Value("${account.valuation.parallelism:0}") int parallelism,
+            @Value("${account.valuation.chunk-size:8192}") int chunkSize) {
+        if (parallelism < 0 || chunkSize < 1) {
+            throw new IllegalArgumentException(
+                    "account.valuation.parallelism must not be negative and account.valuation.chunk-size positive");
+        }
+        this.accountStore = accountStore;
+        this.nbpRateCache = nbpRateCache;
+        this.accountMetrics = accountMetrics;
+        this.pool = new ForkJoinPool(parallelism == 0 ? Runtime.getRuntime().availableProcessors() : parallelism);
+        this.chunkSize = chunkSize;
+        this.maxChunks = 2 * pool.getParallelism();
+        log.info("Valuation report on {} workers, chunks of {} accounts", pool.getParallelism(), chunkSize);
+    }
+
+    public PortfolioValuation value() {
+        var rates = accountMetrics.timeStage(OPERATION_VALUATION, "rate", nbpRateCache::currentTable);
+        var scan = new Scan(rates);
+        var total = accountMetrics.timeStage(OPERATION_VALUATION, "scan", scan::run);
+        return report(rates, scan, total);
+    }
+
+    @Override
+    public void destroy() {
+        pool.shutdownNow();
+    }
+
+    private static PortfolioValuation report(RateTable rates, Scan scan, Partial total) {
+        var currencies = new ArrayList<CurrencyExposure>(scan.currencies.size());
+        var totalPln = 0L;
+        for (int column = 0; column < scan.currencies.size(); column++) {
+            var rate = scan.rates.get(column);
+            if (rate != null) {
+                totalPln = Math.addExact(totalPln, total.pln(column));
+            }
+            currencies.add(CurrencyExposure.builder()
+                    .currency(scan.currencies.get(column))
+                    .amount(Money.toDouble(total.units(column)))
+                    .rate(rate == null ? null : rate.toBigDecimal())
+                    .amountPLN(rate == null ? null : Money.toDouble(total.pln(column)))
+                    .build());
+        }
+        currencies.sort(Comparator.comparing(CurrencyExposure::getCurrency));
+        var histogram = new ArrayList<BalanceBucket>();
+        for (int decade = 0; decade < total.decades.length; decade++) {
+            if (total.decades[decade] > 0) {
+                histogram.add(BalanceBucket.builder()
+                        .fromPLN(decade == 0 ? 0.0d : Money.toDouble(DECADE_UPPER_BOUNDS[decade - 1]))
+                        .toPLN(Money.toDouble(DECADE_UPPER_BOUNDS[decade]))
+                        .accounts(total.decades[decade])
+                        .build());
+            }
+        }
+        return PortfolioValuation.builder()
+                .effectiveDate(rates.effectiveDate())
+                .accounts(total.accounts)
+                .unpricedAccounts(total.unpricedAccounts)
+                .totalPLN(Money.toDouble(totalPln))
+                .currencies(currencies)
+                .percentiles(total.accounts == 0 ? null : BalancePercentiles.builder()
+                        .p50(Money.toDouble(total.percentile(0.5d)))
+                        .p90(Money.toDouble(total.percentile(0.9d)))
+                        .p99(Money.toDouble(total.percentile(0.99d)))
+                        .p999(Money.toDouble(total.percentile(0.999d)))
+                        .max(Money.toDouble(total.max))
+                        .build())
+                .histogram(histogram)
+                .build();
+    }
+
+    /**
+     * @return bucket of the log-linear histogram: the value itself below {@value #SUB_BUCKETS}, above it the power of
+     * two and the next {@value #SUB_BITS} bits
+     */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) Math.max(value, 0L);
+        }
+        var magnitude = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        var sub = (int) (value >>> (magnitude - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (magnitude - SUB_BITS) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return the highest value of the bucket
+     */
+    static long bucketUpperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        if (bucket == BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+        var next = bucket + 1;
+        var magnitude = (next - SUB_BUCKETS) / SUB_BUCKETS + SUB_BITS;
+        return ((long) (SUB_BUCKETS + next % SUB_BUCKETS) << (magnitude - SUB_BITS)) - 1;
+    }
+
+    private static int decade(long value) {
+        var decade = 0;
+        while (decade < DECADE_UPPER_BOUNDS.length - 1 && value >= DECADE_UPPER_BOUNDS[decade]) {
+            decade++;
+        }
+        return decade;
+    }
+
+    /**
+     * Upper bounds of the buckets of powers of ten in {@link Money} units: 1 PLN, 10 PLN and so on, the last one the
+     * highest balance a {@code long} holds.
+     */
+    private static long[] decadeUpperBounds() {
+        var bounds = new ArrayList<Long>();
+        var bound = Money.fromBigDecimal(BigDecimal.ONE);
+        bounds.add(bound);
+        while (bound <= Long.MAX_VALUE / 10) {
+            bound *= 10;
+            bounds.add(bound);
+        }
+        bounds.add(Long.MAX_VALUE);
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * One valuation: receives the balances from the store on the calling thread, assigns every currency a column and
+     * its rate on first sight and keeps the chunks in flight.
+     */
+    private final class Scan implements AccountStore.BalanceHandler {
+
+        private final RateTable table;
+        private final Map<String, Integer> columns = new HashMap<>();
+        private final List<String> currencies = new ArrayList<>();
+        private final List<Money.Rate> rates = new ArrayList<>();
+        private final ArrayDeque<ChunkValuation> inFlight = new ArrayDeque<>();
+        private final ArrayDeque<Chunk> free = new ArrayDeque<>();
+        private Partial total = new Partial(0);
+        private int allocated;
+        private Chunk chunk;
+        private long apiKeyMsb;
+        private long apiKeyLsb;
+
+        Scan(RateTable table) {
+            this.table = table;
+        }
+
+        Partial run() {
+            chunk = take();
+            try {
+                accountStore.forEachBalance(this);
+                if (chunk.accounts > 0) {
+                    submit();
+                }
+                while (!inFlight.isEmpty()) {
+                    complete(inFlight.poll());
+                }
+            } catch (RuntimeException e) {
+                inFlight.forEach(valuation -> valuation.cancel(false));
+                throw e;
+            }
+            return total;
+        }
+
+        @Override
+        public void balance(long apiKeyMsb, long apiKeyLsb, String currency, long balance) {
+            if (chunk.accounts == 0 || apiKeyMsb != this.apiKeyMsb || apiKeyLsb != this.apiKeyLsb) {
+                if (chunk.accounts == chunkSize) {
+                    submit();
+                    chunk = take();
+                }
+                chunk.startAccount();
+                this.apiKeyMsb = apiKeyMsb;
+                this.apiKeyLsb = apiKeyLsb;
+            }
+            var column = columns.get(currency);
+            if (column == null) {
+                column = currencies.size();
+                columns.put(currency, column);
+                currencies.add(currency);
+                rates.add(table.rate(currency));
+            }
+            chunk.add(column, rates.get(column), balance);
+        }
+
+        private void submit() {
+            var valuation = new ChunkValuation(chunk, 0, chunk.accounts, currencies.size());
+            pool.execute(valuation);
+            inFlight.add(valuation);
+        }
+
+        /**
+         * @return a chunk to fill: a free one, a new one while fewer than two per worker exist, else the one of the
+         * oldest valuation once it is done
+         */
+        private Chunk take() {
+            if (free.isEmpty() && allocated < maxChunks) {
+                allocated++;
+                return new Chunk(chunkSize);
+            }
+            if (free.isEmpty()) {
+                complete(inFlight.poll());
+            }
+            return free.poll();
+        }
+
+        private void complete(ChunkValuation valuation) {
+            total = total.merge(valuation.join());
+            valuation.chunk.clear();
+            free.add(valuation.chunk);
+        }
+    }
+
+    /**
+     * Balances of up to {@code chunkSize} accounts, the balances of account {@code i} at {@code ends[i - 1]} up to
+     * {@code ends[i]}. The arrays grow with the balances per account and are kept when the chunk is reused.
+     */
+    private static final class Chunk {
+
+        private final int[] ends;
+        private int[] columns;
+        private Money.Rate[] rates;
+        private long[] balances;
+        private int accounts;
+        private int size;
+
+        Chunk(int accounts) {
+            ends = new int[accounts];
+            columns = new int[accounts * 2];
+            rates = new Money.Rate[accounts * 2];
+            balances = new long[accounts * 2];
+        }
+
+        void startAccount() {
+            ends[accounts++] = size;
+        }
+
+        void add(int column, Money.Rate rate, long balance) {
+            if (size == balances.length) {
+                columns = Arrays.copyOf(columns, size * 2);
+                rates = Arrays.copyOf(rates, size * 2);
+                balances = Arrays.copyOf(balances, size * 2);
+            }
+            columns[size] = column;
+            rates[size] = rate;
+            balances[size++] = balance;
+            ends[accounts - 1] = size;
+        }
+
+        int start(int account) {
+            return account == 0 ? 0 : ends[account - 1];
+        }
+
+        void clear() {
+            accounts = 0;
+            size = 0;
+        }
+    }
+
+    /**
+     * Values the accounts {@code from} up to {@code to} of a chunk, forking halves above {@value #SPLIT_THRESHOLD}
+     * accounts. {@code width} is the number of currencies seen when the chunk was submitted.
+     */
+    private static final class ChunkValuation extends RecursiveTask<Partial> {
+
+        private final Chunk chunk;
+        private final int from;
+        private final int to;
+        private final int width;
+
+        ChunkValuation(Chunk chunk, int from, int to, int width) {
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+            this.width = width;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from > SPLIT_THRESHOLD) {
+                var middle = (from + to) >>> 1;
+                var left = new ChunkValuation(chunk, from, middle, width);
+                left.fork();
+                var right = new ChunkValuation(chunk, middle, to, width).compute();
+                return right.merge(left.join());
+            }
+            var partial = new Partial(width);
+            for (int account = from; account < to; account++) {
+                var pln = 0L;
+                var unpriced = false;
+                for (int i = chunk.start(account); i < chunk.ends[account]; i++) {
+                    var column = chunk.columns[i];
+                    var balance = chunk.balances[i];
+                    partial.units[column] = Math.addExact(partial.units[column], balance);
+                    var rate = chunk.rates[i];
+                    if (rate == null) {
+                        unpriced = true;
+                        continue;
+                    }
+                    var converted = Money.multiply(balance, rate);
+                    partial.pln[column] = Math.addExact(partial.pln[column], converted);
+                    pln = Math.addExact(pln, converted);
+                }
+                partial.add(pln, unpriced);
+            }
+            return partial;
+        }
+    }
+
+    /**
+     * Totals and histograms of a set of accounts. Columns are the ones of {@link Scan}; a partial of fewer columns
+     * holds nothing of the others.
+     */
+    private static final class Partial {
+
+        private long[] units;
+        private long[] pln;
+        private final long[] buckets = new long[BUCKETS];
+        private final long[] decades = new long[DECADE_UPPER_BOUNDS.length];
+        private long accounts;
+        private long unpricedAccounts;
+        private long max;
+
+        Partial(int width) {
+            units = new long[width];
+            pln = new long[width];
+        }
+
+        void add(long pln, boolean unpriced) {
+            buckets[bucket(pln)]++;
+            decades[decade(pln)]++;
+            accounts++;
+            if (unpriced) {
+                unpricedAccounts++;
+            }
+            max = Math.max(max, pln);
+        }
+
+        long units(int column) {
+            return column < units.length ? units[column] : 0L;
+        }
+
+        long pln(int column) {
+            return column < pln.length ? pln[column] : 0L;
+        }
+
+        /**
+         * Adds {@code other} into this or, when {@code other} has more columns, this into {@code other}.
+         */
+        Partial merge(Partial other) {
+            if (other.units.length > units.length) {
+                return other.merge(this);
+            }
+            for (int column = 0; column < other.units.length; column++) {
+                units[column] = Math.addExact(units[column], other.units[column]);
+                pln[column] = Math.addExact(pln[column], other.pln[column]);
+            }
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                buckets[bucket] += other.buckets[bucket];
+            }
+            for (int decade = 0; decade < decades.length; decade++) {
+                decades[decade] += other.decades[decade];
+            }
+            accounts += other.accounts;
+            unpricedAccounts += other.unpricedAccounts;
+            max = Math.max(max, other.max);
+            return this;
+        }
+
+        /**
+         * @return upper bound of the bucket holding the account at {@code quantile}, at most the highest balance
+         */
+        long percentile(double quantile) {
+            var rank = Math.max(1L, (long) Math.ceil(quantile * accounts));
+            var seen = 0L;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                seen += buckets[bucket];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(bucket), max);
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.nationale.currency.acoount;
+
+import java.time.Duration;
+import java.util.stream.Collectors;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports virtual threads that stay pinned to their carrier, e.g. while blocking inside a {@code synchronized} block
+ * of a JDBC driver or connection pool, for longer than {@code jvm.virtual-threads.pinned-threshold}. Pinned threads
+ * hold a carrier thread, so enough of them bring back the platform thread limits virtual threads are meant to remove.
+ * Every event is counted in {@code jvm.threads.virtual.pinned} and logged with the blocking frames.
+ */
+@Slf4j
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadPinningMonitor implements DisposableBean {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int LOGGED_FRAMES = 12;
+
+    private final RecordingStream recordingStream;
+    private final Counter pinned;
+
+    public VirtualThreadPinningMonitor(MeterRegistry meterRegistry,
+            @Value("${jvm.virtual-threads.pinned-threshold:PT0.02S}") Duration threshold) {
+        this.pinned = Counter.builder("jvm.threads.virtual.pinned")
+                .description("Virtual threads pinned to their carrier for longer than the threshold")
+                .register(meterRegistry);
+        this.recordingStream = new RecordingStream();
+        recordingStream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        recordingStream.onEvent(PINNED_EVENT, this::onPinned);
+        recordingStream.startAsync();
+    }
+
+    @Override
+    public void destroy() {
+        recordingStream.close();
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinned.increment();
+        log.warn("Virtual thread #{} was pinned for {} ms at {}", event.getThread().getJavaThreadId(),
+                event.getDuration().toMillis(), frames(event));
+    }
+
+    private static String frames(RecordedEvent event) {
+        if (event.getStackTrace() == null) {
+            return "unknown location";
+        }
+        return event.getStackTrace().getFrames().stream()
+                .filter(RecordedFrame::isJavaFrame)
+                .map(frame -> frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":"
+                        + frame.getLineNumber())
+                .filter(frame -> !frame.startsWith("java.lang.VirtualThread") && !frame.startsWith("jdk.internal"))
+                .limit(LOGGED_FRAMES)
+                .collect(Collectors.joining(" <- "));
+    }
+}
@@ -3,6 +3,10 @@ package com.nationale.currency.acoount.exception;
 import java.util.HashMap;
 import java.util.Map;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.ConstraintViolationException;
+import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
@@ -15,8 +19,13 @@ import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
 @ControllerAdvice
+@RequiredArgsConstructor
 public class AppExceptionHandler extends ResponseEntityExceptionHandler {
 
+    private static final String METRIC_ERRORS = "account.errors";
+
+    private final MeterRegistry meterRegistry;
+
     @Override
     protected ResponseEntity<Object> handleMethodArgumentNotValid(MethodArgumentNotValidException ex,
             HttpHeaders headers, HttpStatusCode status, WebRequest request) {
@@ -26,19 +35,63 @@ public class AppExceptionHandler extends ResponseEntityExceptionHandler {
             String errorMessage = error.getDefaultMessage();
             errors.put(fieldName, errorMessage);
         });
+        countError(ex, status);
         return this.handleExceptionInternal(ex, errors, headers, status, request);
     }
 
+    @ExceptionHandler(ConstraintViolationException.class)
+    public final ResponseEntity<Object> handleConstraintViolation(ConstraintViolationException ex,
+            WebRequest request) {
+        Map<String, String> errors = new HashMap<>();
+        ex.getConstraintViolations().forEach(violation -> {
+            String parameterName = null;
+            for (var node : violation.getPropertyPath()) {
+                parameterName = node.getName();
+            }
+            errors.put(parameterName, violation.getMessage());
+        });
+        countError(ex, HttpStatus.BAD_REQUEST);
+        return this.handleExceptionInternal(ex, errors, new HttpHeaders(), HttpStatus.BAD_REQUEST, request);
+    }
+
     @ExceptionHandler({InsufficientFundsException.class, InvalidExchangeException.class,
-            AccountNotFoundException.class, AccountNotFoundException.class, NbpApiException.class})
+            AccountNotFoundException.class, AccountNotFoundException.class, NbpApiException.class,
+            ExchangeConflictException.class, IdempotencyKeyReusedException.class, RateNotFoundException.class,
+            InvalidImportException.class, QuoteNotFoundException.class})
     public final ResponseEntity<Object> handleCustomExceptions(Exception ex, WebRequest request) {
         if (ex instanceof NbpApiException) {
+            countError(ex, HttpStatus.INTERNAL_SERVER_ERROR);
             return this.handleExceptionInternal(ex, Map.of("message", "Cannot fetch the latest ratings from NBP API."),
                     new HttpHeaders(),
                     HttpStatus.INTERNAL_SERVER_ERROR, request);
         }
+        if (ex instanceof ExchangeConflictException) {
+            countError(ex, HttpStatus.CONFLICT);
+            return this.handleExceptionInternal(ex, Map.of("message", ex.getMessage()), new HttpHeaders(),
+                    HttpStatus.CONFLICT, request);
+        }
+        if (ex instanceof RateNotFoundException || ex instanceof QuoteNotFoundException) {
+            countError(ex, HttpStatus.NOT_FOUND);
+            return this.handleExceptionInternal(ex, Map.of("message", ex.getMessage()), new HttpHeaders(),
+                    HttpStatus.NOT_FOUND, request);
+        }
+        if (ex instanceof IdempotencyKeyReusedException) {
+            countError(ex, HttpStatus.UNPROCESSABLE_ENTITY);
+            return this.handleExceptionInternal(ex, Map.of("message", ex.getMessage()), new HttpHeaders(),
+                    HttpStatus.UNPROCESSABLE_ENTITY, request);
+        }
 
+        countError(ex, HttpStatus.BAD_REQUEST);
         return this.handleExceptionInternal(ex, Map.of("message", ex.getMessage()), new HttpHeaders(),
                 HttpStatus.BAD_REQUEST, request);
     }
+
+    private void countError(Exception ex, HttpStatusCode status) {
+        Counter.builder(METRIC_ERRORS)
+                .description("Requests rejected by the exception handler, by exception and status")
+                .tag("exception", ex.getClass().getSimpleName())
+                .tag("status", String.valueOf(status.value()))
+                .register(meterRegistry)
+                .increment();
+    }
 }
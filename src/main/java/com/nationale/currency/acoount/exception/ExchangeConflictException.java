@@ -0,0 +1,8 @@
+package com.nationale.currency.acoount.exception;
+
+public class ExchangeConflictException extends RuntimeException{
+
+    public ExchangeConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.nationale.currency.acoount.exception;
+
+public class IdempotencyKeyReusedException extends RuntimeException{
+
+    public IdempotencyKeyReusedException(String message) {
+        super(message);
+    }
+}
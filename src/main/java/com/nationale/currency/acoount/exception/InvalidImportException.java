@@ -0,0 +1,8 @@
+package com.nationale.currency.acoount.exception;
+
+public class InvalidImportException extends RuntimeException {
+
+    public InvalidImportException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.nationale.currency.acoount.exception;
+
+public class QuoteNotFoundException extends RuntimeException {
+
+    public QuoteNotFoundException(String message) {
+        super(message);
+    }
+}
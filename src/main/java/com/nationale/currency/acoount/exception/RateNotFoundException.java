@@ -0,0 +1,8 @@
+package com.nationale.currency.acoount.exception;
+
+public class RateNotFoundException extends RuntimeException {
+
+    public RateNotFoundException(String message) {
+        super(message);
+    }
+}
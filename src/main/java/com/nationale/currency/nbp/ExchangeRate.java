@@ -2,6 +2,6 @@ package com.nationale.currency.nbp;
 
 import java.math.BigDecimal;
 
-public record ExchangeRate(String effectiveDate, BigDecimal mid) {
+public record ExchangeRate(String currency, String code, BigDecimal mid) {
 
 }
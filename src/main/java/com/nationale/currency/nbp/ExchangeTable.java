@@ -0,0 +1,10 @@
+package com.nationale.currency.nbp;
+
+import java.util.List;
+
+/**
+ * NBP table of average exchange rates, every rate is the PLN price of one unit of the currency.
+ */
+public record ExchangeTable(String table, String no, String effectiveDate, List<ExchangeRate> rates) {
+
+}
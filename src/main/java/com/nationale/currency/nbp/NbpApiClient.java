@@ -1,34 +1,203 @@
 package com.nationale.currency.nbp;
 
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.nationale.currency.acoount.exception.NbpApiException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
 
+/**
+ * Non-blocking NBP client on the JDK {@link HttpClient}, which negotiates HTTP/2 and keeps the connection for later
+ * calls. When no response arrived within {@code nbp.api.hedge-after} a second, hedged request is sent and the first
+ * response wins, the other request is cancelled. At most {@code nbp.api.max-concurrent-requests} requests, hedges
+ * included, are in flight; calls over the limit are rejected instead of queued. The latest table and date range
+ * queries share the limit and the circuit breaker.
+ */
 @Slf4j
 @Component
 public class NbpApiClient {
 
-    private static final String URL_PATTERN = "%s/%s";
-    private final RestTemplate restTemplate;
+    /**
+     * Longest date range NBP answers in one query.
+     */
+    public static final int MAX_RANGE_DAYS = 93;
+    private static final String METRIC_REQUESTS = "nbp.api.requests";
+    private final HttpClient httpClient;
+    private final ObjectReader tableReader;
     private final String nbpApiUrl;
+    private final Duration readTimeout;
+    private final HttpRequest request;
+    private final long hedgeAfterMillis;
+    private final Semaphore permits;
+    private final NbpCircuitBreaker circuitBreaker;
+    private final MeterRegistry meterRegistry;
+    private final Counter hedges;
 
-    public NbpApiClient(RestTemplate restTemplate, @Value("${nbp.api.url}") String nbpApiUrl) {
-        this.restTemplate = restTemplate;
+    public NbpApiClient(HttpClient nbpHttpClient, ObjectMapper objectMapper, @Value("${nbp.api.url}") String nbpApiUrl,
+            @Value("${nbp.api.read-timeout:PT3S}") Duration readTimeout,
+            @Value("${nbp.api.hedge-after:PT0.5S}") Duration hedgeAfter,
+            @Value("${nbp.api.max-concurrent-requests:4}") int maxConcurrentRequests,
+            NbpCircuitBreaker circuitBreaker, MeterRegistry meterRegistry) {
+        this.httpClient = nbpHttpClient;
+        this.tableReader = objectMapper.readerFor(ExchangeTable[].class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
         this.nbpApiUrl = nbpApiUrl;
-        log.info("Starting NPB api client with basic url {}", nbpApiUrl);
+        this.readTimeout = readTimeout;
+        this.request = request(nbpApiUrl);
+        this.hedgeAfterMillis = hedgeAfter.toMillis();
+        this.permits = new Semaphore(maxConcurrentRequests);
+        this.circuitBreaker = circuitBreaker;
+        this.meterRegistry = meterRegistry;
+        this.hedges = Counter.builder("nbp.api.hedges")
+                .description("NBP api requests sent because the first one was slow")
+                .register(meterRegistry);
+        log.info("Starting NPB api client with basic url {}, hedge after {} and at most {} concurrent requests",
+                nbpApiUrl, hedgeAfter, maxConcurrentRequests);
+    }
+
+    /**
+     * @return the latest NBP table A, with the rates of all currencies it quotes; completes exceptionally with
+     * {@link NbpApiException} when NBP fails or the call is rejected
+     */
+    public CompletableFuture<ExchangeTable> findTableAsync() {
+        return fetch(request, false, tables -> tables.length == 0 ? null : tables[0]);
     }
 
-    public Exchange findExchange(String currencyCode) {
-        log.info("Querying NBP api for {}. ", currencyCode);
-        String url = String.format(URL_PATTERN, nbpApiUrl, currencyCode);
+    /**
+     * @return every NBP table A published from {@code from} to {@code to}, both inclusive and at most
+     * {@value #MAX_RANGE_DAYS} days apart, oldest first; empty when NBP published none in the range. Completes
+     * exceptionally like {@link #findTableAsync()}.
+     */
+    public CompletableFuture<List<ExchangeTable>> findTablesAsync(LocalDate from, LocalDate to) {
+        var days = ChronoUnit.DAYS.between(from, to) + 1;
+        if (days < 1 || days > MAX_RANGE_DAYS) {
+            throw new IllegalArgumentException("NBP date range must cover 1 to " + MAX_RANGE_DAYS + " days");
+        }
+        return fetch(request(nbpApiUrl + "/" + from + "/" + to + "/"), true, List::of);
+    }
+
+    /**
+     * @param range whether the request is a date range query, which NBP answers with 404 when it has no tables
+     */
+    private <T> CompletableFuture<T> fetch(HttpRequest request, boolean range, Function<ExchangeTable[], T> result) {
+        if (!permits.tryAcquire()) {
+            return rejected("NBP api concurrency limit reached");
+        }
+        if (!circuitBreaker.tryAcquire()) {
+            permits.release();
+            return rejected("NBP api circuit breaker is open");
+        }
+        log.info("Querying NBP api for table {}. ", request.uri());
+        var start = System.nanoTime();
+        var response = new CompletableFuture<ExchangeTable[]>();
+        var attempts = new CopyOnWriteArrayList<CompletableFuture<?>>();
+        var pending = new AtomicInteger(1);
+        send(request, range, response, attempts, pending);
+        if (hedgeAfterMillis > 0) {
+            CompletableFuture.delayedExecutor(hedgeAfterMillis, TimeUnit.MILLISECONDS)
+                    .execute(() -> hedge(request, range, response, attempts, pending));
+        }
+        return response.whenComplete((tables, error) -> {
+            attempts.forEach(attempt -> attempt.cancel(true));
+            var elapsed = System.nanoTime() - start;
+            if (error == null) {
+                circuitBreaker.onSuccess();
+                requestTimer("success", "none").record(elapsed, TimeUnit.NANOSECONDS);
+            } else {
+                circuitBreaker.onFailure();
+                requestTimer("error", error.getClass().getSimpleName()).record(elapsed, TimeUnit.NANOSECONDS);
+                log.error("NPB api call has failed.", error);
+            }
+        }).thenApply(result)
+                .exceptionallyCompose(error -> CompletableFuture.failedFuture(new NbpApiException("NBP api exception")));
+    }
+
+    private void hedge(HttpRequest request, boolean range, CompletableFuture<ExchangeTable[]> response,
+            List<CompletableFuture<?>> attempts, AtomicInteger pending) {
+        if (response.isDone() || !permits.tryAcquire()) {
+            return;
+        }
+        log.warn("NBP api has not answered within {} ms, sending a hedged request.", hedgeAfterMillis);
+        hedges.increment();
+        pending.incrementAndGet();
+        send(request, range, response, attempts, pending);
+    }
+
+    private void send(HttpRequest request, boolean range, CompletableFuture<ExchangeTable[]> response,
+            List<CompletableFuture<?>> attempts, AtomicInteger pending) {
+        var attempt = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+        attempts.add(attempt);
+        if (response.isDone()) {
+            // answered while this attempt was being sent, after the attempts were cancelled
+            attempt.cancel(true);
+        }
+        attempt.thenApply(answer -> readTables(answer, range)).whenComplete((tables, error) -> {
+            permits.release();
+            if (error == null) {
+                response.complete(tables);
+            } else if (pending.decrementAndGet() == 0) {
+                response.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+            }
+        });
+    }
+
+    private ExchangeTable[] readTables(HttpResponse<byte[]> response, boolean range) {
+        if (range && response.statusCode() == 404) {
+            return new ExchangeTable[0];
+        }
+        if (response.statusCode() != 200) {
+            throw new NbpApiException("NBP api answered with status " + response.statusCode());
+        }
         try {
-            return restTemplate.getForObject(url, Exchange.class);
-        } catch (RestClientException e) {
-            log.error("NPB api call has failed.", e);
-            throw new NbpApiException("NBP api exception");
+            ExchangeTable[] tables = tableReader.readValue(response.body());
+            return tables == null ? new ExchangeTable[0] : tables;
+        } catch (IOException e) {
+            throw new NbpApiException("NBP api answered with an unreadable table");
         }
     }
+
+    private HttpRequest request(String uri) {
+        return HttpRequest.newBuilder(URI.create(uri))
+                .header("Accept", "application/json")
+                .timeout(readTimeout)
+                .GET()
+                .build();
+    }
+
+    private <T> CompletableFuture<T> rejected(String message) {
+        log.warn("{}, skipping table query.", message);
+        requestTimer("rejected", "none").record(0, TimeUnit.NANOSECONDS);
+        return CompletableFuture.failedFuture(new NbpApiException(message));
+    }
+
+    private Timer requestTimer(String outcome, String exception) {
+        return Timer.builder(METRIC_REQUESTS)
+                .description("NBP api calls by outcome")
+                .tag("outcome", outcome)
+                .tag("exception", exception)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
 }
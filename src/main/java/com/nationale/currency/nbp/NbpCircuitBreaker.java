@@ -0,0 +1,113 @@
+package com.nationale.currency.nbp;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stops calling NBP after {@code failure-threshold} consecutive failures, so request threads fail fast instead of
+ * waiting for timeouts while NBP is down. After {@code open-duration} a single trial call is let through; its result
+ * decides whether the circuit closes again or stays open for another period.
+ */
+@Slf4j
+@Component
+public class NbpCircuitBreaker {
+
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final Clock clock;
+    private final MeterRegistry meterRegistry;
+    private final int failureThreshold;
+    private final long openDurationMillis;
+    private final AtomicReference<Status> status = new AtomicReference<>(Status.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    public NbpCircuitBreaker(Clock clock, MeterRegistry meterRegistry,
+            @Value("${nbp.circuit-breaker.failure-threshold:5}") int failureThreshold,
+            @Value("${nbp.circuit-breaker.open-duration:PT30S}") Duration openDuration) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("nbp.circuit-breaker.failure-threshold must be positive");
+        }
+        this.clock = clock;
+        this.meterRegistry = meterRegistry;
+        this.failureThreshold = failureThreshold;
+        this.openDurationMillis = openDuration.toMillis();
+        Gauge.builder("nbp.circuit.breaker.state", status, current -> current.get().state().ordinal())
+                .description("0 - closed, 1 - half open, 2 - open")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return true when the caller may call NBP, false when the call should be rejected without trying
+     */
+    public boolean tryAcquire() {
+        var current = status.get();
+        if (current.state() == State.CLOSED) {
+            return true;
+        }
+        if (current.state() == State.OPEN && clock.millis() - current.openedAt() >= openDurationMillis) {
+            return transition(current, Status.HALF_OPEN);
+        }
+        return false;
+    }
+
+    public void onSuccess() {
+        consecutiveFailures.set(0);
+        var current = status.get();
+        if (current.state() == State.HALF_OPEN) {
+            transition(current, Status.CLOSED);
+        }
+    }
+
+    public void onFailure() {
+        var current = status.get();
+        if (current.state() == State.HALF_OPEN) {
+            open(current);
+        } else if (consecutiveFailures.incrementAndGet() >= failureThreshold && current.state() == State.CLOSED) {
+            open(current);
+        }
+    }
+
+    public State getState() {
+        return status.get().state();
+    }
+
+    private void open(Status from) {
+        if (transition(from, new Status(State.OPEN, clock.millis()))) {
+            consecutiveFailures.set(0);
+        }
+    }
+
+    /**
+     * Moves from exactly the {@code from} status, so a failure reported late by a call started before the circuit
+     * opened cannot move the time it opened at.
+     */
+    private boolean transition(Status from, Status to) {
+        if (!status.compareAndSet(from, to)) {
+            return false;
+        }
+        log.warn("NBP api circuit breaker changed state from {} to {}.", from.state(), to.state());
+        Counter.builder("nbp.circuit.breaker.transitions")
+                .tag("from", from.state().name())
+                .tag("to", to.state().name())
+                .register(meterRegistry)
+                .increment();
+        return true;
+    }
+
+    private record Status(State state, long openedAt) {
+
+        static final Status CLOSED = new Status(State.CLOSED, 0L);
+        static final Status HALF_OPEN = new Status(State.HALF_OPEN, 0L);
+    }
+}
@@ -0,0 +1,220 @@
+package com.nationale.currency.nbp;
+
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.nationale.currency.acoount.exception.NbpApiException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the latest NBP table A as one immutable {@link RateTable}, so the exchange path reads all rates from a
+ * volatile snapshot without locks or an NBP round trip. The table is refreshed in the background once NBP is expected
+ * to have published a newer one or once it is older than {@code nbp.cache.refresh-after}. A table older than
+ * {@code nbp.cache.max-age} is served as stale while the refresher keeps retrying, but only until it reaches
+ * {@code nbp.cache.stale-max-age}; after that the caller waits for a fresh fetch instead. Concurrent misses share one
+ * in-flight NBP call. The rates of the latest table are published as {@code nbp.rate{currency}}, one gauge per code
+ * the table quotes.
+ */
+@Slf4j
+@Component
+public class NbpRateCache {
+
+    private static final String METRIC_REQUESTS = "nbp.rate.cache.requests";
+    private static final String METRIC_REFRESHES = "nbp.rate.cache.refreshes";
+
+    private final NbpApiClient nbpApiClient;
+    private final Clock clock;
+    private final long refreshAfterMillis;
+    private final long maxAgeMillis;
+    private final long staleMaxAgeMillis;
+    private final LocalTime publicationTime;
+    private final ZoneId zone;
+    private final AtomicReference<CompletableFuture<RateTable>> inFlight = new AtomicReference<>();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter staleHits;
+    private final Counter refreshSuccesses;
+    private final Counter refreshFailures;
+    private final MultiGauge rates;
+    private volatile CachedTable current;
+
+    public NbpRateCache(NbpApiClient nbpApiClient, Clock clock, MeterRegistry meterRegistry,
+            @Value("${nbp.cache.refresh-after:PT15M}") Duration refreshAfter,
+            @Value("${nbp.cache.max-age:PT1H}") Duration maxAge,
+            @Value("${nbp.cache.stale-max-age:PT12H}") Duration staleMaxAge,
+            @Value("${nbp.cache.publication-time:12:15}") String publicationTime,
+            @Value("${nbp.cache.zone:Europe/Warsaw}") ZoneId zone) {
+        if (refreshAfter.compareTo(maxAge) > 0) {
+            throw new IllegalArgumentException("nbp.cache.refresh-after must not be greater than nbp.cache.max-age");
+        }
+        if (maxAge.compareTo(staleMaxAge) > 0) {
+            throw new IllegalArgumentException("nbp.cache.max-age must not be greater than nbp.cache.stale-max-age");
+        }
+        this.nbpApiClient = nbpApiClient;
+        this.clock = clock;
+        this.refreshAfterMillis = refreshAfter.toMillis();
+        this.maxAgeMillis = maxAge.toMillis();
+        this.staleMaxAgeMillis = staleMaxAge.toMillis();
+        this.publicationTime = LocalTime.parse(publicationTime);
+        this.zone = zone;
+        this.hits = Counter.builder(METRIC_REQUESTS).tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder(METRIC_REQUESTS).tag("result", "miss").register(meterRegistry);
+        this.staleHits = Counter.builder(METRIC_REQUESTS).tag("result", "stale").register(meterRegistry);
+        this.refreshSuccesses = Counter.builder(METRIC_REFRESHES).tag("outcome", "success").register(meterRegistry);
+        this.refreshFailures = Counter.builder(METRIC_REFRESHES).tag("outcome", "failure").register(meterRegistry);
+        Gauge.builder("nbp.rate.cache.size", this, NbpRateCache::size).register(meterRegistry);
+        this.rates = MultiGauge.builder("nbp.rate")
+                .description("PLN mid rate of each currency of the latest NBP table")
+                .register(meterRegistry);
+        log.info("Starting NBP rate cache with refresh after {}, max age {} and stale max age {}", refreshAfter, maxAge,
+                staleMaxAge);
+    }
+
+    /**
+     * @return the current NBP table, loaded on the first call
+     */
+    public RateTable currentTable() {
+        return await(currentTableAsync());
+    }
+
+    /**
+     * Same as {@link #currentTable()}, but returns without waiting when the table has to be fetched, so the caller can
+     * do other work while NBP answers. A cached table is returned as an already completed future.
+     */
+    public CompletableFuture<RateTable> currentTableAsync() {
+        var cached = current;
+        if (cached != null) {
+            var age = clock.millis() - cached.fetchedAt();
+            if (age < maxAgeMillis) {
+                hits.increment();
+                return cached.completed();
+            }
+            if (age < staleMaxAgeMillis) {
+                staleHits.increment();
+                return cached.completed();
+            }
+        }
+        misses.increment();
+        return load();
+    }
+
+    @Scheduled(fixedDelayString = "${nbp.cache.refresh-interval:PT1M}")
+    public void refresh() {
+        var cached = current;
+        if (cached != null && isDue(cached, clock.instant())) {
+            try {
+                await(load());
+            } catch (RuntimeException e) {
+                log.warn("Background refresh of NBP table has failed, keeping table from {}.",
+                        cached.table().effectiveDate());
+            }
+        }
+    }
+
+    /**
+     * Waits for a table returned by {@link #currentTableAsync()}, rethrowing the exception it failed with.
+     */
+    public static RateTable await(CompletableFuture<RateTable> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private CompletableFuture<RateTable> load() {
+        var future = new CompletableFuture<RateTable>();
+        var existing = inFlight.compareAndExchange(null, future);
+        if (existing != null) {
+            return existing;
+        }
+        fetch().whenComplete((table, error) -> {
+            if (error == null) {
+                current = new CachedTable(table, CompletableFuture.completedFuture(table), clock.millis());
+                refreshSuccesses.increment();
+                publishRates(table);
+            } else {
+                refreshFailures.increment();
+            }
+            // Cleared before completing, so a caller woken up by the future sees the new table or loads again.
+            inFlight.compareAndSet(future, null);
+            if (error == null) {
+                future.complete(table);
+            } else {
+                future.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+            }
+        });
+        return future;
+    }
+
+    private CompletableFuture<RateTable> fetch() {
+        CompletableFuture<ExchangeTable> table;
+        try {
+            table = nbpApiClient.findTableAsync();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return table.thenApply(exchangeTable -> {
+            if (exchangeTable == null || exchangeTable.rates() == null || exchangeTable.rates().isEmpty()) {
+                throw new NbpApiException("NBP api returned no rates");
+            }
+            return RateTable.of(exchangeTable);
+        });
+    }
+
+    private boolean isDue(CachedTable cached, Instant now) {
+        if (now.toEpochMilli() - cached.fetchedAt() >= refreshAfterMillis) {
+            return true;
+        }
+        var local = now.atZone(zone);
+        var today = local.toLocalDate();
+        return isPublicationDay(today)
+                && !local.toLocalTime().isBefore(publicationTime)
+                && cached.table().effectiveDate().isBefore(today);
+    }
+
+    /**
+     * Tags the rates by the codes of the table, so the tag only ever takes the values NBP quotes; codes dropped from
+     * the table are removed.
+     */
+    private void publishRates(RateTable table) {
+        rates.register(table.currencies().stream()
+                .filter(currency -> !RateTable.PLN.equals(currency))
+                .<MultiGauge.Row<?>>map(currency -> MultiGauge.Row.of(Tags.of("currency", currency),
+                        table.rate(currency).toBigDecimal().doubleValue()))
+                .toList(), true);
+    }
+
+    private double size() {
+        var cached = current;
+        return cached == null ? 0 : cached.table().currencies().size();
+    }
+
+    private static boolean isPublicationDay(LocalDate date) {
+        var dayOfWeek = date.getDayOfWeek();
+        return dayOfWeek != DayOfWeek.SATURDAY && dayOfWeek != DayOfWeek.SUNDAY;
+    }
+
+    private record CachedTable(RateTable table, CompletableFuture<RateTable> completed, long fetchedAt) {
+
+    }
+}
@@ -0,0 +1,222 @@
+package com.nationale.currency.nbp;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.nationale.currency.acoount.Money;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Every NBP table A since {@code nbp.history.start}, to price amounts as of a past date without calling NBP. Each
+ * currency has one pair of sorted primitive arrays, the effective dates as epoch days and the rates in units of
+ * 10<sup>-{@value #RATE_SCALE}</sup> PLN, so a lookup is one binary search and the whole history of table A takes a
+ * few hundred kilobytes. The arrays are immutable and replaced as a whole when tables are added, so lookups take no
+ * lock.
+ * <p>
+ * With {@code nbp.history.enabled} the history is backfilled in date range queries of up to
+ * {@value NbpApiClient#MAX_RANGE_DAYS} days and kept up to date every {@code nbp.history.refresh-interval}. It lives
+ * in memory only and is backfilled again after a restart.
+ */
+@Slf4j
+@Component
+public class NbpRateHistory {
+
+    static final int RATE_SCALE = 8;
+    private static final LocalDate FIRST_TABLE = LocalDate.of(2002, 1, 2);
+
+    private final NbpApiClient nbpApiClient;
+    private final Clock clock;
+    private final ZoneId zone;
+    private final boolean enabled;
+    private final LocalDate start;
+    private final ReentrantLock updates = new ReentrantLock();
+    private volatile Map<String, Series> series = Map.of();
+    private volatile LocalDate loadedThrough;
+
+    public NbpRateHistory(NbpApiClient nbpApiClient, Clock clock, MeterRegistry meterRegistry,
+            @Value("${nbp.history.enabled:false}") boolean enabled,
+            @Value("${nbp.history.start:2024-01-01}") LocalDate start,
+            @Value("${nbp.cache.zone:Europe/Warsaw}") ZoneId zone) {
+        if (start.isBefore(FIRST_TABLE)) {
+            throw new IllegalArgumentException("nbp.history.start must not be before " + FIRST_TABLE);
+        }
+        this.nbpApiClient = nbpApiClient;
+        this.clock = clock;
+        this.zone = zone;
+        this.enabled = enabled;
+        this.start = start;
+        Gauge.builder("nbp.history.rates", this, NbpRateHistory::size)
+                .description("Historical NBP rates held, one per currency and table")
+                .register(meterRegistry);
+        log.info("Starting NBP rate history from {}, backfill {}", start, enabled ? "enabled" : "disabled");
+    }
+
+    /**
+     * @return the rate of the latest table published on or before {@code date} that quotes the currency, PLN at 1;
+     * {@code null} when there is none or the history does not reach {@code date} yet
+     */
+    public HistoricalRate rateAsOf(String currencyCode, LocalDate date) {
+        var through = loadedThrough;
+        if (through == null || date.isAfter(through) || date.isBefore(start)) {
+            return null;
+        }
+        var code = currencyCode.toUpperCase();
+        if (RateTable.PLN.equals(code)) {
+            return new HistoricalRate(code, date, new Money.Rate(1L, 0));
+        }
+        var rates = series.get(code);
+        return rates == null ? null : rates.asOf(code, date.toEpochDay());
+    }
+
+    /**
+     * @return the last day the history holds every published table of, {@code null} before the first backfill
+     */
+    public LocalDate loadedThrough() {
+        return loadedThrough;
+    }
+
+    /**
+     * Fetches the tables after the ones already held, up to today. The last day held is fetched again, so a table
+     * published after the previous run is not missed. A failed query ends the run; the next one resumes there.
+     */
+    @Scheduled(fixedDelayString = "${nbp.history.refresh-interval:PT1H}")
+    public void backfill() {
+        if (!enabled || !updates.tryLock()) {
+            return;
+        }
+        try {
+            var today = LocalDate.now(clock.withZone(zone));
+            var from = loadedThrough == null ? start : loadedThrough;
+            while (!from.isAfter(today)) {
+                var to = from.plusDays(NbpApiClient.MAX_RANGE_DAYS - 1);
+                if (to.isAfter(today)) {
+                    to = today;
+                }
+                List<ExchangeTable> tables;
+                try {
+                    tables = nbpApiClient.findTablesAsync(from, to).join();
+                } catch (RuntimeException e) {
+                    log.warn("Backfill of NBP rates from {} to {} has failed, history reaches {}.", from, to,
+                            loadedThrough);
+                    return;
+                }
+                add(tables);
+                loadedThrough = to;
+                from = to.plusDays(1);
+            }
+        } finally {
+            updates.unlock();
+        }
+    }
+
+    /**
+     * Adds the tables, replacing the rates of a currency on a date already held.
+     */
+    void add(List<ExchangeTable> tables) {
+        updates.lock();
+        try {
+            var added = new HashMap<String, TreeMap<Integer, Long>>();
+            for (var table : tables) {
+                var day = (int) LocalDate.parse(table.effectiveDate()).toEpochDay();
+                for (var rate : table.rates()) {
+                    var units = units(rate);
+                    if (units > 0) {
+                        added.computeIfAbsent(rate.code().toUpperCase(), code -> new TreeMap<>()).put(day, units);
+                    }
+                }
+            }
+            var merged = new HashMap<>(series);
+            added.forEach((code, rates) -> merged.merge(code, Series.of(rates), Series::merge));
+            series = Map.copyOf(merged);
+        } finally {
+            updates.unlock();
+        }
+    }
+
+    private int size() {
+        return series.values().stream().mapToInt(rates -> rates.days.length).sum();
+    }
+
+    private static long units(ExchangeRate rate) {
+        try {
+            return rate.mid().setScale(RATE_SCALE).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            log.warn("Skipping NBP rate {} of {}, it does not fit {} decimal places.", rate.mid(), rate.code(),
+                    RATE_SCALE);
+            return 0L;
+        }
+    }
+
+    /**
+     * PLN price of one unit of the currency in the NBP table published on {@code effectiveDate}.
+     */
+    public record HistoricalRate(String currency, LocalDate effectiveDate, Money.Rate rate) {
+
+    }
+
+    /**
+     * Rates of one currency, {@code days} ascending and unique.
+     */
+    private record Series(int[] days, long[] rates) {
+
+        static Series of(TreeMap<Integer, Long> rates) {
+            var days = new int[rates.size()];
+            var units = new long[rates.size()];
+            var i = 0;
+            for (var rate : rates.entrySet()) {
+                days[i] = rate.getKey();
+                units[i++] = rate.getValue();
+            }
+            return new Series(days, units);
+        }
+
+        HistoricalRate asOf(String code, long epochDay) {
+            var i = Arrays.binarySearch(days, (int) epochDay);
+            if (i < 0) {
+                i = -i - 2;
+            }
+            if (i < 0) {
+                return null;
+            }
+            return new HistoricalRate(code, LocalDate.ofEpochDay(days[i]),
+                    Money.Rate.of(BigDecimal.valueOf(rates[i], RATE_SCALE)));
+        }
+
+        /**
+         * Merges two series, the rates of {@code newer} win on the same day.
+         */
+        Series merge(Series newer) {
+            var days = new int[this.days.length + newer.days.length];
+            var rates = new long[days.length];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < this.days.length || j < newer.days.length) {
+                if (j == newer.days.length || i < this.days.length && this.days[i] < newer.days[j]) {
+                    days[n] = this.days[i];
+                    rates[n++] = this.rates[i++];
+                } else {
+                    if (i < this.days.length && this.days[i] == newer.days[j]) {
+                        i++;
+                    }
+                    days[n] = newer.days[j];
+                    rates[n++] = newer.rates[j++];
+                }
+            }
+            return new Series(Arrays.copyOf(days, n), Arrays.copyOf(rates, n));
+        }
+    }
+}
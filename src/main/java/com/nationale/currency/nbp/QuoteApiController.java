@@ -0,0 +1,57 @@
+package com.nationale.currency.nbp;
+
+import java.time.LocalDate;
+
+import com.nationale.currency.acoount.Money;
+import com.nationale.currency.acoount.exception.InvalidExchangeException;
+import com.nationale.currency.acoount.exception.RateNotFoundException;
+import com.nationale.generated.api.QuoteApi;
+import com.nationale.generated.model.Quote;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Prices amounts at past NBP rates from {@link NbpRateHistory}, without an NBP call per request.
+ */
+@RequiredArgsConstructor
+@RestController
+public class QuoteApiController implements QuoteApi {
+
+    private final NbpRateHistory nbpRateHistory;
+
+    @Override
+    public ResponseEntity<Quote> getQuote(String from, String to, Double amount, LocalDate date) {
+        var fromRate = rateAsOf(from, date);
+        var toRate = rateAsOf(to, date);
+        long converted;
+        try {
+            converted = Money.convert(Money.fromDouble(amount), fromRate.rate(), toRate.rate());
+        } catch (ArithmeticException e) {
+            throw new InvalidExchangeException("Amount is out of range.");
+        }
+        var effectiveDate = fromRate.effectiveDate().isBefore(toRate.effectiveDate())
+                ? fromRate.effectiveDate() : toRate.effectiveDate();
+        return ResponseEntity.ok(Quote.builder()
+                .from(fromRate.currency())
+                .to(toRate.currency())
+                .amount(amount)
+                .converted(Money.toDouble(converted))
+                .fromRate(fromRate.rate().toBigDecimal())
+                .toRate(toRate.rate().toBigDecimal())
+                .date(date)
+                .effectiveDate(effectiveDate)
+                .build());
+    }
+
+    private NbpRateHistory.HistoricalRate rateAsOf(String currency, LocalDate date) {
+        var rate = nbpRateHistory.rateAsOf(currency, date);
+        if (rate == null) {
+            var loadedThrough = nbpRateHistory.loadedThrough();
+            throw new RateNotFoundException(loadedThrough == null || date.isAfter(loadedThrough)
+                    ? "NBP rates of " + date + " are not loaded yet."
+                    : "No NBP rate of " + currency.toUpperCase() + " on or before " + date + ".");
+        }
+        return rate;
+    }
+}
@@ -0,0 +1,92 @@
+package com.nationale.currency.nbp;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.nationale.currency.acoount.Money;
+
+/**
+ * Immutable snapshot of one NBP table, every rate quoted in PLN. Rates are kept in an array indexed by the three
+ * letters of the currency code, so a lookup is a few arithmetic operations and one array read: no hashing, no locks
+ * and no allocation, which keeps the exchange path cheap however many threads share the snapshot. Cross rates between
+ * two foreign currencies go through PLN with a single rounding, see {@link Money#convert}.
+ */
+public final class RateTable {
+
+    public static final String PLN = "PLN";
+    private static final Money.Rate PLN_RATE = new Money.Rate(1L, 0);
+    private static final int LETTERS = 26;
+
+    private final LocalDate effectiveDate;
+    private final Money.Rate[] rates = new Money.Rate[LETTERS * LETTERS * LETTERS];
+    private final List<String> currencies;
+
+    private RateTable(LocalDate effectiveDate, List<ExchangeRate> exchangeRates) {
+        this.effectiveDate = effectiveDate;
+        var codes = new ArrayList<String>(exchangeRates.size() + 1);
+        rates[index(PLN)] = PLN_RATE;
+        codes.add(PLN);
+        for (var exchangeRate : exchangeRates) {
+            var index = index(exchangeRate.code());
+            if (index < 0 || rates[index] != null) {
+                continue;
+            }
+            rates[index] = Money.Rate.of(exchangeRate.mid());
+            codes.add(exchangeRate.code().toUpperCase());
+        }
+        Collections.sort(codes);
+        this.currencies = List.copyOf(codes);
+    }
+
+    public static RateTable of(ExchangeTable table) {
+        return new RateTable(LocalDate.parse(table.effectiveDate()), table.rates());
+    }
+
+    public LocalDate effectiveDate() {
+        return effectiveDate;
+    }
+
+    /**
+     * @return currency codes of the table and PLN, sorted
+     */
+    public List<String> currencies() {
+        return currencies;
+    }
+
+    public boolean supports(String currencyCode) {
+        return rate(currencyCode) != null;
+    }
+
+    /**
+     * @return PLN price of one unit of the currency, {@code null} when the table does not quote it
+     */
+    public Money.Rate rate(String currencyCode) {
+        var index = index(currencyCode);
+        return index < 0 ? null : rates[index];
+    }
+
+    /**
+     * Converts {@code units} of {@code from} into {@code to}, both must be {@link #supports supported}.
+     */
+    public long convert(long units, String from, String to) {
+        return Money.convert(units, rate(from), rate(to));
+    }
+
+    private static int index(String currencyCode) {
+        if (currencyCode == null || currencyCode.length() != 3) {
+            return -1;
+        }
+        var index = 0;
+        for (int i = 0; i < 3; i++) {
+            // Folds ASCII letters to lower case, anything else ends up outside of a-z.
+            var letter = (currencyCode.charAt(i) | 0x20) - 'a';
+            if (letter < 0 || letter >= LETTERS) {
+                return -1;
+            }
+            index = index * LETTERS + letter;
+        }
+        return index;
+    }
+}
@@ -0,0 +1,32 @@
+-- Moves the balance_pln and balance_usd columns of account_entity to the account_balance sub-ledger. Runs before
+-- Hibernate on every start: the copy is only executed while account_entity still has balance_pln, rows already in
+-- account_balance are kept and dropping a column that is gone changes nothing, so a new or migrated database is left
+-- as it is and an interrupted run completes on the next start. PLN is copied for every account like a registration
+-- opens it, USD only when it is not zero. Both columns are NUMERIC(12, 4), so the values are Money units as they are.
+EXECUTE IMMEDIATE (SELECT COALESCE(MAX('CREATE TABLE IF NOT EXISTS account_balance (
+    api_key ' || c.data_type || CASE WHEN c.data_type = 'CHARACTER VARYING'
+        THEN '(' || c.character_maximum_length || ')' ELSE '' END || ' NOT NULL,
+    currency VARCHAR(3) NOT NULL,
+    balance NUMERIC(19, 4) NOT NULL,
+    PRIMARY KEY (currency, api_key),
+    CONSTRAINT account_balance_account_fk FOREIGN KEY (api_key) REFERENCES account_entity
+)'), 'SET @balance_columns_migrated = TRUE')
+    FROM information_schema.columns c
+    JOIN information_schema.columns p ON p.table_schema = c.table_schema AND p.table_name = c.table_name
+    WHERE c.table_schema = SCHEMA() AND c.table_name = 'ACCOUNT_ENTITY' AND c.column_name = 'API_KEY'
+        AND p.column_name = 'BALANCE_PLN');
+EXECUTE IMMEDIATE (SELECT COALESCE(MAX('INSERT INTO account_balance (api_key, currency, balance)
+    SELECT a.api_key, ''PLN'', a.balance_pln FROM account_entity a
+    WHERE NOT EXISTS (SELECT 1 FROM account_balance b WHERE b.api_key = a.api_key AND b.currency = ''PLN'')'),
+        'SET @balance_columns_migrated = TRUE')
+    FROM information_schema.columns
+    WHERE table_schema = SCHEMA() AND table_name = 'ACCOUNT_ENTITY' AND column_name = 'BALANCE_PLN');
+EXECUTE IMMEDIATE (SELECT COALESCE(MAX('INSERT INTO account_balance (api_key, currency, balance)
+    SELECT a.api_key, ''USD'', a.balance_usd FROM account_entity a
+    WHERE a.balance_usd <> 0
+        AND NOT EXISTS (SELECT 1 FROM account_balance b WHERE b.api_key = a.api_key AND b.currency = ''USD'')'),
+        'SET @balance_columns_migrated = TRUE')
+    FROM information_schema.columns
+    WHERE table_schema = SCHEMA() AND table_name = 'ACCOUNT_ENTITY' AND column_name = 'BALANCE_USD');
+ALTER TABLE IF EXISTS account_entity DROP COLUMN IF EXISTS balance_pln;
+ALTER TABLE IF EXISTS account_entity DROP COLUMN IF EXISTS balance_usd;
@@ -0,0 +1,8 @@
+-- Stores api keys as the 16-byte UUID type instead of VARCHAR(255). Runs before Hibernate on every start: converting a
+-- column that is already UUID changes nothing and missing tables are skipped, so a new database is left to the schema
+-- and an existing one is converted in place, keeping its keys, indexes and the foreign key of account_balance.
+ALTER TABLE IF EXISTS account_entity ALTER COLUMN api_key SET DATA TYPE UUID;
+ALTER TABLE IF EXISTS account_balance ALTER COLUMN api_key SET DATA TYPE UUID;
+ALTER TABLE IF EXISTS exchange_journal ALTER COLUMN api_key SET DATA TYPE UUID;
+ALTER TABLE IF EXISTS account_balance_snapshot ALTER COLUMN api_key SET DATA TYPE UUID;
+ALTER TABLE IF EXISTS idempotency_record ALTER COLUMN api_key SET DATA TYPE UUID;
@@ -0,0 +1,25 @@
+-- Opens the journal of accounts registered before it existed. Runs after db/schema.sql and db/api-key-uuid.sql on
+-- every start: only accounts without an OPENING entry are opened, so a new or migrated database is left as it is. The
+-- opening of a currency is its balance less what the journal already credited plus what it debited, so the entries
+-- of an account add up to account_balance. PLN is opened for every account like a registration opens it, priced at 1;
+-- other currencies only when not zero and without a rate, which is not known. A snapshot of account_balance at the
+-- new entries lets the balances be rebuilt from it right away.
+ALTER TABLE exchange_journal ALTER COLUMN to_rate SET NULL;
+CREATE LOCAL TEMPORARY TABLE journal_opening AS
+SELECT b.api_key, b.currency, b.balance
+        - COALESCE((SELECT SUM(j.to_amount) FROM exchange_journal j
+            WHERE j.api_key = b.api_key AND j.to_currency = b.currency), 0)
+        + COALESCE((SELECT SUM(j.from_amount) FROM exchange_journal j
+            WHERE j.api_key = b.api_key AND j.from_currency = b.currency), 0) AS amount
+FROM account_balance b
+WHERE NOT EXISTS (SELECT 1 FROM exchange_journal o WHERE o.api_key = b.api_key AND o.type = 'OPENING');
+DELETE FROM journal_opening WHERE amount = 0 AND currency <> 'PLN';
+INSERT INTO exchange_journal (id, api_key, type, to_currency, to_amount, to_rate, created_at)
+SELECT NEXT VALUE FOR exchange_journal_seq, api_key, 'OPENING', currency, amount,
+    CASE WHEN currency = 'PLN' THEN 1 END, CURRENT_TIMESTAMP
+FROM journal_opening;
+INSERT INTO account_balance_snapshot (api_key, journal_id, currency, balance)
+SELECT b.api_key, (SELECT MAX(j.id) FROM exchange_journal j WHERE j.api_key = b.api_key), b.currency, b.balance
+FROM account_balance b
+WHERE b.api_key IN (SELECT api_key FROM journal_opening);
+DROP TABLE journal_opening;
@@ -0,0 +1,58 @@
+-- Schema of the perf profile, which creates it with this script instead of letting Hibernate inspect the database at
+-- startup. Keep in line with the entities; statements are idempotent, so the script runs on every start.
+CREATE SEQUENCE IF NOT EXISTS exchange_journal_seq START WITH 1 INCREMENT BY 1;
+
+CREATE TABLE IF NOT EXISTS account_entity (
+    api_key UUID NOT NULL,
+    first_name VARCHAR(255) NOT NULL,
+    last_name VARCHAR(255) NOT NULL,
+    version BIGINT DEFAULT 0 NOT NULL,
+    PRIMARY KEY (api_key)
+);
+
+CREATE TABLE IF NOT EXISTS account_balance (
+    api_key UUID NOT NULL,
+    currency VARCHAR(3) NOT NULL,
+    balance NUMERIC(19, 4) NOT NULL,
+    PRIMARY KEY (currency, api_key),
+    CONSTRAINT account_balance_account_fk FOREIGN KEY (api_key) REFERENCES account_entity
+);
+
+CREATE TABLE IF NOT EXISTS exchange_journal (
+    id BIGINT NOT NULL,
+    api_key UUID NOT NULL,
+    type ENUM ('EXCHANGE', 'OPENING') NOT NULL,
+    from_currency VARCHAR(3),
+    from_amount NUMERIC(19, 4),
+    from_rate NUMERIC(19, 8),
+    to_currency VARCHAR(3) NOT NULL,
+    to_amount NUMERIC(19, 4) NOT NULL,
+    to_rate NUMERIC(19, 8),
+    effective_date DATE,
+    created_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX IF NOT EXISTS exchange_journal_api_key_id ON exchange_journal (api_key, id);
+
+CREATE TABLE IF NOT EXISTS account_balance_snapshot (
+    api_key UUID NOT NULL,
+    journal_id BIGINT NOT NULL,
+    currency VARCHAR(3) NOT NULL,
+    balance NUMERIC(19, 4) NOT NULL,
+    PRIMARY KEY (currency, journal_id, api_key)
+);
+
+CREATE INDEX IF NOT EXISTS account_balance_snapshot_api_key_journal_id
+    ON account_balance_snapshot (api_key, journal_id);
+
+CREATE TABLE IF NOT EXISTS idempotency_record (
+    api_key UUID NOT NULL,
+    idempotency_key VARCHAR(255) NOT NULL,
+    fingerprint VARCHAR(64) NOT NULL,
+    response VARCHAR(8192) NOT NULL,
+    created_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (api_key, idempotency_key)
+);
+
+CREATE INDEX IF NOT EXISTS idempotency_record_created_at ON idempotency_record (created_at);
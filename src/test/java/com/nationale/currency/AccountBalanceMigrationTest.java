@@ -0,0 +1,99 @@
+package com.nationale.currency;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+/**
+ * Runs {@code db/account-balance.sql} on a database written before balances moved to {@code account_balance}.
+ */
+class AccountBalanceMigrationTest {
+
+    private static final String API_KEY = "cecb5b42-7c24-41cd-895c-1d3747c8444d";
+    private static final String OTHER_API_KEY = "7a6b5c4d-3e2f-4a1b-8c9d-0e1f2a3b4c5d";
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:account-balance-migration", "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+        dataSource.destroy();
+    }
+
+    @Test
+    void shouldMoveBalanceColumnsToSubLedger_keepingAccounts() {
+        jdbcTemplate.execute("""
+                CREATE TABLE account_entity (api_key VARCHAR(255) NOT NULL PRIMARY KEY,
+                    first_name VARCHAR(255) NOT NULL, last_name VARCHAR(255) NOT NULL,
+                    balance_pln NUMERIC(12, 4) NOT NULL, balance_usd NUMERIC(12, 4) NOT NULL,
+                    version BIGINT DEFAULT 0 NOT NULL)""");
+        jdbcTemplate.update("INSERT INTO account_entity VALUES (?, 'John', 'Smith', 100.5, 2.25, 3)", API_KEY);
+        jdbcTemplate.update("INSERT INTO account_entity VALUES (?, 'Jane', 'Smith', 0, 0, 0)", OTHER_API_KEY);
+
+        migrate();
+        migrate();
+        new ResourceDatabasePopulator(new ClassPathResource("db/api-key-uuid.sql")).execute(dataSource);
+
+        assertEquals(List.of(
+                        Map.of("API_KEY", OTHER_API_KEY, "CURRENCY", "PLN", "BALANCE", new BigDecimal("0.0000")),
+                        Map.of("API_KEY", API_KEY, "CURRENCY", "PLN", "BALANCE", new BigDecimal("100.5000")),
+                        Map.of("API_KEY", API_KEY, "CURRENCY", "USD", "BALANCE", new BigDecimal("2.2500"))),
+                jdbcTemplate.queryForList("""
+                        SELECT CAST(api_key AS VARCHAR) AS api_key, currency, balance FROM account_balance
+                        ORDER BY currency, balance"""));
+        assertEquals(List.of("API_KEY", "FIRST_NAME", "LAST_NAME", "VERSION"), jdbcTemplate.queryForList("""
+                SELECT column_name FROM information_schema.columns
+                WHERE table_name = 'ACCOUNT_ENTITY' ORDER BY ordinal_position""", String.class));
+        assertEquals(3L, jdbcTemplate.queryForObject(
+                "SELECT version FROM account_entity WHERE api_key = CAST(? AS UUID)", Long.class, API_KEY));
+    }
+
+    @Test
+    void shouldKeepBalancesAlreadyInSubLedger_whenRunAgainAfterInterruptedCopy() {
+        jdbcTemplate.execute("""
+                CREATE TABLE account_entity (api_key VARCHAR(255) NOT NULL PRIMARY KEY,
+                    first_name VARCHAR(255) NOT NULL, last_name VARCHAR(255) NOT NULL,
+                    balance_pln NUMERIC(12, 4) NOT NULL, balance_usd NUMERIC(12, 4) NOT NULL,
+                    version BIGINT DEFAULT 0 NOT NULL)""");
+        jdbcTemplate.execute("""
+                CREATE TABLE account_balance (api_key VARCHAR(255) NOT NULL, currency VARCHAR(3) NOT NULL,
+                    balance NUMERIC(19, 4) NOT NULL, PRIMARY KEY (currency, api_key),
+                    CONSTRAINT account_balance_account_fk FOREIGN KEY (api_key) REFERENCES account_entity)""");
+        jdbcTemplate.update("INSERT INTO account_entity VALUES (?, 'John', 'Smith', 100.5, 2.25, 3)", API_KEY);
+        jdbcTemplate.update("INSERT INTO account_balance VALUES (?, 'PLN', 100.5)", API_KEY);
+
+        migrate();
+
+        assertEquals(List.of(new BigDecimal("100.5000"), new BigDecimal("2.2500")), jdbcTemplate.queryForList(
+                "SELECT balance FROM account_balance ORDER BY currency", BigDecimal.class));
+    }
+
+    @Test
+    void shouldLeaveNewDatabaseEmpty() {
+        migrate();
+
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.tables WHERE table_schema = SCHEMA()", Integer.class));
+    }
+
+    private void migrate() {
+        new ResourceDatabasePopulator(new ClassPathResource("db/account-balance.sql")).execute(dataSource);
+    }
+}
@@ -0,0 +1,87 @@
+package com.nationale.currency;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+/**
+ * Runs {@code db/api-key-uuid.sql} on a database written before api keys were UUIDs.
+ */
+class ApiKeyMigrationTest {
+
+    private static final String API_KEY = "cecb5b42-7c24-41cd-895c-1d3747c8444d";
+    private static final String VARCHAR_SCHEMA = """
+            CREATE SEQUENCE exchange_journal_seq;
+            CREATE TABLE account_entity (api_key VARCHAR(255) NOT NULL PRIMARY KEY, first_name VARCHAR(255) NOT NULL,
+                last_name VARCHAR(255) NOT NULL, version BIGINT DEFAULT 0 NOT NULL);
+            CREATE TABLE account_balance (api_key VARCHAR(255) NOT NULL, currency VARCHAR(3) NOT NULL,
+                balance NUMERIC(19, 4) NOT NULL, PRIMARY KEY (currency, api_key),
+                CONSTRAINT account_balance_account_fk FOREIGN KEY (api_key) REFERENCES account_entity);
+            CREATE TABLE exchange_journal (id BIGINT NOT NULL PRIMARY KEY, api_key VARCHAR(255) NOT NULL,
+                to_currency VARCHAR(3) NOT NULL, to_amount NUMERIC(19, 4) NOT NULL);
+            CREATE INDEX exchange_journal_api_key_id ON exchange_journal (api_key, id);
+            CREATE TABLE account_balance_snapshot (api_key VARCHAR(255) NOT NULL, journal_id BIGINT NOT NULL,
+                currency VARCHAR(3) NOT NULL, balance NUMERIC(19, 4) NOT NULL,
+                PRIMARY KEY (currency, journal_id, api_key));
+            CREATE TABLE idempotency_record (api_key VARCHAR(255) NOT NULL, idempotency_key VARCHAR(255) NOT NULL,
+                PRIMARY KEY (api_key, idempotency_key));""";
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:api-key-migration", "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        for (var statement : VARCHAR_SCHEMA.split(";")) {
+            jdbcTemplate.execute(statement);
+        }
+        jdbcTemplate.update("INSERT INTO account_entity VALUES (?, 'John', 'Smith', 3)", API_KEY);
+        jdbcTemplate.update("INSERT INTO account_balance VALUES (?, 'PLN', 100.5)", API_KEY);
+        jdbcTemplate.update("INSERT INTO exchange_journal VALUES (1, ?, 'PLN', 100.5)", API_KEY);
+        jdbcTemplate.update("INSERT INTO account_balance_snapshot VALUES (?, 1, 'PLN', 100.5)", API_KEY);
+        jdbcTemplate.update("INSERT INTO idempotency_record VALUES (?, 'key-1')", API_KEY);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+        dataSource.destroy();
+    }
+
+    @Test
+    void shouldConvertApiKeysToUuid_keepingRowsAndConstraints() {
+        migrate();
+        migrate();
+
+        assertEquals(List.of("UUID", "UUID", "UUID", "UUID", "UUID"), jdbcTemplate.queryForList("""
+                SELECT data_type FROM information_schema.columns
+                WHERE column_name = 'API_KEY' ORDER BY table_name""", String.class));
+        assertEquals(new BigDecimal("100.5000"), jdbcTemplate.queryForObject("""
+                SELECT b.balance FROM account_entity a
+                JOIN account_balance b ON b.api_key = a.api_key
+                JOIN exchange_journal j ON j.api_key = a.api_key
+                JOIN account_balance_snapshot s ON s.api_key = a.api_key
+                JOIN idempotency_record r ON r.api_key = a.api_key
+                WHERE a.api_key = CAST(? AS UUID)""", BigDecimal.class, API_KEY));
+        assertThrows(DataIntegrityViolationException.class, () -> jdbcTemplate.update(
+                "INSERT INTO account_balance VALUES (CAST(? AS UUID), 'PLN', 1)", API_KEY));
+        assertThrows(DataIntegrityViolationException.class, () -> jdbcTemplate.update(
+                "INSERT INTO account_balance VALUES (RANDOM_UUID(), 'USD', 1)"));
+    }
+
+    private void migrate() {
+        new ResourceDatabasePopulator(new ClassPathResource("db/api-key-uuid.sql")).execute(dataSource);
+    }
+}
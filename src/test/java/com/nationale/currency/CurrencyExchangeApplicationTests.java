@@ -1,24 +1,49 @@
 package com.nationale.currency;
 
 
-import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
 
-import com.nationale.currency.nbp.Exchange;
+import com.nationale.currency.acoount.JournalRepository;
+import com.nationale.currency.acoount.Money;
 import com.nationale.currency.nbp.ExchangeRate;
+import com.nationale.currency.nbp.ExchangeTable;
 import com.nationale.currency.nbp.NbpApiClient;
+import com.nationale.currency.nbp.NbpRateHistory;
 import com.nationale.generated.model.Account;
 import com.nationale.generated.model.AccountExchange;
+import com.nationale.generated.model.AccountExchangeBatchItem;
+import com.nationale.generated.model.AccountExchangeBatchRequest;
+import com.nationale.generated.model.AccountExchangeBatchResponse;
+import com.nationale.generated.model.AccountExchangeBatchStatus;
+import com.nationale.generated.model.AccountHistory;
+import com.nationale.generated.model.AccountHistoryEntry;
+import com.nationale.generated.model.AccountHistoryEntryType;
+import com.nationale.generated.model.BalanceBucket;
+import com.nationale.generated.model.ExchangeQuote;
+import com.nationale.generated.model.PortfolioValuation;
+import com.nationale.generated.model.Quote;
+import com.nationale.generated.model.RegisterAccountBatchRequest;
+import com.nationale.generated.model.RegisterAccountBatchResponse;
 import com.nationale.generated.model.RegisterAccountRequest;
 import com.nationale.generated.model.RegisterAccountResponse;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.web.client.TestRestTemplate;
@@ -28,13 +53,19 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
 
+@AutoConfigureObservability
 @SpringBootTest(classes = CurrencyExchangeApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 class CurrencyExchangeApplicationTests {
 
     private static final String FIRST_NAME = "Mark";
     private static final String LAST_NAME = "Green";
     private static final double INITIAL_BALANCE_DOUBLE = 1000.0d;
+    private static final String ADMIN_TOKEN = "test-admin-token";
+    private static final ExchangeTable NBP_TABLE = new ExchangeTable("A", "222/A/NBP/2024", "2024-11-15", List.of(
+            new ExchangeRate("dolar amerykański", "USD", BigDecimal.valueOf(4.108)),
+            new ExchangeRate("euro", "EUR", BigDecimal.valueOf(4.3215))));
 
     @LocalServerPort
     private int port;
@@ -42,9 +73,18 @@ class CurrencyExchangeApplicationTests {
     @Autowired
     private TestRestTemplate restTemplate;
 
+    @Autowired
+    private JournalRepository journalRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @MockBean
     private NbpApiClient nbpApiClient;
 
+    @MockBean
+    private NbpRateHistory nbpRateHistory;
+
     private String baseUrl() {
         return "http://localhost:" + port + "/account";
     }
@@ -63,6 +103,34 @@ class CurrencyExchangeApplicationTests {
         assertNotNull(body.getApiKey());
     }
 
+    @Test
+    void shouldRegisterAccountsInBatch() {
+        var accounts = IntStream.range(0, 1200)
+                .mapToObj(i -> RegisterAccountRequest.builder()
+                        .firstName(FIRST_NAME)
+                        .lastName(LAST_NAME + i)
+                        .balancePLN(INITIAL_BALANCE_DOUBLE)
+                        .build())
+                .toList();
+
+        var result = restTemplate.postForEntity(baseUrl() + "/batch",
+                RegisterAccountBatchRequest.builder().accounts(accounts).build(), RegisterAccountBatchResponse.class);
+
+        assertEquals(HttpStatus.CREATED, result.getStatusCode());
+        var registered = result.getBody().getAccounts();
+        assertEquals(1200, registered.size());
+        assertEquals(LAST_NAME + 1199, registered.get(1199).getLastName());
+        assertEquals(1200, registered.stream().map(RegisterAccountResponse::getApiKey).distinct().count());
+
+        var headers = new HttpHeaders();
+        headers.add("x-api-key", registered.get(1199).getApiKey());
+        var status = restTemplate.exchange(baseUrl(), HttpMethod.GET, new HttpEntity<>(headers), Account.class);
+
+        assertEquals(HttpStatus.OK, status.getStatusCode());
+        assertEquals(LAST_NAME + 1199, status.getBody().getLastName());
+        assertEquals(INITIAL_BALANCE_DOUBLE, status.getBody().getBalancePLN());
+    }
+
     @Test
     void shouldFailRegisterAccountWithoutFirstName() {
         var request = new RegisterAccountRequest();
@@ -136,8 +204,7 @@ class CurrencyExchangeApplicationTests {
                 .build();
         var requestEntity = new HttpEntity<>(exchange, headers);
 
-        Mockito.when(nbpApiClient.findExchange("USD"))
-                .thenReturn(new Exchange("USD", List.of(new ExchangeRate("2024-11-15", BigDecimal.valueOf(4.108)))));
+        Mockito.when(nbpApiClient.findTableAsync()).thenReturn(CompletableFuture.completedFuture(NBP_TABLE));
 
         var result = restTemplate.exchange(baseUrl() + "/exchange", HttpMethod.POST, requestEntity, Account.class);
 
@@ -150,6 +217,129 @@ class CurrencyExchangeApplicationTests {
         assertEquals(2.4343, body.getBalanceUSD(), 0.0001);
     }
 
+    @Test
+    void shouldFailExchange_whenAmountIsOutOfRange() {
+        var account = registerNewAccount().getBody();
+        var headers = new HttpHeaders();
+        headers.add("x-api-key", account.getApiKey());
+        var exchange = AccountExchange.builder().from("PLN").to("USD").amount(1.0e300).build();
+
+        var result = restTemplate.exchange(baseUrl() + "/exchange", HttpMethod.POST,
+                new HttpEntity<>(exchange, headers), String.class);
+
+        assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
+        assertNotNull(result.getBody());
+        assertThat(result.getBody()).contains("amount");
+    }
+
+    @Test
+    void shouldExecuteQuotedExchange_once() {
+        var account = registerNewAccount().getBody();
+        var headers = new HttpHeaders();
+        headers.add("x-api-key", account.getApiKey());
+        var exchange = AccountExchange.builder().from("PLN").to("USD").amount(10.0).build();
+        Mockito.when(nbpApiClient.findTableAsync()).thenReturn(CompletableFuture.completedFuture(NBP_TABLE));
+
+        var quote = restTemplate.exchange(baseUrl() + "/exchange/quote", HttpMethod.POST,
+                new HttpEntity<>(exchange, headers), ExchangeQuote.class);
+        assertEquals(HttpStatus.CREATED, quote.getStatusCode());
+        assertEquals(2.4343, quote.getBody().getConverted(), 0.0001);
+        Mockito.clearInvocations(nbpApiClient);
+
+        var executeUrl = baseUrl() + "/exchange/quote/" + quote.getBody().getQuoteId();
+        var executed = restTemplate.exchange(executeUrl, HttpMethod.POST, new HttpEntity<>(headers), Account.class);
+        var again = restTemplate.exchange(executeUrl, HttpMethod.POST, new HttpEntity<>(headers), Map.class);
+
+        assertEquals(HttpStatus.OK, executed.getStatusCode());
+        assertEquals(990.0d, executed.getBody().getBalancePLN());
+        assertEquals(quote.getBody().getConverted(), executed.getBody().getBalanceUSD());
+        assertEquals(HttpStatus.NOT_FOUND, again.getStatusCode());
+        assertEquals("Quote not found.", again.getBody().get("message"));
+        Mockito.verify(nbpApiClient, Mockito.never()).findTableAsync();
+    }
+
+    @Test
+    void shouldExchangeOnce_whenRequestIsRetriedWithIdempotencyKey() {
+        var account = registerNewAccount().getBody();
+        var headers = new HttpHeaders();
+        headers.add("x-api-key", account.getApiKey());
+        headers.add("Idempotency-Key", "exchange-1");
+        var exchange = AccountExchange.builder().from("PLN").to("USD").amount(10.0).build();
+        Mockito.when(nbpApiClient.findTableAsync()).thenReturn(CompletableFuture.completedFuture(NBP_TABLE));
+
+        var first = restTemplate.exchange(baseUrl() + "/exchange", HttpMethod.POST,
+                new HttpEntity<>(exchange, headers), Account.class);
+        var retry = restTemplate.exchange(baseUrl() + "/exchange", HttpMethod.POST,
+                new HttpEntity<>(exchange, headers), Account.class);
+        var reused = restTemplate.exchange(baseUrl() + "/exchange", HttpMethod.POST, new HttpEntity<>(
+                AccountExchange.builder().from("PLN").to("USD").amount(20.0).build(), headers), Map.class);
+
+        assertEquals(HttpStatus.OK, retry.getStatusCode());
+        assertEquals(first.getBody(), retry.getBody());
+        assertEquals(990.0d, retry.getBody().getBalancePLN());
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, reused.getStatusCode());
+        assertEquals("Idempotency-Key was already used for a different exchange.", reused.getBody().get("message"));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM exchange_journal WHERE api_key = ? AND type = 'EXCHANGE'", Integer.class,
+                account.getApiKey()));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM idempotency_record WHERE api_key = ?", Integer.class, account.getApiKey()));
+    }
+
+    @Test
+    void shouldExchangeBetweenForeignCurrencies() {
+        var account = registerNewAccount().getBody();
+        var headers = new HttpHeaders();
+        headers.add("x-api-key", account.getApiKey());
+        Mockito.when(nbpApiClient.findTableAsync()).thenReturn(CompletableFuture.completedFuture(NBP_TABLE));
+
+        restTemplate.exchange(baseUrl() + "/exchange", HttpMethod.POST, new HttpEntity<>(
+                AccountExchange.builder().from("PLN").to("EUR").amount(100.0).build(), headers), Account.class);
+        var result = restTemplate.exchange(baseUrl() + "/exchange", HttpMethod.POST, new HttpEntity<>(
+                AccountExchange.builder().from("eur").to("usd").amount(10.0).build(), headers), Account.class);
+
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        var body = result.getBody();
+        assertEquals(900.0d, body.getBalancePLN());
+        // 100 PLN / 4.3215 = 23.1401 EUR, 10 EUR * 4.3215 / 4.108 = 10.5197 USD
+        assertEquals(10.5197d, body.getBalanceUSD());
+        assertEquals(Map.of("PLN", 900.0d, "EUR", 13.1401d, "USD", 10.5197d), body.getBalances());
+
+        var status = restTemplate.exchange(baseUrl(), HttpMethod.GET, new HttpEntity<>(headers), Account.class);
+        assertEquals(body, status.getBody());
+    }
+
+    @Test
+    void shouldFailExchange_whenCurrencyIsNotQuoted() {
+        var account = registerNewAccount().getBody();
+        var headers = new HttpHeaders();
+        headers.add("x-api-key", account.getApiKey());
+        Mockito.when(nbpApiClient.findTableAsync()).thenReturn(CompletableFuture.completedFuture(NBP_TABLE));
+
+        var result = restTemplate.exchange(baseUrl() + "/exchange", HttpMethod.POST, new HttpEntity<>(
+                AccountExchange.builder().from("PLN").to("XYZ").amount(10.0).build(), headers), Map.class);
+
+        assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
+        assertEquals("Exchange must be between two different currencies, PLN or quoted in NBP table A.",
+                result.getBody().get("message"));
+    }
+
+    @Test
+    void shouldExposeMetricsForPrometheus() {
+        shouldExchangeCurrency();
+        shouldFailOnInsufficientFunds();
+
+        var result = restTemplate.getForEntity("http://localhost:" + port + "/actuator/prometheus", String.class);
+
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        assertThat(result.getBody())
+                .contains("account_operation_stage_seconds_count{operation=\"exchange\",stage=\"rate\"}")
+                .contains("account_operation_stage_seconds_count{operation=\"exchange\",stage=\"commit\"}")
+                .contains("account_operation_stage_seconds_bucket{operation=\"register\",stage=\"persist\"")
+                .contains("account_errors_total{exception=\"InsufficientFundsException\",status=\"400\"}")
+                .contains("http_server_requests_seconds_bucket{");
+    }
+
     @Test
     void shouldFailOnInsufficientFunds() {
         var account = registerNewAccount().getBody();
@@ -163,8 +353,7 @@ class CurrencyExchangeApplicationTests {
                 .build();
         var requestEntity = new HttpEntity<>(exchange, headers);
 
-        Mockito.when(nbpApiClient.findExchange("USD"))
-                .thenReturn(new Exchange("USD", List.of(new ExchangeRate("2024-11-15", BigDecimal.valueOf(4.108)))));
+        Mockito.when(nbpApiClient.findTableAsync()).thenReturn(CompletableFuture.completedFuture(NBP_TABLE));
 
         var result = restTemplate.exchange(baseUrl() + "/exchange", HttpMethod.POST, requestEntity, Map.class);
 
@@ -174,6 +363,247 @@ class CurrencyExchangeApplicationTests {
         assertEquals("Insufficient funds.", body.get("message"));
     }
 
+    @Test
+    void shouldExchangeCurrencyInBatch() {
+        var first = registerNewAccount().getBody();
+        var second = registerNewAccount().getBody();
+        var request = AccountExchangeBatchRequest.builder()
+                .items(List.of(
+                        batchItem(first.getApiKey(), "PLN", "USD", 10.0),
+                        batchItem(second.getApiKey(), "PLN", "USD", 10000.0),
+                        batchItem("unknown", "PLN", "USD", 10.0),
+                        batchItem(first.getApiKey(), "USD", "PLN", 1.0)))
+                .build();
+
+        Mockito.when(nbpApiClient.findTableAsync()).thenReturn(CompletableFuture.completedFuture(NBP_TABLE));
+
+        var result = restTemplate.postForEntity(baseUrl() + "/exchange/batch", request,
+                AccountExchangeBatchResponse.class);
+
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        var results = result.getBody().getResults();
+        assertEquals(4, results.size());
+        assertEquals(AccountExchangeBatchStatus.EXCHANGED, results.get(0).getStatus());
+        assertEquals(AccountExchangeBatchStatus.INSUFFICIENT_FUNDS, results.get(1).getStatus());
+        assertEquals(AccountExchangeBatchStatus.ACCOUNT_NOT_FOUND, results.get(2).getStatus());
+        assertEquals(AccountExchangeBatchStatus.EXCHANGED, results.get(3).getStatus());
+        assertEquals(994.108d, results.get(0).getAccount().getBalancePLN(), 0.0001);
+        assertEquals(1.4343d, results.get(0).getAccount().getBalanceUSD(), 0.0001);
+        assertEquals(results.get(0).getAccount(), results.get(3).getAccount());
+    }
+
+    @Test
+    void shouldPageJournal_andReplayBalancesFromIt() {
+        var account = registerNewAccount().getBody();
+        var headers = new HttpHeaders();
+        headers.add("x-api-key", account.getApiKey());
+        Mockito.when(nbpApiClient.findTableAsync()).thenReturn(CompletableFuture.completedFuture(NBP_TABLE));
+        for (var to : List.of("USD", "EUR")) {
+            restTemplate.exchange(baseUrl() + "/exchange", HttpMethod.POST, new HttpEntity<>(
+                    AccountExchange.builder().from("PLN").to(to).amount(10.0).build(), headers), Account.class);
+        }
+
+        var first = restTemplate.exchange(baseUrl() + "/history?limit=2", HttpMethod.GET, new HttpEntity<>(headers),
+                AccountHistory.class).getBody();
+        var second = restTemplate.exchange(baseUrl() + "/history?limit=2&after=" + first.getNextCursor(),
+                HttpMethod.GET, new HttpEntity<>(headers), AccountHistory.class).getBody();
+
+        assertThat(first.getEntries()).extracting(AccountHistoryEntry::getType)
+                .containsExactly(AccountHistoryEntryType.OPENING, AccountHistoryEntryType.EXCHANGE);
+        assertEquals(INITIAL_BALANCE_DOUBLE, first.getEntries().get(0).getToAmount());
+        var usd = first.getEntries().get(1);
+        assertEquals("PLN", usd.getFrom());
+        assertEquals(10.0d, usd.getFromAmount());
+        assertThat(usd.getFromRate()).isEqualByComparingTo(BigDecimal.ONE);
+        assertEquals("USD", usd.getTo());
+        assertEquals(2.4343d, usd.getToAmount());
+        assertThat(usd.getToRate()).isEqualByComparingTo(new BigDecimal("4.108"));
+        assertEquals(LocalDate.parse("2024-11-15"), usd.getEffectiveDate());
+        assertEquals(1, second.getEntries().size());
+        assertEquals("EUR", second.getEntries().get(0).getTo());
+        assertNull(second.getNextCursor());
+
+        // The second exchange bumped the account to version 2 and snapshotted it (account.journal.snapshot-every: 2).
+        assertEquals(3, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM account_balance_snapshot WHERE api_key = ?", Integer.class,
+                account.getApiKey()));
+        var status = restTemplate.exchange(baseUrl(), HttpMethod.GET, new HttpEntity<>(headers), Account.class);
+        var replayed = new HashMap<String, Double>();
+        journalRepository.replayBalances(account.getApiKey())
+                .forEach((currency, units) -> replayed.put(currency, Money.toDouble(units)));
+        assertEquals(status.getBody().getBalances(), replayed);
+    }
+
+    @Test
+    void shouldFailHistory_whenLimitIsOutOfRange() {
+        var account = registerNewAccount().getBody();
+        var headers = new HttpHeaders();
+        headers.add("x-api-key", account.getApiKey());
+
+        var result = restTemplate.exchange(baseUrl() + "/history?limit=0", HttpMethod.GET, new HttpEntity<>(headers),
+                Map.class);
+
+        assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
+        assertEquals("must be greater than or equal to 1", result.getBody().get("limit"));
+    }
+
+    @Test
+    void shouldFailBatchWithoutItems() {
+        var request = AccountExchangeBatchRequest.builder().items(List.of()).build();
+
+        var result = restTemplate.postForEntity(baseUrl() + "/exchange/batch", request, Map.class);
+
+        assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
+    }
+
+    @Test
+    void shouldValueAllAccounts() {
+        registerNewAccount();
+        Mockito.when(nbpApiClient.findTableAsync()).thenReturn(CompletableFuture.completedFuture(NBP_TABLE));
+
+        var anonymous = restTemplate.getForEntity("http://localhost:" + port + "/report/valuation", Map.class);
+        var result = restTemplate.exchange("http://localhost:" + port + "/report/valuation", HttpMethod.GET,
+                new HttpEntity<>(adminHeaders()), PortfolioValuation.class);
+
+        assertEquals(HttpStatus.FORBIDDEN, anonymous.getStatusCode());
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        var valuation = result.getBody();
+        assertEquals(LocalDate.of(2024, 11, 15), valuation.getEffectiveDate());
+        assertEquals(jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT api_key) FROM account_balance", Long.class),
+                valuation.getAccounts());
+        var pln = valuation.getCurrencies().stream()
+                .filter(exposure -> exposure.getCurrency().equals("PLN"))
+                .findFirst()
+                .orElseThrow();
+        assertThat(pln.getAmount()).isEqualByComparingTo(jdbcTemplate.queryForObject(
+                "SELECT SUM(balance) FROM account_balance WHERE currency = 'PLN'", BigDecimal.class).doubleValue());
+        assertEquals(valuation.getAccounts(), valuation.getHistogram().stream()
+                .mapToLong(BalanceBucket::getAccounts)
+                .sum());
+    }
+
+    @Test
+    void shouldImportAccounts_andExportThemBack() {
+        Mockito.when(nbpApiClient.findTableAsync()).thenReturn(CompletableFuture.completedFuture(NBP_TABLE));
+        var apiKey = UUID.randomUUID().toString();
+        var otherApiKey = UUID.randomUUID().toString();
+        var ndjson = """
+                {"apiKey":"%s","firstName":"Anna","lastName":"Nowak","balances":{"PLN":250.5,"USD":10}}
+                {"apiKey":"%s","firstName":"Jan","lastName":"Kowalski, Jr.","balances":{}}
+                """.formatted(apiKey, otherApiKey);
+        var headers = new HttpHeaders();
+        headers.add(HttpHeaders.CONTENT_TYPE, "application/x-ndjson");
+        headers.add("x-admin-token", ADMIN_TOKEN);
+
+        var imported = restTemplate.postForEntity(baseUrl() + "/import", new HttpEntity<>(ndjson, headers),
+                String.class);
+
+        assertEquals(HttpStatus.OK, imported.getStatusCode());
+        assertEquals("{\"imported\":2,\"skipped\":0}", imported.getBody());
+        var balances = Map.of("PLN", Money.fromDouble(250.5), "USD", Money.fromDouble(10.0));
+        assertEquals(balances, journalRepository.replayBalances(apiKey));
+        var statusHeaders = new HttpHeaders();
+        statusHeaders.add("x-api-key", apiKey);
+        var status = restTemplate.exchange(baseUrl(), HttpMethod.GET, new HttpEntity<>(statusHeaders), Account.class);
+        assertEquals(Map.of("PLN", 250.5d, "USD", 10.0d), status.getBody().getBalances());
+
+        var exported = restTemplate.exchange(baseUrl() + "/export?format=CSV", HttpMethod.GET,
+                new HttpEntity<>(adminHeaders()), String.class);
+
+        assertEquals(HttpStatus.OK, exported.getStatusCode());
+        assertEquals("text/csv", exported.getHeaders().getContentType().toString());
+        assertThat(exported.getBody()).startsWith("api_key,first_name,last_name,balances\r\n")
+                .contains(apiKey + ",Anna,Nowak,PLN=250.5000;USD=10.0000\r\n")
+                .contains(otherApiKey + ",Jan,\"Kowalski, Jr.\",\r\n");
+
+        headers.set(HttpHeaders.CONTENT_TYPE, "text/csv");
+        var rejected = restTemplate.postForEntity(baseUrl() + "/import", new HttpEntity<>(exported.getBody(), headers),
+                Map.class);
+        assertEquals(HttpStatus.BAD_REQUEST, rejected.getStatusCode());
+        assertThat((String) rejected.getBody().get("message")).endsWith("0 accounts imported.");
+
+        var skipped = restTemplate.postForEntity(baseUrl() + "/import?skipExisting=true",
+                new HttpEntity<>(exported.getBody(), headers), Map.class);
+        assertEquals(HttpStatus.OK, skipped.getStatusCode());
+        assertEquals(0, skipped.getBody().get("imported"));
+    }
+
+    @Test
+    void shouldRejectExportAndImport_withoutAdminToken() {
+        var wrongToken = new HttpHeaders();
+        wrongToken.add("x-admin-token", "wrong");
+        var csv = new HttpHeaders();
+        csv.add(HttpHeaders.CONTENT_TYPE, "text/csv");
+        var apiKey = UUID.randomUUID();
+
+        var anonymousExport = restTemplate.getForEntity(baseUrl() + "/export", Map.class);
+        var wrongTokenExport = restTemplate.exchange(baseUrl() + "/export", HttpMethod.GET,
+                new HttpEntity<>(wrongToken), Map.class);
+        var anonymousImport = restTemplate.postForEntity(baseUrl() + "/import", new HttpEntity<>("""
+                api_key,first_name,last_name,balances
+                %s,Anna,Nowak,PLN=1000000
+                """.formatted(apiKey), csv), Map.class);
+
+        assertEquals(HttpStatus.FORBIDDEN, anonymousExport.getStatusCode());
+        assertEquals("Valid x-admin-token required.", anonymousExport.getBody().get("message"));
+        assertEquals(HttpStatus.FORBIDDEN, wrongTokenExport.getStatusCode());
+        assertEquals(HttpStatus.FORBIDDEN, anonymousImport.getStatusCode());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM account_entity WHERE api_key = ?",
+                Integer.class, apiKey));
+    }
+
+    @Test
+    void shouldQuoteAtRatesOfPastDate() {
+        var sunday = LocalDate.of(2024, 11, 17);
+        var friday = LocalDate.of(2024, 11, 15);
+        var thursday = LocalDate.of(2024, 11, 14);
+        Mockito.when(nbpRateHistory.rateAsOf("usd", sunday)).thenReturn(
+                new NbpRateHistory.HistoricalRate("USD", friday, Money.Rate.of(new BigDecimal("4.108"))));
+        Mockito.when(nbpRateHistory.rateAsOf("EUR", sunday)).thenReturn(
+                new NbpRateHistory.HistoricalRate("EUR", thursday, Money.Rate.of(new BigDecimal("4.3215"))));
+
+        var result = restTemplate.getForEntity("http://localhost:" + port + "/quote?from=usd&to=EUR&amount=100&date="
+                + sunday, Quote.class);
+
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        var quote = result.getBody();
+        assertEquals("USD", quote.getFrom());
+        assertEquals("EUR", quote.getTo());
+        assertEquals(95.0596d, quote.getConverted());
+        assertThat(quote.getFromRate()).isEqualByComparingTo("4.108");
+        assertEquals(sunday, quote.getDate());
+        assertEquals(thursday, quote.getEffectiveDate());
+    }
+
+    @Test
+    void shouldFailQuote_whenRatesOfDateAreNotLoaded() {
+        var result = restTemplate.getForEntity("http://localhost:" + port
+                + "/quote?from=USD&to=PLN&amount=100&date=2024-11-15", Map.class);
+
+        assertEquals(HttpStatus.NOT_FOUND, result.getStatusCode());
+        assertEquals("NBP rates of 2024-11-15 are not loaded yet.", result.getBody().get("message"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"-1", "0", "1e300"})
+    void shouldFailQuote_whenAmountIsOutOfRange(String amount) {
+        var result = restTemplate.getForEntity("http://localhost:" + port
+                + "/quote?from=USD&to=PLN&amount=" + amount + "&date=2024-11-15", String.class);
+
+        assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
+        Mockito.verifyNoInteractions(nbpRateHistory);
+    }
+
+    private static HttpHeaders adminHeaders() {
+        var headers = new HttpHeaders();
+        headers.add("x-admin-token", ADMIN_TOKEN);
+        return headers;
+    }
+
+    private static AccountExchangeBatchItem batchItem(String apiKey, String from, String to, double amount) {
+        return AccountExchangeBatchItem.builder().apiKey(apiKey).from(from).to(to).amount(amount).build();
+    }
+
     private ResponseEntity<RegisterAccountResponse> registerNewAccount() {
         var request = new RegisterAccountRequest();
         request.setFirstName(FIRST_NAME);
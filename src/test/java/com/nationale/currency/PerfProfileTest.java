@@ -0,0 +1,133 @@
+package com.nationale.currency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.nationale.currency.nbp.ExchangeRate;
+import com.nationale.currency.nbp.ExchangeTable;
+import com.nationale.currency.nbp.NbpApiClient;
+import com.nationale.generated.model.Account;
+import com.nationale.generated.model.AccountExchange;
+import com.nationale.generated.model.AccountExchangeBatchItem;
+import com.nationale.generated.model.AccountExchangeBatchRequest;
+import com.nationale.generated.model.AccountExchangeBatchResponse;
+import com.nationale.generated.model.AccountExchangeBatchStatus;
+import com.nationale.generated.model.AccountHistory;
+import com.nationale.generated.model.RegisterAccountRequest;
+import com.nationale.generated.model.RegisterAccountResponse;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * Runs the API with the {@code perf} profile on a file database created by {@code db/schema.sql}. Hibernate validates
+ * the script against the entities, which the profile itself skips at startup.
+ */
+@AutoConfigureObservability
+@ActiveProfiles("perf")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.jpa.properties.hibernate.boot.allow_jdbc_metadata_access=true"})
+class PerfProfileTest {
+
+    private static final ExchangeTable NBP_TABLE = new ExchangeTable("A", "222/A/NBP/2024", "2024-11-15",
+            List.of(new ExchangeRate("dolar amerykański", "USD", BigDecimal.valueOf(4.108))));
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private NbpApiClient nbpApiClient;
+
+    @DynamicPropertySource
+    static void databaseFile(DynamicPropertyRegistry registry) {
+        try {
+            var directory = Files.createTempDirectory("perf-profile");
+            directory.toFile().deleteOnExit();
+            registry.add("account.database.file", () -> directory.resolve("account").toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Test
+    void shouldServeAccountsFromScriptedSchema() {
+        Mockito.when(nbpApiClient.findTableAsync()).thenReturn(CompletableFuture.completedFuture(NBP_TABLE));
+        var account = restTemplate.postForEntity(baseUrl(), RegisterAccountRequest.builder()
+                .firstName("Mark")
+                .lastName("Green")
+                .balancePLN(1000.0d)
+                .build(), RegisterAccountResponse.class).getBody();
+        var headers = new HttpHeaders();
+        headers.add("x-api-key", account.getApiKey());
+        headers.add("Idempotency-Key", "perf-1");
+
+        var exchanged = restTemplate.exchange(baseUrl() + "/exchange", HttpMethod.POST, new HttpEntity<>(
+                AccountExchange.builder().from("PLN").to("USD").amount(10.0d).build(), headers), Account.class);
+        var batch = restTemplate.postForEntity(baseUrl() + "/exchange/batch", AccountExchangeBatchRequest.builder()
+                .items(List.of(AccountExchangeBatchItem.builder()
+                        .apiKey(account.getApiKey()).from("USD").to("PLN").amount(1.0d).build()))
+                .build(), AccountExchangeBatchResponse.class);
+        var history = restTemplate.exchange(baseUrl() + "/history", HttpMethod.GET, new HttpEntity<>(headers),
+                AccountHistory.class);
+
+        assertEquals(HttpStatus.OK, exchanged.getStatusCode());
+        assertEquals(990.0d, exchanged.getBody().getBalancePLN());
+        assertEquals(AccountExchangeBatchStatus.EXCHANGED, batch.getBody().getResults().get(0).getStatus());
+        assertEquals(3, history.getBody().getEntries().size());
+    }
+
+    @Test
+    void shouldFindLatestSnapshotByIndex() {
+        var plan = jdbcTemplate.queryForObject("""
+                EXPLAIN SELECT journal_id, currency, balance
+                FROM account_balance_snapshot
+                WHERE api_key = RANDOM_UUID() AND journal_id = (
+                    SELECT MAX(journal_id) FROM account_balance_snapshot WHERE api_key = RANDOM_UUID())""",
+                String.class);
+
+        assertThat(plan).doesNotContain("tableScan")
+                .contains("ACCOUNT_BALANCE_SNAPSHOT_API_KEY_JOURNAL_ID");
+    }
+
+    @Test
+    void shouldExportConnectionPoolMetrics() {
+        var result = restTemplate.getForEntity("http://localhost:" + port + "/actuator/prometheus", String.class);
+
+        assertThat(result.getBody())
+                .contains("hikaricp_connections_max{pool=\"account\"} 16.0")
+                .contains("hikaricp_connections_acquire_seconds_bucket{pool=\"account\"")
+                .contains("hikaricp_connections_usage_seconds_bucket{pool=\"account\"");
+    }
+
+    private String baseUrl() {
+        return "http://localhost:" + port + "/account";
+    }
+}
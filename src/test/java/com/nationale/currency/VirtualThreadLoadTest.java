@@ -0,0 +1,174 @@
+package com.nationale.currency;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import com.nationale.generated.model.RegisterAccountBatchRequest;
+import com.nationale.generated.model.RegisterAccountBatchResponse;
+import com.nationale.generated.model.RegisterAccountRequest;
+import com.nationale.generated.model.RegisterAccountResponse;
+import com.sun.net.httpserver.HttpServer;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Keeps hundreds of exchanges in flight while NBP does not answer, with Tomcat limited to fewer platform threads than
+ * that. Only virtual threads let the requests past the limit, and none of them may hold a database connection while
+ * waiting for the rate.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.threads.virtual.enabled=true",
+        "server.tomcat.threads.max=10",
+        "spring.datasource.hikari.maximum-pool-size=5",
+        "nbp.api.read-timeout=PT1M"})
+class VirtualThreadLoadTest {
+
+    private static final int REQUESTS = 300;
+    private static final CountDownLatch NBP_RELEASED = new CountDownLatch(1);
+    private static final AtomicInteger IN_FLIGHT = new AtomicInteger();
+    private static final HttpServer NBP = startNbp();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private HikariDataSource dataSource;
+
+    @DynamicPropertySource
+    static void nbpUrl(DynamicPropertyRegistry registry) {
+        registry.add("nbp.api.url", () -> "http://localhost:" + NBP.getAddress().getPort());
+    }
+
+    @AfterAll
+    static void stopNbp() {
+        NBP_RELEASED.countDown();
+        NBP.stop(0);
+    }
+
+    @Test
+    void shouldKeepExchangesInFlight_whenNbpIsSlow() throws Exception {
+        var accounts = IntStream.range(0, REQUESTS)
+                .mapToObj(i -> RegisterAccountRequest.builder()
+                        .firstName("John")
+                        .lastName("Smith")
+                        .balancePLN(100.0d)
+                        .build())
+                .toList();
+        var apiKeys = restTemplate.postForObject("http://localhost:" + port + "/account/batch",
+                        RegisterAccountBatchRequest.builder().accounts(accounts).build(),
+                        RegisterAccountBatchResponse.class)
+                .getAccounts().stream()
+                .map(RegisterAccountResponse::getApiKey)
+                .toList();
+
+        try (var httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()) {
+            var responses = new ArrayList<CompletableFuture<HttpResponse<String>>>(REQUESTS);
+            for (var apiKey : apiKeys) {
+                responses.add(httpClient.sendAsync(HttpRequest.newBuilder(
+                                URI.create("http://localhost:" + port + "/account/exchange"))
+                        .header("x-api-key", apiKey)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString("""
+                                {"from":"PLN","to":"USD","amount":10.0}"""))
+                        .build(), HttpResponse.BodyHandlers.ofString()));
+            }
+
+            // The account lookups run before the requests start waiting for NBP and return their connections.
+            var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+            while ((IN_FLIGHT.get() < REQUESTS || dataSource.getHikariPoolMXBean().getActiveConnections() > 0)
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(REQUESTS, IN_FLIGHT.get());
+            assertEquals(0, dataSource.getHikariPoolMXBean().getActiveConnections());
+
+            NBP_RELEASED.countDown();
+            for (var response : responses) {
+                var result = response.get(1, TimeUnit.MINUTES);
+                assertEquals(200, result.statusCode(), result.body());
+                assertTrue(result.body().contains("\"balancePLN\":90.0"), result.body());
+            }
+        }
+    }
+
+    private static HttpServer startNbp() {
+        try {
+            var server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.createContext("/", exchange -> {
+                try {
+                    NBP_RELEASED.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                var body = """
+                        [{"table":"A","no":"222/A/NBP/2024","effectiveDate":"2024-11-15",\
+                        "rates":[{"currency":"dolar amerykański","code":"USD","mid":4.1080}]}]"""
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (var responseBody = exchange.getResponseBody()) {
+                    responseBody.write(body);
+                }
+            });
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @TestConfiguration
+    static class InFlightRequests {
+
+        @Bean
+        OncePerRequestFilter inFlightRequestsFilter() {
+            return new OncePerRequestFilter() {
+                @Override
+                protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                        FilterChain filterChain) throws ServletException, IOException {
+                    if (!request.getRequestURI().endsWith("/exchange")) {
+                        filterChain.doFilter(request, response);
+                        return;
+                    }
+                    IN_FLIGHT.incrementAndGet();
+                    try {
+                        filterChain.doFilter(request, response);
+                    } finally {
+                        IN_FLIGHT.decrementAndGet();
+                    }
+                }
+            };
+        }
+    }
+}
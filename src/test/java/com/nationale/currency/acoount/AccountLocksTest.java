@@ -0,0 +1,103 @@
+package com.nationale.currency.acoount;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.nationale.currency.acoount.exception.ExchangeConflictException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AccountLocksTest {
+
+    private static final String API_KEY = "cecb5b42-7c24-41cd-895c-1d3747c8444d";
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void shouldRunExchangesOfOneAccountOneAtATime() throws Exception {
+        var accountLocks = new AccountLocks(meterRegistry, true, 16, true, Duration.ofSeconds(5));
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 50; i++) {
+                executor.submit(() -> {
+                    try (var held = accountLocks.lock(API_KEY)) {
+                        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        Thread.sleep(1);
+                        running.decrementAndGet();
+                    }
+                    return null;
+                });
+            }
+        }
+
+        assertEquals(1, maxRunning.get());
+        assertEquals(50, meterRegistry.get("account.locks.queue.depth").summary().count());
+        assertTrue(meterRegistry.get("account.locks.queue.depth").summary().max() > 0);
+    }
+
+    @Test
+    void shouldNotBlockOtherStripes() throws Exception {
+        var accountLocks = new AccountLocks(meterRegistry, true, 1024, false, Duration.ofSeconds(5));
+        var other = otherStripe(accountLocks);
+        var acquired = new CountDownLatch(1);
+
+        try (var held = accountLocks.lock(API_KEY); var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            executor.submit(() -> {
+                try (var otherHeld = accountLocks.lock(other)) {
+                    acquired.countDown();
+                }
+            });
+            assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void shouldFailAsConflict_whenStripeIsNotFreeInTime() throws Exception {
+        var accountLocks = new AccountLocks(meterRegistry, true, 16, false, Duration.ofMillis(50));
+
+        try (var held = accountLocks.lock(API_KEY); var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var waiting = executor.submit(() -> accountLocks.lock(API_KEY));
+
+            var exception = assertThrows(ExecutionException.class, () -> waiting.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(ExchangeConflictException.class, exception.getCause());
+        }
+        assertEquals(1.0d, meterRegistry.counter("account.locks.timeouts").count());
+        assertEquals(1.0d, meterRegistry.get("account.exchange.conflicts")
+                .tags("operation", "exchange", "lock", "stripe").counter().count());
+    }
+
+    @Test
+    void shouldNotLock_whenDisabled() throws Exception {
+        var accountLocks = new AccountLocks(meterRegistry, false, 16, false, Duration.ofMillis(50));
+
+        try (var held = accountLocks.lock(API_KEY); var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            executor.submit(() -> accountLocks.lock(API_KEY).close()).get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(0.0d, meterRegistry.counter("account.locks.timeouts").count());
+    }
+
+    private static String otherStripe(AccountLocks accountLocks) {
+        for (int i = 0; ; i++) {
+            var candidate = "account-" + i;
+            if (accountLocks.stripe(candidate) != accountLocks.stripe(API_KEY)) {
+                return candidate;
+            }
+        }
+    }
+}
@@ -1,31 +1,67 @@
 package com.nationale.currency.acoount;
 
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyLong;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
 
 import com.nationale.currency.acoount.exception.AccountNotFoundException;
+import com.nationale.currency.acoount.exception.ExchangeConflictException;
 import com.nationale.currency.acoount.exception.InsufficientFundsException;
 import com.nationale.currency.acoount.exception.InvalidExchangeException;
-import com.nationale.currency.nbp.Exchange;
+import com.nationale.currency.acoount.exception.QuoteNotFoundException;
 import com.nationale.currency.nbp.ExchangeRate;
-import com.nationale.currency.nbp.NbpApiClient;
+import com.nationale.currency.nbp.ExchangeTable;
+import com.nationale.currency.nbp.NbpRateCache;
+import com.nationale.currency.nbp.RateTable;
+import com.nationale.generated.model.Account;
 import com.nationale.generated.model.AccountExchange;
+import com.nationale.generated.model.AccountExchangeBatchItem;
+import com.nationale.generated.model.AccountExchangeBatchRequest;
+import com.nationale.generated.model.AccountExchangeBatchResult;
+import com.nationale.generated.model.AccountExchangeBatchStatus;
+import com.nationale.generated.model.AccountHistoryEntry;
+import com.nationale.generated.model.AccountHistoryEntryType;
+import com.nationale.generated.model.RegisterAccountBatchRequest;
 import com.nationale.generated.model.RegisterAccountRequest;
+import com.nationale.generated.model.RegisterAccountResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @ExtendWith(MockitoExtension.class)
 class AccountServiceTest {
@@ -33,18 +69,52 @@ class AccountServiceTest {
     private static final String FIRST_NAME = "John";
     private static final String LAST_NAME = "Smith";
     private static final double INITIAL_BALANCE_DOUBLE = 1000.0d;
-    private static final BigDecimal INITIAL_BALANCE = BigDecimal.valueOf(INITIAL_BALANCE_DOUBLE);
+    private static final long INITIAL_BALANCE = Money.fromDouble(INITIAL_BALANCE_DOUBLE);
     private static final String API_KEY = "cecb5b42-7c24-41cd-895c-1d3747c8444d";
     private static final double BALANCE_USD_DOUBLE = 100.0d;
-    private static final BigDecimal BALANCE_USD = BigDecimal.valueOf(BALANCE_USD_DOUBLE);
+    private static final long BALANCE_USD = Money.fromDouble(BALANCE_USD_DOUBLE);
+    private static final String INVALID_EXCHANGE =
+            "Exchange must be between two different currencies, PLN or quoted in NBP table A.";
+    private static final RateTable RATES = RateTable.of(new ExchangeTable("A", "222/A/NBP/2024", "2024-11-15",
+            List.of(new ExchangeRate("dolar amerykański", "USD", BigDecimal.valueOf(4.122)),
+                    new ExchangeRate("euro", "EUR", BigDecimal.valueOf(4.3215)))));
     @Mock
-    private AccountRepository accountRepository;
+    private AccountStore accountStore;
 
     @Mock
     private Supplier<String> idGenerator;
 
     @Mock
-    private NbpApiClient nbpApiClient;
+    private NbpRateCache nbpRateCache;
+
+    @Mock
+    private JournalRepository journalRepository;
+
+    @Spy
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private AccountMetrics accountMetrics = new AccountMetrics(meterRegistry);
+
+    @Spy
+    private AccountStatusCache accountStatusCache = new AccountStatusCache(new SimpleMeterRegistry(), 100,
+            Duration.ofMinutes(5));
+
+    @Mock
+    private IdempotencyStore idempotencyStore;
+
+    @Spy
+    private AccountLocks accountLocks = new AccountLocks(new SimpleMeterRegistry(), true, 16, false,
+            Duration.ofSeconds(1));
+
+    @Spy
+    private QuoteStore quoteStore = new QuoteStore(() -> UUID.randomUUID().toString(), Clock.systemUTC(),
+            new SimpleMeterRegistry(), Duration.ofSeconds(30), Duration.ofSeconds(1));
+
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
 
     @InjectMocks
     private AccountService accountService;
@@ -59,18 +129,12 @@ class AccountServiceTest {
                 .build();
 
         when(idGenerator.get()).thenReturn(API_KEY);
-        var savedEntity = AccountEntity.builder()
-                .firstName(FIRST_NAME)
-                .lastName(LAST_NAME)
-                .balancePLN(INITIAL_BALANCE)
-                .balanceUSD(BigDecimal.ZERO)
-                .apiKey(API_KEY)
-                .build();
-
-        when(accountRepository.save(any(AccountEntity.class))).thenReturn(savedEntity);
 
         var response = accountService.register(request);
 
+        verify(accountStore).insert(List.of(new AccountBalance(API_KEY, FIRST_NAME, LAST_NAME,
+                Map.of("PLN", INITIAL_BALANCE), 0L)));
+        verify(journalRepository).append(List.of(JournalEntry.opening(API_KEY, INITIAL_BALANCE)));
         assertEquals(FIRST_NAME, response.getFirstName());
         assertEquals(LAST_NAME, response.getLastName());
         assertEquals(INITIAL_BALANCE_DOUBLE, response.getBalancePLN());
@@ -79,15 +143,33 @@ class AccountServiceTest {
     }
 
     @Test
-    void shouldGetStatus() {
-        var entity = AccountEntity.builder()
-                .firstName(FIRST_NAME)
-                .lastName(LAST_NAME)
-                .balancePLN(INITIAL_BALANCE)
-                .balanceUSD(BALANCE_USD)
+    void shouldRegisterAccountsInBatch() {
+        var request = RegisterAccountBatchRequest.builder()
+                .accounts(List.of(
+                        RegisterAccountRequest.builder().firstName(FIRST_NAME).lastName(LAST_NAME)
+                                .balancePLN(INITIAL_BALANCE_DOUBLE).build(),
+                        RegisterAccountRequest.builder().firstName("Anna").lastName("Nowak")
+                                .balancePLN(10.5d).build()))
                 .build();
 
-        when(accountRepository.findById(API_KEY)).thenReturn(Optional.of(entity));
+        when(idGenerator.get()).thenReturn("key-1", "key-2");
+
+        var response = accountService.registerBatch(request);
+
+        var captor = ArgumentCaptor.<List<AccountBalance>>captor();
+        verify(accountStore).insert(captor.capture());
+        assertThat(captor.getValue()).extracting(AccountBalance::apiKey).containsExactly("key-1", "key-2");
+        assertThat(response.getAccounts()).extracting(RegisterAccountResponse::getApiKey)
+                .containsExactly("key-1", "key-2");
+        assertEquals("Anna", response.getAccounts().get(1).getFirstName());
+        assertEquals(10.5d, response.getAccounts().get(1).getBalancePLN());
+        assertEquals(0.0d, response.getAccounts().get(1).getBalanceUSD());
+    }
+
+    @Test
+    void shouldGetStatus() {
+        when(accountStore.findBalance(API_KEY)).thenReturn(Optional.of(
+                balance(API_KEY, INITIAL_BALANCE, BALANCE_USD, 0L)));
 
         var account = accountService.getStatus(API_KEY);
 
@@ -97,9 +179,38 @@ class AccountServiceTest {
         assertEquals(BALANCE_USD_DOUBLE, account.getBalanceUSD());
     }
 
+    @Test
+    void shouldServeStatusFromCache_untilExchangeUpdatesIt() {
+        when(accountStore.findBalance(API_KEY)).thenReturn(Optional.of(
+                balance(API_KEY, INITIAL_BALANCE, BALANCE_USD, 0L)));
+        accountService.getStatus(API_KEY);
+        assertEquals(INITIAL_BALANCE_DOUBLE, accountService.getStatus(API_KEY).getBalancePLN());
+        verify(accountStore, times(1)).findBalance(API_KEY);
+
+        var exchange = AccountExchange.builder().from("PLN").to("USD").amount(10.0).build();
+        when(nbpRateCache.currentTableAsync()).thenReturn(CompletableFuture.completedFuture(RATES));
+        when(accountStore.lock(API_KEY)).thenReturn(true);
+        when(accountStore.debit(any(), any(), anyLong())).thenReturn(true);
+        when(accountStore.findBalance(API_KEY)).thenReturn(Optional.of(
+                balance(API_KEY, Money.fromDouble(990.0), BALANCE_USD, 1L)));
+        accountService.exchange(API_KEY, exchange);
+
+        assertEquals(990.0d, accountService.getStatus(API_KEY).getBalancePLN());
+        verify(accountStore, times(2)).findBalance(API_KEY);
+    }
+
+    @Test
+    void shouldKeepNewerStatus_whenOlderVersionIsPut() {
+        accountStatusCache.update(balance(API_KEY, Money.fromDouble(990.0), BALANCE_USD, 2L));
+        accountStatusCache.update(balance(API_KEY, INITIAL_BALANCE, BALANCE_USD, 1L));
+
+        assertEquals(990.0d, accountService.getStatus(API_KEY).getBalancePLN());
+        verifyNoInteractions(accountStore);
+    }
+
     @Test
     void shouldThrowException_whenApiKeyNotFound() {
-        when(accountRepository.findById(API_KEY)).thenReturn(Optional.empty());
+        when(accountStore.findBalance(API_KEY)).thenReturn(Optional.empty());
 
         var accountNotFoundException = assertThrows(AccountNotFoundException.class,
                 () -> accountService.getStatus(API_KEY));
@@ -114,41 +225,76 @@ class AccountServiceTest {
         exchange.setTo("USD");
         exchange.setAmount(10.0);
 
-        var argumentCaptor = ArgumentCaptor.forClass(AccountEntity.class);
-
-        var entity = AccountEntity.builder()
-                .firstName(FIRST_NAME)
-                .lastName(LAST_NAME)
-                .balancePLN(BigDecimal.valueOf(100.0))
-                .balanceUSD(BigDecimal.valueOf(0.0))
-                .build();
-
-        when(accountRepository.findById(API_KEY)).thenReturn(Optional.of(entity));
-        when(nbpApiClient.findExchange("USD")).thenReturn(
-                new Exchange("USD", List.of(new ExchangeRate("2024-11-15", BigDecimal.valueOf(4.122)))));
-        var build = AccountEntity.builder()
-                .firstName(FIRST_NAME)
-                .lastName(LAST_NAME)
-                .balancePLN(BigDecimal.valueOf(90.0))
-                .balanceUSD(BigDecimal.valueOf(2.426))
-                .build();
-        when(accountRepository.save(argumentCaptor.capture())).thenReturn(build);
+        when(nbpRateCache.currentTableAsync()).thenReturn(CompletableFuture.completedFuture(RATES));
+        when(accountStore.lock(API_KEY)).thenReturn(true);
+        when(accountStore.debit(API_KEY, "PLN", Money.fromDouble(10.0))).thenReturn(true);
+        when(accountStore.findBalance(API_KEY)).thenReturn(Optional.of(
+                balance(API_KEY, Money.fromDouble(90.0), Money.fromDouble(2.426), 1L)));
 
         var value = accountService.exchange(API_KEY, exchange);
 
-        var capture = argumentCaptor.getValue();
-
-        assertEquals(FIRST_NAME, capture.getFirstName());
-        assertEquals(LAST_NAME, capture.getLastName());
-        assertEquals(BigDecimal.valueOf(90.0d), capture.getBalancePLN());
-        assertThat(capture.getBalanceUSD()).isEqualByComparingTo(BigDecimal.valueOf(2.426d));
+        verify(accountStore).credit(API_KEY, "USD", Money.fromDouble(2.426));
+        verify(journalRepository).append(List.of(new JournalEntry(API_KEY, JournalEntryType.EXCHANGE, "PLN",
+                Money.fromDouble(10.0), BigDecimal.ONE, "USD", Money.fromDouble(2.426), new BigDecimal("4.122"),
+                LocalDate.of(2024, 11, 15))));
+        verify(journalRepository).snapshot(List.of(balance(API_KEY, Money.fromDouble(90.0), Money.fromDouble(2.426),
+                1L)));
         assertEquals(FIRST_NAME, value.getFirstName());
         assertEquals(LAST_NAME, value.getLastName());
         assertEquals(90.0d, value.getBalancePLN());
         assertThat(value.getBalanceUSD()).isEqualByComparingTo(2.426d);
+        assertThat(meterRegistry.get("account.operation.stage").tag("operation", "exchange").timers())
+                .extracting(timer -> timer.getId().getTag("stage"))
+                .containsExactlyInAnyOrder("validation", "lookup", "rate", "arithmetic", "lock", "update", "journal",
+                        "balance");
     }
 
 
+    @Test
+    void shouldRecordResponse_whenExchangingWithIdempotencyKey() {
+        var exchange = AccountExchange.builder().from("pln").to("USD").amount(10.0).build();
+        var request = IdempotentRequest.exchange(API_KEY, "key-1", "PLN", "USD", Money.fromDouble(10.0));
+
+        when(idempotencyStore.execute(eq(request), any())).thenAnswer(
+                invocation -> invocation.<Supplier<Account>>getArgument(1).get());
+        when(idempotencyStore.findStored(request)).thenReturn(Optional.empty());
+        when(nbpRateCache.currentTableAsync()).thenReturn(CompletableFuture.completedFuture(RATES));
+        when(accountStore.lock(API_KEY)).thenReturn(true);
+        when(accountStore.debit(API_KEY, "PLN", Money.fromDouble(10.0))).thenReturn(true);
+        when(accountStore.findBalance(API_KEY)).thenReturn(Optional.of(
+                balance(API_KEY, Money.fromDouble(90.0), Money.fromDouble(2.426), 1L)));
+
+        var value = accountService.exchange(API_KEY, exchange, "key-1");
+
+        verify(idempotencyStore).record(request, value);
+        assertEquals(90.0d, value.getBalancePLN());
+    }
+
+    @Test
+    void shouldReplayStoredResponse_whenKeyIsFoundUnderLock() {
+        var exchange = AccountExchange.builder().from("PLN").to("USD").amount(10.0).build();
+        var request = IdempotentRequest.exchange(API_KEY, "key-1", "PLN", "USD", Money.fromDouble(10.0));
+        var stored = balance(API_KEY, Money.fromDouble(90.0), Money.fromDouble(2.426), 1L).toAccount();
+        var status = new SimpleTransactionStatus();
+
+        when(transactionManager.getTransaction(any())).thenReturn(status);
+        when(idempotencyStore.execute(eq(request), any())).thenAnswer(
+                invocation -> invocation.<Supplier<Account>>getArgument(1).get());
+        when(idempotencyStore.findStored(request)).thenReturn(Optional.of(stored));
+        when(nbpRateCache.currentTableAsync()).thenReturn(CompletableFuture.completedFuture(RATES));
+        when(accountStore.findBalance(API_KEY)).thenReturn(Optional.of(
+                balance(API_KEY, Money.fromDouble(90.0), Money.fromDouble(2.426), 1L)));
+        when(accountStore.lock(API_KEY)).thenReturn(true);
+
+        var value = accountService.exchange(API_KEY, exchange, "key-1");
+
+        assertEquals(stored, value);
+        assertTrue(status.isRollbackOnly());
+        verify(accountStore, never()).debit(any(), any(), anyLong());
+        verify(idempotencyStore, never()).record(any(), any());
+        verifyNoInteractions(journalRepository);
+    }
+
     @Test
     void shouldExchangeSuccessfulUSDtoPLN() {
         var exchange = new AccountExchange();
@@ -156,40 +302,71 @@ class AccountServiceTest {
         exchange.setTo("PLN");
         exchange.setAmount(10.0);
 
-        var argumentCaptor = ArgumentCaptor.forClass(AccountEntity.class);
-
-        var entity = AccountEntity.builder()
-                .firstName(FIRST_NAME)
-                .lastName(LAST_NAME)
-                .balancePLN(BigDecimal.valueOf(100.0))
-                .balanceUSD(BigDecimal.valueOf(50.0))
-                .build();
-
-        when(accountRepository.findById(API_KEY)).thenReturn(Optional.of(entity));
-        when(nbpApiClient.findExchange("USD")).thenReturn(
-                new Exchange("USD", List.of(new ExchangeRate("2024-11-15", BigDecimal.valueOf(4.122)))));
-        var build = AccountEntity.builder()
-                .firstName(FIRST_NAME)
-                .lastName(LAST_NAME)
-                .balancePLN(BigDecimal.valueOf(141.22))
-                .balanceUSD(BigDecimal.valueOf(40))
-                .build();
-        when(accountRepository.save(argumentCaptor.capture())).thenReturn(build);
+        when(nbpRateCache.currentTableAsync()).thenReturn(CompletableFuture.completedFuture(RATES));
+        when(accountStore.lock(API_KEY)).thenReturn(true);
+        when(accountStore.debit(API_KEY, "USD", Money.fromDouble(10.0))).thenReturn(true);
+        when(accountStore.findBalance(API_KEY)).thenReturn(Optional.of(
+                balance(API_KEY, Money.fromDouble(141.22), Money.fromDouble(40), 1L)));
 
         var value = accountService.exchange(API_KEY, exchange);
 
-        var capture = argumentCaptor.getValue();
-
-        assertEquals(FIRST_NAME, capture.getFirstName());
-        assertEquals(LAST_NAME, capture.getLastName());
-        assertThat(capture.getBalancePLN()).isEqualByComparingTo(BigDecimal.valueOf(141.22));
-        assertThat(capture.getBalanceUSD()).isEqualByComparingTo(BigDecimal.valueOf(40));
+        verify(accountStore).credit(API_KEY, "PLN", Money.fromDouble(41.22));
         assertEquals(FIRST_NAME, value.getFirstName());
         assertEquals(LAST_NAME, value.getLastName());
         assertThat(value.getBalancePLN()).isEqualByComparingTo(141.22d);
         assertThat(value.getBalanceUSD()).isEqualByComparingTo(40.0d);
     }
 
+    @Test
+    void shouldExchangeThroughCrossRate() {
+        var exchange = AccountExchange.builder().from("eur").to("usd").amount(10.0).build();
+
+        when(nbpRateCache.currentTableAsync()).thenReturn(CompletableFuture.completedFuture(RATES));
+        when(accountStore.lock(API_KEY)).thenReturn(true);
+        when(accountStore.debit(API_KEY, "EUR", Money.fromDouble(10.0))).thenReturn(true);
+        when(accountStore.findBalance(API_KEY)).thenReturn(Optional.of(new AccountBalance(API_KEY,
+                FIRST_NAME, LAST_NAME, Map.of("PLN", 0L, "EUR", Money.fromDouble(5.0), "USD",
+                Money.fromDouble(10.484)), 1L)));
+
+        var value = accountService.exchange(API_KEY, exchange);
+
+        // 10 EUR * 4.3215 PLN / 4.122 PLN, rounded once
+        verify(accountStore).credit(API_KEY, "USD", Money.fromDouble(10.4840));
+        assertEquals(Map.of("PLN", 0.0d, "EUR", 5.0d, "USD", 10.484d), value.getBalances());
+    }
+
+    @Test
+    void shouldExecuteQuoteOnce_atQuotedRate_withoutFetchingRatesAgain() {
+        var exchange = AccountExchange.builder().from("usd").to("PLN").amount(10.0).build();
+        when(nbpRateCache.currentTableAsync()).thenReturn(CompletableFuture.completedFuture(RATES));
+        when(accountStore.findBalance(API_KEY)).thenReturn(Optional.of(
+                balance(API_KEY, INITIAL_BALANCE, BALANCE_USD, 0L)));
+
+        var quote = accountService.quote(API_KEY, exchange);
+
+        assertEquals("USD", quote.getFrom());
+        assertEquals(41.22d, quote.getConverted());
+        assertEquals(BigDecimal.valueOf(4.122), quote.getFromRate());
+        assertEquals(BigDecimal.ONE, quote.getToRate().stripTrailingZeros());
+        assertEquals(LocalDate.of(2024, 11, 15), quote.getEffectiveDate());
+        verify(accountStore, never()).lock(any());
+
+        when(accountStore.lock(API_KEY)).thenReturn(true);
+        when(accountStore.debit(API_KEY, "USD", Money.fromDouble(10.0))).thenReturn(false, true);
+        assertThrows(InsufficientFundsException.class, () -> accountService.executeQuote(API_KEY, quote.getQuoteId()));
+        assertThrows(QuoteNotFoundException.class, () -> accountService.executeQuote("other", quote.getQuoteId()));
+
+        accountService.executeQuote(API_KEY, quote.getQuoteId());
+
+        verify(accountStore).credit(API_KEY, "PLN", Money.fromDouble(41.22));
+        verify(journalRepository).append(List.of(JournalEntry.exchange(API_KEY, "USD", Money.fromDouble(10.0), "PLN",
+                Money.fromDouble(41.22), RATES)));
+        verify(nbpRateCache, times(1)).currentTableAsync();
+        var exception = assertThrows(QuoteNotFoundException.class,
+                () -> accountService.executeQuote(API_KEY, quote.getQuoteId()));
+        assertEquals("Quote not found.", exception.getMessage());
+    }
+
     @Test
     void shouldThrowException_whenInsufficientFunds() {
         var exchange = new AccountExchange();
@@ -197,30 +374,53 @@ class AccountServiceTest {
         exchange.setTo("PLN");
         exchange.setAmount(1000.0);
 
-        var entity = AccountEntity.builder()
-                .firstName(FIRST_NAME)
-                .lastName(LAST_NAME)
-                .balancePLN(BigDecimal.valueOf(20.0))
-                .balanceUSD(BigDecimal.valueOf(50.0))
-                .build();
-
-        when(accountRepository.findById(API_KEY)).thenReturn(Optional.of(entity));
+        when(nbpRateCache.currentTableAsync()).thenReturn(CompletableFuture.completedFuture(RATES));
+        when(accountStore.findBalance(API_KEY)).thenReturn(Optional.of(
+                balance(API_KEY, INITIAL_BALANCE, BALANCE_USD, 0L)));
+        when(accountStore.lock(API_KEY)).thenReturn(true);
+        when(accountStore.debit(any(), any(), anyLong())).thenReturn(false);
 
         var insufficientFundsException = assertThrows(InsufficientFundsException.class,
                 () -> accountService.exchange(API_KEY, exchange));
         Assertions.assertEquals("Insufficient funds.", insufficientFundsException.getMessage());
+        verify(accountStore, never()).credit(any(), any(), anyLong());
     }
 
     @Test
     void shouldThrowException_whenInvalidCurrency() {
         var exchange = new AccountExchange();
-        exchange.setFrom("CHF");
+        exchange.setFrom("XYZ");
         exchange.setTo("PLN");
         exchange.setAmount(1000.0);
 
+        when(nbpRateCache.currentTableAsync()).thenReturn(CompletableFuture.completedFuture(RATES));
+        when(accountStore.findBalance(API_KEY)).thenReturn(Optional.of(
+                balance(API_KEY, INITIAL_BALANCE, BALANCE_USD, 0L)));
+
+        var invalidExchangeException = assertThrows(InvalidExchangeException.class,
+                () -> accountService.exchange(API_KEY, exchange));
+        Assertions.assertEquals(INVALID_EXCHANGE, invalidExchangeException.getMessage());
+        verify(accountStore, never()).lock(any());
+    }
+
+    @Test
+    void shouldThrowException_whenExchangingToSameCurrency() {
+        var exchange = AccountExchange.builder().from("PLN").to("pln").amount(10.0).build();
+
+        var invalidExchangeException = assertThrows(InvalidExchangeException.class,
+                () -> accountService.exchange(API_KEY, exchange));
+        Assertions.assertEquals(INVALID_EXCHANGE, invalidExchangeException.getMessage());
+        verifyNoInteractions(nbpRateCache, accountStore);
+    }
+
+    @Test
+    void shouldThrowException_whenAmountIsOutOfRange() {
+        var exchange = AccountExchange.builder().from("PLN").to("USD").amount(1.0e300).build();
+
         var invalidExchangeException = assertThrows(InvalidExchangeException.class,
                 () -> accountService.exchange(API_KEY, exchange));
-        Assertions.assertEquals("Exchange must be only PLN->USD or USD->PLN.", invalidExchangeException.getMessage());
+        Assertions.assertEquals("Amount is out of range.", invalidExchangeException.getMessage());
+        verifyNoInteractions(accountStore);
     }
 
     @Test
@@ -230,10 +430,160 @@ class AccountServiceTest {
         exchange.setTo("PLN");
         exchange.setAmount(15.0);
 
-        when(accountRepository.findById(API_KEY)).thenReturn(Optional.empty());
+        when(nbpRateCache.currentTableAsync()).thenReturn(new CompletableFuture<>());
+        when(accountStore.findBalance(API_KEY)).thenReturn(Optional.empty());
+
+        var accountNotFoundException = assertThrows(AccountNotFoundException.class,
+                () -> accountService.exchange(API_KEY, exchange));
+        Assertions.assertEquals("Api key not found.", accountNotFoundException.getMessage());
+        verify(accountStore, never()).lock(any());
+        verifyNoInteractions(transactionTemplate);
+    }
+
+    @Test
+    void shouldThrowException_whenAccountDisappearsBeforeLock() {
+        var exchange = AccountExchange.builder().from("USD").to("PLN").amount(15.0).build();
+
+        when(nbpRateCache.currentTableAsync()).thenReturn(CompletableFuture.completedFuture(RATES));
+        when(accountStore.findBalance(API_KEY)).thenReturn(Optional.of(
+                balance(API_KEY, INITIAL_BALANCE, BALANCE_USD, 0L)));
+        when(accountStore.lock(API_KEY)).thenReturn(false);
 
         var accountNotFoundException = assertThrows(AccountNotFoundException.class,
                 () -> accountService.exchange(API_KEY, exchange));
         Assertions.assertEquals("Api key not found.", accountNotFoundException.getMessage());
+        verify(accountStore, never()).debit(any(), any(), anyLong());
+    }
+
+    @Test
+    void shouldThrowException_whenAccountRowIsLocked() {
+        var exchange = new AccountExchange();
+        exchange.setFrom("PLN");
+        exchange.setTo("USD");
+        exchange.setAmount(10.0);
+
+        when(nbpRateCache.currentTableAsync()).thenReturn(CompletableFuture.completedFuture(RATES));
+        when(accountStore.findBalance(API_KEY)).thenReturn(Optional.of(
+                balance(API_KEY, INITIAL_BALANCE, BALANCE_USD, 0L)));
+        when(accountStore.lock(API_KEY))
+                .thenThrow(new CannotAcquireLockException("Timeout trying to lock table"));
+
+        var conflictException = assertThrows(ExchangeConflictException.class,
+                () -> accountService.exchange(API_KEY, exchange));
+        Assertions.assertEquals("Account is being modified concurrently, please retry.",
+                conflictException.getMessage());
+        Assertions.assertEquals(1.0d, meterRegistry.get("account.exchange.conflicts")
+                .tags("operation", "exchange", "lock", "row").counter().count());
+    }
+
+    @Test
+    void shouldReturnResultPerItem_whenExchangingBatch() {
+        var request = AccountExchangeBatchRequest.builder()
+                .items(List.of(
+                        batchItem("key-5", "PLN", "USD", 10.0),
+                        batchItem("key-2", "USD", "PLN", 10.0),
+                        batchItem("key-0", "PLN", "PLN", 10.0),
+                        batchItem("key-4", "USD", "PLN", 1000.0),
+                        batchItem("key-1", "PLN", "USD", 10.0),
+                        batchItem("key-3", "XYZ", "PLN", 10.0)))
+                .build();
+
+        when(nbpRateCache.currentTableAsync()).thenReturn(CompletableFuture.completedFuture(RATES));
+        when(accountStore.findBalances(List.of("key-1", "key-2", "key-4", "key-5"))).thenReturn(List.of(
+                balance("key-1", Money.fromDouble(100.0), 0L, 1L),
+                new AccountBalance("key-2", FIRST_NAME, LAST_NAME, Map.of("USD", Money.fromDouble(100.0)), 1L),
+                balance("key-4", 0L, Money.fromDouble(5.0), 1L)));
+
+        var results = accountService.exchangeBatch(request).getResults();
+
+        verify(accountStore).lockAll(List.of("key-1", "key-2", "key-4", "key-5"));
+        verify(accountStore).saveBalances(List.of(
+                new CurrencyBalance("key-1", "PLN", Money.fromDouble(90.0)),
+                new CurrencyBalance("key-1", "USD", Money.fromDouble(2.426)),
+                new CurrencyBalance("key-2", "PLN", Money.fromDouble(41.22)),
+                new CurrencyBalance("key-2", "USD", Money.fromDouble(90.0))));
+        var entries = ArgumentCaptor.<List<JournalEntry>>captor();
+        verify(journalRepository).append(entries.capture());
+        assertThat(entries.getValue()).extracting(JournalEntry::apiKey, JournalEntry::fromCurrency,
+                        JournalEntry::toAmount)
+                .containsExactly(tuple("key-1", "PLN", Money.fromDouble(2.426)),
+                        tuple("key-2", "USD", Money.fromDouble(41.22)));
+        assertThat(results).extracting(AccountExchangeBatchResult::getStatus).containsExactly(
+                AccountExchangeBatchStatus.ACCOUNT_NOT_FOUND,
+                AccountExchangeBatchStatus.EXCHANGED,
+                AccountExchangeBatchStatus.INVALID_EXCHANGE,
+                AccountExchangeBatchStatus.INSUFFICIENT_FUNDS,
+                AccountExchangeBatchStatus.EXCHANGED,
+                AccountExchangeBatchStatus.INVALID_EXCHANGE);
+        assertThat(results).extracting(AccountExchangeBatchResult::getApiKey)
+                .containsExactly("key-5", "key-2", "key-0", "key-4", "key-1", "key-3");
+        assertEquals("Api key not found.", results.get(0).getMessage());
+        assertEquals(41.22d, results.get(1).getAccount().getBalancePLN());
+        assertEquals(INVALID_EXCHANGE, results.get(2).getMessage());
+        assertEquals("Insufficient funds.", results.get(3).getMessage());
+        assertEquals(90.0d, results.get(4).getAccount().getBalancePLN());
+        assertEquals(2.426d, results.get(4).getAccount().getBalanceUSD());
+        assertEquals(INVALID_EXCHANGE, results.get(5).getMessage());
+        verify(nbpRateCache, times(1)).currentTableAsync();
+    }
+
+    @Test
+    void shouldNotFetchRate_whenNoBatchItemIsValid() {
+        var request = AccountExchangeBatchRequest.builder()
+                .items(List.of(batchItem(API_KEY, "USD", "USD", 10.0)))
+                .build();
+
+        var results = accountService.exchangeBatch(request).getResults();
+
+        assertThat(results).extracting(AccountExchangeBatchResult::getStatus)
+                .containsExactly(AccountExchangeBatchStatus.INVALID_EXCHANGE);
+        verifyNoInteractions(nbpRateCache, accountStore);
+    }
+
+    @Test
+    void shouldPageHistory_byEntryId() {
+        when(accountStore.exists(API_KEY)).thenReturn(true);
+        when(journalRepository.findByApiKeyAndIdGreaterThanOrderByIdAsc(UUID.fromString(API_KEY), 7L, Limit.of(2))).thenReturn(List.of(
+                journalEntry(8L, JournalEntryType.OPENING), journalEntry(12L, JournalEntryType.EXCHANGE)));
+        when(journalRepository.findByApiKeyAndIdGreaterThanOrderByIdAsc(UUID.fromString(API_KEY), 12L, Limit.of(2))).thenReturn(List.of(
+                journalEntry(15L, JournalEntryType.EXCHANGE)));
+
+        var first = accountService.history(API_KEY, 7L, 2);
+        var last = accountService.history(API_KEY, first.getNextCursor(), 2);
+
+        assertThat(first.getEntries()).extracting(AccountHistoryEntry::getId).containsExactly(8L, 12L);
+        assertEquals(AccountHistoryEntryType.OPENING, first.getEntries().get(0).getType());
+        assertEquals(12L, first.getNextCursor());
+        assertThat(last.getEntries()).extracting(AccountHistoryEntry::getId).containsExactly(15L);
+        assertNull(last.getNextCursor());
+    }
+
+    @Test
+    void shouldThrowException_whenHistoryApiKeyNotFound() {
+        when(accountStore.exists(API_KEY)).thenReturn(false);
+
+        assertThrows(AccountNotFoundException.class, () -> accountService.history(API_KEY, 0L, 100));
+        verifyNoInteractions(journalRepository);
+    }
+
+    private static JournalEntryEntity journalEntry(long id, JournalEntryType type) {
+        return JournalEntryEntity.builder()
+                .id(id)
+                .apiKey(UUID.fromString(API_KEY))
+                .type(type)
+                .toCurrency("PLN")
+                .toAmount(INITIAL_BALANCE)
+                .toRate(BigDecimal.ONE)
+                .createdAt(Instant.parse("2024-11-15T09:00:00Z"))
+                .build();
+    }
+
+    private static AccountBalance balance(String apiKey, long balancePLN, long balanceUSD, long version) {
+        return new AccountBalance(apiKey, FIRST_NAME, LAST_NAME, Map.of("PLN", balancePLN, "USD", balanceUSD),
+                version);
+    }
+
+    private static AccountExchangeBatchItem batchItem(String apiKey, String from, String to, double amount) {
+        return AccountExchangeBatchItem.builder().apiKey(apiKey).from(from).to(to).amount(amount).build();
     }
 }
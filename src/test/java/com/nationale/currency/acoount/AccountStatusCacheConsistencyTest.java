@@ -0,0 +1,97 @@
+package com.nationale.currency.acoount;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.nationale.currency.nbp.ExchangeRate;
+import com.nationale.currency.nbp.ExchangeTable;
+import com.nationale.currency.nbp.NbpApiClient;
+import com.nationale.generated.model.AccountExchange;
+import com.nationale.generated.model.RegisterAccountRequest;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+@SpringBootTest
+class AccountStatusCacheConsistencyTest {
+
+    private static final int READERS = 4;
+    private static final int EXCHANGES = 300;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockBean
+    private NbpApiClient nbpApiClient;
+
+    @Test
+    void shouldNotServeStaleBalance_afterExchangeCommits() throws Exception {
+        when(nbpApiClient.findTableAsync()).thenReturn(CompletableFuture.completedFuture(new ExchangeTable("A",
+                "222/A/NBP/2024", "2024-11-15",
+                List.of(new ExchangeRate("dolar amerykański", "USD", BigDecimal.valueOf(4.108))))));
+        var apiKey = register(1000.0d);
+        var exchange = AccountExchange.builder().from("PLN").to("USD").amount(1.0d).build();
+
+        var stop = new AtomicBoolean();
+        var readers = new ArrayList<Future<Integer>>(READERS);
+        try (var executor = Executors.newFixedThreadPool(READERS)) {
+            for (int r = 0; r < READERS; r++) {
+                readers.add(executor.submit(() -> {
+                    var reads = 0;
+                    var lowest = Double.MAX_VALUE;
+                    while (!stop.get()) {
+                        // PLN only goes down, so a higher balance than already seen is a stale read.
+                        var balancePLN = accountService.getStatus(apiKey).getBalancePLN();
+                        assertTrue(balancePLN <= lowest, "stale balance " + balancePLN + " after " + lowest);
+                        lowest = balancePLN;
+                        reads++;
+                    }
+                    return reads;
+                }));
+            }
+
+            try {
+                for (int i = 0; i < EXCHANGES; i++) {
+                    var exchanged = accountService.exchange(apiKey, exchange);
+                    var status = accountService.getStatus(apiKey);
+
+                    assertEquals(exchanged.getBalancePLN(), status.getBalancePLN());
+                    assertEquals(exchanged.getBalanceUSD(), status.getBalanceUSD());
+                }
+            } finally {
+                stop.set(true);
+            }
+
+            for (var reader : readers) {
+                assertTrue(reader.get(1, TimeUnit.MINUTES) > 0);
+            }
+        }
+
+        assertEquals(1000.0d - EXCHANGES, accountService.getStatus(apiKey).getBalancePLN());
+        assertTrue(meterRegistry.get("cache.gets").tag("cache", "account.status").tag("result", "hit")
+                .functionCounter().count() > 0);
+    }
+
+    private String register(double balancePLN) {
+        return accountService.register(RegisterAccountRequest.builder()
+                .firstName("Anna")
+                .lastName("Nowak")
+                .balancePLN(balancePLN)
+                .build()).getApiKey();
+    }
+}
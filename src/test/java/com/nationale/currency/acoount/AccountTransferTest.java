@@ -0,0 +1,170 @@
+package com.nationale.currency.acoount;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nationale.currency.acoount.exception.InvalidImportException;
+import com.nationale.currency.nbp.ExchangeRate;
+import com.nationale.currency.nbp.ExchangeTable;
+import com.nationale.currency.nbp.NbpRateCache;
+import com.nationale.currency.nbp.RateTable;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class AccountTransferTest {
+
+    private static final String API_KEY = "3f2c1a9e-8b7d-4c6e-9f10-112233445566";
+    private static final String OTHER_API_KEY = "7a6b5c4d-3e2f-4a1b-8c9d-0e1f2a3b4c5d";
+    private static final RateTable RATES = RateTable.of(new ExchangeTable("A", "222/A/NBP/2024", "2024-11-15",
+            List.of(new ExchangeRate("dolar amerykański", "USD", new BigDecimal("4.1080")))));
+
+    @Mock
+    private AccountStore accountStore;
+
+    @Mock
+    private JournalRepository journalRepository;
+
+    @Mock
+    private NbpRateCache nbpRateCache;
+
+    private final List<AccountBalance> inserted = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> inserted.addAll(invocation.getArgument(0))).when(accountStore).insert(anyList());
+    }
+
+    @Test
+    void shouldImportExportedAccounts_inBothFormats() throws IOException {
+        var accounts = List.of(
+                new AccountBalance(API_KEY, "Anna, \"Ania\"", "Nowak\nKowalska",
+                        Map.of("USD", Money.fromDouble(5.5), "PLN", Money.fromDouble(100.0)), 3L),
+                new AccountBalance(OTHER_API_KEY, "John", "Smith", Map.of(), 0L));
+        doAnswer(invocation -> {
+            Consumer<AccountBalance> consumer = invocation.getArgument(0);
+            accounts.forEach(consumer);
+            return null;
+        }).when(accountStore).forEachAccount(any());
+        when(nbpRateCache.currentTable()).thenReturn(RATES);
+        var transfer = transfer(1000);
+
+        var csv = export(transfer, TransferFormat.CSV);
+        assertEquals("""
+                api_key,first_name,last_name,balances\r
+                %s,"Anna, ""Ania\""","Nowak
+                Kowalska",PLN=100.0000;USD=5.5000\r
+                %s,John,Smith,\r
+                """.formatted(API_KEY, OTHER_API_KEY), csv);
+        var ndjson = export(transfer, TransferFormat.NDJSON);
+        assertEquals("""
+                {"apiKey":"%s","firstName":"Anna, \\"Ania\\"","lastName":"Nowak\\nKowalska",\
+                "balances":{"PLN":100.0000,"USD":5.5000}}
+                {"apiKey":"%s","firstName":"John","lastName":"Smith","balances":{}}
+                """.formatted(API_KEY, OTHER_API_KEY), ndjson);
+
+        for (var format : TransferFormat.values()) {
+            inserted.clear();
+            var result = transfer.importAccounts(format, input(format == TransferFormat.CSV ? csv : ndjson), false);
+
+            assertEquals(new AccountTransfer.ImportResult(2L, 0L), result);
+            assertEquals(accounts.stream().map(account -> new AccountBalance(account.apiKey(), account.firstName(),
+                    account.lastName(), account.balances(), 0L)).toList(), inserted);
+        }
+        var journal = ArgumentCaptor.<List<JournalEntry>>captor();
+        verify(journalRepository, times(2)).append(journal.capture());
+        for (var entries : journal.getAllValues()) {
+            assertThat(entries).containsExactlyInAnyOrder(JournalEntry.opening(API_KEY, Money.fromDouble(100.0)),
+                    new JournalEntry(API_KEY, JournalEntryType.OPENING, null, null, null, "USD",
+                            Money.fromDouble(5.5), RATES.rate("USD").toBigDecimal(), LocalDate.of(2024, 11, 15)));
+        }
+    }
+
+    @Test
+    void shouldRejectMalformedRecord_keepingBatchesBeforeIt() {
+        var transfer = transfer(2);
+        var ndjson = new StringBuilder();
+        for (var apiKey : List.of(API_KEY, OTHER_API_KEY, "0a1b2c3d-4e5f-4a6b-8c7d-8e9fa0b1c2d3")) {
+            ndjson.append("{\"apiKey\":\"").append(apiKey)
+                    .append("\",\"firstName\":\"John\",\"lastName\":\"Smith\",\"balances\":{\"PLN\":1}}\n");
+        }
+        ndjson.append("{\"apiKey\":\"0a1b2c3d-4e5f-4a6b-8c7d-8e9fa0b1c2d4\",\"firstName\":\"John\",")
+                .append("\"lastName\":\"Smith\",\"balances\":{\"PLN\":0.00001}}\n");
+
+        var exception = assertThrows(InvalidImportException.class,
+                () -> transfer.importAccounts(TransferFormat.NDJSON, input(ndjson.toString()), false));
+
+        assertEquals("Line 4: Balance of PLN has more than 4 decimal places. 2 accounts imported.",
+                exception.getMessage());
+        assertEquals(List.of(API_KEY, OTHER_API_KEY), inserted.stream().map(AccountBalance::apiKey).toList());
+    }
+
+    @Test
+    void shouldSkipExistingAccounts_onlyWhenAsked() throws IOException {
+        var csv = """
+                api_key,first_name,last_name,balances
+                %s,John,Smith,PLN=1
+                %s,Jane,Smith,PLN=2
+                """.formatted(API_KEY, OTHER_API_KEY);
+        when(accountStore.findBalances(List.of(API_KEY, OTHER_API_KEY))).thenReturn(List.of(
+                new AccountBalance(API_KEY, "John", "Smith", Map.of(), 0L)));
+        var transfer = transfer(1000);
+
+        var result = transfer.importAccounts(TransferFormat.CSV, input(csv), true);
+
+        assertEquals(new AccountTransfer.ImportResult(1L, 1L), result);
+        assertEquals(List.of(OTHER_API_KEY), inserted.stream().map(AccountBalance::apiKey).toList());
+
+        doThrow(new DuplicateKeyException("exists")).when(accountStore).insert(anyList());
+        var exception = assertThrows(InvalidImportException.class,
+                () -> transfer.importAccounts(TransferFormat.CSV, input(csv), false));
+        assertEquals("Accounts 1 to 2 of the input were not imported, one of them already exists. "
+                + "0 accounts imported.", exception.getMessage());
+    }
+
+    private AccountTransfer transfer(int batchSize) {
+        var meterRegistry = new SimpleMeterRegistry();
+        return new AccountTransfer(accountStore, journalRepository,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), nbpRateCache,
+                new AccountMetrics(meterRegistry), new ObjectMapper(), meterRegistry, batchSize);
+    }
+
+    private static String export(AccountTransfer transfer, TransferFormat format) throws IOException {
+        var out = new ByteArrayOutputStream();
+        transfer.exportAccounts(format, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static ByteArrayInputStream input(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,93 @@
+package com.nationale.currency.acoount;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+@ExtendWith(MockitoExtension.class)
+class AdminAuthFilterTest {
+
+    private static final String ADMIN_TOKEN = "admin-token";
+
+    @Mock
+    private FilterChain filterChain;
+
+    @Test
+    void shouldAnswer403_withoutOrWithWrongAdminToken() throws Exception {
+        var filter = new AdminAuthFilter(ADMIN_TOKEN);
+        var anonymous = new MockHttpServletRequest("GET", "/account/export");
+        var anonymousResponse = new MockHttpServletResponse();
+        var wrong = new MockHttpServletRequest("GET", "/report/valuation");
+        wrong.addHeader("x-admin-token", "admin-tokem");
+        var wrongResponse = new MockHttpServletResponse();
+
+        filter.doFilter(anonymous, anonymousResponse, filterChain);
+        filter.doFilter(wrong, wrongResponse, filterChain);
+
+        assertEquals(403, anonymousResponse.getStatus());
+        assertEquals("{\"message\":\"Valid x-admin-token required.\"}", anonymousResponse.getContentAsString());
+        assertEquals(403, wrongResponse.getStatus());
+        verify(filterChain, never()).doFilter(anonymous, anonymousResponse);
+        verify(filterChain, never()).doFilter(wrong, wrongResponse);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"/account/export;x=1", "/account/%65xport", "//account/export", "/account/import;x=1"})
+    void shouldAnswer403_whenAccountPathIsEncodedOrHasParameters(String uri) throws Exception {
+        assertRejected(uri);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"/report;x/valuation", "/%72eport/valuation", "//report/valuation", "/report/valuation;x=1"})
+    void shouldAnswer403_whenReportPathIsEncodedOrHasParameters(String uri) throws Exception {
+        assertRejected(uri);
+    }
+
+    @Test
+    void shouldRejectEveryAdminRequest_whenNoTokenIsConfigured() throws Exception {
+        var request = new MockHttpServletRequest("GET", "/account/export");
+        request.addHeader("x-admin-token", "");
+        var response = new MockHttpServletResponse();
+
+        new AdminAuthFilter("").doFilter(request, response, filterChain);
+
+        assertEquals(403, response.getStatus());
+        verify(filterChain, never()).doFilter(request, response);
+    }
+
+    @Test
+    void shouldPassRequests_withAdminTokenOrOutsideOfAdminApi() throws Exception {
+        var filter = new AdminAuthFilter(ADMIN_TOKEN);
+        var admin = new MockHttpServletRequest("GET", "/account/export");
+        admin.addHeader("x-admin-token", ADMIN_TOKEN);
+        var account = new MockHttpServletRequest("GET", "/account");
+        var response = new MockHttpServletResponse();
+
+        filter.doFilter(admin, response, filterChain);
+        filter.doFilter(account, response, filterChain);
+
+        assertEquals(200, response.getStatus());
+        verify(filterChain).doFilter(admin, response);
+        verify(filterChain).doFilter(account, response);
+    }
+
+    private void assertRejected(String uri) throws Exception {
+        var request = new MockHttpServletRequest("GET", uri);
+        var response = new MockHttpServletResponse();
+
+        new AdminAuthFilter(ADMIN_TOKEN).doFilter(request, response, filterChain);
+
+        assertEquals(403, response.getStatus());
+        verify(filterChain, never()).doFilter(request, response);
+    }
+}
@@ -0,0 +1,52 @@
+package com.nationale.currency.acoount;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.NullAndEmptySource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ApiKeysTest {
+
+    @Test
+    void shouldParseCanonicalKey() {
+        var key = UUID.randomUUID();
+
+        assertEquals(key, ApiKeys.parse(key.toString()));
+        assertEquals(new UUID(0x0123456789abcdefL, 0xfedcba9876543210L),
+                ApiKeys.parse("01234567-89ab-cdef-fedc-ba9876543210"));
+        assertEquals(new UUID(-1L, -1L), ApiKeys.parse("ffffffff-ffff-ffff-ffff-ffffffffffff"));
+    }
+
+    @ParameterizedTest
+    @NullAndEmptySource
+    @ValueSource(strings = {"CECB5B42-7C24-41CD-895C-1D3747C8444D", "cecb5b42-7c24-41cd-895c-1d3747c8444",
+            "cecb5b42-7c24-41cd-895c-1d3747c8444d0", "cecb5b427c24-41cd-895c-1d3747c8444d-",
+            "cecb5b42-7c24-41cd-895c-1d3747c8444g", "cecb5b42-7c24-41cd-895c-1d3747c8444٤", "api-key"})
+    void shouldRejectNonCanonicalKey(String apiKey) {
+        assertNull(ApiKeys.parse(apiKey));
+        assertThrows(IllegalArgumentException.class, () -> ApiKeys.valueOf(apiKey));
+    }
+
+    @Test
+    void shouldGenerateRandomVersion4Keys() {
+        var generator = new ApiKeyGenerator(3);
+
+        var first = generator.get();
+        var second = generator.get();
+
+        assertNotEquals(first, second);
+        for (var apiKey : new String[]{first, second}) {
+            var key = ApiKeys.parse(apiKey);
+            assertEquals(apiKey, key.toString());
+            assertEquals(4, key.version());
+            assertEquals(2, key.variant());
+        }
+    }
+}
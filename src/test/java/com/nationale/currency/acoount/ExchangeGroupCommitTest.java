@@ -0,0 +1,98 @@
+package com.nationale.currency.acoount;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.nationale.currency.acoount.exception.InsufficientFundsException;
+import com.nationale.currency.nbp.ExchangeRate;
+import com.nationale.currency.nbp.ExchangeTable;
+import com.nationale.currency.nbp.NbpApiClient;
+import com.nationale.generated.model.AccountExchange;
+import com.nationale.generated.model.RegisterAccountRequest;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+@SpringBootTest(properties = {
+        "account.group-commit.enabled=true",
+        "account.group-commit.max-batch-size=50",
+        "account.group-commit.max-delay=PT0.002S"})
+class ExchangeGroupCommitTest {
+
+    private static final int THREADS = 32;
+    private static final int EXCHANGES = 2000;
+    private static final double INITIAL_BALANCE_PLN = 1000.0d;
+
+    @Autowired
+    private ExchangeGroupCommitter exchangeGroupCommitter;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockBean
+    private NbpApiClient nbpApiClient;
+
+    @Test
+    void shouldApplyEveryExchangeOnce_whenExchangesAreCommittedInGroups() throws Exception {
+        when(nbpApiClient.findTableAsync()).thenReturn(CompletableFuture.completedFuture(new ExchangeTable("A",
+                "222/A/NBP/2024", "2024-11-15",
+                List.of(new ExchangeRate("dolar amerykański", "USD", BigDecimal.valueOf(4.108))))));
+        var apiKey = accountService.register(RegisterAccountRequest.builder()
+                .firstName("Anna")
+                .lastName("Nowak")
+                .balancePLN(INITIAL_BALANCE_PLN)
+                .build()).getApiKey();
+        var exchange = AccountExchange.builder().from("PLN").to("USD").amount(1.0d).build();
+
+        var start = new CountDownLatch(1);
+        var results = new ArrayList<Future<Boolean>>(EXCHANGES);
+        try (var executor = Executors.newFixedThreadPool(THREADS)) {
+            for (int i = 0; i < EXCHANGES; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        exchangeGroupCommitter.exchange(apiKey, exchange);
+                        return true;
+                    } catch (InsufficientFundsException e) {
+                        return false;
+                    }
+                }));
+            }
+            start.countDown();
+        }
+
+        var succeeded = 0;
+        for (var result : results) {
+            if (result.get(1, TimeUnit.MINUTES)) {
+                succeeded++;
+            }
+        }
+        var account = accountRepository.findBalanceByApiKey(apiKey).orElseThrow();
+        var usdPerExchange = Money.divide(Money.fromDouble(1.0d), Money.Rate.of(BigDecimal.valueOf(4.108)));
+        var batches = meterRegistry.get("account.group-commit.batch.size").summary();
+
+        assertEquals(1000, succeeded);
+        assertEquals(0L, account.balance("PLN"));
+        assertEquals(succeeded * usdPerExchange, account.balance("USD"));
+        assertEquals(EXCHANGES, (long) batches.totalAmount());
+        assertTrue(batches.count() < EXCHANGES, () -> "Exchanges were not grouped: " + batches.count());
+    }
+}
@@ -0,0 +1,143 @@
+package com.nationale.currency.acoount;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.nationale.currency.acoount.exception.ExchangeConflictException;
+import com.nationale.currency.acoount.exception.InsufficientFundsException;
+import com.nationale.generated.model.Account;
+import com.nationale.generated.model.AccountExchange;
+import com.nationale.generated.model.AccountExchangeBatchRequest;
+import com.nationale.generated.model.AccountExchangeBatchResponse;
+import com.nationale.generated.model.AccountExchangeBatchResult;
+import com.nationale.generated.model.AccountExchangeBatchStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ExchangeGroupCommitterTest {
+
+    private static final AccountExchange EXCHANGE = AccountExchange.builder().from("PLN").to("USD").amount(10.0)
+            .build();
+
+    @Mock
+    private AccountService accountService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ExchangeGroupCommitter groupCommitter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        groupCommitter.destroy();
+    }
+
+    @Test
+    void shouldCommitQueuedExchangesInOneBatch() throws Exception {
+        groupCommitter = new ExchangeGroupCommitter(accountService, meterRegistry, 3, Duration.ofSeconds(5), 100);
+        when(accountService.exchangeBatch(any())).thenAnswer(invocation -> exchanged(invocation.getArgument(0)));
+
+        var accounts = exchangeConcurrently("first", "second", "third");
+
+        assertEquals(List.of("first", "second", "third"), accounts.stream().map(Account::getFirstName).toList());
+        var request = ArgumentCaptor.forClass(AccountExchangeBatchRequest.class);
+        verify(accountService, times(1)).exchangeBatch(request.capture());
+        assertEquals(3, request.getValue().getItems().size());
+        assertEquals(1, meterRegistry.get("account.group-commit.batch.size").summary().count());
+        assertEquals(3.0d, meterRegistry.get("account.group-commit.batch.size").summary().totalAmount());
+        assertEquals(3, meterRegistry.get("account.group-commit.latency").timer().count());
+    }
+
+    @Test
+    void shouldFlushBatch_whenMaxDelayPassed() {
+        groupCommitter = new ExchangeGroupCommitter(accountService, meterRegistry, 100, Duration.ofMillis(10), 100);
+        when(accountService.exchangeBatch(any())).thenAnswer(invocation -> exchanged(invocation.getArgument(0)));
+
+        assertEquals("alone", groupCommitter.exchange("alone", EXCHANGE).getFirstName());
+    }
+
+    @Test
+    void shouldFailOnlyExchangeThatCannotBeApplied() {
+        groupCommitter = new ExchangeGroupCommitter(accountService, meterRegistry, 100, Duration.ZERO, 100);
+        when(accountService.exchangeBatch(any())).thenReturn(AccountExchangeBatchResponse.builder()
+                .results(List.of(AccountExchangeBatchResult.builder()
+                        .apiKey("poor")
+                        .status(AccountExchangeBatchStatus.INSUFFICIENT_FUNDS)
+                        .message("Insufficient funds.")
+                        .build()))
+                .build());
+
+        var exception = assertThrows(InsufficientFundsException.class, () -> groupCommitter.exchange("poor",
+                EXCHANGE));
+        assertEquals("Insufficient funds.", exception.getMessage());
+    }
+
+    @Test
+    void shouldFailAllExchanges_whenBatchFails() throws Exception {
+        groupCommitter = new ExchangeGroupCommitter(accountService, meterRegistry, 2, Duration.ofSeconds(5), 100);
+        when(accountService.exchangeBatch(any())).thenThrow(
+                new ExchangeConflictException("Account is being modified concurrently, please retry."));
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var first = executor.submit(() -> groupCommitter.exchange("first", EXCHANGE));
+            var second = executor.submit(() -> groupCommitter.exchange("second", EXCHANGE));
+
+            for (var result : List.of(first, second)) {
+                var exception = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(ExchangeConflictException.class, exception.getCause());
+            }
+        }
+    }
+
+    private List<Account> exchangeConcurrently(String... apiKeys) throws Exception {
+        var results = new ArrayList<Future<Account>>();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (var apiKey : apiKeys) {
+                results.add(executor.submit(() -> groupCommitter.exchange(apiKey, EXCHANGE)));
+            }
+            var accounts = new ArrayList<Account>();
+            for (var result : results) {
+                accounts.add(result.get(5, TimeUnit.SECONDS));
+            }
+            return accounts;
+        }
+    }
+
+    /**
+     * Answers every item as exchanged, with the api key as the first name of the account.
+     */
+    private static AccountExchangeBatchResponse exchanged(AccountExchangeBatchRequest request) {
+        return AccountExchangeBatchResponse.builder()
+                .results(request.getItems().stream()
+                        .map(item -> AccountExchangeBatchResult.builder()
+                                .apiKey(item.getApiKey())
+                                .status(AccountExchangeBatchStatus.EXCHANGED)
+                                .account(Account.builder().firstName(item.getApiKey()).build())
+                                .build())
+                        .toList())
+                .build();
+    }
+}
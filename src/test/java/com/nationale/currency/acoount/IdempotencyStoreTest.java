@@ -0,0 +1,140 @@
+package com.nationale.currency.acoount;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nationale.currency.MutableClock;
+import com.nationale.currency.acoount.exception.IdempotencyKeyReusedException;
+import com.nationale.currency.acoount.exception.InsufficientFundsException;
+import com.nationale.generated.model.Account;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyStoreTest {
+
+    private static final String API_KEY = "cecb5b42-7c24-41cd-895c-1d3747c8444d";
+    private static final IdempotentRequest REQUEST = IdempotentRequest.exchange(API_KEY, "key-1", "PLN", "USD",
+            Money.fromDouble(10.0));
+    private static final Account ACCOUNT = Account.builder()
+            .firstName("John")
+            .lastName("Smith")
+            .balancePLN(990.0d)
+            .balanceUSD(2.4343d)
+            .balances(Map.of("PLN", 990.0d, "USD", 2.4343d))
+            .build();
+
+    @Mock
+    private IdempotencyRepository idempotencyRepository;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private MutableClock clock;
+    private SimpleMeterRegistry meterRegistry;
+    private IdempotencyStore idempotencyStore;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2024-11-15T09:00:00Z"));
+        meterRegistry = new SimpleMeterRegistry();
+        idempotencyStore = new IdempotencyStore(idempotencyRepository, objectMapper, clock, meterRegistry, 100,
+                Duration.ofMinutes(10), Duration.ofHours(24));
+    }
+
+    @Test
+    void shouldExchangeOnce_whenRetriesArriveWhileFirstRequestRuns() throws Exception {
+        var exchanges = new AtomicInteger();
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var first = executor.submit(() -> idempotencyStore.execute(REQUEST, () -> {
+                exchanges.incrementAndGet();
+                started.countDown();
+                await(release);
+                return ACCOUNT;
+            }));
+            started.await(5, TimeUnit.SECONDS);
+            var retry = executor.submit(() -> idempotencyStore.execute(REQUEST, () -> {
+                exchanges.incrementAndGet();
+                return ACCOUNT;
+            }));
+            release.countDown();
+
+            assertEquals(ACCOUNT, first.get(5, TimeUnit.SECONDS));
+            assertEquals(ACCOUNT, retry.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, exchanges.get());
+        assertEquals(1.0d, meterRegistry.get("account.idempotency.replays").tag("source", "memory").counter()
+                .count());
+    }
+
+    @Test
+    void shouldReplayFromTable_whenKeyIsNotInMemory() throws Exception {
+        when(idempotencyRepository.findById(new IdempotencyRecordEntity.Key(UUID.fromString(API_KEY), "key-1"))).thenReturn(
+                Optional.of(record(REQUEST.fingerprint())));
+
+        var replayed = idempotencyStore.execute(REQUEST, () -> {
+            throw new AssertionError("exchanged twice");
+        });
+
+        assertEquals(ACCOUNT, replayed);
+        assertEquals(1.0d, meterRegistry.get("account.idempotency.replays").tag("source", "database").counter()
+                .count());
+    }
+
+    @Test
+    void shouldReject_whenKeyIsReusedForDifferentExchange() {
+        idempotencyStore.execute(REQUEST, () -> ACCOUNT);
+        var other = IdempotentRequest.exchange(API_KEY, "key-1", "PLN", "USD", Money.fromDouble(20.0));
+
+        assertThrows(IdempotencyKeyReusedException.class, () -> idempotencyStore.execute(other, () -> ACCOUNT));
+    }
+
+    @Test
+    void shouldRunAgain_whenFirstRequestFailed() {
+        assertThrows(InsufficientFundsException.class, () -> idempotencyStore.execute(REQUEST, () -> {
+            throw new InsufficientFundsException("Insufficient funds.");
+        }));
+
+        assertEquals(ACCOUNT, idempotencyStore.execute(REQUEST, () -> ACCOUNT));
+        verify(idempotencyRepository, times(2)).findById(new IdempotencyRecordEntity.Key(UUID.fromString(API_KEY), "key-1"));
+    }
+
+    @Test
+    void shouldPurgeRecordsOlderThanRetention() {
+        idempotencyStore.purge();
+
+        verify(idempotencyRepository).deleteCreatedBefore(Instant.parse("2024-11-14T09:00:00Z"));
+    }
+
+    private IdempotencyRecordEntity record(String fingerprint) throws Exception {
+        return new IdempotencyRecordEntity(new IdempotencyRecordEntity.Key(UUID.fromString(API_KEY), "key-1"), fingerprint,
+                objectMapper.writeValueAsString(ACCOUNT), clock.instant());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
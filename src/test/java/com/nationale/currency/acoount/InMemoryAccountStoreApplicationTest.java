@@ -0,0 +1,106 @@
+package com.nationale.currency.acoount;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import com.nationale.currency.nbp.ExchangeRate;
+import com.nationale.currency.nbp.ExchangeTable;
+import com.nationale.currency.nbp.NbpApiClient;
+import com.nationale.generated.model.Account;
+import com.nationale.generated.model.AccountExchange;
+import com.nationale.generated.model.AccountExchangeBatchItem;
+import com.nationale.generated.model.AccountExchangeBatchRequest;
+import com.nationale.generated.model.AccountExchangeBatchResponse;
+import com.nationale.generated.model.AccountExchangeBatchStatus;
+import com.nationale.generated.model.AccountHistory;
+import com.nationale.generated.model.RegisterAccountRequest;
+import com.nationale.generated.model.RegisterAccountResponse;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * Runs the API with the accounts in {@link InMemoryAccountStore}; the journal and idempotency records stay in H2.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "account.store.type=memory")
+class InMemoryAccountStoreApplicationTest {
+
+    private static final ExchangeTable NBP_TABLE = new ExchangeTable("A", "222/A/NBP/2024", "2024-11-15",
+            List.of(new ExchangeRate("dolar amerykański", "USD", BigDecimal.valueOf(4.108))));
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @MockBean
+    private NbpApiClient nbpApiClient;
+
+    @Autowired
+    private AccountStore accountStore;
+
+    @DynamicPropertySource
+    static void storeDirectory(DynamicPropertyRegistry registry) {
+        try {
+            var directory = Files.createTempDirectory("account-store");
+            directory.toFile().deleteOnExit();
+            registry.add("account.store.memory.directory", directory::toString);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Test
+    void shouldServeAccountsFromMemory() {
+        Mockito.when(nbpApiClient.findTableAsync()).thenReturn(CompletableFuture.completedFuture(NBP_TABLE));
+        var account = restTemplate.postForEntity(baseUrl(), RegisterAccountRequest.builder()
+                .firstName("Mark")
+                .lastName("Green")
+                .balancePLN(1000.0d)
+                .build(), RegisterAccountResponse.class).getBody();
+        var headers = new HttpHeaders();
+        headers.add("x-api-key", account.getApiKey());
+        headers.add("Idempotency-Key", "memory-1");
+
+        var exchanged = restTemplate.exchange(baseUrl() + "/exchange", HttpMethod.POST, new HttpEntity<>(
+                AccountExchange.builder().from("PLN").to("USD").amount(10.0d).build(), headers), Account.class);
+        var batch = restTemplate.postForEntity(baseUrl() + "/exchange/batch", AccountExchangeBatchRequest.builder()
+                .items(List.of(AccountExchangeBatchItem.builder()
+                        .apiKey(account.getApiKey()).from("USD").to("PLN").amount(1.0d).build()))
+                .build(), AccountExchangeBatchResponse.class);
+        var history = restTemplate.exchange(baseUrl() + "/history", HttpMethod.GET, new HttpEntity<>(headers),
+                AccountHistory.class);
+
+        assertEquals(HttpStatus.OK, exchanged.getStatusCode());
+        assertEquals(990.0d, exchanged.getBody().getBalancePLN());
+        assertEquals(AccountExchangeBatchStatus.EXCHANGED, batch.getBody().getResults().get(0).getStatus());
+        assertEquals(3, history.getBody().getEntries().size());
+        assertInstanceOf(InMemoryAccountStore.class, accountStore);
+        assertEquals(Map.of("PLN", Money.fromDouble(994.108d), "USD", Money.fromDouble(1.4343d)),
+                accountStore.findBalance(account.getApiKey()).orElseThrow().balances());
+    }
+
+    private String baseUrl() {
+        return "http://localhost:" + port + "/account";
+    }
+}
@@ -0,0 +1,288 @@
+package com.nationale.currency.acoount;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+class InMemoryAccountStoreTest {
+
+    private static final String API_KEY = "cecb5b42-7c24-41cd-895c-1d3747c8444d";
+    private static final String OTHER_API_KEY = "5d0c2bd8-5b8e-4d6c-9a52-7d3f1c0e9a11";
+
+    @TempDir
+    private Path directory;
+
+    private final TestTransactionManager transactionManager = new TestTransactionManager();
+    private final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+    private final List<InMemoryAccountStore> stores = new ArrayList<>();
+    private InMemoryAccountStore accountStore;
+
+    @BeforeEach
+    void setUp() {
+        accountStore = open();
+        accountStore.insert(List.of(account(API_KEY, Map.of("PLN", Money.fromDouble(100.0)))));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (var store : stores) {
+            store.destroy();
+        }
+    }
+
+    @Test
+    void shouldPublishChanges_whenTransactionCommits() {
+        transactionTemplate.executeWithoutResult(status -> {
+            assertTrue(accountStore.lock(API_KEY));
+            assertTrue(accountStore.debit(API_KEY, "PLN", Money.fromDouble(40.0)));
+            accountStore.credit(API_KEY, "USD", Money.fromDouble(9.5));
+
+            assertEquals(Map.of("PLN", Money.fromDouble(60.0), "USD", Money.fromDouble(9.5)),
+                    accountStore.findBalance(API_KEY).orElseThrow().balances());
+            assertEquals(Map.of("PLN", Money.fromDouble(100.0)), CompletableFuture.supplyAsync(
+                    () -> accountStore.findBalance(API_KEY).orElseThrow().balances()).join());
+        });
+
+        var account = accountStore.findBalance(API_KEY).orElseThrow();
+        assertEquals(Map.of("PLN", Money.fromDouble(60.0), "USD", Money.fromDouble(9.5)), account.balances());
+        assertEquals(1L, account.version());
+    }
+
+    @Test
+    void shouldDiscardChanges_whenTransactionRollsBack() {
+        transactionTemplate.executeWithoutResult(status -> {
+            accountStore.lock(API_KEY);
+            accountStore.credit(API_KEY, "PLN", Money.fromDouble(1.0));
+            status.setRollbackOnly();
+        });
+
+        assertEquals(new AccountBalance(API_KEY, "John", "Smith", Map.of("PLN", Money.fromDouble(100.0)), 0L),
+                accountStore.findBalance(API_KEY).orElseThrow());
+    }
+
+    @Test
+    void shouldRefuseDebit_whenBalanceIsMissingOrInsufficient() {
+        transactionTemplate.executeWithoutResult(status -> {
+            accountStore.lock(API_KEY);
+            assertFalse(accountStore.debit(API_KEY, "PLN", Money.fromDouble(100.01)));
+            assertFalse(accountStore.debit(API_KEY, "EUR", 1L));
+        });
+
+        assertFalse(accountStore.lock(OTHER_API_KEY));
+        assertEquals(Map.of("PLN", Money.fromDouble(100.0)),
+                accountStore.findBalance(API_KEY).orElseThrow().balances());
+    }
+
+    @Test
+    void shouldRequireLock_beforeBalancesChange() {
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(
+                status -> accountStore.credit(API_KEY, "PLN", 1L)));
+    }
+
+    @Test
+    void shouldTimeOut_whenAccountIsLockedByAnotherTransaction() throws Exception {
+        var locked = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var holder = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(status -> {
+            accountStore.lock(API_KEY);
+            locked.countDown();
+            await(release);
+        }));
+        locked.await(5, TimeUnit.SECONDS);
+
+        assertThrows(CannotAcquireLockException.class, () -> transactionTemplate.executeWithoutResult(
+                status -> accountStore.lock(API_KEY)));
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+        assertEquals(1L, accountStore.findBalance(API_KEY).orElseThrow().version());
+    }
+
+    @Test
+    void shouldRejectDuplicateApiKey() {
+        assertThrows(DuplicateKeyException.class,
+                () -> accountStore.insert(List.of(account(API_KEY, Map.of()))));
+    }
+
+    @Test
+    void shouldRejectMalformedApiKey() {
+        assertThrows(IllegalArgumentException.class,
+                () -> accountStore.insert(List.of(account("key-1", Map.of()))));
+        assertFalse(accountStore.exists(API_KEY.toUpperCase()));
+        assertFalse(accountStore.lock("key-1"));
+        assertTrue(accountStore.findBalance("key-1").isEmpty());
+    }
+
+    @Test
+    void shouldFindAllAccounts_afterTableGrows() {
+        var apiKeys = IntStream.range(0, 1000).mapToObj(i -> new UUID(i, i).toString()).toList();
+        transactionTemplate.executeWithoutResult(status -> accountStore.insert(apiKeys.stream()
+                .map(apiKey -> account(apiKey, Map.of("EUR", 1L)))
+                .toList()));
+
+        assertThat(accountStore.findBalances(apiKeys)).hasSize(1000);
+        assertTrue(accountStore.exists(new UUID(999, 999).toString()));
+    }
+
+    @Test
+    void shouldStreamCommittedBalances_accountByAccount() {
+        accountStore.insert(List.of(account(OTHER_API_KEY, Map.of("USD", 7L, "PLN", 3L))));
+
+        var balances = new ArrayList<String>();
+        transactionTemplate.executeWithoutResult(status -> {
+            accountStore.lock(API_KEY);
+            accountStore.credit(API_KEY, "EUR", 1L);
+            accountStore.forEachBalance((msb, lsb, currency, balance) -> balances.add(
+                    new UUID(msb, lsb) + " " + currency + " " + balance));
+        });
+
+        assertThat(balances).containsExactlyInAnyOrder(API_KEY + " PLN " + Money.fromDouble(100.0),
+                OTHER_API_KEY + " USD 7", OTHER_API_KEY + " PLN 3");
+        assertEquals(1, Math.abs(balances.indexOf(OTHER_API_KEY + " USD 7")
+                - balances.indexOf(OTHER_API_KEY + " PLN 3")));
+    }
+
+    @Test
+    void shouldStreamCommittedAccounts() {
+        accountStore.insert(List.of(account(OTHER_API_KEY, Map.of("USD", 7L))));
+
+        var accounts = new ArrayList<AccountBalance>();
+        transactionTemplate.executeWithoutResult(status -> {
+            accountStore.lock(API_KEY);
+            accountStore.credit(API_KEY, "EUR", 1L);
+            accountStore.forEachAccount(accounts::add);
+        });
+
+        assertThat(accounts).containsExactlyInAnyOrder(
+                account(API_KEY, Map.of("PLN", Money.fromDouble(100.0))),
+                account(OTHER_API_KEY, Map.of("USD", 7L)));
+    }
+
+    @Test
+    void shouldRecoverAccounts_fromSnapshotAndLog() {
+        exchange(Money.fromDouble(10.0));
+        accountStore.checkpoint();
+        exchange(Money.fromDouble(5.0));
+        accountStore.insert(List.of(account(OTHER_API_KEY, Map.of("USD", 7L))));
+
+        var recovered = open();
+
+        assertEquals(accountStore.findBalance(API_KEY), recovered.findBalance(API_KEY));
+        assertEquals(Map.of("PLN", Money.fromDouble(85.0), "USD", Money.fromDouble(15.0)),
+                recovered.findBalance(API_KEY).orElseThrow().balances());
+        assertEquals(Map.of("USD", 7L), recovered.findBalance(OTHER_API_KEY).orElseThrow().balances());
+    }
+
+    @Test
+    void shouldRevertLog_whenCommitFailsAfterItWasWritten() {
+        transactionManager.failCommit = true;
+        assertThrows(TransactionSystemException.class, () -> exchange(Money.fromDouble(10.0)));
+        assertThrows(TransactionSystemException.class, () -> transactionTemplate.executeWithoutResult(
+                status -> accountStore.insert(List.of(account(OTHER_API_KEY, Map.of())))));
+        transactionManager.failCommit = false;
+
+        var recovered = open();
+
+        assertEquals(Map.of("PLN", Money.fromDouble(100.0)),
+                recovered.findBalance(API_KEY).orElseThrow().balances());
+        assertFalse(recovered.exists(OTHER_API_KEY));
+    }
+
+    @Test
+    void shouldIgnoreTornRecord_atEndOfLog() throws IOException {
+        exchange(Money.fromDouble(10.0));
+        try (var segments = Files.list(directory)) {
+            var last = segments.filter(file -> file.toString().endsWith(".wal")).sorted().reduce((a, b) -> b)
+                    .orElseThrow();
+            Files.write(last, new byte[]{0, 0, 0, 64, 1, 2, 3}, StandardOpenOption.APPEND);
+        }
+
+        var recovered = open();
+
+        assertEquals(Map.of("PLN", Money.fromDouble(90.0), "USD", Money.fromDouble(10.0)),
+                recovered.findBalance(API_KEY).orElseThrow().balances());
+    }
+
+    private void exchange(long amount) {
+        transactionTemplate.executeWithoutResult(status -> {
+            accountStore.lock(API_KEY);
+            accountStore.debit(API_KEY, "PLN", amount);
+            accountStore.credit(API_KEY, "USD", amount);
+        });
+    }
+
+    private InMemoryAccountStore open() {
+        var store = new InMemoryAccountStore(new SimpleMeterRegistry(), directory.toString(), 1, 16,
+                Duration.ofMillis(100), false);
+        stores.add(store);
+        return store;
+    }
+
+    private static AccountBalance account(String apiKey, Map<String, Long> balances) {
+        return new AccountBalance(apiKey, "John", "Smith", balances, 0L);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Transactions without a resource, only their synchronizations run; commits fail while {@code failCommit} is set.
+     */
+    private static final class TestTransactionManager extends AbstractPlatformTransactionManager {
+
+        private volatile boolean failCommit;
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            if (failCommit) {
+                throw new TransactionSystemException("Commit failed");
+            }
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
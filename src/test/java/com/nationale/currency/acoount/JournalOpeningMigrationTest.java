@@ -0,0 +1,96 @@
+package com.nationale.currency.acoount;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.nationale.currency.nbp.ExchangeRate;
+import com.nationale.currency.nbp.ExchangeTable;
+import com.nationale.currency.nbp.RateTable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+/**
+ * Runs the startup scripts on a database written before the journal existed and replays its accounts.
+ */
+class JournalOpeningMigrationTest {
+
+    private static final String API_KEY = "cecb5b42-7c24-41cd-895c-1d3747c8444d";
+    private static final String OTHER_API_KEY = "7a6b5c4d-3e2f-4a1b-8c9d-0e1f2a3b4c5d";
+    private static final RateTable RATES = RateTable.of(new ExchangeTable("A", "222/A/NBP/2024", "2024-11-15",
+            List.of(new ExchangeRate("dolar amerykański", "USD", new BigDecimal("4.1080")))));
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private JournalBatchRepositoryImpl journal;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:journal-opening-migration", "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        journal = new JournalBatchRepositoryImpl(jdbcTemplate, 100);
+        jdbcTemplate.execute("""
+                CREATE TABLE account_entity (api_key VARCHAR(255) NOT NULL PRIMARY KEY,
+                    first_name VARCHAR(255) NOT NULL, last_name VARCHAR(255) NOT NULL,
+                    balance_pln NUMERIC(12, 4) NOT NULL, balance_usd NUMERIC(12, 4) NOT NULL,
+                    version BIGINT DEFAULT 0 NOT NULL)""");
+        jdbcTemplate.update("INSERT INTO account_entity VALUES (?, 'John', 'Smith', 100.5, 2.25, 3)", API_KEY);
+        jdbcTemplate.update("INSERT INTO account_entity VALUES (?, 'Jane', 'Smith', 0, 0, 0)", OTHER_API_KEY);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+        dataSource.destroy();
+    }
+
+    @Test
+    void shouldOpenJournal_ofAccountsRegisteredBeforeIt() {
+        migrate("account-balance", "schema", "api-key-uuid", "journal-opening");
+        migrate("account-balance", "schema", "api-key-uuid", "journal-opening");
+
+        assertEquals(List.of(Arrays.asList("PLN", new BigDecimal("100.5000"), new BigDecimal("1.00000000")),
+                Arrays.asList("USD", new BigDecimal("2.2500"), null)), openings(API_KEY));
+        assertEquals(1, openings(OTHER_API_KEY).size());
+        assertEquals(Map.of("PLN", 1_005_000L, "USD", 22_500L), journal.replayBalances(API_KEY));
+        assertEquals(Map.of("PLN", 0L), journal.replayBalances(OTHER_API_KEY));
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM account_balance_snapshot", Integer.class));
+    }
+
+    @Test
+    void shouldOpenJournal_withBalancesBeforeExchangesJournaledSinceMigration() {
+        migrate("account-balance", "schema", "api-key-uuid");
+        journal.append(List.of(JournalEntry.exchange(API_KEY, "PLN", 100_000L, "USD", 24_343L, RATES)));
+        jdbcTemplate.update("""
+                UPDATE account_balance SET balance = CASE currency WHEN 'PLN' THEN 90.5 ELSE 4.6843 END
+                WHERE api_key = CAST(? AS UUID)""", API_KEY);
+
+        migrate("journal-opening");
+
+        assertEquals(List.of(Arrays.asList("PLN", new BigDecimal("100.5000"), new BigDecimal("1.00000000")),
+                Arrays.asList("USD", new BigDecimal("2.2500"), null)), openings(API_KEY));
+        assertEquals(Map.of("PLN", 905_000L, "USD", 46_843L), journal.replayBalances(API_KEY));
+    }
+
+    private List<List<Object>> openings(String apiKey) {
+        return jdbcTemplate.query("""
+                SELECT to_currency, to_amount, to_rate FROM exchange_journal
+                WHERE api_key = CAST(? AS UUID) AND type = 'OPENING' ORDER BY to_currency""",
+                (rs, row) -> Arrays.asList(rs.getString(1), rs.getBigDecimal(2), rs.getBigDecimal(3)), apiKey);
+    }
+
+    private void migrate(String... scripts) {
+        new ResourceDatabasePopulator(Arrays.stream(scripts)
+                .map(script -> new ClassPathResource("db/" + script + ".sql"))
+                .toArray(ClassPathResource[]::new))
+                .execute(dataSource);
+    }
+}
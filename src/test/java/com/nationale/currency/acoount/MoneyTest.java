@@ -0,0 +1,123 @@
+package com.nationale.currency.acoount;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class MoneyTest {
+
+    private static final Money.Rate USD_RATE = Money.Rate.of(BigDecimal.valueOf(4.108));
+
+    @Test
+    void shouldConvertDoubleToUnits() {
+        assertEquals(10_000L, Money.fromDouble(1.0d));
+        assertEquals(1_234_500L, Money.fromDouble(123.45d));
+        assertEquals(1L, Money.fromDouble(0.0001d));
+        assertEquals(1L, Money.fromDouble(0.00005d));
+        assertEquals(0L, Money.fromDouble(0.0d));
+        assertEquals(-1_000_100L, Money.fromDouble(-100.01d));
+    }
+
+    @Test
+    void shouldThrow_whenDoubleDoesNotFitUnits() {
+        assertThrows(ArithmeticException.class, () -> Money.fromDouble(1.0e300d));
+        assertThrows(ArithmeticException.class, () -> Money.fromDouble(-1.0e300d));
+        assertThrows(ArithmeticException.class, () -> Money.fromDouble(Double.NaN));
+        assertThrows(ArithmeticException.class, () -> Money.fromDouble(Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    void shouldConvertUnitsToDouble() {
+        assertEquals(990.0d, Money.toDouble(9_900_000L));
+        assertEquals(2.4343d, Money.toDouble(24_343L));
+    }
+
+    @Test
+    void shouldRoundHalfUp() {
+        var rate = Money.Rate.of(new BigDecimal("0.5"));
+
+        assertEquals(1L, Money.multiply(1L, rate));
+        assertEquals(-1L, Money.multiply(-1L, rate));
+        assertEquals(24_343L, Money.divide(Money.fromDouble(10.0d), USD_RATE));
+    }
+
+    @Test
+    void shouldNormalizeRate() {
+        assertEquals(new Money.Rate(4108L, 3), Money.Rate.of(new BigDecimal("4.1080")));
+        assertEquals(new Money.Rate(4L, 0), Money.Rate.of(new BigDecimal("4E0")));
+        assertThrows(IllegalArgumentException.class, () -> Money.Rate.of(BigDecimal.ZERO));
+    }
+
+    @Test
+    void shouldFallBackToBigDecimal_whenLongOverflows() {
+        var rate = Money.Rate.of(new BigDecimal("123456.789012"));
+
+        assertEquals(reference(Long.MAX_VALUE / 10_000_000, rate, true),
+                Money.multiply(Long.MAX_VALUE / 10_000_000, rate));
+        assertEquals(reference(Long.MAX_VALUE / 10, rate, false), Money.divide(Long.MAX_VALUE / 10, rate));
+        assertEquals(reference(Long.MAX_VALUE / 10_000_000, rate, true),
+                Money.convert(Long.MAX_VALUE / 10_000_000, rate, new Money.Rate(1L, 0)));
+    }
+
+    @Test
+    void shouldMatchBigDecimalArithmetic() {
+        var random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            var units = random.nextLong(10_000_000_000L);
+            var rate = Money.Rate.of(BigDecimal.valueOf(1 + random.nextInt(9_999_999), random.nextInt(7)));
+
+            assertEquals(reference(units, rate, true), Money.multiply(units, rate));
+            assertEquals(reference(units, rate, false), Money.divide(units, rate));
+        }
+    }
+
+    @Test
+    void shouldConvertThroughBase_likeMultiplyAndDivide() {
+        var base = new Money.Rate(1L, 0);
+        var units = Money.fromDouble(123.45d);
+
+        assertEquals(Money.divide(units, USD_RATE), Money.convert(units, base, USD_RATE));
+        assertEquals(Money.multiply(units, USD_RATE), Money.convert(units, USD_RATE, base));
+    }
+
+    @Test
+    void shouldMatchBigDecimalCrossConversion() {
+        var random = new Random(11);
+        for (int i = 0; i < 100_000; i++) {
+            var units = random.nextLong(100_000_000L);
+            var from = Money.Rate.of(BigDecimal.valueOf(1 + random.nextInt(9_999_999), 4 + random.nextInt(4)));
+            var to = Money.Rate.of(BigDecimal.valueOf(1 + random.nextInt(9_999_999), 4 + random.nextInt(4)));
+
+            var expected = Money.toBigDecimal(units).multiply(from.toBigDecimal())
+                    .divide(to.toBigDecimal(), Money.SCALE, RoundingMode.HALF_UP);
+            assertEquals(expected.unscaledValue().longValueExact(), Money.convert(units, from, to));
+        }
+    }
+
+    @Test
+    void shouldMatchBigDecimalConversionOfRequestAmounts() {
+        var random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            var amount = random.nextLong(10_000_000_000L) / 100.0d;
+            var expected = BigDecimal.valueOf(amount).setScale(Money.SCALE, RoundingMode.HALF_UP);
+
+            var units = Money.fromDouble(amount);
+
+            assertEquals(expected.unscaledValue().longValueExact(), units);
+            assertEquals(expected.doubleValue(), Money.toDouble(units));
+        }
+    }
+
+    private static long reference(long units, Money.Rate rate, boolean multiply) {
+        var amount = Money.toBigDecimal(units);
+        var result = multiply
+                ? amount.multiply(rate.toBigDecimal()).setScale(Money.SCALE, RoundingMode.HALF_UP)
+                : amount.divide(rate.toBigDecimal(), Money.SCALE, RoundingMode.HALF_UP);
+        return result.unscaledValue().longValueExact();
+    }
+}
@@ -0,0 +1,87 @@
+package com.nationale.currency.acoount;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import com.nationale.currency.MutableClock;
+import com.nationale.currency.nbp.ExchangeRate;
+import com.nationale.currency.nbp.ExchangeTable;
+import com.nationale.currency.nbp.RateTable;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+class QuoteStoreTest {
+
+    private static final String API_KEY = "3f2c1a9e-8b7d-4c6e-9f10-112233445566";
+    private static final String OTHER_API_KEY = "7a6b5c4d-3e2f-4a1b-8c9d-0e1f2a3b4c5d";
+    private static final RateTable RATES = RateTable.of(new ExchangeTable("A", "222/A/NBP/2024", "2024-11-15",
+            List.of(new ExchangeRate("dolar amerykański", "USD", new BigDecimal("4.1080")))));
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2024-11-15T09:00:00Z"));
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final QuoteStore quoteStore = new QuoteStore(() -> UUID.randomUUID().toString(), clock, meterRegistry,
+            Duration.ofSeconds(5), Duration.ofSeconds(1));
+
+    @Test
+    void shouldGiveQuoteOnce_toItsAccount_untilRestored() {
+        var quote = add();
+        var quoteId = quote.id().toString();
+
+        assertEquals(clock.millis() + 5000L, quote.expiresAt());
+        assertNull(quoteStore.take(quoteId, OTHER_API_KEY));
+        assertNull(quoteStore.take("not-a-quote-id", API_KEY));
+        assertEquals(quote, quoteStore.take(quoteId, API_KEY));
+        assertNull(quoteStore.take(quoteId, API_KEY));
+
+        quoteStore.restore(quote);
+        assertEquals(quote, quoteStore.take(quoteId, API_KEY));
+
+        clock.advance(Duration.ofSeconds(5));
+        quoteStore.restore(quote);
+        assertEquals(0.0d, outstanding());
+    }
+
+    @Test
+    void shouldDropQuotesInTheTickTheyExpire() {
+        var first = add();
+        clock.advance(Duration.ofMillis(2500));
+        var second = add();
+        clock.advance(Duration.ofMillis(2500));
+
+        assertNull(quoteStore.take(first.id().toString(), API_KEY));
+        assertEquals(2.0d, outstanding());
+        quoteStore.sweep();
+        assertEquals(1.0d, outstanding());
+        assertEquals(1.0d, meterRegistry.get("account.quote.expired").counter().count());
+
+        clock.advance(Duration.ofSeconds(2));
+        quoteStore.sweep();
+        assertEquals(1.0d, outstanding());
+        clock.advance(Duration.ofSeconds(1));
+        quoteStore.sweep();
+        assertEquals(0.0d, outstanding());
+        assertNull(quoteStore.take(second.id().toString(), API_KEY));
+
+        // A sweep more than a turn of the wheel late still drops every expired quote.
+        add();
+        add();
+        clock.advance(Duration.ofMinutes(1));
+        quoteStore.sweep();
+        assertEquals(0.0d, outstanding());
+        assertEquals(4.0d, meterRegistry.get("account.quote.expired").counter().count());
+    }
+
+    private QuoteStore.Quote add() {
+        return quoteStore.add(API_KEY, "PLN", Money.fromDouble(100.0), "USD", Money.fromDouble(24.3427), RATES);
+    }
+
+    private double outstanding() {
+        return meterRegistry.get("account.quote.outstanding").gauge().value();
+    }
+}
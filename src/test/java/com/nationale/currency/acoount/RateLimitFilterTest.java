@@ -0,0 +1,60 @@
+package com.nationale.currency.acoount;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+@ExtendWith(MockitoExtension.class)
+class RateLimitFilterTest {
+
+    private static final String API_KEY = "3f2c1a9e-8b7d-4c6e-9f10-112233445566";
+
+    @Mock
+    private RateLimiter rateLimiter;
+
+    @Mock
+    private FilterChain filterChain;
+
+    @Test
+    void shouldAnswer429WithRetryAfterInWholeSeconds_whenLimitIsReached() throws Exception {
+        var request = new MockHttpServletRequest("POST", "/account/exchange");
+        request.addHeader("x-api-key", API_KEY);
+        var response = new MockHttpServletResponse();
+        when(rateLimiter.acquire(API_KEY)).thenReturn(1_200_000_000L);
+
+        new RateLimitFilter(rateLimiter).doFilter(request, response, filterChain);
+
+        assertEquals(429, response.getStatus());
+        assertEquals("2", response.getHeader("Retry-After"));
+        assertEquals("{\"message\":\"Too many requests, retry later.\"}", response.getContentAsString());
+        verify(filterChain, never()).doFilter(request, response);
+    }
+
+    @Test
+    void shouldPassRequests_withinLimitOrOutsideOfAccountApi() throws Exception {
+        var filter = new RateLimitFilter(rateLimiter);
+        var account = new MockHttpServletRequest("GET", "/account");
+        var response = new MockHttpServletResponse();
+        when(rateLimiter.acquire(null)).thenReturn(0L);
+
+        filter.doFilter(account, response, filterChain);
+        var quote = new MockHttpServletRequest("GET", "/quote");
+        filter.doFilter(quote, response, filterChain);
+
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader("Retry-After"));
+        verify(filterChain).doFilter(account, response);
+        verify(filterChain).doFilter(quote, response);
+        verify(rateLimiter, never()).acquire("quote");
+    }
+}
@@ -0,0 +1,74 @@
+package com.nationale.currency.acoount;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import com.nationale.currency.MutableClock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RateLimiterTest {
+
+    private static final String API_KEY = "3f2c1a9e-8b7d-4c6e-9f10-112233445566";
+    private static final String OTHER_API_KEY = "7a6b5c4d-3e2f-4a1b-8c9d-0e1f2a3b4c5d";
+    private static final long MILLIS = 1_000_000L;
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2024-11-15T09:00:00Z"));
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void shouldLetBurstThrough_thenOneRequestPerInterval() {
+        // 10 per second per key, bursts of 3.
+        var rateLimiter = rateLimiter(10, 3, 1000, 1000);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0L, rateLimiter.acquire(API_KEY));
+        }
+        assertEquals(100 * MILLIS, rateLimiter.acquire(API_KEY));
+        assertEquals(100 * MILLIS, rateLimiter.acquire(API_KEY));
+        assertEquals(0L, rateLimiter.acquire(OTHER_API_KEY));
+        assertEquals(1.0d, meterRegistry.get("account.rate-limit.throttled-keys").counter().count());
+        assertEquals(1.0d, meterRegistry.get("account.rate-limit.throttled-keys.current").gauge().value());
+
+        clock.advance(Duration.ofMillis(40));
+        assertEquals(60 * MILLIS, rateLimiter.acquire(API_KEY));
+        clock.advance(Duration.ofMillis(60));
+        assertEquals(0L, rateLimiter.acquire(API_KEY));
+        assertEquals(0.0d, meterRegistry.get("account.rate-limit.throttled-keys.current").gauge().value());
+        assertEquals(100 * MILLIS, rateLimiter.acquire(API_KEY));
+
+        assertEquals(4.0d, meterRegistry.get("account.rate-limit.throttled").tag("scope", "key").counter().count());
+        assertEquals(2.0d, meterRegistry.get("account.rate-limit.throttled-keys").counter().count());
+        assertEquals(2.0d, meterRegistry.get("account.rate-limit.keys").gauge().value());
+    }
+
+    @Test
+    void shouldLimitAllRequests_andGiveKeyTokenBack_whenGlobalBucketIsEmpty() {
+        // 10 per second per key, 2 per second in total.
+        var rateLimiter = rateLimiter(10, 2, 2, 2);
+
+        assertEquals(0L, rateLimiter.acquire(API_KEY));
+        assertEquals(0L, rateLimiter.acquire(null));
+        assertEquals(500 * MILLIS, rateLimiter.acquire("not-an-api-key"));
+        assertEquals(500 * MILLIS, rateLimiter.acquire(API_KEY));
+
+        clock.advance(Duration.ofMillis(500));
+        // The key bucket still holds its second token, the rejected request did not take it.
+        assertEquals(0L, rateLimiter.acquire(API_KEY));
+        assertEquals(2.0d, meterRegistry.get("account.rate-limit.throttled").tag("scope", "global").counter().count());
+        assertEquals(0.0d, meterRegistry.get("account.rate-limit.throttled").tag("scope", "key").counter().count());
+    }
+
+    private RateLimiter rateLimiter(double keyRate, int keyBurst, double globalRate, int globalBurst) {
+        return new RateLimiter(clock, meterRegistry, keyRate, keyBurst, globalRate, globalBurst, 100,
+                Duration.ofMinutes(10));
+    }
+}
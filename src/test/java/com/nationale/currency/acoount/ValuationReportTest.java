@@ -0,0 +1,126 @@
+package com.nationale.currency.acoount;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import com.nationale.currency.nbp.ExchangeRate;
+import com.nationale.currency.nbp.ExchangeTable;
+import com.nationale.currency.nbp.NbpRateCache;
+import com.nationale.currency.nbp.RateTable;
+import com.nationale.generated.model.BalanceBucket;
+import com.nationale.generated.model.CurrencyExposure;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ValuationReportTest {
+
+    private static final RateTable RATES = RateTable.of(new ExchangeTable("A", "222/A/NBP/2024", "2024-11-15",
+            List.of(new ExchangeRate("dolar amerykański", "USD", new BigDecimal("4.1080")))));
+
+    @Mock
+    private AccountStore accountStore;
+
+    @Mock
+    private NbpRateCache nbpRateCache;
+
+    private ValuationReport valuationReport;
+
+    @BeforeEach
+    void setUp() {
+        // Chunks of 7 accounts on 2 workers: many chunks, each reused many times.
+        valuationReport = new ValuationReport(accountStore, nbpRateCache,
+                new AccountMetrics(new SimpleMeterRegistry()), 2, 7);
+    }
+
+    @AfterEach
+    void tearDown() {
+        valuationReport.destroy();
+    }
+
+    @Test
+    void shouldValueAllAccounts_atOneTable() {
+        doAnswer(invocation -> {
+            AccountStore.BalanceHandler handler = invocation.getArgument(0);
+            // 1000 accounts holding 1 to 1000 PLN, 100 holding 1 USD, one holding an unquoted currency only.
+            for (int i = 1; i <= 1000; i++) {
+                handler.balance(0L, i, "PLN", Money.fromDouble(i));
+            }
+            for (int i = 1001; i <= 1100; i++) {
+                handler.balance(0L, i, "USD", Money.fromDouble(1.0));
+            }
+            handler.balance(0L, 1101L, "XYZ", Money.fromDouble(5.0));
+            return null;
+        }).when(accountStore).forEachBalance(any());
+        when(nbpRateCache.currentTable()).thenReturn(RATES);
+
+        var valuation = valuationReport.value();
+
+        assertEquals(LocalDate.of(2024, 11, 15), valuation.getEffectiveDate());
+        assertEquals(1101L, valuation.getAccounts());
+        assertEquals(1L, valuation.getUnpricedAccounts());
+        assertEquals(500910.8d, valuation.getTotalPLN());
+        assertEquals(List.of(
+                CurrencyExposure.builder().currency("PLN").amount(500500.0d).rate(BigDecimal.ONE)
+                        .amountPLN(500500.0d).build(),
+                CurrencyExposure.builder().currency("USD").amount(100.0d).rate(new BigDecimal("4.108"))
+                        .amountPLN(410.8d).build(),
+                CurrencyExposure.builder().currency("XYZ").amount(5.0d).build()), valuation.getCurrencies());
+        // Ranked: 0 PLN once, 1 to 4 PLN, 4.108 PLN 100 times, then 5 to 1000 PLN.
+        var percentiles = valuation.getPercentiles();
+        assertThat(percentiles.getP50()).isBetween(450.0d, 450.0d * 17 / 16);
+        assertThat(percentiles.getP90()).isBetween(890.0d, 890.0d * 17 / 16);
+        assertThat(percentiles.getP999()).isBetween(999.0d, 1000.0d);
+        assertEquals(1000.0d, percentiles.getMax());
+        assertEquals(List.of(bucket(0.0d, 1.0d, 1L), bucket(1.0d, 10.0d, 109L), bucket(10.0d, 100.0d, 90L),
+                bucket(100.0d, 1000.0d, 900L), bucket(1000.0d, 10000.0d, 1L)), valuation.getHistogram());
+    }
+
+    @Test
+    void shouldReportNoAccounts_whenStoreIsEmpty() {
+        when(nbpRateCache.currentTable()).thenReturn(RATES);
+
+        var valuation = valuationReport.value();
+
+        assertEquals(0L, valuation.getAccounts());
+        assertEquals(0.0d, valuation.getTotalPLN());
+        assertEquals(List.of(), valuation.getCurrencies());
+        assertEquals(List.of(), valuation.getHistogram());
+        assertNull(valuation.getPercentiles());
+    }
+
+    @Test
+    void shouldKeepValuesWithinSixteenthOfBucketUpperBound() {
+        var random = new SplittableRandom(42);
+        for (int i = 0; i < 100_000; i++) {
+            var value = random.nextLong(Long.MAX_VALUE) >>> random.nextInt(63);
+            var upperBound = ValuationReport.bucketUpperBound(ValuationReport.bucket(value));
+
+            assertThat(upperBound).isGreaterThanOrEqualTo(value);
+            assertThat(upperBound - value).isLessThanOrEqualTo(value / 16);
+        }
+        for (int bucket = 0; ValuationReport.bucketUpperBound(bucket) < Long.MAX_VALUE; bucket++) {
+            var upperBound = ValuationReport.bucketUpperBound(bucket);
+            assertEquals(bucket, ValuationReport.bucket(upperBound));
+            assertEquals(bucket + 1, ValuationReport.bucket(upperBound + 1));
+        }
+    }
+
+    private static BalanceBucket bucket(double fromPln, double toPln, long accounts) {
+        return BalanceBucket.builder().fromPLN(fromPln).toPLN(toPln).accounts(accounts).build();
+    }
+}
@@ -0,0 +1,39 @@
+package com.nationale.currency.acoount;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+class VirtualThreadPinningMonitorTest {
+
+    @Test
+    void shouldCountPinnedVirtualThreads() throws Exception {
+        var meterRegistry = new SimpleMeterRegistry();
+        var monitor = new VirtualThreadPinningMonitor(meterRegistry, Duration.ofMillis(10));
+        try {
+            var lock = new Object();
+            Thread.ofVirtual().start(() -> {
+                synchronized (lock) {
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }).join();
+
+            var pinned = meterRegistry.get("jvm.threads.virtual.pinned").counter();
+            var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+            while (pinned.count() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(100);
+            }
+            assertTrue(pinned.count() >= 1);
+        } finally {
+            monitor.destroy();
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.nationale.currency.nbp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nationale.currency.MutableClock;
+import com.nationale.currency.acoount.exception.NbpApiException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs the client against a local HTTP server standing in for NBP. Every request takes the next queued response.
+ */
+class NbpApiClientTest {
+
+    private static final String TABLE = """
+            [{"table":"A","no":"222/A/NBP/2024","effectiveDate":"2024-11-15","rates":[
+            {"currency":"dolar amerykański","code":"USD","mid":4.1080},
+            {"currency":"euro","code":"EUR","mid":4.3215}]}]""";
+
+    private final ConcurrentLinkedQueue<Response> responses = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<String> paths = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final CountDownLatch released = new CountDownLatch(1);
+    private SimpleMeterRegistry meterRegistry;
+    private ExecutorService serverExecutor;
+    private HttpServer server;
+    private HttpClient httpClient;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        serverExecutor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(serverExecutor);
+        server.start();
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        released.countDown();
+        httpClient.close();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void shouldFetchWholeTableInOneCall() {
+        responses.add(new Response(200, TABLE, false));
+
+        var table = client(Duration.ofSeconds(5), Duration.ZERO, 4).findTableAsync().join();
+
+        assertEquals("2024-11-15", table.effectiveDate());
+        assertEquals(List.of("USD", "EUR"), table.rates().stream().map(ExchangeRate::code).toList());
+        assertEquals(new BigDecimal("4.3215"), table.rates().get(1).mid());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void shouldFetchAllTablesOfDateRange() {
+        responses.add(new Response(200, """
+                [{"table":"A","no":"221/A/NBP/2024","effectiveDate":"2024-11-14","rates":[
+                {"currency":"dolar amerykański","code":"USD","mid":4.1012}]},
+                {"table":"A","no":"222/A/NBP/2024","effectiveDate":"2024-11-15","rates":[
+                {"currency":"dolar amerykański","code":"USD","mid":4.1080}]}]""", false));
+        var nbpApiClient = client(Duration.ofSeconds(5), Duration.ZERO, 4);
+
+        var tables = nbpApiClient.findTablesAsync(LocalDate.parse("2024-11-14"), LocalDate.parse("2024-11-17"))
+                .join();
+        var weekend = nbpApiClient.findTablesAsync(LocalDate.parse("2024-11-16"), LocalDate.parse("2024-11-17"))
+                .join();
+
+        assertEquals(List.of("2024-11-14", "2024-11-15"), tables.stream().map(ExchangeTable::effectiveDate).toList());
+        assertEquals(List.of(), weekend);
+        assertEquals(List.of("/api/exchangerates/tables/a/2024-11-14/2024-11-17/",
+                "/api/exchangerates/tables/a/2024-11-16/2024-11-17/"), List.copyOf(paths));
+        assertThrows(IllegalArgumentException.class, () -> nbpApiClient.findTablesAsync(
+                LocalDate.parse("2024-01-01"), LocalDate.parse("2024-04-03")));
+    }
+
+    @Test
+    void shouldTimeRequestsByOutcome() {
+        responses.add(new Response(200, TABLE, false));
+        responses.add(new Response(500, "", false));
+        var nbpApiClient = client(Duration.ofSeconds(5), Duration.ZERO, 4);
+
+        nbpApiClient.findTableAsync().join();
+        assertNbpApiException(() -> nbpApiClient.findTableAsync().join());
+        assertNbpApiException(() -> nbpApiClient.findTableAsync().join());
+
+        assertEquals(1, meterRegistry.get("nbp.api.requests").tags("outcome", "success").timer().count());
+        assertEquals(1, meterRegistry.get("nbp.api.requests")
+                .tags("outcome", "error", "exception", "NbpApiException").timer().count());
+        assertEquals(1, meterRegistry.get("nbp.api.requests").tags("outcome", "rejected").timer().count());
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void shouldAnswerWithHedgedRequest_whenFirstResponseIsSlow() {
+        responses.add(new Response(200, TABLE, true));
+        responses.add(new Response(200, TABLE, false));
+
+        var table = client(Duration.ofSeconds(5), Duration.ofMillis(50), 4).findTableAsync()
+                .orTimeout(5, TimeUnit.SECONDS).join();
+
+        assertEquals("2024-11-15", table.effectiveDate());
+        assertEquals(2, requests.get());
+        assertEquals(1.0d, meterRegistry.counter("nbp.api.hedges").count());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldCancelHedgedRequest_whenFirstAnswersWhileItIsSent() {
+        var first = new CompletableFuture<HttpResponse<byte[]>>();
+        var hedged = new CompletableFuture<HttpResponse<byte[]>>();
+        HttpResponse<byte[]> answer = mock(HttpResponse.class);
+        when(answer.statusCode()).thenReturn(200);
+        when(answer.body()).thenReturn(TABLE.getBytes(StandardCharsets.UTF_8));
+        httpClient.close();
+        httpClient = mock(HttpClient.class);
+        when(httpClient.sendAsync(any(), any())).thenReturn((CompletableFuture) first).thenAnswer(invocation -> {
+            first.complete(answer);
+            return hedged;
+        });
+
+        var table = client(Duration.ofSeconds(5), Duration.ofMillis(10), 4).findTableAsync()
+                .orTimeout(5, TimeUnit.SECONDS).join();
+
+        assertEquals("2024-11-15", table.effectiveDate());
+        assertThrows(CancellationException.class, () -> hedged.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void shouldRejectCalls_whenConcurrencyLimitIsReached() {
+        responses.add(new Response(200, TABLE, true));
+        var nbpApiClient = client(Duration.ofSeconds(5), Duration.ofMillis(50), 1);
+
+        var slow = nbpApiClient.findTableAsync();
+        assertNbpApiException(() -> nbpApiClient.findTableAsync().join());
+        assertFalse(slow.isDone());
+
+        released.countDown();
+        assertEquals("2024-11-15", slow.orTimeout(5, TimeUnit.SECONDS).join().effectiveDate());
+        assertEquals(1, requests.get());
+        assertEquals(0.0d, meterRegistry.counter("nbp.api.hedges").count());
+        assertEquals(1, meterRegistry.get("nbp.api.requests").tags("outcome", "rejected").timer().count());
+    }
+
+    @Test
+    void shouldFail_whenNbpDoesNotAnswerInTime() {
+        responses.add(new Response(200, TABLE, true));
+
+        assertNbpApiException(() -> client(Duration.ofMillis(100), Duration.ZERO, 4).findTableAsync()
+                .orTimeout(5, TimeUnit.SECONDS).join());
+
+        assertEquals(1, meterRegistry.get("nbp.api.requests")
+                .tags("outcome", "error", "exception", "HttpTimeoutException").timer().count());
+    }
+
+    private NbpApiClient client(Duration readTimeout, Duration hedgeAfter, int maxConcurrentRequests) {
+        var circuitBreaker = new NbpCircuitBreaker(new MutableClock(Instant.parse("2024-11-15T09:00:00Z")),
+                meterRegistry, 1, Duration.ofMinutes(1));
+        return new NbpApiClient(httpClient, new ObjectMapper(),
+                "http://localhost:" + server.getAddress().getPort() + "/api/exchangerates/tables/a", readTimeout,
+                hedgeAfter, maxConcurrentRequests, circuitBreaker, meterRegistry);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        paths.add(exchange.getRequestURI().getPath());
+        var response = responses.poll();
+        if (response == null) {
+            response = new Response(404, "", false);
+        }
+        if (response.slow()) {
+            try {
+                released.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        var body = response.body().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(response.status(), body.length == 0 ? -1 : body.length);
+        try (var responseBody = exchange.getResponseBody()) {
+            responseBody.write(body);
+        }
+    }
+
+    private static void assertNbpApiException(Runnable call) {
+        var exception = assertThrows(CompletionException.class, call::run);
+        assertInstanceOf(NbpApiException.class, exception.getCause());
+        assertTrue(exception.getCause().getMessage().startsWith("NBP api"));
+    }
+
+    private record Response(int status, String body, boolean slow) {
+
+    }
+}
@@ -0,0 +1,110 @@
+package com.nationale.currency.nbp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import com.nationale.currency.MutableClock;
+import com.nationale.currency.nbp.NbpCircuitBreaker.State;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class NbpCircuitBreakerTest {
+
+    private MutableClock clock;
+    private SimpleMeterRegistry meterRegistry;
+    private NbpCircuitBreaker circuitBreaker;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2024-11-15T09:00:00Z"));
+        meterRegistry = new SimpleMeterRegistry();
+        circuitBreaker = new NbpCircuitBreaker(clock, meterRegistry, 3, Duration.ofSeconds(30));
+    }
+
+    @Test
+    void shouldStayClosed_belowFailureThreshold() {
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        circuitBreaker.onSuccess();
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+
+        assertEquals(State.CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    void shouldOpen_afterConsecutiveFailures() {
+        failTimes(3);
+
+        assertEquals(State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquire());
+        assertEquals(1.0d, meterRegistry.counter("nbp.circuit.breaker.transitions", "from", "CLOSED", "to", "OPEN")
+                .count());
+    }
+
+    @Test
+    void shouldLetSingleTrialCallThrough_afterOpenDuration() {
+        failTimes(3);
+        clock.advance(Duration.ofSeconds(30));
+
+        assertTrue(circuitBreaker.tryAcquire());
+        assertFalse(circuitBreaker.tryAcquire());
+        assertEquals(State.HALF_OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    void shouldClose_whenTrialCallSucceeds() {
+        failTimes(3);
+        clock.advance(Duration.ofSeconds(30));
+        circuitBreaker.tryAcquire();
+
+        circuitBreaker.onSuccess();
+
+        assertEquals(State.CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    void shouldReopen_whenTrialCallFails() {
+        failTimes(3);
+        clock.advance(Duration.ofSeconds(30));
+        circuitBreaker.tryAcquire();
+
+        circuitBreaker.onFailure();
+
+        assertEquals(State.OPEN, circuitBreaker.getState());
+        clock.advance(Duration.ofSeconds(29));
+        assertFalse(circuitBreaker.tryAcquire());
+        assertEquals(1.0d, meterRegistry.counter("nbp.circuit.breaker.transitions", "from", "HALF_OPEN", "to", "OPEN")
+                .count());
+    }
+
+    @Test
+    void shouldNotExtendOpenPeriod_byLateFailures() {
+        failTimes(3);
+        clock.advance(Duration.ofSeconds(20));
+
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        clock.advance(Duration.ofSeconds(10));
+
+        assertTrue(circuitBreaker.tryAcquire());
+        assertEquals(State.HALF_OPEN, circuitBreaker.getState());
+        assertEquals(1.0d, meterRegistry.counter("nbp.circuit.breaker.transitions", "from", "CLOSED", "to", "OPEN")
+                .count());
+    }
+
+    private void failTimes(int times) {
+        for (int i = 0; i < times; i++) {
+            assertTrue(circuitBreaker.tryAcquire());
+            circuitBreaker.onFailure();
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.nationale.currency.nbp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.nationale.currency.MutableClock;
+import com.nationale.currency.acoount.Money;
+import com.nationale.currency.acoount.exception.NbpApiException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class NbpRateCacheTest {
+
+    private static final String USD = "USD";
+    // Friday 2024-11-15 10:00 in Warsaw, before the daily table is published.
+    private static final Instant FRIDAY_MORNING = Instant.parse("2024-11-15T09:00:00Z");
+    private static final LocalDate THURSDAY = LocalDate.of(2024, 11, 14);
+    private static final LocalDate FRIDAY = LocalDate.of(2024, 11, 15);
+    private static final ExchangeTable THURSDAY_TABLE = new ExchangeTable("A", "221/A/NBP/2024", THURSDAY.toString(),
+            List.of(new ExchangeRate("dolar amerykański", USD, BigDecimal.valueOf(4.0901))));
+    private static final ExchangeTable FRIDAY_TABLE = new ExchangeTable("A", "222/A/NBP/2024", FRIDAY.toString(),
+            List.of(new ExchangeRate("dolar amerykański", USD, BigDecimal.valueOf(4.108)),
+                    new ExchangeRate("euro", "EUR", BigDecimal.valueOf(4.3215))));
+
+    @Mock
+    private NbpApiClient nbpApiClient;
+
+    private MutableClock clock;
+    private SimpleMeterRegistry meterRegistry;
+    private NbpRateCache nbpRateCache;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(FRIDAY_MORNING);
+        meterRegistry = new SimpleMeterRegistry();
+        nbpRateCache = new NbpRateCache(nbpApiClient, clock, meterRegistry, Duration.ofMinutes(15),
+                Duration.ofHours(1), Duration.ofHours(12), "12:15", ZoneId.of("Europe/Warsaw"));
+    }
+
+    @Test
+    void shouldServeCachedRateWithoutCallingNbp() {
+        when(nbpApiClient.findTableAsync()).thenReturn(completed(THURSDAY_TABLE));
+
+        assertEquals(THURSDAY, nbpRateCache.currentTable().effectiveDate());
+        clock.advance(Duration.ofMinutes(59));
+        assertEquals(THURSDAY, nbpRateCache.currentTable().effectiveDate());
+
+        verify(nbpApiClient, times(1)).findTableAsync();
+        assertEquals(1.0d, meterRegistry.counter("nbp.rate.cache.requests", "result", "hit").count());
+        assertEquals(1.0d, meterRegistry.counter("nbp.rate.cache.requests", "result", "miss").count());
+    }
+
+    @Test
+    void shouldServeAllCurrenciesOfTable_fromOneNbpCall() {
+        when(nbpApiClient.findTableAsync()).thenReturn(completed(FRIDAY_TABLE));
+
+        assertEquals(Money.Rate.of(BigDecimal.valueOf(4.108)), nbpRateCache.currentTable().rate(USD));
+        assertEquals(Money.Rate.of(BigDecimal.valueOf(4.3215)), nbpRateCache.currentTable().rate("EUR"));
+        assertEquals(List.of("EUR", "PLN", USD), nbpRateCache.currentTable().currencies());
+
+        verify(nbpApiClient, times(1)).findTableAsync();
+        assertEquals(3.0d, meterRegistry.get("nbp.rate.cache.size").gauge().value());
+    }
+
+    @Test
+    void shouldPublishRatesTaggedWithCurrenciesOfLatestTable() {
+        when(nbpApiClient.findTableAsync()).thenReturn(completed(FRIDAY_TABLE))
+                .thenReturn(completed(THURSDAY_TABLE));
+
+        nbpRateCache.currentTable();
+
+        assertEquals(4.108d, meterRegistry.get("nbp.rate").tag("currency", USD).gauge().value());
+        assertEquals(4.3215d, meterRegistry.get("nbp.rate").tag("currency", "EUR").gauge().value());
+        assertEquals(2, meterRegistry.get("nbp.rate").gauges().size());
+
+        clock.advance(Duration.ofHours(12));
+        nbpRateCache.currentTable();
+
+        assertEquals(4.0901d, meterRegistry.get("nbp.rate").tag("currency", USD).gauge().value());
+        assertEquals(1, meterRegistry.get("nbp.rate").gauges().size());
+    }
+
+    @Test
+    void shouldServeStaleRate_whenEntryExceedsMaxAge() {
+        when(nbpApiClient.findTableAsync()).thenReturn(completed(THURSDAY_TABLE));
+
+        nbpRateCache.currentTable();
+        clock.advance(Duration.ofHours(3));
+
+        assertEquals(THURSDAY, nbpRateCache.currentTable().effectiveDate());
+        verify(nbpApiClient, times(1)).findTableAsync();
+        assertEquals(1.0d, meterRegistry.counter("nbp.rate.cache.requests", "result", "stale").count());
+    }
+
+    @Test
+    void shouldFetchAgain_whenEntryExceedsStaleMaxAge() {
+        when(nbpApiClient.findTableAsync()).thenReturn(completed(THURSDAY_TABLE))
+                .thenReturn(completed(FRIDAY_TABLE));
+
+        nbpRateCache.currentTable();
+        clock.advance(Duration.ofHours(12));
+
+        assertEquals(FRIDAY, nbpRateCache.currentTable().effectiveDate());
+        verify(nbpApiClient, times(2)).findTableAsync();
+    }
+
+    @Test
+    void shouldFail_whenEntryExceedsStaleMaxAgeAndNbpIsDown() {
+        when(nbpApiClient.findTableAsync()).thenReturn(completed(THURSDAY_TABLE))
+                .thenReturn(CompletableFuture.failedFuture(new NbpApiException("NBP api circuit breaker is open")));
+
+        nbpRateCache.currentTable();
+        clock.advance(Duration.ofHours(12));
+
+        assertThrows(NbpApiException.class, () -> nbpRateCache.currentTable());
+    }
+
+    @Test
+    void shouldNotRefresh_beforePublicationTime() {
+        when(nbpApiClient.findTableAsync()).thenReturn(completed(THURSDAY_TABLE));
+        nbpRateCache.currentTable();
+        clock.advance(Duration.ofMinutes(5));
+
+        nbpRateCache.refresh();
+
+        verify(nbpApiClient, times(1)).findTableAsync();
+    }
+
+    @Test
+    void shouldRefresh_whenNewTableIsPublished() {
+        when(nbpApiClient.findTableAsync()).thenReturn(completed(THURSDAY_TABLE))
+                .thenReturn(completed(FRIDAY_TABLE));
+        nbpRateCache.currentTable();
+        clock.set(Instant.parse("2024-11-15T11:16:00Z"));
+
+        nbpRateCache.refresh();
+        nbpRateCache.refresh();
+
+        assertEquals(FRIDAY, nbpRateCache.currentTable().effectiveDate());
+        verify(nbpApiClient, times(2)).findTableAsync();
+    }
+
+    @Test
+    void shouldNotRefreshOnWeekend_whenEntryIsRecent() {
+        when(nbpApiClient.findTableAsync()).thenReturn(completed(FRIDAY_TABLE));
+        clock.set(Instant.parse("2024-11-16T13:00:00Z"));
+        nbpRateCache.currentTable();
+        clock.advance(Duration.ofMinutes(1));
+
+        nbpRateCache.refresh();
+
+        verify(nbpApiClient, times(1)).findTableAsync();
+    }
+
+    @Test
+    void shouldKeepEntry_whenBackgroundRefreshFails() {
+        when(nbpApiClient.findTableAsync()).thenReturn(completed(THURSDAY_TABLE))
+                .thenReturn(CompletableFuture.failedFuture(new NbpApiException("NBP api exception")));
+        nbpRateCache.currentTable();
+        clock.advance(Duration.ofMinutes(20));
+
+        nbpRateCache.refresh();
+
+        assertEquals(THURSDAY, nbpRateCache.currentTable().effectiveDate());
+        assertEquals(1.0d, meterRegistry.counter("nbp.rate.cache.refreshes", "outcome", "failure").count());
+    }
+
+    @Test
+    void shouldFail_whenNbpReturnsNoRates() {
+        when(nbpApiClient.findTableAsync()).thenReturn(
+                completed(new ExchangeTable("A", "222/A/NBP/2024", FRIDAY.toString(), List.of())));
+
+        assertThrows(NbpApiException.class, () -> nbpRateCache.currentTable());
+    }
+
+    @Test
+    void shouldCoalesceConcurrentMisses() throws Exception {
+        var fetch = new CompletableFuture<ExchangeTable>();
+        when(nbpApiClient.findTableAsync()).thenReturn(fetch);
+
+        try (var executor = Executors.newFixedThreadPool(4)) {
+            List<Future<RateTable>> callers = List.of(
+                    executor.submit(() -> nbpRateCache.currentTable()),
+                    executor.submit(() -> nbpRateCache.currentTable()),
+                    executor.submit(() -> nbpRateCache.currentTable()));
+            var waiting = nbpRateCache.currentTableAsync();
+            fetch.complete(FRIDAY_TABLE);
+
+            var table = waiting.get(5, TimeUnit.SECONDS);
+            assertEquals(FRIDAY, table.effectiveDate());
+            for (var caller : callers) {
+                assertSame(table, caller.get(5, TimeUnit.SECONDS));
+            }
+        }
+        verify(nbpApiClient, times(1)).findTableAsync();
+    }
+
+    @Test
+    void shouldNotWaitForNbp_whenTableIsRequestedAsync() {
+        var fetch = new CompletableFuture<ExchangeTable>();
+        when(nbpApiClient.findTableAsync()).thenReturn(fetch);
+
+        var table = nbpRateCache.currentTableAsync();
+        assertFalse(table.isDone());
+
+        fetch.complete(FRIDAY_TABLE);
+        assertEquals(FRIDAY, table.join().effectiveDate());
+        assertSame(nbpRateCache.currentTableAsync(), nbpRateCache.currentTableAsync());
+    }
+
+    @Test
+    void shouldNotCallNbp_whenNothingIsCached() {
+        nbpRateCache.refresh();
+
+        verify(nbpApiClient, never()).findTableAsync();
+    }
+
+    private static CompletableFuture<ExchangeTable> completed(ExchangeTable table) {
+        return CompletableFuture.completedFuture(table);
+    }
+}
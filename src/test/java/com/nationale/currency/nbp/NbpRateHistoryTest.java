@@ -0,0 +1,148 @@
+package com.nationale.currency.nbp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.nationale.currency.MutableClock;
+import com.nationale.currency.acoount.Money;
+import com.nationale.currency.acoount.exception.NbpApiException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class NbpRateHistoryTest {
+
+    private static final LocalDate START = LocalDate.of(2024, 8, 1);
+    private static final LocalDate FIRST_RANGE_END = LocalDate.of(2024, 11, 1);
+    private static final LocalDate SECOND_RANGE_START = LocalDate.of(2024, 11, 2);
+    private static final LocalDate FRIDAY = LocalDate.of(2024, 11, 15);
+    private static final Instant FRIDAY_MORNING = Instant.parse("2024-11-15T09:00:00Z");
+
+    @Mock
+    private NbpApiClient nbpApiClient;
+
+    private MutableClock clock;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(FRIDAY_MORNING);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void shouldBackfillInRanges_andAnswerWithLatestTableOnOrBeforeDate() {
+        when(nbpApiClient.findTablesAsync(START, FIRST_RANGE_END)).thenReturn(completed(
+                table("2024-08-01", usd("3.9650")), table("2024-10-31", usd("4.0123"))));
+        when(nbpApiClient.findTablesAsync(SECOND_RANGE_START, FRIDAY)).thenReturn(completed(
+                table("2024-11-14", usd("4.0901")),
+                table("2024-11-15", usd("4.1080"), new ExchangeRate("euro", "EUR", new BigDecimal("4.3215")))));
+        var history = history(true);
+
+        history.backfill();
+
+        assertEquals(FRIDAY, history.loadedThrough());
+        assertRate(history.rateAsOf("usd", FRIDAY), "2024-11-15", "4.108");
+        assertRate(history.rateAsOf("USD", LocalDate.of(2024, 11, 3)), "2024-10-31", "4.0123");
+        assertRate(history.rateAsOf("USD", START), "2024-08-01", "3.965");
+        assertRate(history.rateAsOf("PLN", LocalDate.of(2024, 11, 3)), "2024-11-03", "1");
+        assertNull(history.rateAsOf("EUR", LocalDate.of(2024, 11, 14)));
+        assertNull(history.rateAsOf("USD", START.minusDays(1)));
+        assertNull(history.rateAsOf("USD", FRIDAY.plusDays(1)));
+        assertNull(history.rateAsOf("CHF", FRIDAY));
+        assertEquals(5.0d, meterRegistry.get("nbp.history.rates").gauge().value());
+    }
+
+    @Test
+    void shouldResumeAfterFailedQuery_andFetchLastDayAgain() {
+        when(nbpApiClient.findTablesAsync(START, FIRST_RANGE_END)).thenReturn(completed(
+                table("2024-10-31", usd("4.0123"))));
+        when(nbpApiClient.findTablesAsync(SECOND_RANGE_START, FRIDAY))
+                .thenReturn(CompletableFuture.failedFuture(new NbpApiException("NBP api exception")));
+        when(nbpApiClient.findTablesAsync(FIRST_RANGE_END, FRIDAY)).thenReturn(completed(
+                table("2024-11-14", usd("4.0901"))));
+        var history = history(true);
+
+        history.backfill();
+        assertEquals(FIRST_RANGE_END, history.loadedThrough());
+        assertNull(history.rateAsOf("USD", FRIDAY));
+
+        history.backfill();
+        assertEquals(FRIDAY, history.loadedThrough());
+        assertRate(history.rateAsOf("USD", FRIDAY), "2024-11-14", "4.0901");
+
+        // The table of Friday was published after the previous run.
+        clock.advance(Duration.ofDays(1));
+        when(nbpApiClient.findTablesAsync(FRIDAY, FRIDAY.plusDays(1))).thenReturn(completed(
+                table("2024-11-15", usd("4.1080"))));
+        history.backfill();
+
+        assertEquals(FRIDAY.plusDays(1), history.loadedThrough());
+        assertRate(history.rateAsOf("USD", FRIDAY.plusDays(1)), "2024-11-15", "4.108");
+        assertRate(history.rateAsOf("USD", FRIDAY.minusDays(1)), "2024-11-14", "4.0901");
+    }
+
+    @Test
+    void shouldReplaceRateOfSameDay_whenTableIsAddedAgain() {
+        when(nbpApiClient.findTablesAsync(START, FIRST_RANGE_END)).thenReturn(completed());
+        when(nbpApiClient.findTablesAsync(SECOND_RANGE_START, FRIDAY)).thenReturn(completed(
+                table("2024-11-14", usd("4.0901")), table("2024-11-15", usd("4.1000"))));
+        var history = history(true);
+        history.backfill();
+
+        history.add(List.of(table("2024-11-15", usd("4.1080")), table("2024-11-13", usd("4.0800"))));
+
+        assertRate(history.rateAsOf("USD", FRIDAY), "2024-11-15", "4.108");
+        assertRate(history.rateAsOf("USD", FRIDAY.minusDays(1)), "2024-11-14", "4.0901");
+        assertRate(history.rateAsOf("USD", FRIDAY.minusDays(2)), "2024-11-13", "4.08");
+        assertEquals(3.0d, meterRegistry.get("nbp.history.rates").gauge().value());
+    }
+
+    @Test
+    void shouldNotCallNbp_whenDisabled() {
+        var history = history(false);
+
+        history.backfill();
+
+        assertNull(history.loadedThrough());
+        assertNull(history.rateAsOf("PLN", FRIDAY));
+        verify(nbpApiClient, never()).findTablesAsync(any(), any());
+    }
+
+    private NbpRateHistory history(boolean enabled) {
+        return new NbpRateHistory(nbpApiClient, clock, meterRegistry, enabled, START, ZoneId.of("Europe/Warsaw"));
+    }
+
+    private static void assertRate(NbpRateHistory.HistoricalRate rate, String effectiveDate, String value) {
+        assertEquals(LocalDate.parse(effectiveDate), rate.effectiveDate());
+        assertEquals(Money.Rate.of(new BigDecimal(value)), rate.rate());
+    }
+
+    private static ExchangeRate usd(String mid) {
+        return new ExchangeRate("dolar amerykański", "USD", new BigDecimal(mid));
+    }
+
+    private static ExchangeTable table(String effectiveDate, ExchangeRate... rates) {
+        return new ExchangeTable("A", "1/A/NBP/2024", effectiveDate, List.of(rates));
+    }
+
+    private static CompletableFuture<List<ExchangeTable>> completed(ExchangeTable... tables) {
+        return CompletableFuture.completedFuture(List.of(tables));
+    }
+}
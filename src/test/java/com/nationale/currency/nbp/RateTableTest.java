@@ -0,0 +1,59 @@
+package com.nationale.currency.nbp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import com.nationale.currency.acoount.Money;
+import org.junit.jupiter.api.Test;
+
+class RateTableTest {
+
+    private static final RateTable TABLE = RateTable.of(new ExchangeTable("A", "222/A/NBP/2024", "2024-11-15",
+            List.of(new ExchangeRate("dolar amerykański", "USD", new BigDecimal("4.1080")),
+                    new ExchangeRate("euro", "EUR", new BigDecimal("4.3215")),
+                    new ExchangeRate("jen (Japonia)", "JPY", new BigDecimal("0.026536")))));
+
+    @Test
+    void shouldQuotePlnAndTableCurrencies() {
+        assertEquals(LocalDate.of(2024, 11, 15), TABLE.effectiveDate());
+        assertEquals(List.of("EUR", "JPY", "PLN", "USD"), TABLE.currencies());
+        assertEquals(new Money.Rate(1L, 0), TABLE.rate("PLN"));
+        assertEquals(new Money.Rate(4108L, 3), TABLE.rate("USD"));
+    }
+
+    @Test
+    void shouldLookUpCodesIgnoringCase() {
+        assertSame(TABLE.rate("EUR"), TABLE.rate("eur"));
+        assertSame(TABLE.rate("EUR"), TABLE.rate("eUr"));
+        assertTrue(TABLE.supports("jpy"));
+    }
+
+    @Test
+    void shouldNotSupportUnknownOrMalformedCodes() {
+        assertFalse(TABLE.supports("CHF"));
+        assertNull(TABLE.rate("US"));
+        assertNull(TABLE.rate("USDX"));
+        assertNull(TABLE.rate("U$D"));
+        assertNull(TABLE.rate("ŁÓD"));
+        assertNull(TABLE.rate(null));
+    }
+
+    @Test
+    void shouldConvertThroughPln() {
+        var amount = Money.fromDouble(100.0d);
+
+        assertEquals(Money.fromDouble(410.8d), TABLE.convert(amount, "USD", "PLN"));
+        assertEquals(Money.fromDouble(24.3427d), TABLE.convert(amount, "PLN", "USD"));
+        // 100 EUR * 4.3215 / 4.1080 = 105.19717...
+        assertEquals(Money.fromDouble(105.1972d), TABLE.convert(amount, "EUR", "USD"));
+        // 100 USD * 4.1080 / 0.026536 = 15480.86...
+        assertEquals(Money.fromDouble(15480.8562d), TABLE.convert(amount, "USD", "JPY"));
+    }
+}